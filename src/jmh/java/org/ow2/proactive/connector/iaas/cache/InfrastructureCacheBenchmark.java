@@ -0,0 +1,144 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+import com.google.common.collect.ImmutableMap;
+
+
+/**
+ * Register and lookup throughput of the {@link InfrastructureCache}, compared with the former copy-on-write
+ * implementation, for different numbers of registered infrastructures.
+ *
+ * Run with: ./gradlew jmh -PjmhArgs="InfrastructureCacheBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class InfrastructureCacheBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int registeredInfrastructures;
+
+    private InfrastructureCache infrastructureCache;
+
+    private CopyOnWriteInfrastructureCache copyOnWriteInfrastructureCache;
+
+    private final AtomicLong temporaryInfrastructureIds = new AtomicLong();
+
+    @Setup
+    public void registerInfrastructures() {
+        infrastructureCache = new InfrastructureCache();
+        copyOnWriteInfrastructureCache = new CopyOnWriteInfrastructureCache();
+        for (int i = 0; i < registeredInfrastructures; i++) {
+            Infrastructure infrastructure = infrastructure("infrastructure-" + i);
+            infrastructureCache.registerInfrastructure(infrastructure);
+            copyOnWriteInfrastructureCache.registerInfrastructure(infrastructure);
+        }
+    }
+
+    @Benchmark
+    public Infrastructure lookup() {
+        return infrastructureCache.getInfrastructure(randomRegisteredId());
+    }
+
+    @Benchmark
+    public Infrastructure lookupCopyOnWrite() {
+        return copyOnWriteInfrastructureCache.getSupportedInfrastructures().get(randomRegisteredId());
+    }
+
+    /**
+     * Registers then deletes a short-lived infrastructure, as an autoscaler does, keeping the cache size stable.
+     */
+    @Benchmark
+    public void register() {
+        Infrastructure infrastructure = infrastructure("temporary-" + temporaryInfrastructureIds.incrementAndGet());
+        infrastructureCache.registerInfrastructure(infrastructure);
+        infrastructureCache.deleteInfrastructure(infrastructure);
+    }
+
+    @Benchmark
+    public void registerCopyOnWrite() {
+        Infrastructure infrastructure = infrastructure("temporary-" + temporaryInfrastructureIds.incrementAndGet());
+        copyOnWriteInfrastructureCache.registerInfrastructure(infrastructure);
+        copyOnWriteInfrastructureCache.deleteInfrastructure(infrastructure);
+    }
+
+    private String randomRegisteredId() {
+        return "infrastructure-" + ThreadLocalRandom.current().nextInt(registeredInfrastructures);
+    }
+
+    private static Infrastructure infrastructure(String id) {
+        return new Infrastructure(id, "openstack", "endPoint", null, null, null, null, null, false, null, null, null);
+    }
+
+    /**
+     * The copy-on-write implementation replaced by the concurrent map, kept as the baseline of the benchmark.
+     */
+    private static class CopyOnWriteInfrastructureCache {
+
+        private volatile ImmutableMap<String, Infrastructure> supportedInfrastructures = ImmutableMap.of();
+
+        ImmutableMap<String, Infrastructure> getSupportedInfrastructures() {
+            return supportedInfrastructures;
+        }
+
+        synchronized void registerInfrastructure(Infrastructure infrastructure) {
+            Map<String, Infrastructure> tempInfrastructures = new HashMap<>(supportedInfrastructures);
+            tempInfrastructures.put(infrastructure.getId(), infrastructure);
+            supportedInfrastructures = ImmutableMap.copyOf(tempInfrastructures);
+        }
+
+        synchronized void deleteInfrastructure(Infrastructure infrastructure) {
+            Map<String, Infrastructure> tempInfrastructures = new HashMap<>(supportedInfrastructures);
+            tempInfrastructures.remove(infrastructure.getId());
+            supportedInfrastructures = ImmutableMap.copyOf(tempInfrastructures);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.Image;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+
+
+/**
+ * Node candidate computation on a pricing file of 100k rows (500 hardware types x 200 images), with the indexed
+ * {@link JCloudsPricingRepository} and with the former implementation, which read the file and scanned the
+ * hardware and images for every row on each request.
+ *
+ * Run with: ./gradlew jmh -PjmhArgs="JCloudsPricingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JCloudsPricingBenchmark {
+
+    private static final int HARDWARE_TYPES = 500;
+
+    private static final int IMAGE_IDS = 200;
+
+    private Path pricingFile;
+
+    private JCloudsPricingRepository pricingRepository;
+
+    private Set<Hardware> resultHardware;
+
+    private Set<Image> resultImages;
+
+    @Setup
+    public void writePricingFile() throws IOException {
+        pricingFile = Files.createTempFile("pricing-benchmark", ".json");
+        try (Writer writer = Files.newBufferedWriter(pricingFile, StandardCharsets.UTF_8)) {
+            writer.write('[');
+            for (int hardware = 0; hardware < HARDWARE_TYPES; hardware++) {
+                for (int image = 0; image < IMAGE_IDS; image++) {
+                    if (hardware > 0 || image > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(String.format("{\"hardwareId\":\"%s\",\"imageId\":\"%s\",\"cost\":%s}",
+                                               hardwareType(hardware),
+                                               imageId(image),
+                                               0.01 * (hardware + 1)));
+                }
+            }
+            writer.write(']');
+        }
+
+        // The region offers a fifth of the priced hardware, and a thousand images
+        resultHardware = new HashSet<>();
+        for (int hardware = 0; hardware < HARDWARE_TYPES; hardware += 5) {
+            resultHardware.add(Hardware.builder()
+                                       .type(hardwareType(hardware))
+                                       .minRam(String.valueOf(1024 * hardware))
+                                       .minCores(String.valueOf(hardware))
+                                       .build());
+        }
+        resultImages = new HashSet<>();
+        for (int image = 0; image < 1000; image++) {
+            resultImages.add(Image.builder()
+                                  .id("image-" + image)
+                                  .name("distribution-" + (image / 2) + " release " + image)
+                                  .build());
+        }
+
+        pricingRepository = new JCloudsPricingRepository();
+        pricingRepository.getPricing(pricingFile);
+    }
+
+    @TearDown
+    public void deletePricingFile() throws IOException {
+        Files.deleteIfExists(pricingFile);
+    }
+
+    /**
+     * Half of the imageIds are image ids, the other half are parts of image names.
+     */
+    private static String imageId(int image) {
+        return image % 2 == 0 ? "image-" + image : "distribution-" + image;
+    }
+
+    private static String hardwareType(int hardware) {
+        return "type-" + hardware;
+    }
+
+    @Benchmark
+    public Set<NodeCandidate> nodeCandidates() throws IOException {
+        return pricingRepository.getPricing(pricingFile)
+                                .get()
+                                .getNodeCandidates("openstack-nova", "RegionOne", "", resultImages, resultHardware);
+    }
+
+    @Benchmark
+    public JCloudsPricing parsePricingFile() throws IOException {
+        try (InputStream pricingStream = Files.newInputStream(pricingFile)) {
+            return JCloudsPricing.parse(pricingStream);
+        }
+    }
+
+    /**
+     * The implementation replaced by the pricing repository, kept as the baseline of the benchmark.
+     */
+    @Benchmark
+    public Set<NodeCandidate> nodeCandidatesFormer() throws IOException {
+        List<String> listOfhardwareId = resultHardware.stream().map(Hardware::getType).collect(Collectors.toList());
+        List<String> listOfAvailableImageId = resultImages.stream()
+                                                          .map(Image::getId)
+                                                          .distinct()
+                                                          .collect(Collectors.toList());
+        List<String> listOfAvailableImageName = resultImages.stream()
+                                                            .map(Image::getName)
+                                                            .distinct()
+                                                            .filter(Objects::nonNull)
+                                                            .filter(s -> !s.isEmpty())
+                                                            .collect(Collectors.toList());
+        String fileContent = Files.readAllLines(pricingFile).stream().collect(Collectors.joining());
+        List<JSONObject> checkedPricingArray = new ArrayList<>();
+        for (Object entree : new JSONArray(fileContent)) {
+            checkedPricingArray.add((JSONObject) entree);
+        }
+        return checkedPricingArray.parallelStream()
+                                  .filter(jo -> jo.has("hardwareId") && jo.has("imageId"))
+                                  .filter(jo -> listOfhardwareId.contains(jo.get("hardwareId")))
+                                  .filter(jo -> listOfAvailableImageId.contains(jo.getString("imageId")) ||
+                                                listOfAvailableImageName.stream()
+                                                                        .anyMatch(s -> s.contains(jo.getString("imageId"))))
+                                  .map(jo -> NodeCandidate.builder()
+                                                          .cloud("openstack-nova")
+                                                          .region("RegionOne")
+                                                          .hw(resultHardware.stream()
+                                                                            .filter(hw -> hw.getType()
+                                                                                            .contains(jo.getString("hardwareId")))
+                                                                            .findFirst()
+                                                                            .get())
+                                                          .img(resultImages.stream().filter(img -> {
+                                                              String imageId = jo.getString("imageId");
+                                                              return img.getName().contains(imageId) ||
+                                                                     img.getId().contains(imageId);
+                                                          }).findFirst().get())
+                                                          .price(jo.optDouble("cost"))
+                                                          .build())
+                                  .collect(Collectors.toSet());
+    }
+}
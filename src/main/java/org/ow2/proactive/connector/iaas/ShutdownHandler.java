@@ -47,8 +47,10 @@ public class ShutdownHandler {
             try {
                 if (infrastructure.isToBeRemovedOnShutdown()) {
                     infrastructureService.deleteInfrastructureWithCreatedInstances(infrastructure);
+                } else if (infrastructureService.isPersistent()) {
+                    infrastructureService.releaseInfrastructure(infrastructure);
                 } else {
-                    infrastructureService.deleteInfrastructure(infrastructure);
+                    infrastructureService.deleteInfrastructureOnShutdown(infrastructure);
                 }
             } catch (Exception e) {
                 log.error("Shutdown ERROR when trying to delete infrastructure : " + infrastructure, e);
@@ -0,0 +1,89 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.service.InfrastructureService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Builds in the background the provider clients of the infrastructures restored from the infrastructure store, when
+ * connector-iaas.infrastructure-store.prewarm is enabled, so that the first requests after a restart do not all
+ * authenticate against the clouds at once.
+ */
+@Component
+@Log4j2
+public class StartupHandler {
+
+    @Autowired
+    private InfrastructureService infrastructureService;
+
+    @Value("${connector-iaas.infrastructure-store.prewarm:false}")
+    private boolean prewarm;
+
+    @Value("${connector-iaas.infrastructure-store.prewarm-threads:4}")
+    private int prewarmThreads;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInfrastructures() {
+        Collection<Infrastructure> infrastructures = infrastructureService.getAllSupportedInfrastructure().values();
+        if (!prewarm || infrastructures.isEmpty()) {
+            return;
+        }
+
+        ExecutorService warmUpExecutor = Executors.newFixedThreadPool(Math.max(1,
+                                                                               Math.min(prewarmThreads,
+                                                                                        infrastructures.size())),
+                                                                      new ThreadFactoryBuilder().setNameFormat("infrastructure-warm-up-%d")
+                                                                                                .setDaemon(true)
+                                                                                                .build());
+        infrastructures.forEach(infrastructure -> warmUpExecutor.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                infrastructureService.warmUp(infrastructure);
+                log.info("Warmed up infrastructure " + infrastructure.getId() + " in " +
+                         (System.currentTimeMillis() - start) + " ms");
+            } catch (RuntimeException e) {
+                log.warn("Unable to warm up infrastructure " + infrastructure.getId(), e);
+            }
+        }));
+        // the pool threads terminate once all the infrastructures are warmed up
+        warmUpExecutor.shutdown();
+    }
+}
@@ -46,6 +46,9 @@ public class JerseyConfig extends ResourceConfig {
         register(KeyPairRest.class);
         register(RegionRest.class);
         register(NodeCandidateRest.class);
+        register(AggregatedNodeCandidateRest.class);
         register(HardwareRest.class);
+        register(OperationRest.class);
+        register(ClientRest.class);
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Per-infrastructure catalog built from a provider listing, so that the requests and the node candidates
+ * computations share one listing instead of querying the cloud every time.
+ * Concurrent requests of a missing catalog share a single listing.
+ *
+ * @param <L>   the type of the provider listing
+ * @param <C>   the type of the catalog built from the listing
+ */
+public abstract class CatalogCache<L, C> {
+
+    private final ExecutorService refreshExecutor;
+
+    private final RefreshingCache<String, C> catalogPerInfrastructure;
+
+    private final Function<L, C> catalogBuilder;
+
+    /**
+     * @param name              the name of the cache, used to name its refresh threads
+     * @param timeToLive        the age (in milliseconds) after which a catalog is refreshed
+     * @param maxStaleness      the maximum age (in milliseconds) of a catalog served while it is refreshed
+     * @param refreshThreads    the number of catalogs refreshed at the same time
+     * @param catalogBuilder    builds the catalog of a provider listing
+     */
+    protected CatalogCache(String name, long timeToLive, long maxStaleness, int refreshThreads,
+            Function<L, C> catalogBuilder) {
+        this.refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads),
+                                                            new ThreadFactoryBuilder().setNameFormat(name + "-%d")
+                                                                                      .setDaemon(true)
+                                                                                      .build());
+        this.catalogPerInfrastructure = new RefreshingCache<>(timeToLive, maxStaleness, refreshExecutor);
+        this.catalogBuilder = catalogBuilder;
+    }
+
+    /**
+     * @param infrastructure    the infrastructure whose catalog is requested
+     * @param lister            the provider listing, called when the catalog is missing or too old
+     * @return  the catalog of the infrastructure
+     */
+    public C getCatalog(Infrastructure infrastructure, Supplier<L> lister) {
+        return catalogPerInfrastructure.get(infrastructure.getId(), () -> catalogBuilder.apply(lister.get()));
+    }
+
+    public void invalidate(Infrastructure infrastructure) {
+        catalogPerInfrastructure.invalidate(infrastructure.getId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
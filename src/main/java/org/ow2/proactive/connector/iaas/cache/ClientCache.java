@@ -0,0 +1,314 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Bounded cache of the cloud clients built for the infrastructures, keyed by {@link ClientKey}.
+ *
+ * Infrastructures with the same key share a client, which is closed once no infrastructure uses it anymore.
+ * When the cache is full, the least recently used client is evicted and closed as well, so that the threads and
+ * connection pools of the clients do not outlive the infrastructures.
+ *
+ * A client got within a {@link ClientScope} is leased until the scope is closed: a client removed from the cache
+ * while leased is only closed once its last lease is released.
+ */
+@Log4j2
+public class ClientCache<C> {
+
+    private final String name;
+
+    private final BiConsumer<ClientKey, C> closer;
+
+    private final Cache<ClientKey, LeasedClient<C>> clients;
+
+    private final Map<String, ClientKey> keyPerInfrastructure = new ConcurrentHashMap<>();
+
+    /**
+     * Serialize, per client key, the association of an infrastructure to a key with the removal of an unused key.
+     */
+    private final Striped<Lock> locks = Striped.lazyWeakLock(64);
+
+    /**
+     * Clients removed from the cache while leased, closed once released.
+     */
+    private final Set<LeasedClient<C>> retiredClients = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Clients built and not closed yet. It differs from the cache size when closing a client failed, or while a
+     * removed client is still leased.
+     */
+    private final AtomicLong openClients = new AtomicLong();
+
+    /**
+     * @param name          the name of the cache, used in the logs and the statistics
+     * @param maximumSize   the maximum number of clients, lower or equal to zero for no bound
+     * @param closer        releases the resources of a client removed from the cache
+     */
+    public ClientCache(String name, long maximumSize, BiConsumer<ClientKey, C> closer) {
+        this.name = name;
+        this.closer = closer;
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats();
+        if (maximumSize > 0) {
+            cacheBuilder.maximumSize(maximumSize);
+        }
+        this.clients = cacheBuilder.removalListener(this::onRemoval).build();
+    }
+
+    /**
+     * @param infrastructure    the infrastructure the client is used for
+     * @param builder           builds the client when there is none for the infrastructure key
+     * @return  the client of the infrastructure, leased by the current {@link ClientScope} if any
+     */
+    public C get(Infrastructure infrastructure, Function<Infrastructure, C> builder) {
+        ClientKey key = ClientKey.of(infrastructure);
+        ClientKey previousKey;
+        LeasedClient<C> leasedClient;
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            previousKey = keyPerInfrastructure.put(infrastructure.getId(), key);
+            leasedClient = lease(key, infrastructure, builder);
+        } finally {
+            lock.unlock();
+        }
+        if (previousKey != null && !previousKey.equals(key)) {
+            // the infrastructure was updated, its former client is dropped if nobody else uses it
+            releaseIfUnused(previousKey);
+        }
+        if (!ClientScope.hold(leasedClient, () -> release(leasedClient))) {
+            release(leasedClient);
+        }
+        return leasedClient.client;
+    }
+
+    /**
+     * Closes the client of the infrastructure, unless another infrastructure shares it. A leased client is closed
+     * once its last lease is released.
+     */
+    public void remove(Infrastructure infrastructure) {
+        ClientKey key = keyPerInfrastructure.remove(infrastructure.getId());
+        if (key != null) {
+            releaseIfUnused(key);
+        }
+    }
+
+    /**
+     * Closes all the clients, waiting for the leased ones to be released.
+     * @param timeout   the maximum time to wait for the leased clients, in milliseconds, after which they are closed
+     *                  anyway
+     */
+    public void closeAll(long timeout) {
+        keyPerInfrastructure.clear();
+        clients.invalidateAll();
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (retiredClients) {
+            long remaining = timeout;
+            while (!retiredClients.isEmpty() && remaining > 0) {
+                try {
+                    retiredClients.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        new ArrayList<>(retiredClients).forEach(leasedClient -> {
+            log.warn("Closing " + name + " client " + leasedClient.key + " while it is still in use");
+            close(leasedClient);
+        });
+    }
+
+    public long getOpenClients() {
+        return openClients.get();
+    }
+
+    public ClientCacheStatistics getStatistics() {
+        CacheStats stats = clients.stats();
+        return new ClientCacheStatistics(name,
+                                         clients.size(),
+                                         openClients.get(),
+                                         keyPerInfrastructure.size(),
+                                         stats.hitCount(),
+                                         stats.missCount(),
+                                         stats.loadExceptionCount(),
+                                         stats.evictionCount(),
+                                         stats.averageLoadPenalty() / 1_000_000);
+    }
+
+    private LeasedClient<C> lease(ClientKey key, Infrastructure infrastructure, Function<Infrastructure, C> builder) {
+        while (true) {
+            LeasedClient<C> leasedClient;
+            try {
+                leasedClient = clients.get(key, () -> {
+                    LeasedClient<C> builtClient = new LeasedClient<>(key, builder.apply(infrastructure));
+                    openClients.incrementAndGet();
+                    return builtClient;
+                });
+            } catch (UncheckedExecutionException | ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new RuntimeException(e.getCause());
+            }
+            if (leasedClient.acquire()) {
+                return leasedClient;
+            }
+            // removed from the cache between its lookup and its lease, the next lookup builds a new client
+        }
+    }
+
+    private void release(LeasedClient<C> leasedClient) {
+        if (leasedClient.release()) {
+            close(leasedClient);
+        }
+    }
+
+    private void releaseIfUnused(ClientKey key) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            if (!keyPerInfrastructure.containsValue(key)) {
+                clients.invalidate(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onRemoval(RemovalNotification<ClientKey, LeasedClient<C>> notification) {
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        LeasedClient<C> leasedClient = notification.getValue();
+        // registered first, the last lease can be released as soon as the client is retired
+        retiredClients.add(leasedClient);
+        if (leasedClient.retire()) {
+            log.info("Closing " + name + " client " + notification.getKey() + " (" + notification.getCause() + ")");
+            close(leasedClient);
+        } else {
+            log.info("Closing " + name + " client " + notification.getKey() + " (" + notification.getCause() +
+                     ") once it is released");
+        }
+    }
+
+    private void close(LeasedClient<C> leasedClient) {
+        if (!leasedClient.markClosed()) {
+            // already closed when the connector stopped
+            return;
+        }
+        try {
+            closer.accept(leasedClient.key, leasedClient.client);
+            openClients.decrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Unable to close " + name + " client " + leasedClient.key, e);
+        } finally {
+            synchronized (retiredClients) {
+                if (retiredClients.remove(leasedClient)) {
+                    retiredClients.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * A cached client with the number of its leases. A client removed from the cache is retired: it cannot be
+     * leased anymore, and is closed once it is not leased anymore.
+     */
+    private static class LeasedClient<C> {
+
+        private final ClientKey key;
+
+        private final C client;
+
+        private int leases = 0;
+
+        private boolean retired = false;
+
+        private boolean closed = false;
+
+        private LeasedClient(ClientKey key, C client) {
+            this.key = key;
+            this.client = client;
+        }
+
+        private synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            leases++;
+            return true;
+        }
+
+        /**
+         * @return true if the client is to be closed
+         */
+        private synchronized boolean release() {
+            leases--;
+            return retired && leases == 0;
+        }
+
+        /**
+         * @return true if the client is to be closed
+         */
+        private synchronized boolean retire() {
+            retired = true;
+            return leases == 0;
+        }
+
+        /**
+         * @return false if the client was already closed
+         */
+        private synchronized boolean markClosed() {
+            boolean wasClosed = closed;
+            closed = true;
+            return !wasClosed;
+        }
+    }
+}
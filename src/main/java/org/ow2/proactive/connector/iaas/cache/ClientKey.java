@@ -0,0 +1,120 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Optional;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.InfrastructureCredentials;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * Identifies the cloud client an infrastructure needs: two infrastructures with the same key can share the same
+ * client, and any change of one of these fields requires a new client.
+ * The credentials are only kept as a fingerprint, so that the key is cheap to compare. The fingerprint is an HMAC
+ * keyed by a secret drawn at startup, so that it cannot be used to check guessed credentials offline, and it is left
+ * out of the logged representation of the key anyway.
+ */
+@EqualsAndHashCode
+@Getter
+@ToString(exclude = "credentialsFingerprint")
+public class ClientKey {
+
+    private static final HashFunction FINGERPRINT_FUNCTION = Hashing.hmacSha256(randomSecret());
+
+    private final String type;
+
+    private final String endpoint;
+
+    private final String authenticationEndpoint;
+
+    private final String managementEndpoint;
+
+    private final String resourceManagerEndpoint;
+
+    private final String graphEndpoint;
+
+    private final String credentialsFingerprint;
+
+    private final String region;
+
+    private final String identityVersion;
+
+    private final String scope;
+
+    private ClientKey(Infrastructure infrastructure) {
+        this.type = infrastructure.getType();
+        this.endpoint = infrastructure.getEndpoint();
+        this.authenticationEndpoint = infrastructure.getAuthenticationEndpoint();
+        this.managementEndpoint = infrastructure.getManagementEndpoint();
+        this.resourceManagerEndpoint = infrastructure.getResourceManagerEndpoint();
+        this.graphEndpoint = infrastructure.getGraphEndpoint();
+        this.credentialsFingerprint = fingerprint(infrastructure.getCredentials());
+        this.region = infrastructure.getRegion();
+        this.identityVersion = infrastructure.getIdentityVersion();
+        this.scope = Optional.ofNullable(infrastructure.getScope())
+                             .map(infrastructureScope -> infrastructureScope.getPrefix() + ":" +
+                                                         infrastructureScope.getValue())
+                             .orElse(null);
+    }
+
+    public static ClientKey of(Infrastructure infrastructure) {
+        return new ClientKey(infrastructure);
+    }
+
+    private static String fingerprint(InfrastructureCredentials credentials) {
+        if (credentials == null) {
+            return null;
+        }
+        Hasher hasher = FINGERPRINT_FUNCTION.newHasher();
+        for (String field : new String[] { credentials.getUsername(), credentials.getProjectId(),
+                                           credentials.getPassword(), credentials.getDomain(),
+                                           credentials.getSubscriptionId() }) {
+            // the length prefix keeps ("ab", "c") and ("a", "bc") apart, and null apart from the empty string
+            hasher.putInt(field == null ? -1 : field.length());
+            if (field != null) {
+                hasher.putString(field, StandardCharsets.UTF_8);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+
+/**
+ * Leases taken by the current thread on the cloud clients it gets from the {@link ClientCache}s, held until the
+ * scope is closed.
+ *
+ * A leased client is not closed, even when it is evicted or its infrastructure removed, before the operation using
+ * it ends. Scopes can be nested, a client got outside of any scope is not leased.
+ */
+public final class ClientScope implements AutoCloseable {
+
+    private static final ThreadLocal<ClientScope> CURRENT = new ThreadLocal<>();
+
+    private final ClientScope outerScope;
+
+    /**
+     * The release of each lease, by leased client holder, so that a client got several times is leased once.
+     */
+    private final Map<Object, Runnable> leases = new LinkedHashMap<>();
+
+    private ClientScope(ClientScope outerScope) {
+        this.outerScope = outerScope;
+    }
+
+    public static ClientScope open() {
+        ClientScope scope = new ClientScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return  the result of the call, the clients it got being leased until it returns
+     */
+    public static <T> T call(Supplier<T> call) {
+        try (ClientScope scope = open()) {
+            return call.get();
+        }
+    }
+
+    public static void run(Runnable call) {
+        try (ClientScope scope = open()) {
+            call.run();
+        }
+    }
+
+    /**
+     * @param holder    the holder of the leased client
+     * @param release   releases the lease
+     * @return  true if the current scope now holds the lease, false if there is no scope or if it already holds a
+     *          lease on the client, the caller then releasing the lease itself
+     */
+    static boolean hold(Object holder, Runnable release) {
+        ClientScope scope = CURRENT.get();
+        return scope != null && scope.leases.putIfAbsent(holder, release) == null;
+    }
+
+    @Override
+    public void close() {
+        if (outerScope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(outerScope);
+        }
+        leases.values().forEach(Runnable::run);
+        leases.clear();
+    }
+}
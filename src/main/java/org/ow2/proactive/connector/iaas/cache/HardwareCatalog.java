@@ -0,0 +1,96 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.HardwareProfile;
+
+import lombok.Getter;
+
+
+/**
+ * Read-only snapshot of the hardware of an infrastructure. The hardware of a region, and its deduplicated profiles,
+ * are computed on the first request of the region and kept with the snapshot.
+ * The hardware without location is available in every region.
+ */
+public class HardwareCatalog {
+
+    @Getter
+    private final List<HardwareProfile> profiles;
+
+    @Getter
+    private final Set<Hardware> hardware;
+
+    private final ConcurrentMap<String, List<HardwareProfile>> profilesPerRegion = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, List<HardwareProfile>> distinctProfilesPerRegion = new ConcurrentHashMap<>();
+
+    public HardwareCatalog(Collection<HardwareProfile> profiles) {
+        this.profiles = Collections.unmodifiableList(profiles.stream().distinct().collect(Collectors.toList()));
+        this.hardware = Collections.unmodifiableSet(this.profiles.stream()
+                                                                 .map(HardwareProfile::getHardware)
+                                                                 .collect(Collectors.toSet()));
+    }
+
+    /**
+     * @param region    the region of the hardware, matched against the locations containing it (e.g. the zones of
+     *                  the region)
+     * @return  the hardware profiles located in the region, and the ones without location
+     */
+    public List<HardwareProfile> getProfiles(String region) {
+        return profilesPerRegion.computeIfAbsent(region, this::locatedIn);
+    }
+
+    /**
+     * @param region    the region of the hardware
+     * @return  a single hardware profile of the region per ram, cores and frequency
+     */
+    public List<HardwareProfile> getDistinctProfiles(String region) {
+        return distinctProfilesPerRegion.computeIfAbsent(region, key -> {
+            Map<String, HardwareProfile> profilePerDedupeKey = new LinkedHashMap<>();
+            getProfiles(key).forEach(profile -> profilePerDedupeKey.putIfAbsent(profile.getDedupeKey(), profile));
+            return Collections.unmodifiableList(new ArrayList<>(profilePerDedupeKey.values()));
+        });
+    }
+
+    private List<HardwareProfile> locatedIn(String region) {
+        return Collections.unmodifiableList(profiles.stream()
+                                                    .filter(profile -> profile.getLocation() == null ||
+                                                                       profile.getLocation().contains(region))
+                                                    .collect(Collectors.toList()));
+    }
+}
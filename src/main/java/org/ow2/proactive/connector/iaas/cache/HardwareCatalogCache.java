@@ -0,0 +1,48 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.Collection;
+
+import org.ow2.proactive.connector.iaas.model.HardwareProfile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Catalog of the hardware of each infrastructure, with its numeric values parsed once.
+ */
+@Component
+public class HardwareCatalogCache extends CatalogCache<Collection<HardwareProfile>, HardwareCatalog> {
+
+    @Autowired
+    public HardwareCatalogCache(@Value("${connector-iaas.hardware-cache.ttl:${connector-iaas.catalog-cache.ttl:600000}}") long timeToLive,
+            @Value("${connector-iaas.hardware-cache.max-staleness:${connector-iaas.catalog-cache.max-staleness:3600000}}") long maxStaleness,
+            @Value("${connector-iaas.hardware-cache.refresh-threads:${connector-iaas.catalog-cache.refresh-threads:2}}") int refreshThreads) {
+        super("hardware-cache", timeToLive, maxStaleness, refreshThreads, HardwareCatalog::new);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.ow2.proactive.connector.iaas.model.Image;
+
+import lombok.Getter;
+
+
+/**
+ * Read-only snapshot of the images of an infrastructure, indexed by region. The images without location are
+ * available in every region.
+ */
+public class ImageCatalog {
+
+    @Getter
+    private final Set<Image> images;
+
+    private final Set<Image> imagesWithoutLocation;
+
+    private final Map<String, Set<Image>> imagesPerRegion;
+
+    public ImageCatalog(Set<Image> images) {
+        this.images = Collections.unmodifiableSet(new HashSet<>(images));
+        Set<Image> withoutLocation = new HashSet<>();
+        Map<String, Set<Image>> perRegion = new HashMap<>();
+        for (Image image : this.images) {
+            if (image.getLocation() == null || image.getLocation().isEmpty()) {
+                withoutLocation.add(image);
+            } else {
+                perRegion.computeIfAbsent(image.getLocation(), region -> new HashSet<>()).add(image);
+            }
+        }
+        this.imagesWithoutLocation = Collections.unmodifiableSet(withoutLocation);
+        perRegion.replaceAll((region, regionImages) -> {
+            regionImages.addAll(withoutLocation);
+            return Collections.unmodifiableSet(regionImages);
+        });
+        this.imagesPerRegion = perRegion;
+    }
+
+    /**
+     * @param region    the region of the images
+     * @return  the images located in the region, and the images without location
+     */
+    public Set<Image> getImages(String region) {
+        return imagesPerRegion.getOrDefault(region, imagesWithoutLocation);
+    }
+}
@@ -26,42 +26,96 @@
 package org.ow2.proactive.connector.iaas.cache;
 
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.PostConstruct;
 
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.store.InfrastructureStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import jersey.repackaged.com.google.common.collect.ImmutableMap;
-import lombok.Getter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Striped;
 
 
+/**
+ * Registered infrastructures, indexed by id.
+ * Lookups and mutations go through a concurrent map, so registering or deleting an infrastructure costs the same
+ * whatever the number of registered infrastructures. Mutations of the same id are serialized together with their
+ * write to the store, which happens first, so that the store and the cache do not diverge.
+ */
 @Component
 public class InfrastructureCache {
 
-    @Getter
-    private volatile ImmutableMap<String, Infrastructure> supportedInfrastructures;
+    private final ConcurrentMap<String, Infrastructure> supportedInfrastructures = new ConcurrentHashMap<>();
+
+    /**
+     * Serialize the store writes and map updates of the same id, outside of the map operations.
+     */
+    private final Striped<Lock> locks = Striped.lazyWeakLock(64);
 
-    public InfrastructureCache() {
-        this.supportedInfrastructures = ImmutableMap.of();
+    @Autowired(required = false)
+    private InfrastructureStore infrastructureStore;
+
+    @PostConstruct
+    public void loadStoredInfrastructures() {
+        if (isPersistent()) {
+            supportedInfrastructures.putAll(infrastructureStore.loadAll());
+        }
     }
 
-    public synchronized void registerInfrastructure(Infrastructure infrastructure) {
-        Map<String, Infrastructure> tempInfrastructures = cloneSupportedInfrastructures();
+    /**
+     * @return true if the registered infrastructures are persisted, and thus kept across restarts
+     */
+    public boolean isPersistent() {
+        return infrastructureStore != null;
+    }
 
-        tempInfrastructures.put(infrastructure.getId(), infrastructure);
-        supportedInfrastructures = ImmutableMap.copyOf(tempInfrastructures);
+    /**
+     * @return  an immutable snapshot of the registered infrastructures, indexed by id
+     */
+    public Map<String, Infrastructure> getSupportedInfrastructures() {
+        return ImmutableMap.copyOf(supportedInfrastructures);
     }
 
-    public synchronized void deleteInfrastructure(Infrastructure infrastructure) {
-        Map<String, Infrastructure> tempInfrastructures = cloneSupportedInfrastructures();
+    /**
+     * @param infrastructureId  the id of the infrastructure
+     * @return  the registered infrastructure, or null if there is none with this id
+     */
+    public Infrastructure getInfrastructure(String infrastructureId) {
+        return supportedInfrastructures.get(infrastructureId);
+    }
 
-        tempInfrastructures.remove(infrastructure.getId());
-        supportedInfrastructures = ImmutableMap.copyOf(tempInfrastructures);
+    /**
+     * The infrastructure is saved in the store before being registered, so that a failed write leaves the
+     * registered infrastructures unchanged.
+     */
+    public void registerInfrastructure(Infrastructure infrastructure) {
+        Lock lock = locks.get(infrastructure.getId());
+        lock.lock();
+        try {
+            if (isPersistent()) {
+                infrastructureStore.save(infrastructure);
+            }
+            supportedInfrastructures.put(infrastructure.getId(), infrastructure);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    private Map<String, Infrastructure> cloneSupportedInfrastructures() {
-        return supportedInfrastructures.entrySet()
-                                       .stream()
-                                       .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    public void deleteInfrastructure(Infrastructure infrastructure) {
+        Lock lock = locks.get(infrastructure.getId());
+        lock.lock();
+        try {
+            if (isPersistent()) {
+                infrastructureStore.delete(infrastructure.getId());
+            }
+            supportedInfrastructures.remove(infrastructure.getId());
+        } finally {
+            lock.unlock();
+        }
     }
 }
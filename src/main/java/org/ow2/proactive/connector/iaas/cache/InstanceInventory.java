@@ -0,0 +1,73 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.ow2.proactive.connector.iaas.model.Instance;
+
+import lombok.Getter;
+
+
+/**
+ * Read-only snapshot of the instances of an infrastructure, indexed by id and by tag.
+ */
+public class InstanceInventory {
+
+    @Getter
+    private final Set<Instance> instances;
+
+    private final Map<String, Instance> instancesById;
+
+    private final Map<String, Set<Instance>> instancesByTag;
+
+    public InstanceInventory(Set<Instance> instances) {
+        this.instances = Collections.unmodifiableSet(new HashSet<>(instances));
+        this.instancesById = new HashMap<>(instances.size() * 2);
+        this.instancesByTag = new HashMap<>();
+        for (Instance instance : this.instances) {
+            if (instance.getId() != null) {
+                instancesById.put(instance.getId(), instance);
+            }
+            if (instance.getTag() != null) {
+                instancesByTag.computeIfAbsent(instance.getTag(), tag -> new HashSet<>()).add(instance);
+            }
+        }
+    }
+
+    public Optional<Instance> getInstanceById(String instanceId) {
+        return Optional.ofNullable(instancesById.get(instanceId));
+    }
+
+    public Set<Instance> getInstancesByTag(String instanceTag) {
+        return Collections.unmodifiableSet(instancesByTag.getOrDefault(instanceTag, Collections.emptySet()));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.Instance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Per-infrastructure snapshot of the instances listed by the cloud providers, so that the services share one
+ * indexed listing instead of querying the cloud on every request.
+ * The snapshot of an infrastructure is invalidated whenever the connector creates or deletes instances on it.
+ */
+@Component
+public class InstanceInventoryCache {
+
+    private final ExecutorService refreshExecutor;
+
+    private final RefreshingCache<String, InstanceInventory> inventoryPerInfrastructure;
+
+    @Autowired
+    public InstanceInventoryCache(@Value("${connector-iaas.instance-cache.ttl:30000}") long timeToLive,
+            @Value("${connector-iaas.instance-cache.max-staleness:120000}") long maxStaleness,
+            @Value("${connector-iaas.instance-cache.refresh-threads:2}") int refreshThreads) {
+        refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads),
+                                                       new ThreadFactoryBuilder().setNameFormat("instance-cache-%d")
+                                                                                 .setDaemon(true)
+                                                                                 .build());
+        inventoryPerInfrastructure = new RefreshingCache<>(timeToLive, maxStaleness, refreshExecutor);
+    }
+
+    /**
+     * @param infrastructure    the infrastructure whose instances are listed
+     * @param lister            the provider listing, called when the snapshot is missing or too old
+     * @return  the indexed snapshot of the infrastructure instances
+     */
+    public InstanceInventory getInventory(Infrastructure infrastructure, Supplier<Set<Instance>> lister) {
+        return inventoryPerInfrastructure.get(infrastructure.getId(), () -> new InstanceInventory(lister.get()));
+    }
+
+    /**
+     * @param infrastructure    the infrastructure whose instances are listed
+     * @param lister            the provider listing, called when the snapshot is missing or too old
+     * @return  a read-only snapshot of the infrastructure instances
+     */
+    public Set<Instance> getAllInstances(Infrastructure infrastructure, Supplier<Set<Instance>> lister) {
+        return getInventory(infrastructure, lister).getInstances();
+    }
+
+    /**
+     * @param infrastructure    the infrastructure whose instances are listed
+     * @return  the snapshot of the infrastructure instances if one younger than the time to live is cached, without
+     *          listing the cloud
+     */
+    public Optional<InstanceInventory> getCachedInventory(Infrastructure infrastructure) {
+        return inventoryPerInfrastructure.getIfFresh(infrastructure.getId());
+    }
+
+    public void invalidate(Infrastructure infrastructure) {
+        inventoryPerInfrastructure.invalidate(infrastructure.getId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Pre-computed snapshots of the node candidates, per infrastructure, region and image requirement.
+ *
+ * A snapshot is computed on its first request, then recomputed in the background every refresh interval, until it
+ * is no longer requested for the expiry duration. The requests are answered from the snapshot, whose age is
+ * reported as its staleness, unless a refresh is forced. Snapshots can be saved in a directory, to be served right
+ * after a restart while they are recomputed. The saved snapshots are kept when the connector stops, and deleted with
+ * their infrastructure, once expired, or at startup when the persisted infrastructures do not include theirs. A
+ * refresh interval lower or equal to zero disables the snapshots.
+ *
+ * The background refreshes look the infrastructure up by id, so that they use its current credentials, and stop
+ * once it is deleted.
+ */
+@Component
+@Log4j2
+public class NodeCandidateSnapshotCache {
+
+    private static final String SNAPSHOT_FILE_PREFIX = "node-candidates-";
+
+    private static final String SNAPSHOT_FILE_SUFFIX = ".json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final long refreshInterval;
+
+    private final long expiry;
+
+    private final Path directory;
+
+    private final ExecutorService refreshExecutor;
+
+    private final ScheduledExecutorService refreshScheduler;
+
+    private final RefreshingCache<SnapshotKey, NodeCandidateSnapshot> snapshots;
+
+    private final ConcurrentMap<SnapshotKey, ActiveSnapshot> activeSnapshots = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the computed and saved snapshots, including the ones read back at startup, not requested yet.
+     */
+    private final Set<SnapshotKey> snapshotKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Incremented on every invalidation of an infrastructure, so that a snapshot computed while its infrastructure
+     * is deleted is neither kept nor saved. A computation checks and records its snapshot while holding the
+     * generation of its infrastructure.
+     */
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final InfrastructureCache infrastructureCache;
+
+    @Autowired
+    public NodeCandidateSnapshotCache(
+            @Value("${connector-iaas.node-candidates.snapshot.refresh-interval:600000}") long refreshInterval,
+            @Value("${connector-iaas.node-candidates.snapshot.max-staleness:3600000}") long maxStaleness,
+            @Value("${connector-iaas.node-candidates.snapshot.expiry:86400000}") long expiry,
+            @Value("${connector-iaas.node-candidates.snapshot.refresh-threads:2}") int refreshThreads,
+            @Value("${connector-iaas.node-candidates.snapshot.directory:}") String directory,
+            InfrastructureCache infrastructureCache) {
+        this.infrastructureCache = infrastructureCache;
+        this.refreshInterval = refreshInterval;
+        this.expiry = expiry;
+        this.directory = Strings.isNullOrEmpty(directory) ? null : Paths.get(directory);
+        this.refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads),
+                                                            new ThreadFactoryBuilder().setNameFormat("node-candidates-snapshot-%d")
+                                                                                      .setDaemon(true)
+                                                                                      .build());
+        this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("node-candidates-snapshot-scheduler")
+                                                                                                     .setDaemon(true)
+                                                                                                     .build());
+        // The scheduler keeps the snapshots younger than the refresh interval, the cache only recomputes on access
+        // the snapshots it missed
+        this.snapshots = new RefreshingCache<>(refreshInterval > 0 ? 2 * refreshInterval : 0,
+                                               maxStaleness,
+                                               refreshExecutor);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        readSavedSnapshots();
+        refreshScheduler.scheduleWithFixedDelay(this::refreshActiveSnapshots,
+                                                refreshInterval,
+                                                refreshInterval,
+                                                TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return snapshots.isEnabled();
+    }
+
+    /**
+     * @param infrastructure    the infrastructure of the node candidates
+     * @param region            the region of the node candidates
+     * @param imageReq          the image requirement of the node candidates
+     * @param refresh           whether the snapshot is recomputed before being returned
+     * @param lister            the provider listing of all the node candidates of an infrastructure
+     * @return  the snapshot of the node candidates
+     */
+    public NodeCandidateSnapshot getSnapshot(Infrastructure infrastructure, String region, String imageReq,
+            boolean refresh, Function<Infrastructure, Set<NodeCandidate>> lister) {
+        SnapshotKey key = new SnapshotKey(infrastructure.getId(), region, imageReq);
+        long generation = generation(key).get();
+        Supplier<NodeCandidateSnapshot> loader = () -> compute(key, () -> lister.apply(infrastructure), generation);
+        ActiveSnapshot activeSnapshot = activeSnapshots.computeIfAbsent(key, k -> new ActiveSnapshot(lister));
+        activeSnapshot.lastRequest = System.currentTimeMillis();
+        return refresh ? snapshots.refresh(key, loader) : snapshots.get(key, loader);
+    }
+
+    /**
+     * Forgets the snapshots of a deleted infrastructure, including the ones being computed, and deletes the saved
+     * ones.
+     */
+    public void invalidate(Infrastructure infrastructure) {
+        forget(infrastructure, true);
+    }
+
+    /**
+     * Forgets the snapshots of an infrastructure unregistered on shutdown, including the ones being computed, but
+     * keeps the saved ones to serve them again when the infrastructure is registered after the restart.
+     */
+    public void release(Infrastructure infrastructure) {
+        forget(infrastructure, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
+        refreshExecutor.shutdownNow();
+    }
+
+    void refreshActiveSnapshots() {
+        long now = System.currentTimeMillis();
+        activeSnapshots.forEach((key, activeSnapshot) -> {
+            if (now - activeSnapshot.lastRequest >= expiry) {
+                log.debug("Node candidates snapshot " + key + " no longer requested, it is not refreshed anymore");
+                activeSnapshots.remove(key, activeSnapshot);
+                forget(key, true);
+                return;
+            }
+            long generation = generation(key).get();
+            Infrastructure infrastructure = infrastructureCache.getInfrastructure(key.getInfrastructureId());
+            if (infrastructure == null) {
+                log.debug("Infrastructure of the node candidates snapshot " + key +
+                          " deleted, it is not refreshed anymore");
+                activeSnapshots.remove(key, activeSnapshot);
+                // the deletion of the infrastructure deletes the saved snapshot, a release on shutdown keeps it
+                forget(key, false);
+                return;
+            }
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        snapshots.refresh(key,
+                                          () -> compute(key,
+                                                        () -> activeSnapshot.lister.apply(infrastructure),
+                                                        generation));
+                    } catch (RuntimeException e) {
+                        log.warn("Unable to refresh the node candidates snapshot " + key, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.debug("Refresh of the node candidates snapshot " + key + " rejected", e);
+            }
+        });
+    }
+
+    private AtomicLong generation(SnapshotKey key) {
+        return generations.computeIfAbsent(key.getInfrastructureId(), id -> new AtomicLong());
+    }
+
+    private void forget(Infrastructure infrastructure, boolean deleteSavedSnapshots) {
+        AtomicLong generation = generations.computeIfAbsent(infrastructure.getId(), id -> new AtomicLong());
+        synchronized (generation) {
+            generation.incrementAndGet();
+            Set<SnapshotKey> keys = new HashSet<>(activeSnapshots.keySet());
+            keys.addAll(snapshotKeys);
+            keys.stream().filter(key -> key.getInfrastructureId().equals(infrastructure.getId())).forEach(key -> {
+                activeSnapshots.remove(key);
+                forget(key, deleteSavedSnapshots);
+            });
+        }
+    }
+
+    private void forget(SnapshotKey key, boolean deleteSavedSnapshot) {
+        snapshotKeys.remove(key);
+        snapshots.invalidate(key);
+        if (deleteSavedSnapshot) {
+            deleteSavedSnapshot(key);
+        }
+    }
+
+    private NodeCandidateSnapshot compute(SnapshotKey key, Supplier<Set<NodeCandidate>> lister,
+            long generationAtRequest) {
+        long start = System.currentTimeMillis();
+        NodeCandidateSnapshot snapshot = new NodeCandidateSnapshot(key.getInfrastructureId(),
+                                                                   key.getRegion(),
+                                                                   key.getImageReq(),
+                                                                   start,
+                                                                   Collections.unmodifiableSet(new HashSet<>(lister.get())));
+        log.info(String.format("Node candidates snapshot %s: %d candidates computed in %d ms",
+                               key,
+                               snapshot.getNodeCandidates().size(),
+                               System.currentTimeMillis() - start));
+        AtomicLong generation = generation(key);
+        synchronized (generation) {
+            if (generation.get() == generationAtRequest) {
+                snapshotKeys.add(key);
+                saveSnapshot(key, snapshot);
+            } else {
+                log.debug("Infrastructure of the node candidates snapshot " + key +
+                          " invalidated during its computation");
+            }
+        }
+        return snapshot;
+    }
+
+    private void readSavedSnapshots() {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                                                                    SNAPSHOT_FILE_PREFIX + "*" +
+                                                                               SNAPSHOT_FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    NodeCandidateSnapshot snapshot = mapper.readValue(file.toFile(), NodeCandidateSnapshot.class);
+                    // without persistence, the infrastructures are registered again after the startup
+                    if (infrastructureCache.isPersistent() &&
+                        infrastructureCache.getInfrastructure(snapshot.getInfrastructureId()) == null) {
+                        log.info("Deleting the node candidates snapshot " + file + " of the unknown infrastructure " +
+                                 snapshot.getInfrastructureId());
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    if (System.currentTimeMillis() - snapshot.getComputedAt() >= expiry) {
+                        log.info("Deleting the expired node candidates snapshot " + file);
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    SnapshotKey key = new SnapshotKey(snapshot.getInfrastructureId(),
+                                                      snapshot.getRegion(),
+                                                      snapshot.getImageReq());
+                    snapshots.put(key, snapshot, snapshot.getComputedAt());
+                    snapshotKeys.add(key);
+                } catch (IOException e) {
+                    log.warn("Unable to read the node candidates snapshot " + file, e);
+                }
+            }
+            log.info(snapshots.size() + " node candidates snapshots read from " + directory);
+        } catch (IOException e) {
+            log.warn("Unable to list the node candidates snapshots of " + directory, e);
+        }
+    }
+
+    private void saveSnapshot(SnapshotKey key, NodeCandidateSnapshot snapshot) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, SNAPSHOT_FILE_PREFIX, ".tmp");
+            mapper.writeValue(temporaryFile.toFile(), snapshot);
+            Files.move(temporaryFile,
+                       snapshotFile(key),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to save the node candidates snapshot " + key + " in " + directory, e);
+        }
+    }
+
+    private void deleteSavedSnapshot(SnapshotKey key) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(snapshotFile(key));
+        } catch (IOException e) {
+            log.warn("Unable to delete the saved node candidates snapshot " + key, e);
+        }
+    }
+
+    private Path snapshotFile(SnapshotKey key) {
+        String fileId = Hashing.sha256()
+                               .hashString(key.getInfrastructureId() + '\n' + key.getRegion() + '\n' +
+                                           key.getImageReq(), StandardCharsets.UTF_8)
+                               .toString();
+        return directory.resolve(SNAPSHOT_FILE_PREFIX + fileId + SNAPSHOT_FILE_SUFFIX);
+    }
+
+    @EqualsAndHashCode
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    private static class SnapshotKey {
+
+        private final String infrastructureId;
+
+        private final String region;
+
+        private final String imageReq;
+    }
+
+    private static class ActiveSnapshot {
+
+        private final Function<Infrastructure, Set<NodeCandidate>> lister;
+
+        private volatile long lastRequest;
+
+        private ActiveSnapshot(Function<Infrastructure, Set<NodeCandidate>> lister) {
+            this.lister = lister;
+        }
+    }
+}
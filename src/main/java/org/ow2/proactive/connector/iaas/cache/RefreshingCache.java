@@ -0,0 +1,262 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Keyed snapshot cache shared by the catalog caches of the connector.
+ *
+ * A value younger than the time to live is served as is. A value older than the time to live but younger than
+ * the maximum staleness is served while a single background refresh is triggered. Older values, and missing
+ * ones, are loaded synchronously, and concurrent callers of the same key share a single load.
+ * A time to live lower or equal to zero disables caching: every call goes to the loader.
+ */
+@Log4j2
+public class RefreshingCache<K, V> {
+
+    private final long timeToLive;
+
+    private final long maxStaleness;
+
+    private final Executor refreshExecutor;
+
+    private final LongSupplier clock;
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<K, CompletableFuture<V>> loadsInProgress = new ConcurrentHashMap<>();
+
+    /**
+     * Generation of each key, incremented when the key is invalidated, so that a load started before an
+     * invalidation of its key does not store its (possibly outdated) result.
+     */
+    private final ConcurrentMap<K, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented when all the keys are invalidated at once.
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    public RefreshingCache(long timeToLive, long maxStaleness, Executor refreshExecutor) {
+        this(timeToLive, maxStaleness, refreshExecutor, System::currentTimeMillis);
+    }
+
+    RefreshingCache(long timeToLive, long maxStaleness, Executor refreshExecutor, LongSupplier clock) {
+        this.timeToLive = timeToLive;
+        this.maxStaleness = Math.max(timeToLive, maxStaleness);
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return timeToLive > 0;
+    }
+
+    /**
+     * @param key       the cache key
+     * @param loader    the function computing the value, called when the cached value is missing or too old
+     * @return  the cached or freshly loaded value
+     */
+    public V get(K key, Supplier<V> loader) {
+        if (!isEnabled()) {
+            return loader.get();
+        }
+
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            long age = clock.getAsLong() - entry.getLoadedAt();
+            if (age < timeToLive) {
+                return entry.getValue();
+            }
+            if (age < maxStaleness) {
+                refreshInBackground(key, entry, loader);
+                return entry.getValue();
+            }
+        }
+        return load(key, loader);
+    }
+
+    /**
+     * @param key   the cache key
+     * @return  the cached value if it is not older than the maximum staleness, without triggering any load
+     */
+    public Optional<V> getIfPresent(K key) {
+        return Optional.ofNullable(entries.get(key))
+                       .filter(entry -> clock.getAsLong() - entry.getLoadedAt() < maxStaleness)
+                       .map(Entry::getValue);
+    }
+
+    /**
+     * @param key   the cache key
+     * @return  the cached value if it is younger than the time to live, without triggering any load
+     */
+    public Optional<V> getIfFresh(K key) {
+        return Optional.ofNullable(entries.get(key))
+                       .filter(entry -> clock.getAsLong() - entry.getLoadedAt() < timeToLive)
+                       .map(Entry::getValue);
+    }
+
+    /**
+     * @param key   the cache key
+     * @return  the age in milliseconds of the cached value, if any
+     */
+    public Optional<Long> getAge(K key) {
+        return Optional.ofNullable(entries.get(key)).map(entry -> clock.getAsLong() - entry.getLoadedAt());
+    }
+
+    /**
+     * Loads the value of a key even if the cached one is fresh. A load of the key already in progress is shared.
+     *
+     * @param key       the cache key
+     * @param loader    the function computing the value
+     * @return  the freshly loaded value
+     */
+    public V refresh(K key, Supplier<V> loader) {
+        return isEnabled() ? load(key, loader) : loader.get();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, clock.getAsLong());
+    }
+
+    /**
+     * Caches a value loaded in the past, e.g. read back from a file, so that its age is kept.
+     */
+    public void put(K key, V value, long loadedAt) {
+        if (isEnabled()) {
+            entries.put(key, new Entry<>(value, loadedAt));
+        }
+    }
+
+    public void invalidate(K key) {
+        // The generation is incremented under the lock of the entry, so that no load can store its value in between
+        entries.compute(key, (k, entry) -> {
+            generation(k).incrementAndGet();
+            return null;
+        });
+    }
+
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> loadInProgress = loadsInProgress.putIfAbsent(key, load);
+        if (loadInProgress != null) {
+            return await(loadInProgress);
+        }
+
+        long generationAtStart = generation(key).get();
+        long epochAtStart = epoch.get();
+        try {
+            V value = loader.get();
+            // Checked and stored atomically with respect to the invalidations of the key
+            entries.compute(key,
+                            (k, entry) -> isCurrent(k, generationAtStart, epochAtStart) ? new Entry<>(value,
+                                                                                                    clock.getAsLong())
+                                                                                          : entry);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loadsInProgress.remove(key, load);
+        }
+    }
+
+    private AtomicLong generation(K key) {
+        return generations.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    private boolean isCurrent(K key, long generationAtStart, long epochAtStart) {
+        return generation(key).get() == generationAtStart && epoch.get() == epochAtStart;
+    }
+
+    private void refreshInBackground(K key, Entry<V> entry, Supplier<V> loader) {
+        if (!entry.getRefreshing().compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load(key, loader);
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh of cache entry " + key + " failed", e);
+                } finally {
+                    entry.getRefreshing().set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.getRefreshing().set(false);
+            log.debug("Background refresh of cache entry " + key + " rejected", e);
+        }
+    }
+
+    private V await(CompletableFuture<V> loadInProgress) {
+        try {
+            return loadInProgress.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long loadedAt;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    }
+}
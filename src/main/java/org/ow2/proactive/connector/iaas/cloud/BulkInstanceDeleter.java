@@ -0,0 +1,154 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.cache.ClientScope;
+import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Deletes several instances of an infrastructure at once. The instances are first handed to the provider batch
+ * deletion, if any, and the remaining ones are deleted one by one in parallel. The number of parallel deletions per
+ * provider type is bounded by connector-iaas.bulk-delete.max-parallelism.[provider type], or by
+ * connector-iaas.bulk-delete.max-parallelism when the provider type has no specific limit.
+ */
+@Component
+@Log4j2
+public class BulkInstanceDeleter {
+
+    private static final String MAX_PARALLELISM_PROPERTY = "connector-iaas.bulk-delete.max-parallelism";
+
+    private final Environment environment;
+
+    private final int defaultMaxParallelism;
+
+    private final ExecutorService deletionExecutor;
+
+    private final ConcurrentMap<String, Semaphore> permitsPerProviderType = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BulkInstanceDeleter(Environment environment,
+            @Value("${connector-iaas.bulk-delete.threads:32}") int threads,
+            @Value("${" + MAX_PARALLELISM_PROPERTY + ":8}") int defaultMaxParallelism) {
+        this.environment = environment;
+        this.defaultMaxParallelism = defaultMaxParallelism;
+        this.deletionExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+                                                             new ThreadFactoryBuilder().setNameFormat("instance-deletion-%d")
+                                                                                       .setDaemon(true)
+                                                                                       .build());
+    }
+
+    /**
+     * @param cloudProvider     the provider managing the infrastructure
+     * @param infrastructure    the infrastructure hosting the instances
+     * @param instanceIds       the ids of the instances to be deleted
+     * @throws InstancesDeletionException if at least one instance could not be deleted
+     */
+    public void deleteInstances(CloudProvider cloudProvider, Infrastructure infrastructure, Set<String> instanceIds) {
+        Map<String, String> errorPerInstanceId = new ConcurrentHashMap<>();
+        Set<String> remainingInstanceIds = new HashSet<>(instanceIds);
+
+        if (instanceIds.size() > 1) {
+            try {
+                remainingInstanceIds.removeAll(cloudProvider.deleteInstancesInBatch(infrastructure, instanceIds));
+            } catch (RuntimeException e) {
+                // The instances are then deleted one by one, as if the provider had reported none of them deleted
+                log.error("Batch deletion of instances " + instanceIds + " failed on infrastructure " +
+                          infrastructure.getId() + ", deleting them one by one", e);
+            }
+        }
+
+        Semaphore permits = permitsPerProviderType.computeIfAbsent(cloudProvider.getType(),
+                                                                   type -> new Semaphore(getMaxParallelism(type)));
+        CompletableFuture.allOf(remainingInstanceIds.stream().map(instanceId -> {
+            permits.acquireUninterruptibly();
+            try {
+                return CompletableFuture.runAsync(() -> deleteInstance(cloudProvider,
+                                                                       infrastructure,
+                                                                       instanceId,
+                                                                       permits,
+                                                                       errorPerInstanceId),
+                                                  deletionExecutor);
+            } catch (RuntimeException e) {
+                permits.release();
+                errorPerInstanceId.put(instanceId, String.valueOf(e.getMessage()));
+                return CompletableFuture.completedFuture(null);
+            }
+        }).collect(Collectors.toList()).toArray(new CompletableFuture[0])).join();
+
+        if (!errorPerInstanceId.isEmpty()) {
+            throw new InstancesDeletionException(instanceIds.size(), new TreeMap<>(errorPerInstanceId));
+        }
+    }
+
+    private void deleteInstance(CloudProvider cloudProvider, Infrastructure infrastructure, String instanceId,
+            Semaphore permits, Map<String, String> errorPerInstanceId) {
+        try {
+            ClientScope.run(() -> cloudProvider.deleteInstance(infrastructure, instanceId));
+        } catch (RuntimeException e) {
+            log.error("Deletion of instance " + instanceId + " failed on infrastructure " + infrastructure.getId(),
+                      e);
+            errorPerInstanceId.put(instanceId, String.valueOf(e.getMessage()));
+        } finally {
+            permits.release();
+        }
+    }
+
+    private int getMaxParallelism(String providerType) {
+        return Math.max(1,
+                        environment.getProperty(MAX_PARALLELISM_PROPERTY + "." + providerType,
+                                                Integer.class,
+                                                defaultMaxParallelism));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deletionExecutor.shutdown();
+    }
+}
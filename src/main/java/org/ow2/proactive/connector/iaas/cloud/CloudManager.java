@@ -26,100 +26,273 @@
 package org.ow2.proactive.connector.iaas.cloud;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.ow2.proactive.connector.iaas.cache.ClientScope;
+import org.ow2.proactive.connector.iaas.cache.HardwareCatalogCache;
+import org.ow2.proactive.connector.iaas.cache.ImageCatalog;
+import org.ow2.proactive.connector.iaas.cache.ImageCatalogCache;
+import org.ow2.proactive.connector.iaas.cache.InstanceInventoryCache;
+import org.ow2.proactive.connector.iaas.cache.NodeCandidateSnapshot;
+import org.ow2.proactive.connector.iaas.cache.NodeCandidateSnapshotCache;
 import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
 import org.ow2.proactive.connector.iaas.model.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 
+/**
+ * Entry point of the cloud operations, dispatched to the provider of the infrastructure type. Each provider call
+ * runs in a {@link ClientScope}, so that the cloud clients it uses are not closed before it returns.
+ */
 @Service
 public class CloudManager {
 
     private Map<String, CloudProvider> cloudProviderPerType;
 
+    private final InstanceInventoryCache instanceInventoryCache;
+
+    private final BulkInstanceDeleter bulkInstanceDeleter;
+
+    private final NodeCandidateSnapshotCache nodeCandidateSnapshotCache;
+
+    private final ImageCatalogCache imageCatalogCache;
+
+    private final HardwareCatalogCache hardwareCatalogCache;
+
     @Autowired
-    public CloudManager(List<CloudProvider> cloudProviders) {
+    public CloudManager(List<CloudProvider> cloudProviders, InstanceInventoryCache instanceInventoryCache,
+            BulkInstanceDeleter bulkInstanceDeleter, NodeCandidateSnapshotCache nodeCandidateSnapshotCache,
+            ImageCatalogCache imageCatalogCache, HardwareCatalogCache hardwareCatalogCache) {
         cloudProviderPerType = cloudProviders.stream()
                                              .collect(Collectors.toMap(CloudProvider::getType, Function.identity()));
+        this.instanceInventoryCache = instanceInventoryCache;
+        this.bulkInstanceDeleter = bulkInstanceDeleter;
+        this.nodeCandidateSnapshotCache = nodeCandidateSnapshotCache;
+        this.imageCatalogCache = imageCatalogCache;
+        this.hardwareCatalogCache = hardwareCatalogCache;
     }
 
     public Set<Instance> createInstance(Infrastructure infrastructure, Instance instance) {
-        return cloudProviderPerType.get(infrastructure.getType()).createInstance(infrastructure, instance);
+        try {
+            return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                              .createInstance(infrastructure, instance));
+        } finally {
+            instanceInventoryCache.invalidate(infrastructure);
+        }
     }
 
     public void deleteInstance(Infrastructure infrastructure, String instanceId) {
-        cloudProviderPerType.get(infrastructure.getType()).deleteInstance(infrastructure, instanceId);
+        try {
+            ClientScope.run(() -> cloudProviderPerType.get(infrastructure.getType()).deleteInstance(infrastructure,
+                                                                                                    instanceId));
+        } finally {
+            instanceInventoryCache.invalidate(infrastructure);
+        }
+    }
+
+    public void deleteInstances(Infrastructure infrastructure, Set<String> instanceIds) {
+        try {
+            ClientScope.run(() -> bulkInstanceDeleter.deleteInstances(cloudProviderPerType.get(infrastructure.getType()),
+                                                                      infrastructure,
+                                                                      instanceIds));
+        } finally {
+            instanceInventoryCache.invalidate(infrastructure);
+        }
     }
 
     public void deleteInfrastructure(Infrastructure infrastructure) {
+        deleteInfrastructure(infrastructure, true);
+    }
+
+    /**
+     * @param deleteSavedSnapshots false on shutdown, so that the saved node candidates snapshots are served again
+     *                             once the infrastructure is registered after the restart
+     */
+    public void deleteInfrastructure(Infrastructure infrastructure, boolean deleteSavedSnapshots) {
+        instanceInventoryCache.invalidate(infrastructure);
+        if (deleteSavedSnapshots) {
+            nodeCandidateSnapshotCache.invalidate(infrastructure);
+        } else {
+            nodeCandidateSnapshotCache.release(infrastructure);
+        }
+        imageCatalogCache.invalidate(infrastructure);
+        hardwareCatalogCache.invalidate(infrastructure);
         cloudProviderPerType.get(infrastructure.getType()).deleteInfrastructure(infrastructure);
     }
 
+    public void releaseInfrastructure(Infrastructure infrastructure) {
+        cloudProviderPerType.get(infrastructure.getType()).releaseInfrastructure(infrastructure);
+    }
+
+    public void warmUp(Infrastructure infrastructure) {
+        cloudProviderPerType.get(infrastructure.getType()).warmUp(infrastructure);
+    }
+
     public Set<Instance> getAllInfrastructureInstances(Infrastructure infrastructure) {
-        return cloudProviderPerType.get(infrastructure.getType()).getAllInfrastructureInstances(infrastructure);
+        CloudProvider cloudProvider = cloudProviderPerType.get(infrastructure.getType());
+        return instanceInventoryCache.getAllInstances(infrastructure,
+                                                      () -> ClientScope.call(() -> cloudProvider.getAllInfrastructureInstances(infrastructure)));
+    }
+
+    public Optional<Instance> getInfrastructureInstanceById(Infrastructure infrastructure, String instanceId) {
+        // Only a fresh snapshot is used: the status of an instance polled by id must not be minutes old
+        Optional<Instance> cachedInstance = instanceInventoryCache.getCachedInventory(infrastructure)
+                                                                  .flatMap(inventory -> inventory.getInstanceById(instanceId));
+        if (cachedInstance.isPresent()) {
+            return cachedInstance;
+        }
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .getInstanceById(infrastructure, instanceId));
+    }
+
+    public Set<Instance> getInfrastructureInstancesByTag(Infrastructure infrastructure, String instanceTag) {
+        CloudProvider cloudProvider = cloudProviderPerType.get(infrastructure.getType());
+        return instanceInventoryCache.getInventory(infrastructure,
+                                                   () -> ClientScope.call(() -> cloudProvider.getAllInfrastructureInstances(infrastructure)))
+                                     .getInstancesByTag(instanceTag);
     }
 
     public Set<Instance> getCreatedInfrastructureInstances(Infrastructure infrastructure) {
-        return cloudProviderPerType.get(infrastructure.getType()).getCreatedInfrastructureInstances(infrastructure);
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .getCreatedInfrastructureInstances(infrastructure));
     }
 
     public List<ScriptResult> executeScriptOnInstanceId(Infrastructure infrastructure, String instanceId,
             InstanceScript instanceScript) {
-        return cloudProviderPerType.get(infrastructure.getType()).executeScriptOnInstanceId(infrastructure,
-                                                                                            instanceId,
-                                                                                            instanceScript);
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .executeScriptOnInstanceId(infrastructure,
+                                                                                     instanceId,
+                                                                                     instanceScript));
+    }
+
+    public List<ScriptResult> executeScriptOnInstanceIds(Infrastructure infrastructure, List<String> instanceIds,
+            InstanceScript instanceScript) {
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .executeScriptOnInstanceIds(infrastructure,
+                                                                                      instanceIds,
+                                                                                      instanceScript));
     }
 
     public Set<String> getAllRegionsOnInfrastructure(Infrastructure infrastructure) {
-        return cloudProviderPerType.get(infrastructure.getType()).listAvailableRegions(infrastructure);
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .listAvailableRegions(infrastructure));
     }
 
     public List<ScriptResult> executeScriptOnInstanceTag(Infrastructure infrastructure, String instanceTag,
             InstanceScript instanceScript) {
-        return cloudProviderPerType.get(infrastructure.getType())
-                                   .executeScriptOnInstanceTag(infrastructure, instanceTag, instanceScript);
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                          .executeScriptOnInstanceTag(infrastructure,
+                                                                                      instanceTag,
+                                                                                      instanceScript));
     }
 
     public Set<Hardware> getAllHardwares(Infrastructure infrastructure) {
-        return cloudProviderPerType.get(infrastructure.getType()).getAllHardwares(infrastructure);
+        CloudProvider cloudProvider = cloudProviderPerType.get(infrastructure.getType());
+        return hardwareCatalogCache.getCatalog(infrastructure,
+                                               () -> ClientScope.call(() -> cloudProvider.getHardwareProfiles(infrastructure)))
+                                   .getHardware();
     }
 
     public Set<Image> getAllImages(Infrastructure infrastructure) {
-        return cloudProviderPerType.get(infrastructure.getType()).getAllImages(infrastructure);
+        return getImageCatalog(infrastructure).getImages();
+    }
+
+    public Set<Image> getImages(Infrastructure infrastructure, String region) {
+        return getImageCatalog(infrastructure).getImages(region);
+    }
+
+    private ImageCatalog getImageCatalog(Infrastructure infrastructure) {
+        CloudProvider cloudProvider = cloudProviderPerType.get(infrastructure.getType());
+        return imageCatalogCache.getCatalog(infrastructure,
+                                            () -> ClientScope.call(() -> cloudProvider.getAllImages(infrastructure)));
     }
 
     public String addToInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
-        return cloudProviderPerType.get(infrastructure.getType()).addToInstancePublicIp(infrastructure,
-                                                                                        instanceId,
-                                                                                        optionalDesiredIp);
+        try {
+            return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                              .addToInstancePublicIp(infrastructure,
+                                                                                     instanceId,
+                                                                                     optionalDesiredIp));
+        } finally {
+            instanceInventoryCache.invalidate(infrastructure);
+        }
     }
 
     public void removeInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
-        cloudProviderPerType.get(infrastructure.getType()).removeInstancePublicIp(infrastructure,
-                                                                                  instanceId,
-                                                                                  optionalDesiredIp);
+        try {
+            ClientScope.run(() -> cloudProviderPerType.get(infrastructure.getType())
+                                                      .removeInstancePublicIp(infrastructure,
+                                                                              instanceId,
+                                                                              optionalDesiredIp));
+        } finally {
+            instanceInventoryCache.invalidate(infrastructure);
+        }
     }
 
     public SimpleImmutableEntry<String, String> createKeyPair(Infrastructure infrastructure, Instance instance) {
-        return cloudProviderPerType.get(infrastructure.getType()).createKeyPair(infrastructure, instance);
+        return ClientScope.call(() -> cloudProviderPerType.get(infrastructure.getType()).createKeyPair(infrastructure,
+                                                                                                       instance));
     }
 
     public void deleteKeyPair(Infrastructure infrastructure, String keyPairName, String region) {
-        cloudProviderPerType.get(infrastructure.getType()).deleteKeyPair(infrastructure, keyPairName, region);
+        ClientScope.run(() -> cloudProviderPerType.get(infrastructure.getType()).deleteKeyPair(infrastructure,
+                                                                                               keyPairName,
+                                                                                               region));
     }
 
+    /**
+     * The node candidates are read from their snapshot when the snapshots are enabled, the query being applied to
+     * the snapshot. Otherwise, the query is evaluated by the provider.
+     */
     public PagedNodeCandidates getNodeCandidate(Infrastructure infrastructure, String region, String imageReq,
-            String token) {
-        return cloudProviderPerType.get(infrastructure.getType()).getNodeCandidate(infrastructure,
-                                                                                   region,
-                                                                                   imageReq,
-                                                                                   token);
+            String token, NodeCandidateQuery query) {
+        CloudProvider cloudProvider = cloudProviderPerType.get(infrastructure.getType());
+        if (!nodeCandidateSnapshotCache.isEnabled()) {
+            return ClientScope.call(() -> cloudProvider.getNodeCandidate(infrastructure,
+                                                                         region,
+                                                                         imageReq,
+                                                                         token,
+                                                                         query));
+        }
+        NodeCandidateSnapshot snapshot = nodeCandidateSnapshotCache.getSnapshot(infrastructure,
+                                                                                region,
+                                                                                imageReq,
+                                                                                query.isRefresh(),
+                                                                                registeredInfrastructure -> listAllNodeCandidates(cloudProvider,
+                                                                                                                                  registeredInfrastructure,
+                                                                                                                                  region,
+                                                                                                                                  imageReq));
+        PagedNodeCandidates page = query.page(snapshot.getNodeCandidates().stream(), token);
+        return PagedNodeCandidates.builder()
+                                  .nextToken(page.getNextToken())
+                                  .nodeCandidates(page.getNodeCandidates())
+                                  .staleness(Math.max(0, System.currentTimeMillis() - snapshot.getComputedAt()))
+                                  .build();
+    }
+
+    private Set<NodeCandidate> listAllNodeCandidates(CloudProvider cloudProvider, Infrastructure infrastructure,
+            String region, String imageReq) {
+        Set<NodeCandidate> nodeCandidates = new HashSet<>();
+        try (ClientScope scope = ClientScope.open()) {
+            String token = null;
+            do {
+                PagedNodeCandidates page = cloudProvider.getNodeCandidate(infrastructure,
+                                                                          region,
+                                                                          imageReq,
+                                                                          token,
+                                                                          NodeCandidateQuery.all());
+                nodeCandidates.addAll(page.getNodeCandidates());
+                token = page.getNextToken();
+            } while (token != null && !token.isEmpty());
+        }
+        return nodeCandidates;
     }
 
 }
@@ -26,8 +26,11 @@
 package org.ow2.proactive.connector.iaas.cloud.provider;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.ow2.proactive.connector.iaas.model.*;
 
@@ -62,6 +65,17 @@ public interface CloudProvider {
      */
     public void deleteInstance(Infrastructure infrastructure, String instanceId);
 
+    /**
+     * Terminate several instances from an infrastructure with batch calls, when the provider supports them.
+     * The instances that are not reported as deleted are then deleted one by one with deleteInstance.
+     * @param infrastructure The infrastructure hosting the instances to be removed
+     * @param instanceIds The ids of the instances to be removed
+     * @return The ids of the instances effectively deleted by the batch
+     */
+    public default Set<String> deleteInstancesInBatch(Infrastructure infrastructure, Set<String> instanceIds) {
+        return Collections.emptySet();
+    }
+
     /**
      * List all instances hosted on an infrastructure.
      * @param infrastructure The infrastructure to be exposed
@@ -76,6 +90,19 @@ public interface CloudProvider {
      */
     public Set<Instance> getCreatedInfrastructureInstances(Infrastructure infrastructure);
 
+    /**
+     * Retrieve a single instance hosted on an infrastructure. The default implementation scans the whole instance
+     * listing, providers able to look an instance up by its id override it with a direct query.
+     * @param infrastructure The infrastructure hosting the instance
+     * @param instanceId The id of the instance to be retrieved
+     * @return The instance, or an empty optional if the infrastructure does not host it
+     */
+    public default Optional<Instance> getInstanceById(Infrastructure infrastructure, String instanceId) {
+        return getAllInfrastructureInstances(infrastructure).stream()
+                                                            .filter(instance -> instanceId.equals(instance.getId()))
+                                                            .findFirst();
+    }
+
     /**
      * Execute a script on an instance identified by an id.
      * @param infrastructure The infrastructure hosting the instance to be controlled
@@ -86,6 +113,23 @@ public interface CloudProvider {
     public List<ScriptResult> executeScriptOnInstanceId(Infrastructure infrastructure, String instanceId,
             InstanceScript instanceScript);
 
+    /**
+     * Execute a script on several instances identified by their ids.
+     * @param infrastructure The infrastructure hosting the instances to be controlled
+     * @param instanceIds The ids of the instances the script should be launched on
+     * @param instanceScript The script to be run on the instances
+     * @return The results of the script execution, instance after instance
+     */
+    public default List<ScriptResult> executeScriptOnInstanceIds(Infrastructure infrastructure,
+            List<String> instanceIds, InstanceScript instanceScript) {
+        return instanceIds.stream()
+                          .distinct()
+                          .flatMap(instanceId -> executeScriptOnInstanceId(infrastructure,
+                                                                           instanceId,
+                                                                           instanceScript).stream())
+                          .collect(Collectors.toList());
+    }
+
     /**
      * Execute a script on instances identified by a tag.
      * @param infrastructure The infrastructure hosting the instance to be controlled
@@ -110,12 +154,38 @@ public interface CloudProvider {
      */
     public Set<Hardware> getAllHardwares(Infrastructure infrastructure);
 
+    /**
+     * List all hardware profiles of an infrastructure with their numeric values and their location.
+     * By default, the hardware profiles are available in every region of the infrastructure.
+     * @param infrastructure The infrastructure whose hardware profiles are to be exposed
+     * @return The list of hardware profiles on the infrastructure
+     */
+    default List<HardwareProfile> getHardwareProfiles(Infrastructure infrastructure) {
+        return getAllHardwares(infrastructure).stream()
+                                              .map(hardware -> new HardwareProfile(hardware, null))
+                                              .collect(Collectors.toList());
+    }
+
     /**
      * Remove an infrastructure.
      * @param infrastructure The infrastructure to be unregistered
      */
     public void deleteInfrastructure(Infrastructure infrastructure);
 
+    /**
+     * Close the provider clients of an infrastructure which stays registered, e.g. on shutdown when it is persisted,
+     * leaving the resources it created on the cloud untouched.
+     * @param infrastructure The infrastructure whose clients are closed
+     */
+    public void releaseInfrastructure(Infrastructure infrastructure);
+
+    /**
+     * Build and cache the provider clients of an infrastructure ahead of its first use.
+     * @param infrastructure The infrastructure whose clients are built
+     */
+    public default void warmUp(Infrastructure infrastructure) {
+    }
+
     /**
      * Associate a public IP address to an instance.
      * @param infrastructure The infrastructure hosting the instance to receive a public IP address
@@ -158,4 +228,20 @@ public interface CloudProvider {
      * @return A Pair of the next node candidates list page token, and a list of node candidates for the specified infrastructure and region whose system images match the requirements
      */
     public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String imageReq, String token);
+
+    /**
+     * List the node candidates of a region of an infrastructure that match a query. The default implementation
+     * pages the node candidates listed in a single page without the query, providers building many candidates
+     * override it to evaluate the query while the candidates are built.
+     * @param infra The infrastructure whose node candidates are to be exposed
+     * @param region The infrastructure region to be examined
+     * @param imageReq The requirements of the system image the node candidates should match
+     * @param token The pagination token that indicates the set of results that you want to retrieve
+     * @param query The filters, sort order, limit and page size of the node candidates
+     * @return A Pair of the next node candidates list page token, and the sorted node candidates matching the query
+     */
+    public default PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String imageReq,
+            String token, NodeCandidateQuery query) {
+        return query.page(getNodeCandidate(infra, region, imageReq, null).getNodeCandidates().stream(), token);
+    }
 }
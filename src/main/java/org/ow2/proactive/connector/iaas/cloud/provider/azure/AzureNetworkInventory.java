@@ -0,0 +1,146 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.compute.VirtualMachine;
+import com.microsoft.azure.management.network.NetworkInterface;
+import com.microsoft.azure.management.network.NicIPConfiguration;
+import com.microsoft.azure.management.network.PublicIPAddress;
+import com.microsoft.azure.management.network.model.HasPrivateIPAddress;
+import com.microsoft.azure.management.resources.fluentcore.arm.models.HasId;
+
+
+/**
+ * In-memory join of the virtual machines with their network interfaces and public IP addresses.
+ *
+ * The network interfaces and the public IP addresses are listed once, in the resource group of the virtual
+ * machines when they share one, or in the whole subscription otherwise, instead of being requested one by one for
+ * each virtual machine. A single virtual machine keeps the lookups by id, cheaper than a listing.
+ * Resources missing from the listings, e.g. created in the meantime, are still requested by id.
+ * The Azure resource ids are compared case-insensitively, as the references and the listings may differ in case.
+ */
+class AzureNetworkInventory {
+
+    private final Azure azureService;
+
+    private final Map<String, NetworkInterface> networkInterfacesPerId;
+
+    private final Map<String, PublicIPAddress> publicIPAddressesPerId;
+
+    private AzureNetworkInventory(Azure azureService, Collection<NetworkInterface> networkInterfaces,
+            Collection<PublicIPAddress> publicIPAddresses) {
+        this.azureService = azureService;
+        this.networkInterfacesPerId = indexById(networkInterfaces);
+        this.publicIPAddressesPerId = indexById(publicIPAddresses);
+    }
+
+    /**
+     * @param azureService      the Azure client of the infrastructure
+     * @param virtualMachines   the virtual machines whose addresses are needed
+     * @return  the network inventory of the virtual machines
+     */
+    static AzureNetworkInventory of(Azure azureService, Collection<VirtualMachine> virtualMachines) {
+        if (virtualMachines.size() <= 1) {
+            return new AzureNetworkInventory(azureService, Collections.emptyList(), Collections.emptyList());
+        }
+        Set<String> resourceGroups = virtualMachines.stream()
+                                                    .map(VirtualMachine::resourceGroupName)
+                                                    .filter(Objects::nonNull)
+                                                    .map(AzureNetworkInventory::normalize)
+                                                    .collect(Collectors.toSet());
+        if (resourceGroups.size() == 1) {
+            String resourceGroup = resourceGroups.iterator().next();
+            return new AzureNetworkInventory(azureService,
+                                             azureService.networkInterfaces().listByResourceGroup(resourceGroup),
+                                             azureService.publicIPAddresses().listByResourceGroup(resourceGroup));
+        }
+        return new AzureNetworkInventory(azureService,
+                                         azureService.networkInterfaces().list(),
+                                         azureService.publicIPAddresses().list());
+    }
+
+    List<String> getPrivateAddresses(VirtualMachine vm) {
+        return getNetworkInterfaces(vm).stream()
+                                       .flatMap(networkInterface -> networkInterface.ipConfigurations()
+                                                                                    .values()
+                                                                                    .stream())
+                                       .filter(Objects::nonNull)
+                                       .map(HasPrivateIPAddress::privateIPAddress)
+                                       .collect(Collectors.toList());
+    }
+
+    List<String> getPublicAddresses(VirtualMachine vm) {
+        return getNetworkInterfaces(vm).stream()
+                                       .map(NetworkInterface::primaryIPConfiguration)
+                                       .filter(Objects::nonNull)
+                                       .map(this::getPublicIPAddress)
+                                       .filter(Optional::isPresent)
+                                       .map(publicIPAddress -> publicIPAddress.get().ipAddress())
+                                       .collect(Collectors.toList());
+    }
+
+    private List<NetworkInterface> getNetworkInterfaces(VirtualMachine vm) {
+        return vm.networkInterfaceIds()
+                 .stream()
+                 .map(id -> Optional.ofNullable(networkInterfacesPerId.get(normalize(id)))
+                                    .orElseGet(() -> azureService.networkInterfaces().getById(id)))
+                 .filter(Objects::nonNull)
+                 .collect(Collectors.toList());
+    }
+
+    private Optional<PublicIPAddress> getPublicIPAddress(NicIPConfiguration ipConfiguration) {
+        String publicIPAddressId = ipConfiguration.publicIPAddressId();
+        if (publicIPAddressId == null) {
+            return Optional.empty();
+        }
+        PublicIPAddress publicIPAddress = publicIPAddressesPerId.get(normalize(publicIPAddressId));
+        return Optional.ofNullable(publicIPAddress != null ? publicIPAddress : ipConfiguration.getPublicIPAddress());
+    }
+
+    private static <T extends HasId> Map<String, T> indexById(Collection<T> resources) {
+        return resources.stream()
+                        .filter(resource -> resource.id() != null)
+                        .collect(Collectors.toMap(resource -> normalize(resource.id()),
+                                                  Function.identity(),
+                                                  (first, second) -> first));
+    }
+
+    private static String normalize(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+}
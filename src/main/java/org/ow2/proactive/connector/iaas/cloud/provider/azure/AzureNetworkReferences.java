@@ -0,0 +1,95 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.network.NetworkInterface;
+import com.microsoft.azure.management.network.NicIPConfiguration;
+
+
+/**
+ * The security groups and virtual networks still referenced by the network interfaces of a subscription, computed
+ * from a single listing of the network interfaces, so that the orphan resources of deleted instances are found
+ * without listing the network interfaces once per security group or virtual network.
+ * The network interfaces being deleted are ignored, as the listing may still return them.
+ * The Azure resource ids are compared case-insensitively.
+ */
+class AzureNetworkReferences {
+
+    private final Set<String> referencedSecurityGroupIds = new HashSet<>();
+
+    private final Set<String> referencedNetworkIds = new HashSet<>();
+
+    AzureNetworkReferences(Collection<NetworkInterface> networkInterfaces,
+            Collection<String> deletedNetworkInterfaceIds) {
+        Set<String> ignoredIds = deletedNetworkInterfaceIds.stream()
+                                                           .map(AzureNetworkReferences::normalize)
+                                                           .collect(Collectors.toSet());
+        networkInterfaces.stream()
+                         .filter(networkInterface -> networkInterface.id() == null ||
+                                                     !ignoredIds.contains(normalize(networkInterface.id())))
+                         .forEach(networkInterface -> {
+                             if (networkInterface.networkSecurityGroupId() != null) {
+                                 referencedSecurityGroupIds.add(normalize(networkInterface.networkSecurityGroupId()));
+                             }
+                             networkInterface.ipConfigurations()
+                                             .values()
+                                             .stream()
+                                             .filter(Objects::nonNull)
+                                             .map(NicIPConfiguration::networkId)
+                                             .filter(Objects::nonNull)
+                                             .forEach(networkId -> referencedNetworkIds.add(normalize(networkId)));
+                         });
+    }
+
+    /**
+     * @param azureService                  the Azure client of the infrastructure
+     * @param deletedNetworkInterfaceIds    the network interfaces being deleted, which are not references anymore
+     * @return  the references of the network interfaces of the subscription
+     */
+    static AzureNetworkReferences of(Azure azureService, Collection<String> deletedNetworkInterfaceIds) {
+        return new AzureNetworkReferences(azureService.networkInterfaces().list(), deletedNetworkInterfaceIds);
+    }
+
+    boolean isSecurityGroupReferenced(String securityGroupId) {
+        return referencedSecurityGroupIds.contains(normalize(securityGroupId));
+    }
+
+    boolean isNetworkReferenced(String networkId) {
+        return referencedNetworkIds.contains(normalize(networkId));
+    }
+
+    private static String normalize(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.CharStreams;
+
+
+/**
+ * Streams the JSON answers of the Azure pricing APIs, which are too large to be read in memory at once.
+ */
+final class AzurePricingHttp {
+
+    private static final int CONNECT_TIMEOUT = 30000;
+
+    private static final int READ_TIMEOUT = 300000;
+
+    private AzurePricingHttp() {
+    }
+
+    /**
+     * @param endpoint      the URL to get
+     * @param accessToken   the bearer token of the request, or null for the public APIs
+     * @return  the body of the answer, to be closed by the caller
+     * @throws IOException  if the request fails or is answered with an error status
+     */
+    static InputStream get(String endpoint, String accessToken) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint).openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        if (accessToken != null) {
+            conn.addRequestProperty("Authorization", "Bearer " + accessToken);
+        }
+        conn.addRequestProperty("Content-Type", "application/json");
+        if (conn.getResponseCode() / 100 != 2) {
+            String error = readError(conn);
+            conn.disconnect();
+            throw new IOException("GET " + endpoint + " answered HTTP " + conn.getResponseCode() + ": " + error);
+        }
+        return new BufferedInputStream(conn.getInputStream());
+    }
+
+    private static String readError(HttpURLConnection conn) throws IOException {
+        if (conn.getErrorStream() == null) {
+            return "";
+        }
+        try (Reader reader = new InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8)) {
+            return CharStreams.toString(reader);
+        }
+    }
+}
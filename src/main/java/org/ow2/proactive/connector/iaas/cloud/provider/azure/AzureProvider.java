@@ -25,11 +25,6 @@
  */
 package org.ow2.proactive.connector.iaas.cloud.provider.azure;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.*;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.concurrent.ExecutionException;
@@ -40,8 +35,6 @@ import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.RandomStringUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.ow2.proactive.connector.iaas.cloud.TagManager;
 import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
 import org.ow2.proactive.connector.iaas.model.*;
@@ -50,6 +43,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.microsoft.azure.PagedList;
 import com.microsoft.azure.management.Azure;
@@ -57,10 +51,7 @@ import com.microsoft.azure.management.compute.*;
 import com.microsoft.azure.management.network.Network;
 import com.microsoft.azure.management.network.NetworkInterface;
 import com.microsoft.azure.management.network.NetworkSecurityGroup;
-import com.microsoft.azure.management.network.NicIPConfiguration;
 import com.microsoft.azure.management.network.PublicIPAddress;
-import com.microsoft.azure.management.network.model.HasPrivateIPAddress;
-import com.microsoft.azure.management.network.model.HasPublicIPAddress;
 import com.microsoft.azure.management.resources.ResourceGroup;
 import com.microsoft.azure.management.resources.fluentcore.arm.Region;
 import com.microsoft.azure.management.resources.fluentcore.model.Creatable;
@@ -129,6 +120,9 @@ public class AzureProvider implements CloudProvider {
 
     protected static final String INSTANCE_NOT_FOUND_ERROR = "ERROR unable to find instance with ID: ";
 
+    // Azure tag recording the instance tag a VM has been created with
+    protected static final String INSTANCE_TAG_KEY = "proactive-instance-tag";
+
     protected static final String CLOUD_OFFERS_CURRENCY = "USD";
 
     protected static final String CLOUD_OFFERS_LOCAL = "en-US";
@@ -137,10 +131,6 @@ public class AzureProvider implements CloudProvider {
 
     protected static final String CLOUD_OFFERS_PAYASYOUGO = "MS-AZR-0003p";
 
-    private static Map<String, Map<String, AzureKnownCost>> knownCostPerMeterIdPerApiKey = new HashMap<>();
-
-    private static Map<String, Map<String, String>> knownMeterIdPerArmSkuNamePerApiKey = new HashMap<>();
-
     @Autowired
     protected AzureServiceCache azureServiceCache;
 
@@ -153,6 +143,15 @@ public class AzureProvider implements CloudProvider {
     @Autowired
     protected TagManager tagManager;
 
+    @Autowired
+    protected AzureRateCardCache azureRateCardCache;
+
+    @Autowired
+    protected AzureRetailPrices azureRetailPrices;
+
+    @Autowired
+    protected AzureScriptExecutor azureScriptExecutor;
+
     @Value("${connector-iaas.azure.default-username:activeeon}")
     protected String defaultUsername;
 
@@ -162,6 +161,12 @@ public class AzureProvider implements CloudProvider {
     @Value("${connector-iaas.azure.default-private-network-cidr:10.0.0.0/24}")
     protected String defaultPrivateNetworkCidr;
 
+    @Value("${connector-iaas.azure.delete.max-concurrency:16}")
+    protected int deleteMaxConcurrency;
+
+    @Value("${connector-iaas.azure.delete.timeout:1800000}")
+    protected long deleteTimeout;
+
     @Override
     public Set<String> listAvailableRegions(Infrastructure infrastructure) {
         return Arrays.stream(Region.values()).map(Region::name).collect(Collectors.toSet());
@@ -310,13 +315,16 @@ public class AzureProvider implements CloudProvider {
         //vms.forEach(vm -> executeScriptOnVM(vm, instance.getInitScript()));
 
         // Create all VMs in parallel
-        return azureService.virtualMachines()
-                           .create(creatableVirtualMachines)
-                           .values()
-                           .stream()
-                           // Use vmId() instead of id() for clarity (id() contains full resource path)
-                           .map(vm -> instance.withTag(vm.name()).withId(vm.vmId()).withNumber(SINGLE_INSTANCE_NUMBER))
-                           .collect(Collectors.toSet());
+        Collection<VirtualMachine> createdVirtualMachines = azureService.virtualMachines()
+                                                                        .create(creatableVirtualMachines)
+                                                                        .values();
+        azureProviderUtils.indexVirtualMachines(azureService, createdVirtualMachines);
+        return createdVirtualMachines.stream()
+                                     // Use vmId() instead of id() for clarity (id() contains full resource path)
+                                     .map(vm -> instance.withTag(vm.name())
+                                                        .withId(vm.vmId())
+                                                        .withNumber(SINGLE_INSTANCE_NUMBER))
+                                     .collect(Collectors.toSet());
     }
 
     protected Creatable<NetworkInterface> createPublicAddressAndNetworkInterface(Azure azureService,
@@ -471,10 +479,12 @@ public class AzureProvider implements CloudProvider {
             }
         });
 
-        // Set tags
-        return creatableVMWithSize.withTags(tagManager.retrieveAllTags(infrastructureId, instance.getOptions())
-                                                      .stream()
-                                                      .collect(Collectors.toMap(Tag::getKey, Tag::getValue)));
+        // Set tags, including the instance tag which selects the VMs executing a script on the instance tag
+        Map<String, String> tags = tagManager.retrieveAllTags(infrastructureId, instance.getOptions())
+                                             .stream()
+                                             .collect(Collectors.toMap(Tag::getKey, Tag::getValue));
+        tags.put(INSTANCE_TAG_KEY, instance.getTag());
+        return creatableVMWithSize.withTags(tags);
     }
 
     protected VirtualMachine.DefinitionStages.WithLinuxCreateManaged configureLinuxVirtualMachine(Azure azureService,
@@ -579,6 +589,14 @@ public class AzureProvider implements CloudProvider {
                RandomStringUtils.randomAlphanumeric(uidLength).toLowerCase();
     }
 
+    /**
+     * @return whether the VM has been created with the instance tag, as recorded in its Azure tags (the VM name
+     * only keeps a truncated prefix of the instance tag)
+     */
+    protected static boolean isCreatedFromInstanceTag(VirtualMachine vm, String instanceTag) {
+        return Optional.ofNullable(vm.tags()).map(tags -> instanceTag.equals(tags.get(INSTANCE_TAG_KEY))).orElse(false);
+    }
+
     protected static String createUniqueSecurityGroupName(String instanceTag) {
         return createUniqueName(instanceTag, NETWORK_SECURITY_GROUP_NAME_BASE);
     }
@@ -627,59 +645,109 @@ public class AzureProvider implements CloudProvider {
         List<NetworkSecurityGroup> networkSecurityGroups = azureProviderNetworkingUtils.getVMSecurityGroups(azureService,
                                                                                                             vm);
         List<PublicIPAddress> PublicIPAddresses = azureProviderNetworkingUtils.getVMPublicIPAddresses(azureService, vm);
-        String osDiskID = vm.osDiskId();
-
-        // Delete the VM first
-        azureService.virtualMachines().deleteById(vm.id());
 
-        // Then delete all network interfaces attached
-        vm.networkInterfaceIds().forEach(id -> azureService.networkInterfaces().deleteById(id));
+        // Delete the VM first, then its network interfaces and its main disk (OS), *and keep data disks*, then the
+        // public IP addresses, security groups and virtual networks no longer attached to any network interface
+        AzureResourceTeardown.builder()
+                             .azureService(azureService)
+                             .maxConcurrency(deleteMaxConcurrency)
+                             .timeout(deleteTimeout)
+                             .virtualMachineId(vm.id())
+                             .networkInterfaceIds(vm.networkInterfaceIds())
+                             .publicIPAddressIds(PublicIPAddresses.stream()
+                                                                  .map(PublicIPAddress::id)
+                                                                  .collect(Collectors.toList()))
+                             .diskId(vm.osDiskId())
+                             .networkSecurityGroups(networkSecurityGroups)
+                             .networks(networks)
+                             .build()
+                             .execute();
+        azureProviderUtils.forgetVirtualMachines(azureService, Collections.singletonList(vm));
 
-        // Delete all public IP addresses
-        PublicIPAddresses.stream()
-                         .map(PublicIPAddress::id)
-                         .forEach(id -> azureService.publicIPAddresses().deleteById(id));
+        log.info("Deletion of all Azure resources of instance " + instanceId + " has been executed.");
+    }
 
-        // Delete its main disk (OS), *and keep data disks*
-        azureService.disks().deleteById(osDiskID);
+    @Override
+    public Set<String> deleteInstancesInBatch(Infrastructure infrastructure, Set<String> instanceIds) {
+        Azure azureService = azureServiceCache.getService(infrastructure);
 
-        // Delete the security groups if not attached to any remaining network interface
-        deleteSecurityGroups(azureService, networkSecurityGroups);
+        List<VirtualMachine> vms = azureProviderUtils.getAllVirtualMachines(azureService)
+                                                     .stream()
+                                                     .filter(vm -> instanceIds.contains(vm.vmId()))
+                                                     .collect(Collectors.toList());
+        if (vms.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-        // Delete the virtual networks if not attached to any remaining network interface
-        deleteNetworks(azureService, networks);
+        log.info("Deletion of all Azure resources of instances " + instanceIds +
+                 " is being requested to the provider (infrastructure: " + infrastructure.getId() + ")");
 
-        log.info("Deletion of all Azure resources of instance " + instanceId + " has been executed.");
-    }
+        // Retrieve the resources attached to the instances before the deletion of the VMs detaches them
+        Map<String, List<com.microsoft.azure.management.network.Network>> networksPerVm = new HashMap<>();
+        Map<String, List<NetworkSecurityGroup>> networkSecurityGroupsPerVm = new HashMap<>();
+        Map<String, List<PublicIPAddress>> publicIPAddressesPerVm = new HashMap<>();
+        vms.forEach(vm -> {
+            networksPerVm.put(vm.id(), azureProviderNetworkingUtils.getVMNetworks(azureService, vm));
+            networkSecurityGroupsPerVm.put(vm.id(), azureProviderNetworkingUtils.getVMSecurityGroups(azureService, vm));
+            publicIPAddressesPerVm.put(vm.id(), azureProviderNetworkingUtils.getVMPublicIPAddresses(azureService, vm));
+        });
 
-    protected void deleteSecurityGroups(Azure azureService, List<NetworkSecurityGroup> networkSecurityGroups) {
-        // Delete the security groups if not attached to any remaining network interface
-        networkSecurityGroups.stream()
-                             .map(NetworkSecurityGroup::id)
-                             .filter(id -> azureService.networkInterfaces()
-                                                       .list()
-                                                       .stream()
-                                                       .map(NetworkInterface::getNetworkSecurityGroup)
-                                                       .filter(Objects::nonNull)
-                                                       .noneMatch(networkSecurityGroup -> networkSecurityGroup.id()
-                                                                                                              .equals(id)))
-                             .forEach(id -> azureService.networkSecurityGroups().deleteById(id));
-    }
+        // Delete the VMs first, all at once, each one independently of the failures of the others
+        Set<String> deletedVmIds = AzureResourceTeardown.builder()
+                                                        .azureService(azureService)
+                                                        .maxConcurrency(deleteMaxConcurrency)
+                                                        .timeout(deleteTimeout)
+                                                        .virtualMachineIds(vms.stream()
+                                                                              .map(VirtualMachine::id)
+                                                                              .collect(Collectors.toList()))
+                                                        .build()
+                                                        .deleteEachVirtualMachine();
+        List<VirtualMachine> deletedVms = vms.stream()
+                                             .filter(vm -> deletedVmIds.contains(vm.id()))
+                                             .collect(Collectors.toList());
+        if (deletedVms.isEmpty()) {
+            return Collections.emptySet();
+        }
+        azureProviderUtils.forgetVirtualMachines(azureService, deletedVms);
+        Set<String> deletedInstanceIds = deletedVms.stream().map(VirtualMachine::vmId).collect(Collectors.toSet());
+
+        // Then the resources attached to the deleted VMs only, shared ones once, the ones still attached to a VM
+        // which could not be deleted being kept
+        Map<String, com.microsoft.azure.management.network.Network> networks = new HashMap<>();
+        Map<String, NetworkSecurityGroup> networkSecurityGroups = new HashMap<>();
+        Set<String> publicIPAddressIds = new HashSet<>();
+        Set<String> networkInterfaceIds = new HashSet<>();
+        Set<String> osDiskIds = new HashSet<>();
+        deletedVms.forEach(vm -> {
+            networksPerVm.get(vm.id()).forEach(network -> networks.putIfAbsent(network.id(), network));
+            networkSecurityGroupsPerVm.get(vm.id()).forEach(nsg -> networkSecurityGroups.putIfAbsent(nsg.id(), nsg));
+            publicIPAddressesPerVm.get(vm.id())
+                                  .forEach(publicIPAddress -> publicIPAddressIds.add(publicIPAddress.id()));
+            networkInterfaceIds.addAll(vm.networkInterfaceIds());
+            osDiskIds.add(vm.osDiskId());
+        });
+        AzureResourceTeardown teardown = AzureResourceTeardown.builder()
+                                                              .azureService(azureService)
+                                                              .maxConcurrency(deleteMaxConcurrency)
+                                                              .timeout(deleteTimeout)
+                                                              .networkInterfaceIds(networkInterfaceIds)
+                                                              .publicIPAddressIds(publicIPAddressIds)
+                                                              // Delete their main disks (OS), *and keep data disks*
+                                                              .diskIds(osDiskIds)
+                                                              .networkSecurityGroups(networkSecurityGroups.values())
+                                                              .networks(networks.values())
+                                                              .build();
+
+        // The VMs are gone: a failure while cleaning their resources must not make them be deleted again
+        try {
+            teardown.await(teardown.deleteAttachedResources());
+        } catch (RuntimeException e) {
+            log.error("Deletion of the Azure resources attached to instances " + deletedInstanceIds +
+                      " failed (infrastructure: " + infrastructure.getId() + ")", e);
+        }
 
-    protected void deleteNetworks(Azure azureService, List<com.microsoft.azure.management.network.Network> networks) {
-        networks.stream()
-                .map(Network::id)
-                .filter(id -> azureService.networkInterfaces()
-                                          .list()
-                                          .stream()
-                                          .flatMap(networkInterface -> networkInterface.ipConfigurations()
-                                                                                       .values()
-                                                                                       .stream())
-                                          .filter(Objects::nonNull)
-                                          .map(NicIPConfiguration::getNetwork)
-                                          .filter(Objects::nonNull)
-                                          .noneMatch(network -> network.id().equals(id)))
-                .forEach(id -> azureService.networks().deleteById(id));
+        log.info("Deletion of all Azure resources of instances " + deletedInstanceIds + " has been executed.");
+        return deletedInstanceIds;
     }
 
     @Override
@@ -702,7 +770,16 @@ public class AzureProvider implements CloudProvider {
                                                                    .collect(Collectors.toSet()));
     }
 
+    @Override
+    public Optional<Instance> getInstanceById(Infrastructure infrastructure, String instanceId) {
+        Azure azureService = azureServiceCache.getService(infrastructure);
+        return azureProviderUtils.searchVirtualMachineByID(azureService, instanceId)
+                                 .map(vm -> getInstancesFromVMs(azureService, Sets.newHashSet(vm)))
+                                 .flatMap(instances -> instances.stream().findAny());
+    }
+
     protected Set<Instance> getInstancesFromVMs(Azure azureService, Set<VirtualMachine> vms) {
+        AzureNetworkInventory networkInventory = AzureNetworkInventory.of(azureService, vms);
         return vms.stream()
                   .map(vm -> Instance.builder()
                                      .id(vm.vmId())
@@ -710,38 +787,14 @@ public class AzureProvider implements CloudProvider {
                                      .number(SINGLE_INSTANCE_NUMBER)
                                      .hardware(Hardware.builder().type(String.valueOf(vm.size())).build())
                                      .network(org.ow2.proactive.connector.iaas.model.Network.builder()
-                                                                                            .publicAddresses(buildPublicAddressList(azureService,
-                                                                                                                                    vm))
-                                                                                            .privateAddresses(buildPrivateAddressList(azureService,
-                                                                                                                                      vm))
+                                                                                            .publicAddresses(networkInventory.getPublicAddresses(vm))
+                                                                                            .privateAddresses(networkInventory.getPrivateAddresses(vm))
                                                                                             .build())
                                      .status(String.valueOf(vm.powerState()))
                                      .build())
                   .collect(Collectors.toSet());
     }
 
-    protected List<String> buildPrivateAddressList(Azure azureService, VirtualMachine vm) {
-        return vm.networkInterfaceIds()
-                 .stream()
-                 .map(networkInterfaceId -> azureService.networkInterfaces().getById(networkInterfaceId))
-                 .flatMap(networkInterface -> networkInterface.ipConfigurations().values().stream())
-                 .filter(Objects::nonNull)
-                 .map(HasPrivateIPAddress::privateIPAddress)
-                 .collect(Collectors.toList());
-    }
-
-    protected List<String> buildPublicAddressList(Azure azureService, VirtualMachine vm) {
-        return vm.networkInterfaceIds()
-                 .stream()
-                 .map(networkInterfaceId -> azureService.networkInterfaces().getById(networkInterfaceId))
-                 .map(NetworkInterface::primaryIPConfiguration)
-                 .filter(Objects::nonNull)
-                 .map(HasPublicIPAddress::getPublicIPAddress)
-                 .filter(Objects::nonNull)
-                 .map(PublicIPAddress::ipAddress)
-                 .collect(Collectors.toList());
-    }
-
     @Override
     public List<ScriptResult> executeScriptOnInstanceId(Infrastructure infrastructure, String instanceId,
             InstanceScript instanceScript) {
@@ -752,14 +805,51 @@ public class AzureProvider implements CloudProvider {
         return executeScriptOnVM(vm, instanceScript);
     }
 
+    /**
+     * The script is executed in parallel on the instances. The instances are found with a single listing at most,
+     * and an instance which cannot be found is reported in its result.
+     */
+    @Override
+    public List<ScriptResult> executeScriptOnInstanceIds(Infrastructure infrastructure, List<String> instanceIds,
+            InstanceScript instanceScript) {
+        List<String> distinctInstanceIds = instanceIds.stream().distinct().collect(Collectors.toList());
+        Map<String, VirtualMachine> vms = azureProviderUtils.searchVirtualMachinesByIDs(azureServiceCache.getService(infrastructure),
+                                                                                        distinctInstanceIds);
+        List<VirtualMachine> foundVms = distinctInstanceIds.stream()
+                                                           .filter(vms::containsKey)
+                                                           .map(vms::get)
+                                                           .collect(Collectors.toList());
+        Map<String, List<ScriptResult>> resultsPerInstance = azureScriptExecutor.execute(foundVms,
+                                                                                         vm -> executeScriptOnVM(vm,
+                                                                                                                 instanceScript))
+                                                                                .stream()
+                                                                                .collect(Collectors.groupingBy(ScriptResult::getInstanceId));
+        return distinctInstanceIds.stream()
+                                  .flatMap(instanceId -> Optional.ofNullable(resultsPerInstance.get(instanceId))
+                                                                 .orElseGet(() -> Collections.singletonList(instanceNotFoundResult(instanceId)))
+                                                                 .stream())
+                                  .collect(Collectors.toList());
+    }
+
+    private static ScriptResult instanceNotFoundResult(String instanceId) {
+        return new ScriptResult(instanceId, "", INSTANCE_NOT_FOUND_ERROR + "'" + instanceId + "'");
+    }
+
+    /**
+     * The script is executed on the instance named after the tag, or else in parallel on all the instances created
+     * with the tag.
+     */
     @Override
     public List<ScriptResult> executeScriptOnInstanceTag(Infrastructure infrastructure, String instanceTag,
             InstanceScript instanceScript) {
-        VirtualMachine vm = azureProviderUtils.searchVirtualMachineByName(azureServiceCache.getService(infrastructure),
-                                                                          instanceTag)
-                                              .orElseThrow(() -> new RuntimeException("ERROR unable to find instance with name: '" +
-                                                                                      instanceTag + "'"));
-        return executeScriptOnVM(vm, instanceScript);
+        List<VirtualMachine> vms = azureProviderUtils.searchVirtualMachinesByName(azureServiceCache.getService(infrastructure),
+                                                                                  instanceTag,
+                                                                                  vm -> isCreatedFromInstanceTag(vm,
+                                                                                                                 instanceTag));
+        if (vms.isEmpty()) {
+            throw new RuntimeException("ERROR unable to find instance with name: '" + instanceTag + "'");
+        }
+        return azureScriptExecutor.execute(vms, vm -> executeScriptOnVM(vm, instanceScript));
     }
 
     private Optional<VirtualMachineExtension> retrieveExistingExtension(VirtualMachine vm) {
@@ -783,29 +873,26 @@ public class AzureProvider implements CloudProvider {
         }
     }
 
-    private void updateExistingExtension(VirtualMachine vm, VirtualMachineExtension extension, String script) {
+    /**
+     * @return the error of the script execution, if any
+     */
+    private Optional<String> updateExistingExtension(VirtualMachine vm, VirtualMachineExtension extension,
+            String script) {
         log.info("Request Azure provider to execute script: " + script);
         AbstractFuture<VirtualMachine> vmfuture = vm.update()
                                                     .updateExtension(extension.name())
                                                     .withPublicSetting(SCRIPT_EXTENSION_CMD_KEY, script)
                                                     .parent()
                                                     .applyAsync(null);
-        try {
-            vmfuture.get(TIMEOUT_SCRIPT_EXECUTION, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            log.info("An interruption occurred when updating extension to execute script on a VM.");
-            Thread.currentThread().interrupt();
-            e.printStackTrace();
-        } catch (ExecutionException e) {
-            log.info("An error occurred when updating extension to execute script on a VM.");
-            e.printStackTrace();
-        } catch (TimeoutException e) {
-            log.info("Timeout reached when updating extension to execute script on a VM.");
-        }
+        Optional<String> error = awaitScriptExecution(vmfuture, "updating extension to execute script on a VM");
         log.debug("Execution of script has been requested.");
+        return error;
     }
 
-    private void installNewExtension(VirtualMachine vm, String script) {
+    /**
+     * @return the error of the script execution, if any
+     */
+    private Optional<String> installNewExtension(VirtualMachine vm, String script) {
         log.info("Request Azure provider to install script extension and to execute script: " + script);
         if (vm.osType().equals(OperatingSystemTypes.LINUX)) {
             AbstractFuture<VirtualMachine> vmfuture = vm.update()
@@ -817,18 +904,7 @@ public class AzureProvider implements CloudProvider {
                                                         .withPublicSetting(SCRIPT_EXTENSION_CMD_KEY, script)
                                                         .attach()
                                                         .applyAsync(null);
-            try {
-                vmfuture.get(TIMEOUT_SCRIPT_EXECUTION, TimeUnit.MINUTES);
-            } catch (InterruptedException e) {
-                log.error("An interruption occurred while installing extension and executing script to a Linux VM.");
-                Thread.currentThread().interrupt();
-                e.printStackTrace();
-            } catch (ExecutionException e) {
-                log.error("An error occurred when installing extension and executing script to a Linux VM.");
-                e.printStackTrace();
-            } catch (TimeoutException e) {
-                log.info("Timeout reached when installing extension and executing script to a Linux VM.");
-            }
+            return awaitScriptExecution(vmfuture, "installing extension and executing script to a Linux VM");
 
         } else if (vm.osType().equals(OperatingSystemTypes.WINDOWS)) {
             AbstractFuture<VirtualMachine> vmfuture = vm.update()
@@ -840,21 +916,31 @@ public class AzureProvider implements CloudProvider {
                                                         .withPublicSetting(SCRIPT_EXTENSION_CMD_KEY, script)
                                                         .attach()
                                                         .applyAsync(null);
-            try {
-                vmfuture.get(TIMEOUT_SCRIPT_EXECUTION, TimeUnit.MINUTES);
-            } catch (InterruptedException e) {
-                log.error("An interruption occurred while installing extension and executing script to a Windows VM.");
-                Thread.currentThread().interrupt();
-            } catch (ExecutionException e) {
-                log.info("An error occurred when installing extension and executing script to a Windows VM.");
-                e.printStackTrace();
-            } catch (TimeoutException e) {
-                log.info("Timeout reached when installing extension and executing script to a Windows VM.");
-            }
+            return awaitScriptExecution(vmfuture, "installing extension and executing script to a Windows VM");
         } else {
             throw new RuntimeException(unsupportedOperatingSystemError(vm.osType().toString()));
         }
-        log.debug("Installation of script extension and execution of script is terminated.");
+    }
+
+    /**
+     * Waits for the update of the script extension of a VM, no more than TIMEOUT_SCRIPT_EXECUTION minutes.
+     * @return the error of the update, if any
+     */
+    private Optional<String> awaitScriptExecution(AbstractFuture<VirtualMachine> vmfuture, String operation) {
+        try {
+            vmfuture.get(TIMEOUT_SCRIPT_EXECUTION, TimeUnit.MINUTES);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            log.error("An interruption occurred while " + operation + ".");
+            Thread.currentThread().interrupt();
+            return Optional.of("Interrupted while " + operation);
+        } catch (ExecutionException e) {
+            log.error("An error occurred when " + operation + ".", e.getCause());
+            return Optional.of(String.valueOf(e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+        } catch (TimeoutException e) {
+            log.info("Timeout reached when " + operation + ".");
+            return Optional.of("Timeout reached when " + operation);
+        }
     }
 
     protected List<ScriptResult> executeScriptOnVM(VirtualMachine vm, InstanceScript instanceScript) {
@@ -866,16 +952,19 @@ public class AzureProvider implements CloudProvider {
         });
 
         // Update existing or install new extension
+        long start = System.currentTimeMillis();
         Optional<VirtualMachineExtension> vmExtension = retrieveExistingExtension(vm);
+        Optional<String> error;
         if (vmExtension.isPresent()) {
-            updateExistingExtension(vm, vmExtension.get(), concatenatedScripts.toString());
+            error = updateExistingExtension(vm, vmExtension.get(), concatenatedScripts.toString());
         } else {
-            installNewExtension(vm, concatenatedScripts.toString());
+            error = installNewExtension(vm, concatenatedScripts.toString());
         }
+        long duration = System.currentTimeMillis() - start;
 
-        // Unable to retrieve scripts output, returns empty results instead
+        // Unable to retrieve scripts output, returns empty results (with the error of the extension, if any) instead
         return IntStream.rangeClosed(1, instanceScript.getScripts().length)
-                        .mapToObj(scriptNumber -> new ScriptResult(vm.vmId(), "", ""))
+                        .mapToObj(scriptNumber -> new ScriptResult(vm.vmId(), "", error.orElse(""), duration))
                         .collect(Collectors.toList());
     }
 
@@ -920,9 +1009,19 @@ public class AzureProvider implements CloudProvider {
 
     @Override
     public void deleteInfrastructure(Infrastructure infrastructure) {
+        releaseInfrastructure(infrastructure);
+    }
+
+    @Override
+    public void releaseInfrastructure(Infrastructure infrastructure) {
         azureServiceCache.removeService(infrastructure);
     }
 
+    @Override
+    public void warmUp(Infrastructure infrastructure) {
+        azureServiceCache.getService(infrastructure);
+    }
+
     @Override
     public String addToInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
         Azure azureService = azureServiceCache.getService(infrastructure);
@@ -1078,46 +1177,35 @@ public class AzureProvider implements CloudProvider {
 
     @Override
     public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String imageReq, String token) {
-        try {
-            // We Connect to Azure
-            Azure service = azureServiceCache.getService(infra);
-            //PagedList<VirtualMachineSize> vmTypeInRegion = service.virtualMachines().sizes().listByRegion(region);
-            // We retrieve the Sku from compute resource type
-            PagedList<ComputeSku> sku = service.computeSkus()
-                                               .listbyRegionAndResourceType(Region.fromName(region),
-                                                                            ComputeResourceType.VIRTUALMACHINES);
-            String id = infra.getCredentials().getUsername();
-            if (!knownCostPerMeterIdPerApiKey.containsKey(id)) {
-                // We need to initiate the cost structure if none is already present.
-                // We try to do this once since the ratecard structure is heavy (~19MB)
-                String rateCard = getRateCard(infra);
-                knownCostPerMeterIdPerApiKey.put(id, parseVmRateCard(rateCard));
-            }
-            if (!knownMeterIdPerArmSkuNamePerApiKey.containsKey(id)) {
-                // We need to initiate the cost structure if none is already present.
-                // We try to do this once since the resource prices structure is heavy
-                String resourcePrices = getResourcePrices(infra);
-                knownMeterIdPerArmSkuNamePerApiKey.put(id, parseResourcePrices(resourcePrices));
-            }
-
-            Set<NodeCandidate> result = new HashSet<>();
-            for (ComputeSku csku : sku) {
-                if (csku.costs() != null && !csku.costs().isEmpty()) {
-                    for (ResourceSkuCosts cost : csku.costs()) {
-                        retrieveInfoAndAddNodeCandidate(csku, infra, region, id, cost, result);
-                    }
-                } else {
-                    retrieveInfoAndAddNodeCandidate(csku, infra, region, id, null, result);
+        // We Connect to Azure
+        Azure service = azureServiceCache.getService(infra);
+        //PagedList<VirtualMachineSize> vmTypeInRegion = service.virtualMachines().sizes().listByRegion(region);
+        // We retrieve the Sku from compute resource type
+        Region azureRegion = Region.fromName(region);
+        PagedList<ComputeSku> sku = service.computeSkus()
+                                           .listbyRegionAndResourceType(azureRegion,
+                                                                        ComputeResourceType.VIRTUALMACHINES);
+        // The rate card is heavy (~19MB): its virtual machine prices are indexed once per subscription
+        AzureRateCard rateCard = azureRateCardCache.getRateCard(infra, service.subscriptionId());
+        // The sizes without cost in the SKUs are priced with the retail prices of the region
+        Map<String, AzureRetailPrice> retailPrices = azureRetailPrices.getPrices(azureRegion.name());
+
+        Set<NodeCandidate> result = new HashSet<>();
+        for (ComputeSku csku : sku) {
+            if (csku.costs() != null && !csku.costs().isEmpty()) {
+                for (ResourceSkuCosts cost : csku.costs()) {
+                    retrieveInfoAndAddNodeCandidate(csku, rateCard, retailPrices, region, cost, result);
                 }
+            } else {
+                retrieveInfoAndAddNodeCandidate(csku, rateCard, retailPrices, region, null, result);
             }
-            return PagedNodeCandidates.builder().nextToken("").nodeCandidates(result).build();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        return PagedNodeCandidates.builder().nextToken("").nodeCandidates(result).build();
     }
 
-    private void retrieveInfoAndAddNodeCandidate(ComputeSku csku, Infrastructure infra, String region, String id,
-            ResourceSkuCosts cost, Set<NodeCandidate> result) throws IOException {
+    private void retrieveInfoAndAddNodeCandidate(ComputeSku csku, AzureRateCard rateCard,
+            Map<String, AzureRetailPrice> retailPrices, String region, ResourceSkuCosts cost,
+            Set<NodeCandidate> result) {
         // Retreving info for node candidate
         String memoryGB = csku.capabilities()
                               .stream()
@@ -1135,17 +1223,15 @@ public class AzureProvider implements CloudProvider {
         String type = csku.name().toString();
         // The Azure API doesn't provide any mean to access the freq of VMs
 
-        double price = -1;
+        double price;
         if (cost != null) {
-            price = knownCostPerMeterIdPerApiKey.get(id).get(cost.meterID()).meterRatesZero;
+            price = rateCard.getPrice(cost.meterID()).orElse(-1);
             // If the cost is not provided, retrieve it using the Aure prices API
         } else {
-            String meterId = knownMeterIdPerArmSkuNamePerApiKey.get(id).get(type);
-            if (meterId != null && knownCostPerMeterIdPerApiKey.containsKey(id) &&
-                knownCostPerMeterIdPerApiKey.get(id).containsKey(meterId) &&
-                knownCostPerMeterIdPerApiKey.get(id).get(meterId) != null) {
-                price = knownCostPerMeterIdPerApiKey.get(id).get(meterId).meterRatesZero;
-            }
+            price = Optional.ofNullable(retailPrices.get(type))
+                            .map(retailPrice -> rateCard.getPrice(retailPrice.getMeterId())
+                                                        .orElse(retailPrice.getRetailPrice()))
+                            .orElse(-1.0);
         }
 
         // We build up the resulting structure
@@ -1165,110 +1251,6 @@ public class AzureProvider implements CloudProvider {
         }
     }
 
-    private String queryAzureAPI(String accessToken, String endpoint) throws IOException {
-        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint).openConnection();
-        conn.setRequestMethod("GET");
-        conn.addRequestProperty("Authorization", "Bearer " + accessToken);
-        conn.addRequestProperty("Content-Type", "application/json");
-        conn.connect();
-
-        // getInputStream() works only if Http returns a code between 200 and 299
-        BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getResponseCode() / 100 == 2
-                                                                                                           ? conn.getInputStream()
-                                                                                                           : conn.getErrorStream(),
-                                                                         "UTF-8"));
-
-        StringBuilder builder = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
-        }
-        reader.close();
-        return builder.toString();
-    }
-
-    // This method download the rateCard of the Azure subscription.
-    private String getRateCard(Infrastructure infrastructure) throws IOException {
-        String token = azureServiceCache.getInfrastructureToken(infrastructure);
-        // Get a new rate card
-        String endpoint = String.format("https://management.azure.com/subscriptions/%s/providers/Microsoft.Commerce/RateCard?api-version=%s&$filter=OfferDurableId eq '%s' and Currency eq '%s' and Locale eq '%s' and RegionInfo eq '%s'",
-                                        infrastructure.getCredentials().getSubscriptionId(),
-                                        "2016-08-31-preview",
-                                        this.CLOUD_OFFERS_PAYASYOUGO,
-                                        this.CLOUD_OFFERS_CURRENCY,
-                                        this.CLOUD_OFFERS_LOCAL,
-                                        this.CLOUD_OFFERS_REGION_INFO)
-                                .replaceAll(" ", "%20");
-        String queryResult = queryAzureAPI(token, endpoint);
-        JSONObject parsedQueryResult = new JSONObject(queryResult);
-        if (parsedQueryResult.keySet().contains("Meters")) {
-            return queryResult;
-        } else {
-            throw new RuntimeException("Unable to parse ratecard: " + queryResult);
-        }
-    }
-
-    // This method download the rateCard of the Azure subscription.
-    private String getResourcePrices(Infrastructure infrastructure) throws IOException {
-        String token = azureServiceCache.getInfrastructureToken(infrastructure);
-        // Get a new rate card
-        String endpoint = String.format("https://prices.azure.com/api/retail/prices?api-version=%s",
-                                        "2023-01-01-preview")
-                                .replaceAll(" ", "%20");
-        String resourcePrices = queryAzureAPI(token, endpoint);
-        JSONObject parsedResourcePrices = new JSONObject(resourcePrices);
-        if (parsedResourcePrices.keySet().contains("Items")) {
-            return resourcePrices;
-        } else {
-            throw new RuntimeException("Unable to parse resource prices: " + resourcePrices);
-        }
-    }
-
-    // This method parses the content of the VmRateCard answer.
-    private Map<String, AzureKnownCost> parseVmRateCard(String queryResult) {
-        Map<String, AzureKnownCost> result = new HashMap<>();
-        JSONObject parsedQueryResult = new JSONObject(queryResult);
-        Optional<JSONArray> meters = Optional.ofNullable(parsedQueryResult.optJSONArray("Meters"));
-        String vmCatergory = "Virtual Machines";
-        if (meters.isPresent()) {
-            for (Object meterObj : meters.get()) {
-                JSONObject meter = (JSONObject) meterObj;
-                if (!vmCatergory.equals(meter.optString("MeterCategory"))) {
-                    // If we are analyzing the price for a resource that is not a VM, we skip it.
-                    continue;
-                }
-                JSONObject meterRates = meter.getJSONObject("MeterRates");
-                result.put(meter.getString("MeterId"),
-                           new AzureKnownCost(meter.getString("MeterRegion"),
-                                              meter.getString("MeterCategory"),
-                                              meterRates.getDouble("0")));
-            }
-        } else {
-            throw new RuntimeException("Unable to find VmRateCard from Azure API");
-        }
-        return result;
-    }
-
-    private Map<String, String> parseResourcePrices(String queryResult) {
-        Map<String, String> result = new HashMap<>();
-        JSONObject parsedQueryResult = new JSONObject(queryResult);
-        Optional<JSONArray> items = Optional.ofNullable(parsedQueryResult.optJSONArray("Items"));
-        String serviceName = "Virtual Machines";
-        if (items.isPresent()) {
-            for (Object itemObj : items.get()) {
-                JSONObject item = (JSONObject) itemObj;
-                if (!serviceName.equals(item.optString("serviceName"))) {
-                    // If we are analyzing the price for a resource that is not a VM, we skip it.
-                    continue;
-                }
-                result.put(item.getString("armSkuName"), item.getString("meterId"));
-            }
-        } else {
-            throw new RuntimeException("Unable to find resource prices from Azure API");
-        }
-        return result;
-    }
-
     private static String unsupportedOperatingSystemError(String operatingSystem) {
         return "ERROR Operating System of type '" + operatingSystem + "' is not yet supported";
     }
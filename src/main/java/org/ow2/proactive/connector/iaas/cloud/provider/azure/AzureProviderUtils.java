@@ -25,9 +25,17 @@
  */
 package org.ow2.proactive.connector.iaas.cloud.provider.azure;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Component;
 
@@ -47,36 +55,116 @@ import lombok.extern.log4j.Log4j2;
 @Log4j2
 public class AzureProviderUtils {
 
+    private final AzureVirtualMachineIndex virtualMachineIndex = new AzureVirtualMachineIndex();
+
     public Optional<VirtualMachine> searchVirtualMachineByName(Azure azureService, String name) {
-        return azureService.virtualMachines()
-                           .list()
-                           .stream()
-                           .filter(availableVM -> availableVM.name().equals(name))
-                           .findAny();
+        Optional<VirtualMachine> indexed = getIndexedVirtualMachine(azureService,
+                                                                    name,
+                                                                    virtualMachineIndex.getResourceIdByName(azureService,
+                                                                                                            name),
+                                                                    vm -> name.equals(vm.name()));
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+        return getAllVirtualMachines(azureService).stream()
+                                                  .filter(availableVM -> availableVM.name().equals(name))
+                                                  .findAny();
+    }
+
+    /**
+     * @param matcher   the virtual machines to return when none is named exactly as requested
+     * @return  the virtual machine with the given name if it exists, or else the matching ones, with a single
+     *          listing of the subscription
+     */
+    public List<VirtualMachine> searchVirtualMachinesByName(Azure azureService, String name,
+            Predicate<VirtualMachine> matcher) {
+        Optional<VirtualMachine> indexed = getIndexedVirtualMachine(azureService,
+                                                                    name,
+                                                                    virtualMachineIndex.getResourceIdByName(azureService,
+                                                                                                            name),
+                                                                    vm -> name.equals(vm.name()));
+        if (indexed.isPresent()) {
+            return Collections.singletonList(indexed.get());
+        }
+        Set<VirtualMachine> vms = getAllVirtualMachines(azureService);
+        Optional<VirtualMachine> named = vms.stream().filter(vm -> name.equals(vm.name())).findAny();
+        if (named.isPresent()) {
+            return Collections.singletonList(named.get());
+        }
+        return vms.stream()
+                  .filter(matcher)
+                  .sorted(Comparator.comparing(VirtualMachine::name))
+                  .collect(Collectors.toList());
+    }
+
+    /**
+     * @return  the virtual machines found per id, looked up in the index first, and else with a single listing of
+     *          the subscription
+     */
+    public Map<String, VirtualMachine> searchVirtualMachinesByIDs(Azure azureService, Collection<String> ids) {
+        Map<String, VirtualMachine> vms = new HashMap<>();
+        ids.forEach(id -> getIndexedVirtualMachine(azureService,
+                                                   id,
+                                                   virtualMachineIndex.getResourceIdByVmId(azureService, id),
+                                                   vm -> id.equals(vm.vmId())).ifPresent(vm -> vms.put(id, vm)));
+        if (vms.size() < ids.size()) {
+            getAllVirtualMachines(azureService).stream()
+                                               .filter(vm -> ids.contains(vm.vmId()))
+                                               .forEach(vm -> vms.putIfAbsent(vm.vmId(), vm));
+        }
+        return vms;
     }
 
     public Optional<VirtualMachine> searchVirtualMachineByID(Azure azureService, String id) {
-        Optional<VirtualMachine> answer = azureService.virtualMachines()
-                                                      .list()
-                                                      .stream()
-                                                      .filter(availableVM -> availableVM.vmId().equals(id))
-                                                      .findAny();
+        Optional<VirtualMachine> indexed = getIndexedVirtualMachine(azureService,
+                                                                    id,
+                                                                    virtualMachineIndex.getResourceIdByVmId(azureService,
+                                                                                                            id),
+                                                                    vm -> id.equals(vm.vmId()));
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+
+        Set<VirtualMachine> vms = getAllVirtualMachines(azureService);
+        Optional<VirtualMachine> answer = vms.stream().filter(availableVM -> id.equals(availableVM.vmId())).findAny();
         if (!answer.isPresent()) {
             log.error("Cannot find instance with id {}", id);
             log.error("Existing instances:");
-            azureService.virtualMachines()
-                        .list()
-                        .stream()
-                        .forEach(availableVM -> log.error("name: {} computerName: {} vmId: {} powerState: {}",
-                                                          availableVM.name(),
-                                                          availableVM.computerName(),
-                                                          availableVM.vmId(),
-                                                          availableVM.powerState()));
+            vms.forEach(availableVM -> log.error("name: {} computerName: {} vmId: {} powerState: {}",
+                                                 availableVM.name(),
+                                                 availableVM.computerName(),
+                                                 availableVM.vmId(),
+                                                 availableVM.powerState()));
         }
 
         return answer;
     }
 
+    /**
+     * Records the resource ids of virtual machines created by the connector, so that they are found without
+     * listing the subscription.
+     */
+    public void indexVirtualMachines(Azure azureService, Collection<VirtualMachine> vms) {
+        virtualMachineIndex.index(azureService, vms);
+    }
+
+    public void forgetVirtualMachines(Azure azureService, Collection<VirtualMachine> vms) {
+        virtualMachineIndex.remove(azureService, vms);
+    }
+
+    private Optional<VirtualMachine> getIndexedVirtualMachine(Azure azureService, String key,
+            Optional<String> resourceId, Predicate<VirtualMachine> matcher) {
+        if (!resourceId.isPresent()) {
+            return Optional.empty();
+        }
+        Optional<VirtualMachine> vm = Optional.ofNullable(azureService.virtualMachines().getById(resourceId.get()))
+                                              .filter(matcher);
+        if (!vm.isPresent()) {
+            virtualMachineIndex.forget(azureService, key, resourceId.get());
+        }
+        return vm;
+    }
+
     public Optional<ResourceGroup> searchResourceGroupByName(Azure azureService, String name) {
         return Optional.ofNullable(azureService.resourceGroups().getByName(name));
     }
@@ -99,7 +187,9 @@ public class AzureProviderUtils {
     }
 
     public Set<VirtualMachine> getAllVirtualMachines(Azure azureService) {
-        return new HashSet<>(azureService.virtualMachines().list());
+        Set<VirtualMachine> vms = new HashSet<>(azureService.virtualMachines().list());
+        virtualMachineIndex.index(azureService, vms);
+        return vms;
     }
 
     public Optional<LoadBalancer> searchLoadBalancerByName(Azure azureService, String resourceGroup, String name) {
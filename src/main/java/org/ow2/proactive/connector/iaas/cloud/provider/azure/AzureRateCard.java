@@ -0,0 +1,309 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.Getter;
+
+
+/**
+ * Price of the "Virtual Machines" meters of an Azure rate card, indexed by meter id.
+ *
+ * The rate card (~19 MB) is parsed as a stream, and only the id and the base rate of the virtual machine meters are
+ * kept: the ids, which are UUIDs, are stored as two longs in sorted arrays next to their price, so that the index
+ * takes a few hundred kilobytes and is looked up by binary search.
+ */
+public class AzureRateCard {
+
+    static final String VIRTUAL_MACHINES_CATEGORY = "Virtual Machines";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Number of parsed meters between two samples of the used heap.
+     */
+    private static final int HEAP_SAMPLING_INTERVAL = 1000;
+
+    private final long[] meterIdMostSignificantBits;
+
+    private final long[] meterIdLeastSignificantBits;
+
+    private final double[] prices;
+
+    // meter ids which are not UUIDs, not expected but kept rather than dropped
+    private final Map<String, Double> otherPrices;
+
+    @Getter
+    private final int parsedMeters;
+
+    /**
+     * Highest increase of the used heap sampled while parsing, in bytes. Only indicative, as it includes the
+     * allocations of the other threads and ignores garbage collections.
+     */
+    @Getter
+    private final long parsingHeapIncrease;
+
+    private AzureRateCard(long[] meterIdMostSignificantBits, long[] meterIdLeastSignificantBits, double[] prices,
+            Map<String, Double> otherPrices, int parsedMeters, long parsingHeapIncrease) {
+        this.meterIdMostSignificantBits = meterIdMostSignificantBits;
+        this.meterIdLeastSignificantBits = meterIdLeastSignificantBits;
+        this.prices = prices;
+        this.otherPrices = otherPrices;
+        this.parsedMeters = parsedMeters;
+        this.parsingHeapIncrease = parsingHeapIncrease;
+    }
+
+    /**
+     * @param meterId   the id of a virtual machine meter
+     * @return  the base rate of the meter, if the rate card contains it
+     */
+    public OptionalDouble getPrice(String meterId) {
+        if (meterId == null) {
+            return OptionalDouble.empty();
+        }
+        UUID uuid = toUuid(meterId);
+        if (uuid == null) {
+            Double price = otherPrices.get(meterId);
+            return price == null ? OptionalDouble.empty() : OptionalDouble.of(price);
+        }
+        int index = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return index < 0 ? OptionalDouble.empty() : OptionalDouble.of(prices[index]);
+    }
+
+    /**
+     * @return  the number of indexed virtual machine meters
+     */
+    public int size() {
+        return prices.length + otherPrices.size();
+    }
+
+    /**
+     * Parses the rate card answered by the Azure RateCard API, keeping only the virtual machine meters.
+     *
+     * @param rateCard  the JSON rate card, read once and not closed
+     */
+    public static AzureRateCard parse(InputStream rateCard) throws IOException {
+        Builder builder = new Builder();
+        boolean metersFound = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(rateCard)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unable to parse rate card: a JSON object is expected");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("Meters".equals(field) && value == JsonToken.START_ARRAY) {
+                    metersFound = true;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        parseMeter(parser, builder);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (!metersFound) {
+            throw new IOException("Unable to find the meters in the rate card answered by the Azure API");
+        }
+        return builder.build();
+    }
+
+    private static void parseMeter(JsonParser parser, Builder builder) throws IOException {
+        String meterId = null;
+        String meterCategory = null;
+        Double baseRate = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "MeterId":
+                    meterId = parser.getValueAsString();
+                    break;
+                case "MeterCategory":
+                    meterCategory = parser.getValueAsString();
+                    break;
+                case "MeterRates":
+                    if (value == JsonToken.START_OBJECT) {
+                        baseRate = parseBaseRate(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        builder.meterParsed();
+        if (VIRTUAL_MACHINES_CATEGORY.equals(meterCategory) && meterId != null && baseRate != null) {
+            builder.add(meterId, baseRate);
+        }
+    }
+
+    /**
+     * @return  the rate of the "0" tier, which is the price of the first unit
+     */
+    private static Double parseBaseRate(JsonParser parser) throws IOException {
+        Double baseRate = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String tier = parser.getCurrentName();
+            parser.nextToken();
+            if ("0".equals(tier)) {
+                baseRate = parser.getValueAsDouble();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return baseRate;
+    }
+
+    private int indexOf(long mostSignificantBits, long leastSignificantBits) {
+        int low = 0;
+        int high = prices.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(meterIdMostSignificantBits[middle],
+                                     meterIdLeastSignificantBits[middle],
+                                     mostSignificantBits,
+                                     leastSignificantBits);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(long mostSignificantBits1, long leastSignificantBits1, long mostSignificantBits2,
+            long leastSignificantBits2) {
+        int comparison = Long.compare(mostSignificantBits1, mostSignificantBits2);
+        return comparison != 0 ? comparison : Long.compare(leastSignificantBits1, leastSignificantBits2);
+    }
+
+    private static UUID toUuid(String meterId) {
+        try {
+            return UUID.fromString(meterId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class Builder {
+
+        private final long initialHeap = usedHeap();
+
+        private long peakHeapIncrease = 0;
+
+        private int parsedMeters = 0;
+
+        private int size = 0;
+
+        private long[] mostSignificantBits = new long[1024];
+
+        private long[] leastSignificantBits = new long[1024];
+
+        private double[] prices = new double[1024];
+
+        private final Map<String, Double> otherPrices = new HashMap<>();
+
+        void meterParsed() {
+            if (++parsedMeters % HEAP_SAMPLING_INTERVAL == 0) {
+                peakHeapIncrease = Math.max(peakHeapIncrease, usedHeap() - initialHeap);
+            }
+        }
+
+        void add(String meterId, double price) {
+            UUID uuid = toUuid(meterId);
+            if (uuid == null) {
+                otherPrices.put(meterId, price);
+                return;
+            }
+            if (size == prices.length) {
+                mostSignificantBits = Arrays.copyOf(mostSignificantBits, size * 2);
+                leastSignificantBits = Arrays.copyOf(leastSignificantBits, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            mostSignificantBits[size] = uuid.getMostSignificantBits();
+            leastSignificantBits[size] = uuid.getLeastSignificantBits();
+            prices[size] = price;
+            size++;
+        }
+
+        AzureRateCard build() {
+            peakHeapIncrease = Math.max(peakHeapIncrease, usedHeap() - initialHeap);
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order,
+                        (first, second) -> compare(mostSignificantBits[first],
+                                                   leastSignificantBits[first],
+                                                   mostSignificantBits[second],
+                                                   leastSignificantBits[second]));
+            // a meter listed twice keeps its last price, like a map would
+            long[] sortedMostSignificantBits = new long[size];
+            long[] sortedLeastSignificantBits = new long[size];
+            double[] sortedPrices = new double[size];
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                int index = order[i];
+                if (distinct > 0 && sortedMostSignificantBits[distinct - 1] == mostSignificantBits[index] &&
+                    sortedLeastSignificantBits[distinct - 1] == leastSignificantBits[index]) {
+                    distinct--;
+                }
+                sortedMostSignificantBits[distinct] = mostSignificantBits[index];
+                sortedLeastSignificantBits[distinct] = leastSignificantBits[index];
+                sortedPrices[distinct] = prices[index];
+                distinct++;
+            }
+            return new AzureRateCard(Arrays.copyOf(sortedMostSignificantBits, distinct),
+                                     Arrays.copyOf(sortedLeastSignificantBits, distinct),
+                                     Arrays.copyOf(sortedPrices, distinct),
+                                     otherPrices,
+                                     parsedMeters,
+                                     peakHeapIncrease);
+        }
+    }
+}
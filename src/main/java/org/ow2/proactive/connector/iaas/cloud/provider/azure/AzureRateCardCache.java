@@ -0,0 +1,113 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.cache.RefreshingCache;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Virtual machine prices of the Azure rate cards, shared by the infrastructures of the same subscription and
+ * refreshed in the background once older than the configured time to live.
+ */
+@Component
+@Log4j2
+public class AzureRateCardCache {
+
+    private static final String RATE_CARD_API_VERSION = "2016-08-31-preview";
+
+    private final AzureServiceCache azureServiceCache;
+
+    private final ExecutorService refreshExecutor;
+
+    private final RefreshingCache<String, AzureRateCard> rateCardPerSubscription;
+
+    @Autowired
+    public AzureRateCardCache(AzureServiceCache azureServiceCache,
+            @Value("${connector-iaas.azure.rate-card.ttl:86400000}") long timeToLive,
+            @Value("${connector-iaas.azure.rate-card.max-staleness:604800000}") long maxStaleness) {
+        this.azureServiceCache = azureServiceCache;
+        this.refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("azure-rate-card-%d")
+                                                                                           .setDaemon(true)
+                                                                                           .build());
+        this.rateCardPerSubscription = new RefreshingCache<>(timeToLive, maxStaleness, refreshExecutor);
+    }
+
+    /**
+     * @param infrastructure    the infrastructure whose token is used to download the rate card
+     * @param subscriptionId    the subscription of the infrastructure
+     * @return  the virtual machine prices of the pay-as-you-go offer for this subscription
+     */
+    public AzureRateCard getRateCard(Infrastructure infrastructure, String subscriptionId) {
+        return rateCardPerSubscription.get(subscriptionId + "/" + AzureProvider.CLOUD_OFFERS_PAYASYOUGO,
+                                           () -> downloadRateCard(infrastructure, subscriptionId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private AzureRateCard downloadRateCard(Infrastructure infrastructure, String subscriptionId) {
+        String endpoint = String.format("https://management.azure.com/subscriptions/%s/providers/Microsoft.Commerce/RateCard?api-version=%s&$filter=OfferDurableId eq '%s' and Currency eq '%s' and Locale eq '%s' and RegionInfo eq '%s'",
+                                        subscriptionId,
+                                        RATE_CARD_API_VERSION,
+                                        AzureProvider.CLOUD_OFFERS_PAYASYOUGO,
+                                        AzureProvider.CLOUD_OFFERS_CURRENCY,
+                                        AzureProvider.CLOUD_OFFERS_LOCAL,
+                                        AzureProvider.CLOUD_OFFERS_REGION_INFO)
+                                .replaceAll(" ", "%20");
+        long start = System.currentTimeMillis();
+        try (InputStream rateCardStream = AzurePricingHttp.get(endpoint,
+                                                               azureServiceCache.getInfrastructureToken(infrastructure))) {
+            AzureRateCard rateCard = AzureRateCard.parse(rateCardStream);
+            log.info(String.format("Rate card of subscription %s: %d virtual machine meters indexed out of %d in %d ms, heap increase during parsing up to %d KB",
+                                   subscriptionId,
+                                   rateCard.size(),
+                                   rateCard.getParsedMeters(),
+                                   System.currentTimeMillis() - start,
+                                   rateCard.getParsingHeapIncrease() / 1024));
+            return rateCard;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to download the rate card of subscription " + subscriptionId, e);
+        }
+    }
+}
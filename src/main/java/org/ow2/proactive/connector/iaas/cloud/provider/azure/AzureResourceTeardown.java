@@ -0,0 +1,228 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.network.Network;
+import com.microsoft.azure.management.network.NetworkSecurityGroup;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.extern.log4j.Log4j2;
+import rx.Completable;
+import rx.Observable;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.schedulers.Schedulers;
+
+
+/**
+ * Asynchronous deletion of the Azure resources of instances, ordered along their dependencies:
+ *
+ * <pre>
+ * virtual machines --+--> OS disks
+ *                    +--> network interfaces --+--> public IP addresses
+ *                                              +--> orphan security groups and virtual networks
+ * </pre>
+ *
+ * The independent branches are deleted concurrently, and the resources of a same kind no more than maxConcurrency at
+ * the same time, so that the deletion takes the latency of the longest branch rather than the sum of all the
+ * deletions, without flooding the resource manager with requests.
+ * A failing deletion does not interrupt the independent branches, and its error is thrown once they are completed.
+ * The wait for the deletion is bounded by the timeout, after which the deletions not requested yet are cancelled.
+ */
+@Builder
+@Log4j2
+class AzureResourceTeardown {
+
+    static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+    static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    @NonNull
+    private final Azure azureService;
+
+    @Singular
+    private final Collection<String> virtualMachineIds;
+
+    @Singular
+    private final Collection<String> networkInterfaceIds;
+
+    @Singular
+    private final Collection<String> publicIPAddressIds;
+
+    @Singular
+    private final Collection<String> diskIds;
+
+    /**
+     * Deleted only if no remaining network interface is attached to them.
+     */
+    @Singular
+    private final Collection<NetworkSecurityGroup> networkSecurityGroups;
+
+    /**
+     * Deleted only if no remaining network interface is attached to them.
+     */
+    @Singular
+    private final Collection<Network> networks;
+
+    /**
+     * Maximum number of resources of a same kind deleted at the same time, DEFAULT_MAX_CONCURRENCY if not positive.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Maximum duration (in milliseconds) of a wait for a deletion, DEFAULT_TIMEOUT if not positive.
+     */
+    private final long timeout;
+
+    /**
+     * Deletes the virtual machines, and then the resources attached to them, waiting for the whole deletion.
+     */
+    void execute() {
+        await(deleteVirtualMachines().andThen(deleteAttachedResources()));
+    }
+
+    /**
+     * Waits for a deletion, no more than the timeout, after which the deletion is unsubscribed.
+     */
+    void await(Completable deletion) {
+        long timeoutMillis = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
+        CountDownLatch completion = new CountDownLatch(1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Subscription subscription = deletion.subscribe(completion::countDown, e -> {
+            error.set(e);
+            completion.countDown();
+        });
+        try {
+            if (!completion.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                subscription.unsubscribe();
+                throw new RuntimeException("ERROR the deletion of the Azure resources did not complete within " +
+                                           timeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            subscription.unsubscribe();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("ERROR interrupted while waiting for the deletion of the Azure resources", e);
+        }
+        if (error.get() != null) {
+            throw Exceptions.propagate(error.get());
+        }
+    }
+
+    Completable deleteVirtualMachines() {
+        return deleteAll(virtualMachineIds, azureService.virtualMachines()::deleteByIdAsync);
+    }
+
+    /**
+     * Deletes the virtual machines independently of each other, waiting for all of them but no more than the
+     * timeout. The failed deletions are logged.
+     * @return  the ids of the deleted virtual machines
+     */
+    Set<String> deleteEachVirtualMachine() {
+        Set<String> deletedIds = ConcurrentHashMap.newKeySet();
+        Completable deletion = deleteAll(virtualMachineIds,
+                                         id -> azureService.virtualMachines()
+                                                           .deleteByIdAsync(id)
+                                                           .doOnCompleted(() -> deletedIds.add(id))
+                                                           .doOnError(e -> log.error("Deletion of the Azure virtual machine " +
+                                                                                     id + " failed", e))
+                                                           .onErrorComplete());
+        try {
+            await(deletion);
+        } catch (RuntimeException e) {
+            log.error("Deletion of the Azure virtual machines " + virtualMachineIds + " interrupted", e);
+        }
+        return new HashSet<>(deletedIds);
+    }
+
+    /**
+     * @return  the deletion of the resources attached to the virtual machines, to be started once the virtual
+     * machines are deleted
+     */
+    Completable deleteAttachedResources() {
+        Completable networkInterfacesDeletion = deleteAll(networkInterfaceIds,
+                                                          azureService.networkInterfaces()::deleteByIdAsync);
+        Completable publicIPAddressesDeletion = deleteAll(publicIPAddressIds,
+                                                          azureService.publicIPAddresses()::deleteByIdAsync);
+        // the listing of the remaining network interfaces blocks, it must not run on the thread of a completed deletion
+        Completable orphanNetworkResourcesDeletion = Completable.defer(this::deleteOrphanNetworkResources)
+                                                                .subscribeOn(Schedulers.io());
+        Completable disksDeletion = deleteAll(diskIds, azureService.disks()::deleteByIdAsync);
+
+        return Completable.mergeDelayError(disksDeletion,
+                                           networkInterfacesDeletion.andThen(Completable.mergeDelayError(publicIPAddressesDeletion,
+                                                                                                         orphanNetworkResourcesDeletion)));
+    }
+
+    /**
+     * The remaining network interfaces are listed once the deleted ones are gone, in a single listing shared by all
+     * the security groups and virtual networks.
+     */
+    private Completable deleteOrphanNetworkResources() {
+        if (networkSecurityGroups.isEmpty() && networks.isEmpty()) {
+            return Completable.complete();
+        }
+        AzureNetworkReferences networkReferences = AzureNetworkReferences.of(azureService, networkInterfaceIds);
+        List<String> orphanSecurityGroupIds = networkSecurityGroups.stream()
+                                                                   .map(NetworkSecurityGroup::id)
+                                                                   .filter(id -> !networkReferences.isSecurityGroupReferenced(id))
+                                                                   .collect(Collectors.toList());
+        List<String> orphanNetworkIds = networks.stream()
+                                                .map(Network::id)
+                                                .filter(id -> !networkReferences.isNetworkReferenced(id))
+                                                .collect(Collectors.toList());
+        return Completable.mergeDelayError(deleteAll(orphanSecurityGroupIds,
+                                                     azureService.networkSecurityGroups()::deleteByIdAsync),
+                                           deleteAll(orphanNetworkIds, azureService.networks()::deleteByIdAsync));
+    }
+
+    /**
+     * Each deletion is deferred, so that no request is sent before the deletions it depends on are completed.
+     */
+    private Completable deleteAll(Collection<String> ids, Function<String, Completable> deletion) {
+        List<Completable> deletions = ids.stream()
+                                         .filter(Objects::nonNull)
+                                         .distinct()
+                                         .map(id -> Completable.defer(() -> deletion.apply(id)))
+                                         .collect(Collectors.toList());
+        return Completable.mergeDelayError(Observable.from(deletions),
+                                           maxConcurrency > 0 ? maxConcurrency : DEFAULT_MAX_CONCURRENCY);
+    }
+}
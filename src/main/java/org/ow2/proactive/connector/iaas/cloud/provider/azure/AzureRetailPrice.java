@@ -26,16 +26,25 @@
 package org.ow2.proactive.connector.iaas.cloud.provider.azure;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 
+/**
+ * Pay-as-you-go price of a virtual machine size in a region, as listed by the Azure retail prices API.
+ */
+@EqualsAndHashCode
 @Getter
 @AllArgsConstructor
-public class AzureKnownCost {
+@NoArgsConstructor
+@ToString
+public class AzureRetailPrice {
 
-    String meterCategory;
+    private String meterId;
 
-    String meterRegion;
+    private double retailPrice;
 
-    double meterRatesZero;
+    private boolean windows;
 }
@@ -0,0 +1,323 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.cache.RefreshingCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Pay-as-you-go prices of the Azure virtual machine sizes, indexed by armSkuName per region.
+ *
+ * The prices of a region are loaded from the public retail prices API, filtered on the server side by service and
+ * region, following all the result pages. At most a bounded number of regions are downloaded at the same time.
+ * When a directory is configured, the index of each region is saved there and reused after a restart with the age
+ * of its file, so that it is refreshed as if the connector had not been restarted.
+ */
+@Component
+@Log4j2
+public class AzureRetailPrices {
+
+    static final String RETAIL_PRICES_ENDPOINT = "https://prices.azure.com/api/retail/prices";
+
+    private static final String RETAIL_PRICES_API_VERSION = "2023-01-01-preview";
+
+    private static final String CONSUMPTION_PRICE_TYPE = "Consumption";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final TypeReference<Map<String, AzureRetailPrice>> INDEX_TYPE = new TypeReference<Map<String, AzureRetailPrice>>() {
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final long maxStaleness;
+
+    /**
+     * Bounds the downloads of both the callers and the background loads
+     */
+    private final Semaphore downloads;
+
+    private final Path directory;
+
+    private final ExecutorService loadExecutor;
+
+    private final RefreshingCache<String, Map<String, AzureRetailPrice>> pricesPerRegion;
+
+    private final List<String> preloadedRegions;
+
+    @Autowired
+    public AzureRetailPrices(@Value("${connector-iaas.azure.retail-prices.ttl:86400000}") long timeToLive,
+            @Value("${connector-iaas.azure.retail-prices.max-staleness:604800000}") long maxStaleness,
+            @Value("${connector-iaas.azure.retail-prices.max-concurrent-downloads:4}") int maxConcurrentDownloads,
+            @Value("${connector-iaas.azure.retail-prices.directory:}") String directory,
+            @Value("${connector-iaas.azure.retail-prices.preload-regions:}") String preloadedRegions) {
+        this.maxStaleness = Math.max(timeToLive, maxStaleness);
+        this.downloads = new Semaphore(Math.max(1, maxConcurrentDownloads));
+        this.directory = Strings.isNullOrEmpty(directory) ? null : Paths.get(directory);
+        this.loadExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("azure-retail-prices-%d")
+                                                                                    .setDaemon(true)
+                                                                                    .build());
+        this.pricesPerRegion = new RefreshingCache<>(timeToLive, maxStaleness, loadExecutor);
+        this.preloadedRegions = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(preloadedRegions);
+    }
+
+    @PostConstruct
+    public void preloadConfiguredRegions() {
+        preload(preloadedRegions);
+    }
+
+    /**
+     * @param region    the name of the Azure region, e.g. eastus
+     * @return  the prices of the virtual machine sizes of the region, indexed by armSkuName
+     */
+    public Map<String, AzureRetailPrice> getPrices(String region) {
+        if (!pricesPerRegion.getAge(region).isPresent()) {
+            restoreSavedPrices(region);
+        }
+        return pricesPerRegion.get(region, () -> load(region));
+    }
+
+    /**
+     * Loads the prices of the given regions in the background, at most the configured number at the same time.
+     */
+    public void preload(Collection<String> regions) {
+        regions.forEach(region -> loadExecutor.execute(() -> {
+            try {
+                getPrices(region);
+            } catch (RuntimeException e) {
+                log.warn("Unable to load the retail prices of region " + region, e);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+    }
+
+    private Map<String, AzureRetailPrice> load(String region) {
+        Map<String, AzureRetailPrice> prices = download(region);
+        savePrices(region, prices);
+        return prices;
+    }
+
+    private Map<String, AzureRetailPrice> download(String region) {
+        long start = System.currentTimeMillis();
+        try {
+            downloads.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to download the retail prices of region " +
+                                            region, e);
+        }
+        try {
+            Map<String, AzureRetailPrice> prices = new HashMap<>();
+            String filter = String.format("serviceName eq 'Virtual Machines' and armRegionName eq '%s' and priceType eq '%s'",
+                                          region,
+                                          CONSUMPTION_PRICE_TYPE);
+            String nextPage = RETAIL_PRICES_ENDPOINT + "?api-version=" + RETAIL_PRICES_API_VERSION + "&$filter=" +
+                              URLEncoder.encode(filter, StandardCharsets.UTF_8.name()).replace("+", "%20");
+            int pages = 0;
+            while (nextPage != null) {
+                try (InputStream page = AzurePricingHttp.get(nextPage, null)) {
+                    nextPage = parsePage(page, prices);
+                }
+                pages++;
+            }
+            log.info(String.format("Retail prices of region %s: %d virtual machine sizes indexed from %d pages in %d ms",
+                                   region,
+                                   prices.size(),
+                                   pages,
+                                   System.currentTimeMillis() - start));
+            return Collections.unmodifiableMap(prices);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to download the retail prices of region " + region, e);
+        } finally {
+            downloads.release();
+        }
+    }
+
+    /**
+     * Adds the prices of a page of the retail prices API to the index.
+     *
+     * @return  the link to the next page, or null if this is the last one
+     */
+    static String parsePage(InputStream page, Map<String, AzureRetailPrice> prices) throws IOException {
+        String nextPageLink = null;
+        boolean itemsFound = false;
+        try (JsonParser parser = JSON_FACTORY.createParser(page)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unable to parse retail prices: a JSON object is expected");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("Items".equals(field) && value == JsonToken.START_ARRAY) {
+                    itemsFound = true;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        parseItem(parser, prices);
+                    }
+                } else if ("NextPageLink".equals(field)) {
+                    nextPageLink = value == JsonToken.VALUE_NULL ? null : Strings.emptyToNull(parser.getValueAsString());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (!itemsFound) {
+            throw new IOException("Unable to find the items in the retail prices answered by the Azure API");
+        }
+        return nextPageLink;
+    }
+
+    private static void parseItem(JsonParser parser, Map<String, AzureRetailPrice> prices) throws IOException {
+        Map<String, String> item = new HashMap<>();
+        double retailPrice = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("retailPrice".equals(field)) {
+                retailPrice = parser.getValueAsDouble(-1);
+            } else if (value.isScalarValue()) {
+                item.put(field, parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        addPrice(prices,
+                 item.get("armSkuName"),
+                 item.get("type"),
+                 item.get("skuName"),
+                 item.get("productName"),
+                 item.get("meterId"),
+                 retailPrice);
+    }
+
+    static void addPrice(Map<String, AzureRetailPrice> prices, String armSkuName, String type, String skuName,
+            String productName, String meterId, double retailPrice) {
+        if (Strings.isNullOrEmpty(armSkuName) || !CONSUMPTION_PRICE_TYPE.equals(type) || retailPrice < 0) {
+            return;
+        }
+        String sku = Strings.nullToEmpty(skuName);
+        if (sku.contains("Spot") || sku.contains("Low Priority")) {
+            // not a regular pay-as-you-go price
+            return;
+        }
+        boolean windows = Strings.nullToEmpty(productName).contains("Windows");
+        prices.merge(armSkuName, new AzureRetailPrice(meterId, retailPrice, windows), AzureRetailPrices::preferred);
+    }
+
+    /**
+     * The node candidates are not bound to an operating system: the price without license, i.e. not the Windows
+     * one, is preferred, and then the cheapest.
+     */
+    private static AzureRetailPrice preferred(AzureRetailPrice known, AzureRetailPrice candidate) {
+        if (known.isWindows() != candidate.isWindows()) {
+            return known.isWindows() ? candidate : known;
+        }
+        return candidate.getRetailPrice() < known.getRetailPrice() ? candidate : known;
+    }
+
+    /**
+     * Caches the saved prices of a region with the time of their file: the prices older than the time to live are
+     * refreshed in the background, and the ones older than the maximum staleness are ignored.
+     */
+    private void restoreSavedPrices(String region) {
+        if (directory == null) {
+            return;
+        }
+        Path file = savedPricesFile(region);
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            long savedAt = Files.getLastModifiedTime(file).toMillis();
+            if (System.currentTimeMillis() - savedAt >= maxStaleness) {
+                return;
+            }
+            Map<String, AzureRetailPrice> prices = mapper.readValue(file.toFile(), INDEX_TYPE);
+            log.info("Retail prices of region " + region + " read from " + file);
+            pricesPerRegion.put(region, Collections.unmodifiableMap(prices), savedAt);
+        } catch (IOException e) {
+            log.warn("Unable to read the saved retail prices " + file + ", they are downloaded again", e);
+        }
+    }
+
+    private void savePrices(String region, Map<String, AzureRetailPrice> prices) {
+        if (directory == null) {
+            return;
+        }
+        Path file = savedPricesFile(region);
+        try {
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            mapper.writeValue(temporaryFile.toFile(), prices);
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to save the retail prices of region " + region + " in " + directory, e);
+        }
+    }
+
+    private Path savedPricesFile(String region) {
+        return directory.resolve("azure-retail-prices-" + region.replaceAll("[^A-Za-z0-9-]", "_") + ".json");
+    }
+}
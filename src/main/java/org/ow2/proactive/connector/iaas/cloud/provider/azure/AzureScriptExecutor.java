@@ -0,0 +1,111 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.model.ScriptResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.management.compute.VirtualMachine;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Executes a script on several Azure virtual machines at once. The script extensions of the virtual machines are
+ * updated concurrently, no more than connector-iaas.azure.script-execution.max-parallelism at the same time, and the
+ * results of all the virtual machines are returned together, in the order of the virtual machines.
+ * A failure on a virtual machine is reported in its result instead of failing the others.
+ */
+@Component
+@Log4j2
+public class AzureScriptExecutor {
+
+    private final ExecutorService scriptExecutor;
+
+    @Autowired
+    public AzureScriptExecutor(@Value("${connector-iaas.azure.script-execution.max-parallelism:8}") int maxParallelism) {
+        scriptExecutor = Executors.newFixedThreadPool(Math.max(1, maxParallelism),
+                                                      new ThreadFactoryBuilder().setNameFormat("azure-script-%d")
+                                                                                .setDaemon(true)
+                                                                                .build());
+    }
+
+    /**
+     * @param vms           the virtual machines on which the script is executed
+     * @param execution     the execution of the script on a virtual machine
+     * @return  the results of the script on all the virtual machines
+     */
+    public List<ScriptResult> execute(Collection<VirtualMachine> vms,
+            Function<VirtualMachine, List<ScriptResult>> execution) {
+        if (vms.size() == 1) {
+            // Nothing to parallelize
+            return executeOn(vms.iterator().next(), execution);
+        }
+        List<CompletableFuture<List<ScriptResult>>> executions = vms.stream()
+                                                                    .map(vm -> executeAsync(vm, execution))
+                                                                    .collect(Collectors.toList());
+        return executions.stream()
+                         .map(CompletableFuture::join)
+                         .flatMap(List::stream)
+                         .collect(Collectors.toList());
+    }
+
+    private CompletableFuture<List<ScriptResult>> executeAsync(VirtualMachine vm,
+            Function<VirtualMachine, List<ScriptResult>> execution) {
+        return CompletableFuture.supplyAsync(() -> executeOn(vm, execution), scriptExecutor);
+    }
+
+    private static List<ScriptResult> executeOn(VirtualMachine vm,
+            Function<VirtualMachine, List<ScriptResult>> execution) {
+        long start = System.currentTimeMillis();
+        try {
+            return execution.apply(vm);
+        } catch (RuntimeException e) {
+            log.error("Execution of script on instance " + vm.vmId() + " failed", e);
+            ScriptResult failure = new ScriptResult(vm.vmId(), "", String.valueOf(e.getMessage()));
+            return Collections.singletonList(failure.withDuration(System.currentTimeMillis() - start));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scriptExecutor.shutdown();
+    }
+}
@@ -29,7 +29,9 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.ow2.proactive.connector.iaas.model.InfrastructureCredentials;
 import org.springframework.stereotype.Component;
@@ -49,13 +51,18 @@ import com.microsoft.rest.LogLevel;
 @Component
 public class AzureServiceBuilder {
 
-    private Map<Infrastructure, AzureTokenCredentials> generatedTokenPerInfra = new HashMap<>();
+    private Map<ClientKey, AzureTokenCredentials> generatedTokenPerInfra = new ConcurrentHashMap<>();
 
     // We store token, since they may be needed from the context of the infra (ex: pricing API)
     public AzureTokenCredentials getTokenfromInfra(Infrastructure infra) {
-        if (!generatedTokenPerInfra.containsKey(infra))
+        AzureTokenCredentials token = generatedTokenPerInfra.get(ClientKey.of(infra));
+        if (token == null)
             throw new RuntimeException("No stored token found for infrastructure " + infra.toString());
-        return generatedTokenPerInfra.get(infra);
+        return token;
+    }
+
+    public void removeToken(ClientKey key) {
+        generatedTokenPerInfra.remove(key);
     }
 
     public Azure buildServiceFromInfrastructure(Infrastructure infrastructure) {
@@ -78,7 +85,7 @@ public class AzureServiceBuilder {
         AzureEnvironment environment = getAzureEnvironment(infrastructure);
 
         AzureTokenCredentials credentials = new ApplicationTokenCredentials(clientId, domain, secret, environment);
-        generatedTokenPerInfra.put(infrastructure, credentials);
+        generatedTokenPerInfra.put(ClientKey.of(infrastructure), credentials);
 
         Azure azure;
         try {
@@ -26,15 +26,17 @@
 package org.ow2.proactive.connector.iaas.cloud.provider.azure;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
 
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.cache.ClientCache;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import com.microsoft.azure.credentials.AzureTokenCredentials;
 import com.microsoft.azure.management.Azure;
 
 
@@ -47,19 +49,24 @@ public class AzureServiceCache {
 
     public final String MANAGEMENT_URL = "https://management.azure.com/";
 
-    @Autowired
-    private AzureServiceBuilder serviceBuilder;
+    private final AzureServiceBuilder serviceBuilder;
 
-    private Map<Infrastructure, Azure> serviceCache;
+    private final long closeTimeout;
 
-    private Function<Infrastructure, Azure> buildComputeService = memoise(infrastructure -> serviceBuilder.buildServiceFromInfrastructure(infrastructure));
+    private final ClientCache<Azure> serviceCache;
 
-    public AzureServiceCache() {
-        serviceCache = new ConcurrentHashMap<>();
+    @Autowired
+    public AzureServiceCache(AzureServiceBuilder serviceBuilder,
+            @Value("${connector-iaas.client-cache.max-size:100}") long maximumSize,
+            @Value("${connector-iaas.client-cache.close-timeout:30000}") long closeTimeout) {
+        this.serviceBuilder = serviceBuilder;
+        this.closeTimeout = closeTimeout;
+        // the Azure client holds no resource to close, only its token is forgotten
+        this.serviceCache = new ClientCache<>("azure", maximumSize, this::forgetToken);
     }
 
     public Azure getService(Infrastructure infrastructure) {
-        return buildComputeService.apply(infrastructure);
+        return serviceCache.get(infrastructure, serviceBuilder::buildServiceFromInfrastructure);
     }
 
     public String getInfrastructureToken(Infrastructure infra) {
@@ -74,7 +81,16 @@ public class AzureServiceCache {
         serviceCache.remove(infrastructure);
     }
 
-    private Function<Infrastructure, Azure> memoise(Function<Infrastructure, Azure> fn) {
-        return (a) -> serviceCache.computeIfAbsent(a, fn);
+    public ClientCacheStatistics getStatistics() {
+        return serviceCache.getStatistics();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        serviceCache.closeAll(closeTimeout);
+    }
+
+    private void forgetToken(ClientKey key, Azure azure) {
+        serviceBuilder.removeToken(key);
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.compute.VirtualMachine;
+
+
+/**
+ * Per-subscription index of the ARM resource ids of the virtual machines, by vmId and by name, so that the
+ * operations on a single instance get it by resource id instead of listing the whole subscription.
+ * The index is populated from the listings and the creations, and entries are removed when the virtual machines
+ * are deleted. A stale entry is detected by the caller, as the virtual machine got by its resource id is missing or
+ * does not match anymore, and removed with {@link #forget(Azure, String, String)}.
+ */
+class AzureVirtualMachineIndex {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> resourceIdPerVmIdPerSubscription;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, String>> resourceIdPerNamePerSubscription;
+
+    AzureVirtualMachineIndex() {
+        resourceIdPerVmIdPerSubscription = new ConcurrentHashMap<>();
+        resourceIdPerNamePerSubscription = new ConcurrentHashMap<>();
+    }
+
+    void index(Azure azureService, Collection<VirtualMachine> vms) {
+        ConcurrentMap<String, String> resourceIdPerVmId = resourceIdPerVmId(azureService);
+        ConcurrentMap<String, String> resourceIdPerName = resourceIdPerName(azureService);
+        for (VirtualMachine vm : vms) {
+            if (vm.id() == null) {
+                continue;
+            }
+            if (vm.vmId() != null) {
+                resourceIdPerVmId.put(vm.vmId(), vm.id());
+            }
+            if (vm.name() != null) {
+                resourceIdPerName.put(vm.name(), vm.id());
+            }
+        }
+    }
+
+    void remove(Azure azureService, Collection<VirtualMachine> vms) {
+        ConcurrentMap<String, String> resourceIdPerVmId = resourceIdPerVmId(azureService);
+        ConcurrentMap<String, String> resourceIdPerName = resourceIdPerName(azureService);
+        for (VirtualMachine vm : vms) {
+            if (vm.vmId() != null) {
+                resourceIdPerVmId.remove(vm.vmId());
+            }
+            if (vm.name() != null) {
+                resourceIdPerName.remove(vm.name());
+            }
+        }
+    }
+
+    Optional<String> getResourceIdByVmId(Azure azureService, String vmId) {
+        return Optional.ofNullable(resourceIdPerVmId(azureService).get(vmId));
+    }
+
+    Optional<String> getResourceIdByName(Azure azureService, String name) {
+        return Optional.ofNullable(resourceIdPerName(azureService).get(name));
+    }
+
+    /**
+     * Removes the entries pointing to a resource id that did not resolve to the expected virtual machine.
+     */
+    void forget(Azure azureService, String key, String resourceId) {
+        resourceIdPerVmId(azureService).remove(key, resourceId);
+        resourceIdPerName(azureService).remove(key, resourceId);
+    }
+
+    private ConcurrentMap<String, String> resourceIdPerVmId(Azure azureService) {
+        return resourceIdPerVmIdPerSubscription.computeIfAbsent(subscription(azureService),
+                                                                subscription -> new ConcurrentHashMap<>());
+    }
+
+    private ConcurrentMap<String, String> resourceIdPerName(Azure azureService) {
+        return resourceIdPerNamePerSubscription.computeIfAbsent(subscription(azureService),
+                                                                subscription -> new ConcurrentHashMap<>());
+    }
+
+    private static String subscription(Azure azureService) {
+        return String.valueOf(azureService.subscriptionId());
+    }
+}
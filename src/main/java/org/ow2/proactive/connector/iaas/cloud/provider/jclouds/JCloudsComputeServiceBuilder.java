@@ -38,6 +38,7 @@ import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.ComputeServiceContext;
 import org.jclouds.compute.config.ComputeServiceProperties;
 import org.jclouds.sshj.config.SshjSshClientModule;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
 import org.ow2.proactive.connector.iaas.cloud.provider.jclouds.openstack.OpenstackUtil;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -85,7 +86,7 @@ public class JCloudsComputeServiceBuilder {
     @Autowired
     private OpenstackUtil openstackUtil;
 
-    private Map<Infrastructure, Properties> infrastructurePropertiesMap = new ConcurrentHashMap<>();
+    private Map<ClientKey, Properties> infrastructurePropertiesMap = new ConcurrentHashMap<>();
 
     public ComputeService buildComputeServiceFromInfrastructure(Infrastructure infrastructure) {
         Iterable<Module> modules = ImmutableSet.of(new SshjSshClientModule());
@@ -118,7 +119,12 @@ public class JCloudsComputeServiceBuilder {
     }
 
     public Properties getDefinedProperties(Infrastructure infrastructure) {
-        return infrastructurePropertiesMap.computeIfAbsent(infrastructure, this::loadDefinedProperties);
+        return infrastructurePropertiesMap.computeIfAbsent(ClientKey.of(infrastructure),
+                                                           key -> loadDefinedProperties(infrastructure));
+    }
+
+    public void removeDefinedProperties(ClientKey key) {
+        infrastructurePropertiesMap.remove(key);
     }
 
     /**
@@ -25,42 +25,56 @@
  */
 package org.ow2.proactive.connector.iaas.cloud.provider.jclouds;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import javax.annotation.PreDestroy;
 
 import org.jclouds.compute.ComputeService;
+import org.ow2.proactive.connector.iaas.cache.ClientCache;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
 @Component
 public class JCloudsComputeServiceCache {
 
-    @Autowired
-    private JCloudsComputeServiceBuilder computeServiceBuilder;
+    private final JCloudsComputeServiceBuilder computeServiceBuilder;
+
+    private final long closeTimeout;
 
-    private Map<Infrastructure, ComputeService> computeServiceCache;
+    private final ClientCache<ComputeService> computeServiceCache;
 
-    public JCloudsComputeServiceCache() {
-        computeServiceCache = new ConcurrentHashMap<Infrastructure, ComputeService>();
+    @Autowired
+    public JCloudsComputeServiceCache(JCloudsComputeServiceBuilder computeServiceBuilder,
+            @Value("${connector-iaas.client-cache.max-size:100}") long maximumSize,
+            @Value("${connector-iaas.client-cache.close-timeout:30000}") long closeTimeout) {
+        this.computeServiceBuilder = computeServiceBuilder;
+        this.closeTimeout = closeTimeout;
+        this.computeServiceCache = new ClientCache<>("jclouds", maximumSize, this::closeComputeService);
     }
 
     public ComputeService getComputeService(Infrastructure infrastructure) {
-        return buildComputeService.apply(infrastructure);
+        return computeServiceCache.get(infrastructure, computeServiceBuilder::buildComputeServiceFromInfrastructure);
     }
 
     public void removeComputeService(Infrastructure infrastructure) {
         computeServiceCache.remove(infrastructure);
     }
 
-    private Function<Infrastructure, ComputeService> buildComputeService = memoise(infrastructure -> {
-        return computeServiceBuilder.buildComputeServiceFromInfrastructure(infrastructure);
-    });
+    public ClientCacheStatistics getStatistics() {
+        return computeServiceCache.getStatistics();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        computeServiceCache.closeAll(closeTimeout);
+    }
 
-    private Function<Infrastructure, ComputeService> memoise(Function<Infrastructure, ComputeService> fn) {
-        return (a) -> computeServiceCache.computeIfAbsent(a, fn);
+    private void closeComputeService(ClientKey key, ComputeService computeService) {
+        computeServiceBuilder.removeDefinedProperties(key);
+        computeService.getContext().close();
     }
 
 }
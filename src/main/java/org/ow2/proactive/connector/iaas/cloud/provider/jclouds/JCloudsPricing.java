@@ -0,0 +1,214 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.Image;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+
+/**
+ * Prices of a JClouds cloud region, read from a pricing file of the pricing repository.
+ *
+ * The file is an array of JSON objects containing (i) hardwareId, (ii) imageId and (iii) cost. Its rows are
+ * indexed by hardwareId and by imageId, so that the node candidates are computed with hash joins against the
+ * hardware and images of the region instead of nested scans.
+ */
+public class JCloudsPricing {
+
+    private static final String HARDWARE_ID = "hardwareId";
+
+    private static final String IMAGE_ID = "imageId";
+
+    private static final String COST = "cost";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, List<PricingRow>> rowsPerHardwareId = new HashMap<>();
+
+    private final Map<String, List<PricingRow>> rowsPerImageId = new HashMap<>();
+
+    @Getter
+    private int size;
+
+    private JCloudsPricing() {
+    }
+
+    /**
+     * Reads a pricing file with the Jackson streaming parser, without materializing the JSON document.
+     * The rows without hardwareId or imageId are ignored.
+     */
+    public static JCloudsPricing parse(InputStream pricingFile) throws IOException {
+        JCloudsPricing pricing = new JCloudsPricing();
+        try (JsonParser parser = JSON_FACTORY.createParser(pricingFile)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Unable to parse the pricing file: a JSON array is expected");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    pricing.parseRow(parser);
+                } else if (token == null) {
+                    throw new IOException("Unable to parse the pricing file: unexpected end of file");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return pricing;
+    }
+
+    private void parseRow(JsonParser parser) throws IOException {
+        String hardwareId = null;
+        String imageId = null;
+        double cost = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (!value.isScalarValue()) {
+                parser.skipChildren();
+            } else if (HARDWARE_ID.equals(field)) {
+                hardwareId = parser.getValueAsString();
+            } else if (IMAGE_ID.equals(field)) {
+                imageId = parser.getValueAsString();
+            } else if (COST.equals(field)) {
+                cost = parser.getValueAsDouble(Double.NaN);
+            }
+        }
+        if (hardwareId != null && imageId != null) {
+            PricingRow row = new PricingRow(hardwareId, imageId, cost);
+            rowsPerHardwareId.computeIfAbsent(hardwareId, id -> new ArrayList<>(1)).add(row);
+            rowsPerImageId.computeIfAbsent(imageId, id -> new ArrayList<>(1)).add(row);
+            size++;
+        }
+    }
+
+    /**
+     * @param cloud             the cloud type of the node candidates
+     * @param region            the region of the node candidates
+     * @param imageReq          the string that the imageId of the selected prices must contain
+     * @param resultImages      the images available in the region
+     * @param resultHardware    the hardware available in the region
+     * @return  a node candidate per price whose hardwareId is the type of an available hardware and whose imageId
+     *          is the id of an available image, or a part of the name of one
+     */
+    public Set<NodeCandidate> getNodeCandidates(String cloud, String region, String imageReq, Set<Image> resultImages,
+            Set<Hardware> resultHardware) {
+        Map<String, Hardware> hardwarePerType = resultHardware.stream()
+                                                              .filter(hw -> rowsPerHardwareId.containsKey(hw.getType()))
+                                                              .collect(Collectors.toMap(Hardware::getType,
+                                                                                        Function.identity(),
+                                                                                        (hw1, hw2) -> hw1));
+        if (hardwarePerType.isEmpty()) {
+            return new HashSet<>();
+        }
+        Map<String, Image> imagePerId = resultImages.stream()
+                                                    .filter(image -> image.getId() != null)
+                                                    .collect(Collectors.toMap(Image::getId,
+                                                                              Function.identity(),
+                                                                              (image1, image2) -> image1));
+        List<Image> namedImages = resultImages.stream()
+                                              .filter(image -> image.getName() != null && !image.getName().isEmpty())
+                                              .collect(Collectors.toList());
+
+        Set<NodeCandidate> result = new HashSet<>();
+        rowsPerImageId.forEach((imageId, rows) -> {
+            if (!imageId.contains(imageReq)) {
+                return;
+            }
+            // The image of an imageId is resolved once, whatever the number of its prices
+            Optional<Image> image = findImage(imageId, imagePerId, namedImages);
+            if (!image.isPresent()) {
+                return;
+            }
+            for (PricingRow row : rows) {
+                Hardware hardware = hardwarePerType.get(row.getHardwareId());
+                if (hardware != null) {
+                    result.add(NodeCandidate.builder()
+                                            .cloud(cloud)
+                                            .region(region)
+                                            .hw(hardware)
+                                            .img(image.get())
+                                            .price(row.getCost())
+                                            .build());
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Image specification diverges across the cloud providers: the imageId of a price is either the id of an
+     * image, or a part of its name.
+     */
+    private static Optional<Image> findImage(String imageId, Map<String, Image> imagePerId, List<Image> namedImages) {
+        Image image = imagePerId.get(imageId);
+        if (image != null) {
+            return Optional.of(image);
+        }
+        return namedImages.stream().filter(namedImage -> namedImage.getName().contains(imageId)).findFirst();
+    }
+
+    public Set<String> getHardwareIds() {
+        return Collections.unmodifiableSet(rowsPerHardwareId.keySet());
+    }
+
+    public Set<String> getImageIds() {
+        return Collections.unmodifiableSet(rowsPerImageId.keySet());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class PricingRow {
+
+        private final String hardwareId;
+
+        private final String imageId;
+
+        private final double cost;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Pricing files of the JClouds providers, each one read and indexed once.
+ *
+ * The modification time and size of a file are checked on every access, so that a file updated in the pricing
+ * repository is read again, and a deleted one is forgotten.
+ */
+@Component
+@Log4j2
+public class JCloudsPricingRepository {
+
+    private final ConcurrentMap<Path, LoadedPricing> pricingPerFile = new ConcurrentHashMap<>();
+
+    /**
+     * @param pricingFile   the pricing file of a cloud region
+     * @return  the indexed prices of the file, or empty if the file does not exist
+     */
+    public Optional<JCloudsPricing> getPricing(Path pricingFile) throws IOException {
+        Path file = pricingFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            pricingPerFile.remove(file);
+            return Optional.empty();
+        }
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        try {
+            return Optional.of(pricingPerFile.compute(file, (path, loaded) -> {
+                if (loaded != null && loaded.getLastModified() == lastModified && loaded.getSize() == size) {
+                    return loaded;
+                }
+                return new LoadedPricing(load(path), lastModified, size);
+            }).getPricing());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static JCloudsPricing load(Path file) {
+        long start = System.currentTimeMillis();
+        try (InputStream pricingStream = Files.newInputStream(file)) {
+            JCloudsPricing pricing = JCloudsPricing.parse(pricingStream);
+            log.info(String.format("Pricing file %s: %d prices indexed in %d ms",
+                                   file,
+                                   pricing.getSize(),
+                                   System.currentTimeMillis() - start));
+            return pricing;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class LoadedPricing {
+
+        private final JCloudsPricing pricing;
+
+        private final long lastModified;
+
+        private final long size;
+    }
+}
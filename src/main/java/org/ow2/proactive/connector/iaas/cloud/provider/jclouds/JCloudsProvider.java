@@ -30,12 +30,12 @@ import static org.jclouds.scriptbuilder.domain.Statements.exec;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.domain.*;
@@ -44,13 +44,14 @@ import org.jclouds.compute.options.RunScriptOptions;
 import org.jclouds.domain.LocationScope;
 import org.jclouds.scriptbuilder.ScriptBuilder;
 import org.jclouds.scriptbuilder.domain.OsFamily;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.ow2.proactive.connector.iaas.cache.HardwareCatalogCache;
+import org.ow2.proactive.connector.iaas.cache.ImageCatalogCache;
 import org.ow2.proactive.connector.iaas.cloud.TagManager;
 import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
 import org.ow2.proactive.connector.iaas.cloud.provider.jclouds.openstack.OpenstackUtil;
 import org.ow2.proactive.connector.iaas.model.*;
 import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.HardwareProfile;
 import org.ow2.proactive.connector.iaas.model.Image;
 import org.ow2.proactive.connector.iaas.model.OperatingSystem;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -74,6 +75,15 @@ public abstract class JCloudsProvider implements CloudProvider {
     @Autowired
     private TagManager tagManager;
 
+    @Autowired
+    private JCloudsPricingRepository pricingRepository;
+
+    @Autowired
+    private ImageCatalogCache imageCatalogCache;
+
+    @Autowired
+    private HardwareCatalogCache hardwareCatalogCache;
+
     /**
      * By default, the login that will be used to connect to the instances
      * and launch the script will be 'admin'. This default can be overriden
@@ -104,6 +114,17 @@ public abstract class JCloudsProvider implements CloudProvider {
         log.info("Instance deleted successfully: " + instanceId);
     }
 
+    @Override
+    public Set<String> deleteInstancesInBatch(Infrastructure infrastructure, Set<String> instanceIds) {
+        ComputeService computeService = getComputeServiceFromInfrastructure(infrastructure);
+        Set<String> deletedInstanceIds = computeService.destroyNodesMatching(node -> instanceIds.contains(node.getId()))
+                                                       .stream()
+                                                       .map(NodeMetadata::getId)
+                                                       .collect(Collectors.toSet());
+        log.info("Instances deleted successfully: " + deletedInstanceIds);
+        return deletedInstanceIds;
+    }
+
     @Override
     public Set<Instance> getAllInfrastructureInstances(Infrastructure infrastructure) {
         try {
@@ -139,6 +160,13 @@ public abstract class JCloudsProvider implements CloudProvider {
                                                                    .collect(Collectors.toSet()));
     }
 
+    @Override
+    public Optional<Instance> getInstanceById(Infrastructure infrastructure, String instanceId) {
+        return Optional.ofNullable(getComputeServiceFromInfrastructure(infrastructure).getNodeMetadata(instanceId))
+                       .map(nodeMetadata -> (NodeMetadataImpl) nodeMetadata)
+                       .map(this::createInstanceFromNode);
+    }
+
     private Set<? extends ComputeMetadata> getAllNodes(Infrastructure infrastructure) {
         return getComputeServiceFromInfrastructure(infrastructure).listNodes();
     }
@@ -221,34 +249,48 @@ public abstract class JCloudsProvider implements CloudProvider {
     }
 
     public Set<Hardware> getHardware(Infrastructure infrastructure, Optional<String> region) {
+        return getHardwareProfiles(infrastructure).stream()
+                                                  .filter(hw -> !region.isPresent() || hw.getLocation() == null ||
+                                                                hw.getLocation().contains(region.get()))
+                                                  .map(HardwareProfile::getHardware)
+                                                  .collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<HardwareProfile> getHardwareProfiles(Infrastructure infrastructure) {
         return getComputeServiceFromInfrastructure(infrastructure).listHardwareProfiles()
                                                                   .parallelStream()
-                                                                  .filter(hw -> !region.isPresent() ||
-                                                                                hw.getLocation()
-                                                                                  .getId()
-                                                                                  .contains(region.get()))
-                                                                  .map(hw -> Hardware.builder()
-                                                                                     .minCores("" + hw.getProcessors()
-                                                                                                      .stream()
-                                                                                                      .mapToDouble(Processor::getCores)
-                                                                                                      .sum())
-                                                                                     .minRam("" + hw.getRam())
-                                                                                     .type(hw.getId())
-                                                                                     .minFreq("" + hw.getProcessors()
-                                                                                                     .stream()
-                                                                                                     .mapToDouble(Processor::getSpeed)
-                                                                                                     .sum() *
-                                                                                                   1024)
-                                                                                     .build())
-                                                                  .collect(Collectors.toSet());
+                                                                  .map(this::toHardwareProfile)
+                                                                  .collect(Collectors.toList());
+    }
+
+    private HardwareProfile toHardwareProfile(org.jclouds.compute.domain.Hardware hw) {
+        Hardware hardware = Hardware.builder()
+                                    .minCores("" + hw.getProcessors().stream().mapToDouble(Processor::getCores).sum())
+                                    .minRam("" + hw.getRam())
+                                    .type(hw.getId())
+                                    .minFreq("" +
+                                             hw.getProcessors().stream().mapToDouble(Processor::getSpeed).sum() * 1024)
+                                    .build();
+        return new HardwareProfile(hardware, hw.getLocation() == null ? null : hw.getLocation().getId());
     }
 
     @Override
     public void deleteInfrastructure(Infrastructure infrastructure) {
-        jCloudsComputeServiceCache.removeComputeService(infrastructure);
+        releaseInfrastructure(infrastructure);
         log.info("Infrastructure deleted successfully: " + infrastructure.getId());
     }
 
+    @Override
+    public void releaseInfrastructure(Infrastructure infrastructure) {
+        jCloudsComputeServiceCache.removeComputeService(infrastructure);
+    }
+
+    @Override
+    public void warmUp(Infrastructure infrastructure) {
+        getComputeServiceFromInfrastructure(infrastructure);
+    }
+
     protected final Instance createInstanceFromNode(NodeMetadataImpl nodeMetadataImpl) {
         return Instance.builder()
                        .id(nodeMetadataImpl.getId())
@@ -322,6 +364,12 @@ public abstract class JCloudsProvider implements CloudProvider {
     }
 
     public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String imageReq, String token) {
+        return getNodeCandidate(infra, region, imageReq, token, NodeCandidateQuery.all());
+    }
+
+    @Override
+    public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String imageReq, String token,
+            NodeCandidateQuery query) {
         String type = getType();
         // In this method, we will return a list of node candidates for JCloud infrastructure, that do not have their own pricing driver.
         // To make this driver generic accross cloud provider, we consider two types of providers:
@@ -333,45 +381,38 @@ public abstract class JCloudsProvider implements CloudProvider {
                                                                             infra.getAuthenticationEndpoint()).getBytes()));
             File pricingFile = new File(this.pricingRepo + File.pathSeparator + fileTag + ".json");
 
-            // Retrieve all images + filter by region and imageReq
+            // Retrieve the images of the region from the catalog + filter by imageReq
             String imageReqLowerCase = imageReq.toLowerCase();
-            Set<Image> resultImages = this.getAllImages(infra)
-                                          .parallelStream()
-                                          .filter(image -> image.getLocation().isEmpty() ||
-                                                           image.getLocation().equals(region))
-                                          .filter(img -> img.getName().toLowerCase().contains(imageReqLowerCase))
-                                          .collect(Collectors.toSet());
+            Set<Image> resultImages = imageCatalogCache.getCatalog(infra, () -> getAllImages(infra))
+                                                       .getImages(region)
+                                                       .parallelStream()
+                                                       .filter(img -> img.getName()
+                                                                         .toLowerCase()
+                                                                         .contains(imageReqLowerCase))
+                                                       .filter(query::matchesImage)
+                                                       .collect(Collectors.toSet());
 
             // Only keep a hw per "minRam-minCores-MinFreq"
-            Set<Hardware> resultHardware = this.getRegionSpecificHardware(infra, region)
-                                               .parallelStream()
-                                               .collect(Collectors.groupingBy(it -> it.getMinRam() + "-" +
-                                                                                    it.getMinCores() + "-" +
-                                                                                    it.getMinFreq()))
-                                               .values()
-                                               .parallelStream()
-                                               .map(a -> a.get(0))
-                                               .collect(Collectors.toSet());
-            if (pricingFile.exists()) {
+            Set<Hardware> resultHardware = hardwareCatalogCache.getCatalog(infra, () -> getHardwareProfiles(infra))
+                                                               .getDistinctProfiles(region)
+                                                               .stream()
+                                                               .filter(query::matchesHardware)
+                                                               .map(HardwareProfile::getHardware)
+                                                               .collect(Collectors.toSet());
+            Optional<JCloudsPricing> pricing = pricingRepository.getPricing(pricingFile.toPath());
+            if (pricing.isPresent()) {
                 // If the file exist, we are in the case of a paid cloud
-                return PagedNodeCandidates.builder()
-                                          .nextToken("")
-                                          .nodeCandidates(getPaidNodeCandidate(infra,
-                                                                               region,
-                                                                               imageReq,
-                                                                               pricingFile,
-                                                                               resultImages,
-                                                                               resultHardware))
-                                          .build();
+                return query.page(pricing.get()
+                                         .getNodeCandidates(infra.getType(),
+                                                            region,
+                                                            imageReq,
+                                                            resultImages,
+                                                            resultHardware)
+                                         .stream(),
+                                  token);
             } else {
                 // Else, we assume this is a private one with no cost.
-                return PagedNodeCandidates.builder()
-                                          .nextToken("")
-                                          .nodeCandidates(getFreeNodeCandidate(infra,
-                                                                               region,
-                                                                               resultImages,
-                                                                               resultHardware))
-                                          .build();
+                return query.page(getFreeNodeCandidate(infra, region, resultImages, resultHardware), token);
             }
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("Unable to proceed with the digest: " + e.getLocalizedMessage());
@@ -380,86 +421,21 @@ public abstract class JCloudsProvider implements CloudProvider {
         }
     }
 
-    private Set<NodeCandidate> getFreeNodeCandidate(Infrastructure infra, String region, Set<Image> resultImages,
+    /**
+     * The cross product of the hardware and images is streamed into the query, so that only the selected
+     * candidates are kept in memory.
+     */
+    private Stream<NodeCandidate> getFreeNodeCandidate(Infrastructure infra, String region, Set<Image> resultImages,
             Set<Hardware> resultHardware) {
-        return resultHardware.parallelStream()
-                             .map(hw -> resultImages.parallelStream()
-                                                    .map(image -> NodeCandidate.builder()
-                                                                               .region(region)
-                                                                               .cloud(infra.getType())
-                                                                               .hw(hw)
-                                                                               .img(image)
-                                                                               .price(0)
-                                                                               .build())
-                                                    .collect(Collectors.toSet()))
-                             .reduce((nc1, nc2) -> {
-                                 nc1.addAll(nc2);
-                                 return nc1;
-                             })
-                             .orElse(new HashSet<>());
-    }
-
-    private Set<NodeCandidate> getPaidNodeCandidate(Infrastructure infra, String region, String imageReq,
-            File pricingFile, Set<Image> resultImages, Set<Hardware> resultHardware) throws IOException {
-        // The structure of the JSON file is an array of JSON containing (i) hardwareId, (ii) imageId and (iii) cost. Each file is specific to a cloud and a region.
-        final String HARDWARE_ID = "hardwareId";
-        final String IMAGE_ID = "imageId";
-        final String COST = "cost";
-        // We constitute a list of hardwareId of the cloud region, to be seek into later on
-        List<String> listOfhardwareId = resultHardware.parallelStream()
-                                                      .map(Hardware::getType)
-                                                      .collect(Collectors.toList());
-        // We constitute multiple list of Image ID beacause image specification diverges on the Cloud infra provide.
-        List<String> listOfAvailableImageId = resultImages.parallelStream()
-                                                          .map(Image::getId)
-                                                          .distinct()
-                                                          .collect(Collectors.toList());
-        List<String> listOfAvailableImageName = resultImages.parallelStream()
-                                                            .map(Image::getName)
-                                                            .distinct()
-                                                            .filter(Objects::nonNull)
-                                                            .filter(s -> !s.isEmpty())
-                                                            .collect(Collectors.toList());
-        //  we read and proces the pricingfile.
-        String fileContent = Files.readAllLines(pricingFile.toPath()).stream().collect(Collectors.joining());
-        JSONArray princingArrayOfaRegion = new JSONArray(fileContent);
-        // JSONArray cannot be stream. We will use this constrain to enforce the JSONObject typing in the JSONArray
-        List<JSONObject> checkedPricingArray = new ArrayList<>();
-        for (Object entree : princingArrayOfaRegion) {
-            checkedPricingArray.add((JSONObject) entree);
-        }
-        // We determine the pricing to be analyzed in the region, based on which Hardware and image are available from user account.
-        List<JSONObject> releavantPricing = checkedPricingArray.parallelStream()
-                                                               .filter(Objects::nonNull)
-                                                               .filter(jo -> jo.has(HARDWARE_ID))
-                                                               .filter(jo -> jo.has(IMAGE_ID))
-                                                               .filter(jo -> listOfhardwareId.contains(jo.get(HARDWARE_ID)))
-                                                               .filter(jo -> listOfAvailableImageId.contains(jo.getString(IMAGE_ID)) ||
-                                                                             listOfAvailableImageName.stream()
-                                                                                                     .filter(s -> s.contains(jo.getString(IMAGE_ID)))
-                                                                                                     .count() > 0)
-                                                               .collect(Collectors.toList());
-        // We select pricing that are match the search criteria
-        List<JSONObject> selectedPricing = releavantPricing.parallelStream()
-                                                           .filter(jo -> jo.getString(IMAGE_ID).contains(imageReq))
-                                                           .collect(Collectors.toList());
-        // We build the nodeCandidate based on these
-        Set<NodeCandidate> result = selectedPricing.parallelStream().map(jo -> {
-            return NodeCandidate.builder()
-                                .cloud(infra.getType())
-                                .region(region)
-                                .hw(resultHardware.stream()
-                                                  .filter(hw -> hw.getType().contains(jo.getString(HARDWARE_ID)))
-                                                  .findFirst()
-                                                  .get())
-                                .img(resultImages.stream().filter(img -> {
-                                    String imageId = jo.getString(IMAGE_ID);
-                                    return img.getName().contains(imageId) || img.getId().contains(imageId);
-                                }).findFirst().get())
-                                .price(jo.optDouble(COST))
-                                .build();
-        }).collect(Collectors.toSet());
-        return result;
+        return resultHardware.stream()
+                             .flatMap(hw -> resultImages.stream()
+                                                        .map(image -> NodeCandidate.builder()
+                                                                                   .region(region)
+                                                                                   .cloud(infra.getType())
+                                                                                   .hw(hw)
+                                                                                   .img(image)
+                                                                                   .price(0)
+                                                                                   .build()));
     }
 
     /**
@@ -27,9 +27,12 @@ package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.aws;
 
 import java.util.*;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
+
 import org.apache.commons.lang3.StringUtils;
 import org.jclouds.aws.ec2.AWSEC2Api;
 import org.jclouds.aws.ec2.compute.AWSEC2TemplateOptions;
@@ -70,9 +73,6 @@ import com.google.common.collect.Sets;
 
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.pricing.PricingClient;
 import software.amazon.awssdk.services.pricing.model.*;
 
@@ -99,7 +99,7 @@ public class AWSEC2JCloudsProvider extends JCloudsProvider {
     private Map<String, SimpleImmutableEntry<String, String>> generatedKeyPairsPerAwsRegion = new HashMap<>();
 
     // Store the auto-generated security groups for each infrastructure, so that they can be removed when deleting the infrastructure.
-    public Map<String, Map<String, String>> autoGeneratedSecurityGroups = new HashMap<>();
+    public Map<String, Map<String, String>> autoGeneratedSecurityGroups = new ConcurrentHashMap<>();
 
     @Autowired
     private TagManager tagManager;
@@ -107,6 +107,17 @@ public class AWSEC2JCloudsProvider extends JCloudsProvider {
     @Autowired
     private JCloudsComputeServiceBuilder computeServiceBuilder;
 
+    @Autowired
+    private AWSPricingCache awsPricingCache;
+
+    @Autowired
+    private AWSSecurityGroupStore securityGroupStore;
+
+    @PostConstruct
+    public void loadAutoGeneratedSecurityGroups() {
+        autoGeneratedSecurityGroups.putAll(securityGroupStore.load());
+    }
+
     @Override
     public Set<Instance> createInstance(Infrastructure infrastructure, Instance instance) {
 
@@ -293,6 +304,7 @@ public class AWSEC2JCloudsProvider extends JCloudsProvider {
                 infraSg.put(securityGroupName, null);
             }
             autoGeneratedSecurityGroups.put(infrastructure.getId(), infraSg);
+            securityGroupStore.save(autoGeneratedSecurityGroups);
         }
 
         Optional.ofNullable(options.getSubnetId())
@@ -453,40 +465,56 @@ public class AWSEC2JCloudsProvider extends JCloudsProvider {
         log.info("Removed the key pair [{}] in the region [{}]", keyPairName, region);
     }
 
+    /**
+     * The node candidates of AWS are paged by the pricing API, whose page token is kept: the query is applied to
+     * each page, without paging it again.
+     */
+    @Override
+    public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String osReq, String token,
+            NodeCandidateQuery query) {
+        return query.apply(getNodeCandidate(infra, region, osReq, token));
+    }
+
     @Override
     public PagedNodeCandidates getNodeCandidate(Infrastructure infra, String region, String osReq, String token) {
         if (awsPricingRegionName == null) {
             // If the structure is not yet initialized, I prepare it.
             awsPricingRegionName = initAwsPricingRegionsMap();
         }
-        // Preparing the request to the API. Only two regions provide an endpoint for the pricing API. We arbitrarily set it to US-EAST-1.
-        PricingClient pc = PricingClient.builder()
-                                        .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(infra.getCredentials()
-                                                                                                                              .getUsername(),
-                                                                                                                         infra.getCredentials()
-                                                                                                                              .getPassword())))
-                                        .region(Region.US_EAST_1)
-                                        .build();
-        // Effectively proceed to the API call
-        GetProductsResponse pricesListResponse;
+        // Effectively proceed to the API call, unless the page is already cached
         try {
-            pricesListResponse = getProducts(pc, region, osReq, token);
+            return awsPricingCache.getPricingPage(region,
+                                                  osReq,
+                                                  token,
+                                                  () -> loadNodeCandidatePage(infra, region, osReq, token));
         } catch (InvalidNextTokenException inte) {
             return PagedNodeCandidates.builder().nextToken("").nodeCandidates(new HashSet<NodeCandidate>()).build();
         }
+    }
+
+    private PagedNodeCandidates loadNodeCandidatePage(Infrastructure infra, String region, String osReq,
+            String token) {
+        GetProductsResponse pricesListResponse = getProducts(awsPricingCache.getPricingClient(infra),
+                                                             region,
+                                                             osReq,
+                                                             token);
 
         // Interpreting response
         if (!pricesListResponse.hasPriceList()) {
             // No pricing result.
             log.info("No node candidate found");
-            return PagedNodeCandidates.builder().nextToken("").nodeCandidates(new HashSet<NodeCandidate>()).build();
+            return PagedNodeCandidates.builder()
+                                      .nextToken("")
+                                      .nodeCandidates(Collections.<NodeCandidate> emptySet())
+                                      .build();
         } else {
             // We have pricing results => We parse the Stringified-JSON structure from the API
             Set<NodeCandidate> result = productResponseToSet(pricesListResponse, region);
             log.info(String.format("%d node candidates were found.", result.stream().count()));
+            // the page is cached and shared, it must not be modified
             return PagedNodeCandidates.builder()
                                       .nextToken(pricesListResponse.nextToken())
-                                      .nodeCandidates(result)
+                                      .nodeCandidates(Collections.unmodifiableSet(result))
                                       .build();
         }
     }
@@ -639,7 +667,16 @@ public class AWSEC2JCloudsProvider extends JCloudsProvider {
         }
 
         super.deleteInfrastructure(infrastructure);
-        autoGeneratedSecurityGroups.remove(infrastructure.getId());
+        if (autoGeneratedSecurityGroups.remove(infrastructure.getId()) != null) {
+            securityGroupStore.save(autoGeneratedSecurityGroups);
+        }
+    }
+
+    @Override
+    public void releaseInfrastructure(Infrastructure infrastructure) {
+        // the auto-generated security groups are kept, the instances of the infrastructure may still use them
+        super.releaseInfrastructure(infrastructure);
+        awsPricingCache.removePricingClient(infrastructure);
     }
 
     private String getIdOrNameFromSecurityGroupName(Infrastructure infrastructure, SecurityGroupApi securityGroupApi,
@@ -0,0 +1,148 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.aws;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.cache.ClientCache;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.pricing.PricingClient;
+
+
+/**
+ * Pricing clients of the AWS infrastructures, shared by the infrastructures using the same credentials, and the
+ * node candidate pages decoded from the pricing API.
+ * The prices are the same for every account, so the pages are shared by all the infrastructures.
+ */
+@Component
+public class AWSPricingCache {
+
+    private final long closeTimeout;
+
+    private final ClientCache<PricingClient> pricingClients;
+
+    private final Cache<PricingPageKey, PagedNodeCandidates> pricingPages;
+
+    @Autowired
+    public AWSPricingCache(@Value("${connector-iaas.client-cache.max-size:100}") long maximumClients,
+            @Value("${connector-iaas.aws.pricing.cache-ttl:3600000}") long pageTimeToLive,
+            @Value("${connector-iaas.aws.pricing.cache-max-pages:2000}") long maximumPages,
+            @Value("${connector-iaas.client-cache.close-timeout:30000}") long closeTimeout) {
+        this.closeTimeout = closeTimeout;
+        this.pricingClients = new ClientCache<>("aws-pricing", maximumClients, this::closePricingClient);
+        this.pricingPages = createPricingPages(pageTimeToLive, maximumPages);
+    }
+
+    public PricingClient getPricingClient(Infrastructure infrastructure) {
+        return pricingClients.get(infrastructure, this::buildPricingClient);
+    }
+
+    public void removePricingClient(Infrastructure infrastructure) {
+        pricingClients.remove(infrastructure);
+    }
+
+    public ClientCacheStatistics getStatistics() {
+        return pricingClients.getStatistics();
+    }
+
+    /**
+     * @param loader    queries and decodes the page, called when it is not cached
+     * @return  the node candidates page of the pricing API for this region, operating system and page token
+     */
+    public PagedNodeCandidates getPricingPage(String region, String operatingSystem, String token,
+            Supplier<PagedNodeCandidates> loader) {
+        try {
+            return pricingPages.get(new PricingPageKey(region, operatingSystem, token), loader::get);
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        pricingClients.closeAll(closeTimeout);
+        pricingPages.invalidateAll();
+    }
+
+    private PricingClient buildPricingClient(Infrastructure infrastructure) {
+        // Only two regions provide an endpoint for the pricing API. We arbitrarily set it to US-EAST-1.
+        return PricingClient.builder()
+                            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(infrastructure.getCredentials()
+                                                                                                                           .getUsername(),
+                                                                                                             infrastructure.getCredentials()
+                                                                                                                           .getPassword())))
+                            .region(Region.US_EAST_1)
+                            .build();
+    }
+
+    private void closePricingClient(ClientKey key, PricingClient pricingClient) {
+        pricingClient.close();
+    }
+
+    private static Cache<PricingPageKey, PagedNodeCandidates> createPricingPages(long pageTimeToLive,
+            long maximumPages) {
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+        if (pageTimeToLive > 0) {
+            cacheBuilder.expireAfterWrite(pageTimeToLive, TimeUnit.MILLISECONDS).maximumSize(maximumPages);
+        } else {
+            cacheBuilder.maximumSize(0);
+        }
+        return cacheBuilder.build();
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class PricingPageKey {
+
+        private final String region;
+
+        private final String operatingSystem;
+
+        private final String token;
+    }
+}
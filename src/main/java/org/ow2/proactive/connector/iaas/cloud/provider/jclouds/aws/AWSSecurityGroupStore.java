@@ -0,0 +1,102 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.aws;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Saves the security groups auto-generated on AWS per infrastructure, next to the infrastructure store, so that a
+ * persisted infrastructure still removes its security groups when it is deleted after a restart. Nothing is saved
+ * when connector-iaas.infrastructure-store.enabled is false, since the infrastructures do not survive a restart.
+ */
+@Component
+@Log4j2
+public class AWSSecurityGroupStore {
+
+    static final String SECURITY_GROUPS_FILE = "aws-security-groups.json";
+
+    private static final TypeReference<Map<String, Map<String, String>>> SECURITY_GROUPS_TYPE = new TypeReference<Map<String, Map<String, String>>>() {
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path file;
+
+    @Autowired
+    public AWSSecurityGroupStore(@Value("${connector-iaas.infrastructure-store.enabled:false}") boolean enabled,
+            @Value("${connector-iaas.infrastructure-store.directory:${proactive.home:.}/data/connector-iaas}") String directory) {
+        this.file = enabled ? Paths.get(directory).resolve(SECURITY_GROUPS_FILE) : null;
+    }
+
+    /**
+     * @return the saved security groups (name to id, or to null for the default group) per infrastructure id
+     */
+    public synchronized Map<String, Map<String, String>> load() {
+        if (file == null || !Files.exists(file)) {
+            return new HashMap<>();
+        }
+        try {
+            return mapper.readValue(file.toFile(), SECURITY_GROUPS_TYPE);
+        } catch (IOException e) {
+            log.error("Unable to read the auto-generated AWS security groups from " + file, e);
+            return new HashMap<>();
+        }
+    }
+
+    public synchronized void save(Map<String, Map<String, String>> securityGroupsPerInfrastructure) {
+        if (file == null) {
+            return;
+        }
+        Map<String, Map<String, String>> securityGroups = new HashMap<>();
+        securityGroupsPerInfrastructure.forEach((infrastructureId,
+                infrastructureSecurityGroups) -> securityGroups.put(infrastructureId,
+                                                                    new HashMap<>(infrastructureSecurityGroups)));
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporaryFile = Files.createTempFile(file.getParent(), SECURITY_GROUPS_FILE, ".tmp");
+            mapper.writeValue(temporaryFile.toFile(), securityGroups);
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Unable to save the auto-generated AWS security groups in " + file, e);
+        }
+    }
+}
@@ -26,14 +26,19 @@
 package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.openstack;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.NotSupportedException;
@@ -59,9 +64,12 @@ import org.ow2.proactive.connector.iaas.model.InstanceCredentials;
 import org.ow2.proactive.connector.iaas.model.Network;
 import org.ow2.proactive.connector.iaas.model.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import com.google.common.net.InetAddresses;
+
 import lombok.Getter;
 import lombok.extern.log4j.Log4j2;
 
@@ -83,7 +91,11 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     // auto generated security group name for each instance
     private static Map<String, String> autoCreatedSgPerInstance = new HashMap<>();
 
-    private String region;
+    @Value("${connector-iaas.openstack.create.timeout:600000}")
+    private long createTimeout;
+
+    @Value("${connector-iaas.openstack.create.poll-interval:2000}")
+    private long createPollInterval;
 
     @Autowired
     private OpenstackUtil openstackUtil;
@@ -91,6 +103,9 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     @Autowired
     private TagManager tagManager;
 
+    @Autowired
+    private OpenstackServerCreationExecutor serverCreationExecutor;
+
     @Override
     public Set<Instance> createInstance(Infrastructure infrastructure, Instance instance) {
 
@@ -100,9 +115,10 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
             openstackUtil.validateOpenstackInfrastructureParameters(infrastructure);
             NovaApi novaApi = buildNovaApi(infrastructure);
 
-            region = openstackUtil.getInfrastructureRegion(infrastructure);
-            ServerApi serverApi = novaApi.getServerApi(region);
-            com.google.common.base.Optional<SecurityGroupApi> securityGroupApi = novaApi.getSecurityGroupApi(region);
+            // the region of this request is kept local, as concurrent requests may target other regions
+            String instanceRegion = openstackUtil.getInfrastructureRegion(infrastructure);
+            ServerApi serverApi = novaApi.getServerApi(instanceRegion);
+            com.google.common.base.Optional<SecurityGroupApi> securityGroupApi = novaApi.getSecurityGroupApi(instanceRegion);
             if (!securityGroupApi.isPresent()) {
                 log.warn("The support of security groups has not been found in this OpenStack instance. Therefore, the explicit configuration of security groups and the support of port opening will be disabled");
             }
@@ -115,9 +131,17 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
             }
             log.info("Openstack instance will use options: " + serverOptions.toString());
 
-            for (int i = 0; i < Integer.parseInt(instance.getNumber()); i++) {
-                Server server = createOpenstackInstance(instance, serverApi, serverOptions);
-                Instance createdInstance = this.createInstanceFromNode(server);
+            List<Server> servers;
+            try {
+                openstackUtil.validateOpenstackInstanceParameters(instance);
+                servers = createServers(instance, serverApi, serverOptions, Integer.parseInt(instance.getNumber()));
+            } catch (RuntimeException e) {
+                // No instance is returned, so nothing would ever delete the resources generated for them
+                deleteAutoCreatedResources(infrastructure, instance, serverOptions);
+                throw e;
+            }
+            for (Server server : servers) {
+                Instance createdInstance = this.createInstanceFromNode(server, instanceRegion);
                 createdInstances.add(createdInstance);
                 if (isPublicKeyNameNotSet(instance)) {
                     autoCreatedKeyNamePerInstance.put(createdInstance.getId(), serverOptions.getKeyPairName());
@@ -229,7 +253,8 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     public String addToInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
 
         NovaApi novaApi = buildNovaApi(infrastructure);
-        validatePlateformOperation(novaApi);
+        String region = openstackUtil.getInfrastructureRegion(infrastructure);
+        validatePlateformOperation(novaApi, region);
 
         FloatingIPApi api = novaApi.getFloatingIPApi(region).get();
 
@@ -261,7 +286,7 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     public void removeInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
 
         NovaApi novaApi = buildNovaApi(infrastructure);
-        FloatingIPApi api = novaApi.getFloatingIPApi(region).get();
+        FloatingIPApi api = novaApi.getFloatingIPApi(openstackUtil.getInfrastructureRegion(infrastructure)).get();
 
         // Try to retrieve a floatingIP that match with the provided IP address, otherwise get the first available
         List<FloatingIP> floatingIPs = api.list().toList();
@@ -286,7 +311,9 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     public SimpleImmutableEntry<String, String> createKeyPair(Infrastructure infrastructure, Instance instance) {
         String keyPairName = KEY_PAIR_PREFIX + "-" + UUID.randomUUID();
         NovaApi novaApi = buildNovaApi(infrastructure);
-        KeyPair keyPair = novaApi.getKeyPairApi(region).get().create(keyPairName);
+        KeyPair keyPair = novaApi.getKeyPairApi(openstackUtil.getInfrastructureRegion(infrastructure))
+                                 .get()
+                                 .create(keyPairName);
 
         log.info("Openstack key-pair created: " + keyPair.getName() + " [" + keyPair.toString() + "]");
         return new SimpleImmutableEntry<>(keyPair.getName(), keyPair.toString());
@@ -299,18 +326,94 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
 
     public void deleteKeyPair(Infrastructure infrastructure, String keyPairName) {
         NovaApi novaApi = buildNovaApi(infrastructure);
-        novaApi.getKeyPairApi(region).get().delete(keyPairName);
+        novaApi.getKeyPairApi(openstackUtil.getInfrastructureRegion(infrastructure)).get().delete(keyPairName);
         log.info("Remove the auto-generated openstack key-pair: " + keyPairName);
     }
 
-    private void validatePlateformOperation(NovaApi novaApi) {
+    private void validatePlateformOperation(NovaApi novaApi, String region) {
         if (!novaApi.getFloatingIPApi(region).isPresent()) {
             throw new NotSupportedException("Operation not supported by the targeted Openstack version");
         }
     }
 
-    private Server createOpenstackInstance(Instance instance, ServerApi serverApi, CreateServerOptions serverOptions) {
-        openstackUtil.validateOpenstackInstanceParameters(instance);
+    /**
+     * Create the servers of a request, and wait until they are active. When some of them cannot be created, or end
+     * up in ERROR, all the servers of the request are deleted, since the caller gets no instance to delete.
+     *
+     * @return the active servers
+     */
+    private List<Server> createServers(Instance instance, ServerApi serverApi, CreateServerOptions serverOptions,
+            int numberOfInstances) {
+        List<String> serverIds = submitServerCreations(instance, serverApi, serverOptions, numberOfInstances);
+        List<Server> servers;
+        try {
+            servers = waitForServers(serverApi, serverIds);
+        } catch (RuntimeException e) {
+            deleteServers(serverApi, serverIds);
+            throw e;
+        }
+        List<String> serverIdsInError = servers.stream()
+                                               .filter(server -> server.getStatus() == Server.Status.ERROR)
+                                               .map(Server::getId)
+                                               .collect(Collectors.toList());
+        if (!serverIdsInError.isEmpty()) {
+            deleteServers(serverApi, serverIds);
+            throw new RuntimeException("Unable to create " + serverIdsInError.size() + " of " + numberOfInstances +
+                                       " OpenStack instances: servers " + serverIdsInError +
+                                       " are in ERROR (deleted servers: " + serverIds + ")");
+        }
+        return servers;
+    }
+
+    /**
+     * Submit all the server creations at once, at most connector-iaas.openstack.create.max-parallelism at a time
+     * over all the requests
+     *
+     * @return the ids of the servers being created
+     */
+    private List<String> submitServerCreations(Instance instance, ServerApi serverApi,
+            CreateServerOptions serverOptions, int numberOfInstances) {
+        List<CompletableFuture<ServerCreated>> serverCreations = IntStream.range(0, numberOfInstances)
+                                                                          .mapToObj(i -> serverCreationExecutor.submit(() -> createOpenstackInstance(instance,
+                                                                                                                                                     serverApi,
+                                                                                                                                                     serverOptions)))
+                                                                          .collect(Collectors.toList());
+
+        List<String> serverIds = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (CompletableFuture<ServerCreated> serverCreation : serverCreations) {
+            try {
+                serverIds.add(serverCreation.join().getId());
+            } catch (CompletionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        if (!failures.isEmpty()) {
+            deleteServers(serverApi, serverIds);
+            RuntimeException exception = new RuntimeException("Unable to create " + failures.size() + " of " +
+                                                              numberOfInstances +
+                                                              " OpenStack instances (deleted servers: " + serverIds +
+                                                              ")", failures.get(0));
+            failures.stream().skip(1).forEach(exception::addSuppressed);
+            throw exception;
+        }
+        return serverIds;
+    }
+
+    private void deleteServers(ServerApi serverApi, List<String> serverIds) {
+        serverIds.forEach(serverId -> {
+            try {
+                if (!serverApi.delete(serverId)) {
+                    log.warn("Unable to delete the OpenStack server " + serverId);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Unable to delete the OpenStack server " + serverId, e);
+            }
+        });
+    }
+
+    private ServerCreated createOpenstackInstance(Instance instance, ServerApi serverApi,
+            CreateServerOptions serverOptions) {
         ServerCreated serverCreated = serverApi.create(instance.getTag(),
                                                        instance.getImage(),
                                                        instance.getHardware().getType(),
@@ -318,16 +421,61 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
 
         log.info("Server instance created: " + serverCreated.toString());
 
-        return serverApi.get(serverCreated.getId());
+        return serverCreated;
     }
 
-    private final Instance createInstanceFromNode(Server server) {
+    /**
+     * Wait until all the servers are ACTIVE or in ERROR, or until connector-iaas.openstack.create.timeout expires.
+     * A single server listing per poll tracks all the pending servers, instead of one request per server.
+     *
+     * @return the last known state of each server
+     */
+    private List<Server> waitForServers(ServerApi serverApi, List<String> serverIds) {
+        Map<String, Server> serverPerId = new HashMap<>();
+        Set<String> pendingServerIds = new HashSet<>(serverIds);
+        long deadline = System.currentTimeMillis() + createTimeout;
+
+        while (!pendingServerIds.isEmpty() && System.currentTimeMillis() < deadline) {
+            for (Server server : serverApi.listInDetail().concat()) {
+                if (pendingServerIds.contains(server.getId())) {
+                    serverPerId.put(server.getId(), server);
+                    if (server.getStatus() == Server.Status.ACTIVE || server.getStatus() == Server.Status.ERROR) {
+                        pendingServerIds.remove(server.getId());
+                    }
+                }
+            }
+            if (!pendingServerIds.isEmpty()) {
+                try {
+                    Thread.sleep(Math.max(1,
+                                          Math.min(createPollInterval, deadline - System.currentTimeMillis())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (!pendingServerIds.isEmpty() && createTimeout > 0) {
+            log.warn("OpenStack servers " + pendingServerIds + " are neither active nor in error after " +
+                     createTimeout + " ms");
+        }
+
+        // The servers not listed yet (e.g. when the wait is disabled) are retrieved one by one
+        return serverIds.stream()
+                        .distinct()
+                        .map(serverId -> Optional.ofNullable(serverPerId.get(serverId))
+                                                 .orElseGet(() -> serverApi.get(serverId)))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+    }
+
+    private final Instance createInstanceFromNode(Server server, String instanceRegion) {
         Instance instance = Instance.builder()
-                                    .id(region + "/" + server.getId())
+                                    .id(instanceRegion + "/" + server.getId())
                                     .tag(server.getName())
                                     .image(server.getImage().getName())
                                     .number(SINGLE_INSTANCE)
                                     .hardware(Hardware.builder().type(server.getFlavor().getName()).build())
+                                    .network(createNetworkFromServer(server))
                                     .status(server.getStatus().name())
                                     .build();
 
@@ -336,6 +484,24 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
         return instance;
     }
 
+    private Network createNetworkFromServer(Server server) {
+        if (server.getAddresses() == null) {
+            return null;
+        }
+        Map<Boolean, List<String>> addressesPerPrivacy = server.getAddresses()
+                                                              .values()
+                                                              .stream()
+                                                              .map(Address::getAddr)
+                                                              .filter(Objects::nonNull)
+                                                              .distinct()
+                                                              .collect(Collectors.partitioningBy(address -> InetAddresses.forString(address)
+                                                                                                                         .isSiteLocalAddress()));
+        return Network.builder()
+                      .publicAddresses(addressesPerPrivacy.get(false))
+                      .privateAddresses(addressesPerPrivacy.get(true))
+                      .build();
+    }
+
     @Override
     public RunScriptOptions getRunScriptOptionsWithCredentials(InstanceCredentials credentials) {
         log.info("Credentials used to execute script on instance: [username=" + credentials.getUsername() + "]");
@@ -349,6 +515,17 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
     @Override
     public void deleteInstance(Infrastructure infrastructure, String instanceId) {
         super.deleteInstance(infrastructure, instanceId);
+        deleteAutoCreatedResources(infrastructure, instanceId);
+    }
+
+    @Override
+    public Set<String> deleteInstancesInBatch(Infrastructure infrastructure, Set<String> instanceIds) {
+        Set<String> deletedInstanceIds = super.deleteInstancesInBatch(infrastructure, instanceIds);
+        deletedInstanceIds.forEach(instanceId -> deleteAutoCreatedResources(infrastructure, instanceId));
+        return deletedInstanceIds;
+    }
+
+    private void deleteAutoCreatedResources(Infrastructure infrastructure, String instanceId) {
         String keyPairName = autoCreatedKeyNamePerInstance.get(instanceId);
         if (keyPairName != null) {
             deleteKeyPair(infrastructure, keyPairName);
@@ -361,9 +538,30 @@ public class OpenstackJCloudsProvider extends JCloudsProvider {
         }
     }
 
+    /**
+     * Delete the key pair and the security group generated for the servers of a request that failed
+     */
+    private void deleteAutoCreatedResources(Infrastructure infrastructure, Instance instance,
+            CreateServerOptions serverOptions) {
+        try {
+            if (isPublicKeyNameNotSet(instance)) {
+                deleteKeyPair(infrastructure, serverOptions.getKeyPairName());
+            }
+            if (useAutoGeneratedSecurityGroup(instance)) {
+                serverOptions.getSecurityGroupNames()
+                             .stream()
+                             .findFirst()
+                             .ifPresent(sg -> deleteSecurityGroup(infrastructure, sg));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to delete the resources generated for the OpenStack instances of infrastructure " +
+                     infrastructure.getId(), e);
+        }
+    }
+
     private void deleteSecurityGroup(Infrastructure infrastructure, String securityGroupName) {
         NovaApi novaApi = buildNovaApi(infrastructure);
-        com.google.common.base.Optional<SecurityGroupApi> securityGroupApiOptional = novaApi.getSecurityGroupApi(region);
+        com.google.common.base.Optional<SecurityGroupApi> securityGroupApiOptional = novaApi.getSecurityGroupApi(openstackUtil.getInfrastructureRegion(infrastructure));
         if (!securityGroupApiOptional.isPresent()) {
             log.warn("The support of security groups has not been found in this OpenStack instance. Therefore, the explicit configuration of security groups and the support of port opening will be disabled");
         } else {
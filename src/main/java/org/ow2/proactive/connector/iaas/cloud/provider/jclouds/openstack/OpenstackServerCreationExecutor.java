@@ -0,0 +1,73 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.openstack;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+
+/**
+ * Runs the OpenStack server creations of all the requests on a single pool, so that no more than
+ * connector-iaas.openstack.create.max-parallelism servers are created at the same time, whatever the number of
+ * concurrent requests.
+ */
+@Component
+public class OpenstackServerCreationExecutor {
+
+    private final ExecutorService creationExecutor;
+
+    @Autowired
+    public OpenstackServerCreationExecutor(
+            @Value("${connector-iaas.openstack.create.max-parallelism:8}") int maxParallelism) {
+        creationExecutor = Executors.newFixedThreadPool(Math.max(1, maxParallelism),
+                                                        new ThreadFactoryBuilder().setNameFormat("openstack-server-creation-%d")
+                                                                                  .setDaemon(true)
+                                                                                  .build());
+    }
+
+    /**
+     * @param creation  the creation of a server
+     * @return  the creation, run as soon as a thread of the pool is free
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> creation) {
+        return CompletableFuture.supplyAsync(creation, creationExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        creationExecutor.shutdown();
+    }
+}
@@ -29,7 +29,9 @@ import java.rmi.RemoteException;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -45,7 +47,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.vmware.vim25.GuestProgramSpec;
+import com.vmware.vim25.ManagedObjectReference;
 import com.vmware.vim25.NamePasswordAuthentication;
 import com.vmware.vim25.OptionValue;
 import com.vmware.vim25.VirtualMachineCloneSpec;
@@ -82,6 +86,9 @@ public class VMWareProvider implements CloudProvider {
     @Autowired
     private VMWareProviderMacAddressHandler vmWareProviderMacAddressHandler;
 
+    @Autowired
+    private VMWareProviderCloneHandler vmWareProviderCloneHandler;
+
     @Autowired
     private TagManager tagManager;
 
@@ -103,22 +110,66 @@ public class VMWareProvider implements CloudProvider {
 
         List<Tag> tags = tagManager.retrieveAllTags(infrastructure.getId(), instance.getOptions());
 
-        return IntStream.rangeClosed(1, Integer.valueOf(instance.getNumber())).mapToObj(instanceIndexStartAt1 -> {
+        int numberOfInstances = Integer.valueOf(instance.getNumber());
+        if (numberOfInstances > 1 && vmWareProviderCloneHandler.isConcurrentCloneEnabled()) {
+            Map<String, VirtualMachineCloneSpec> cloneSpecPerName = new LinkedHashMap<>();
+            IntStream.rangeClosed(1, numberOfInstances).forEach(instanceIndexStartAt1 -> {
+                String uniqueInstanceTag = createUniqueInstanceTag(instance.getTag(), instanceIndexStartAt1);
+                cloneSpecPerName.put(uniqueInstanceTag,
+                                     createVirtualMachineCloneSpec(instanceIndexStartAt1,
+                                                                   vmToClone,
+                                                                   relocateSpecs,
+                                                                   instance,
+                                                                   uniqueInstanceTag,
+                                                                   tags));
+            });
+            return vmWareProviderCloneHandler.cloneVirtualMachines(vmWareServiceInstanceCache.getServiceInstance(infrastructure),
+                                                                   vmToClone,
+                                                                   destinationFolder,
+                                                                   getCloneLocation(relocateSpecs),
+                                                                   cloneSpecPerName)
+                                             .stream()
+                                             .map(vm -> instance.withId(vm.getConfig().getUuid()))
+                                             .collect(Collectors.toSet());
+        }
+
+        String cloneLocation = getCloneLocation(relocateSpecs);
+        return IntStream.rangeClosed(1, numberOfInstances).mapToObj(instanceIndexStartAt1 -> {
             String uniqueInstanceTag = createUniqueInstanceTag(instance.getTag(), instanceIndexStartAt1);
-            return cloneVM(vmToClone,
-                           uniqueInstanceTag,
-                           instance,
-                           rootFolder,
-                           createVirtualMachineCloneSpec(instanceIndexStartAt1,
-                                                         vmToClone,
-                                                         relocateSpecs,
-                                                         instance,
-                                                         uniqueInstanceTag,
-                                                         tags),
-                           destinationFolder);
+            VirtualMachineCloneSpec cloneSpec = createVirtualMachineCloneSpec(instanceIndexStartAt1,
+                                                                              vmToClone,
+                                                                              relocateSpecs,
+                                                                              instance,
+                                                                              uniqueInstanceTag,
+                                                                              tags);
+            return vmWareProviderCloneHandler.cloneWithPermit(cloneLocation,
+                                                              () -> cloneVM(vmToClone,
+                                                                            uniqueInstanceTag,
+                                                                            instance,
+                                                                            rootFolder,
+                                                                            cloneSpec,
+                                                                            destinationFolder));
         }).map(vm -> instance.withId(vm.getConfig().getUuid())).collect(Collectors.toSet());
     }
 
+    /**
+     * Identify where the clones are created, to bound the number of clones in flight on a same datastore or host
+     *
+     * @param relocateSpecs the relocation specification of the clones
+     * @return the destination datastore, or host, or resource pool of the clones
+     */
+    private String getCloneLocation(VirtualMachineRelocateSpec relocateSpecs) {
+        if (relocateSpecs.getDatastore() != null) {
+            return "datastore:" + relocateSpecs.getDatastore().getVal();
+        } else if (relocateSpecs.getHost() != null) {
+            return "host:" + relocateSpecs.getHost().getVal();
+        } else {
+            return "pool:" + Optional.ofNullable(relocateSpecs.getPool())
+                                     .map(ManagedObjectReference::getVal)
+                                     .orElse("");
+        }
+    }
+
     /**
      * Create a uniq tag for a VM based on the original tag provided and the instance index
      *
@@ -268,6 +319,14 @@ public class VMWareProvider implements CloudProvider {
                                                                    .collect(Collectors.toSet()));
     }
 
+    @Override
+    public Optional<Instance> getInstanceById(Infrastructure infrastructure, String instanceId) {
+        return vmWareProviderVirtualMachineUtil.findVirtualMachineByUUID(instanceId,
+                                                                         vmWareServiceInstanceCache.getServiceInstance(infrastructure))
+                                               .map(vm -> getInstancesFromVMs(Sets.newHashSet(vm)))
+                                               .flatMap(instances -> instances.stream().findAny());
+    }
+
     private Set<Instance> getInstancesFromVMs(Set<VirtualMachine> vms) {
         return vms.stream()
                   .filter(vm -> vm.getConfig() != null)
@@ -370,9 +429,19 @@ public class VMWareProvider implements CloudProvider {
 
     @Override
     public void deleteInfrastructure(Infrastructure infrastructure) {
+        releaseInfrastructure(infrastructure);
+    }
+
+    @Override
+    public void releaseInfrastructure(Infrastructure infrastructure) {
         vmWareServiceInstanceCache.removeServiceInstance(infrastructure);
     }
 
+    @Override
+    public void warmUp(Infrastructure infrastructure) {
+        vmWareServiceInstanceCache.getServiceInstance(infrastructure);
+    }
+
     @Override
     public String addToInstancePublicIp(Infrastructure infrastructure, String instanceId, String optionalDesiredIp) {
         throw new NotSupportedException("Operation not supported for VMWare");
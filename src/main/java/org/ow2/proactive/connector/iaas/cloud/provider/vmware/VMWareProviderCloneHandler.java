@@ -0,0 +1,389 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.vmware;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.vmware.vim25.LocalizedMethodFault;
+import com.vmware.vim25.ManagedObjectReference;
+import com.vmware.vim25.ObjectSpec;
+import com.vmware.vim25.ObjectUpdate;
+import com.vmware.vim25.PropertyChange;
+import com.vmware.vim25.PropertyFilterSpec;
+import com.vmware.vim25.PropertyFilterUpdate;
+import com.vmware.vim25.PropertySpec;
+import com.vmware.vim25.TaskInfoState;
+import com.vmware.vim25.UpdateSet;
+import com.vmware.vim25.VirtualMachineCloneSpec;
+import com.vmware.vim25.WaitOptions;
+import com.vmware.vim25.mo.Folder;
+import com.vmware.vim25.mo.PropertyCollector;
+import com.vmware.vim25.mo.PropertyFilter;
+import com.vmware.vim25.mo.ServiceInstance;
+import com.vmware.vim25.mo.Task;
+import com.vmware.vim25.mo.VirtualMachine;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Clone several VMs at once. All the clone tasks are submitted up front, up to a maximum number of clones in flight
+ * per destination location (datastore or host), and their completion is tracked with a single property collector
+ * wait instead of blocking on each task one after the other. The clones done one at a time take a permit of the same
+ * limit, so that concurrent requests cannot flood a location either.
+ */
+@Component
+@Log4j2
+public class VMWareProviderCloneHandler {
+
+    private static final String TASK_STATE = "info.state";
+
+    private static final String TASK_ERROR = "info.error";
+
+    private static final String TASK_RESULT = "info.result";
+
+    @Getter
+    private final boolean concurrentCloneEnabled;
+
+    private final int maxInFlightClones;
+
+    private final long cloneTimeout;
+
+    private final int maxWaitSeconds;
+
+    private final ConcurrentMap<String, Semaphore> inFlightClonesPerLocation = new ConcurrentHashMap<>();
+
+    @Autowired
+    public VMWareProviderCloneHandler(@Value("${connector-iaas.vmware.clone.concurrent:true}") boolean concurrentCloneEnabled,
+            @Value("${connector-iaas.vmware.clone.max-in-flight:4}") int maxInFlightClones,
+            @Value("${connector-iaas.vmware.clone.timeout:3600000}") long cloneTimeout,
+            @Value("${connector-iaas.vmware.clone.max-wait-seconds:30}") int maxWaitSeconds) {
+        this.concurrentCloneEnabled = concurrentCloneEnabled;
+        this.maxInFlightClones = Math.max(1, maxInFlightClones);
+        this.cloneTimeout = cloneTimeout;
+        this.maxWaitSeconds = Math.max(1, maxWaitSeconds);
+    }
+
+    /**
+     * Clone a VM several times and wait until all the clones are done.
+     *
+     * @param serviceInstance       the service instance of the infrastructure
+     * @param vmToClone             the VM to clone
+     * @param destinationFolder     the folder of the new VMs
+     * @param location              the destination datastore or host, which bounds the number of clones in flight
+     * @param cloneSpecPerName      the clone specification of each new VM, by VM name
+     * @return  the new VMs
+     */
+    public List<VirtualMachine> cloneVirtualMachines(ServiceInstance serviceInstance, VirtualMachine vmToClone,
+            Folder destinationFolder, String location, Map<String, VirtualMachineCloneSpec> cloneSpecPerName) {
+
+        Semaphore inFlightClones = getInFlightClones(location);
+        Deque<Map.Entry<String, VirtualMachineCloneSpec>> pendingClones = new ArrayDeque<>(cloneSpecPerName.entrySet());
+        Map<String, InFlightClone> inFlightClonePerTask = new HashMap<>();
+        List<VirtualMachine> clonedVMs = new ArrayList<>();
+        Map<String, String> errorPerName = new TreeMap<>();
+        long deadline = System.currentTimeMillis() + cloneTimeout;
+
+        // A dedicated collector, so that concurrent requests on the same session do not consume each other updates
+        PropertyCollector propertyCollector = createPropertyCollector(serviceInstance);
+        boolean allCloned = false;
+        try {
+            String version = "";
+            while (!pendingClones.isEmpty() || !inFlightClonePerTask.isEmpty()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new RuntimeException("Timeout when creating VMWare instances: " +
+                                               (pendingClones.size() + inFlightClonePerTask.size()) + " of " +
+                                               cloneSpecPerName.size() + " clones are not done after " +
+                                               cloneTimeout + " ms");
+                }
+
+                while (!pendingClones.isEmpty() &&
+                       acquire(inFlightClones, inFlightClonePerTask.isEmpty(), deadline)) {
+                    Map.Entry<String, VirtualMachineCloneSpec> pendingClone = pendingClones.poll();
+                    Optional<InFlightClone> inFlightClone = submitClone(vmToClone,
+                                                                        destinationFolder,
+                                                                        pendingClone.getKey(),
+                                                                        pendingClone.getValue(),
+                                                                        propertyCollector);
+                    if (inFlightClone.isPresent()) {
+                        inFlightClonePerTask.put(inFlightClone.get().getTask().getMOR().getVal(),
+                                                 inFlightClone.get());
+                    } else {
+                        inFlightClones.release();
+                        errorPerName.put(pendingClone.getKey(), "unable to submit the clone task");
+                    }
+                }
+                if (inFlightClonePerTask.isEmpty()) {
+                    continue;
+                }
+
+                UpdateSet updateSet = propertyCollector.waitForUpdatesEx(version, createWaitOptions(deadline));
+                if (updateSet == null) {
+                    continue;
+                }
+                version = updateSet.getVersion();
+                if (updateSet.getFilterSet() == null) {
+                    continue;
+                }
+                for (PropertyFilterUpdate filterUpdate : updateSet.getFilterSet()) {
+                    if (filterUpdate.getObjectSet() == null) {
+                        continue;
+                    }
+                    for (ObjectUpdate objectUpdate : filterUpdate.getObjectSet()) {
+                        InFlightClone inFlightClone = inFlightClonePerTask.get(objectUpdate.getObj().getVal());
+                        if (inFlightClone == null || !inFlightClone.update(objectUpdate.getChangeSet())) {
+                            continue;
+                        }
+                        inFlightClonePerTask.remove(objectUpdate.getObj().getVal());
+                        inFlightClones.release();
+                        destroyFilter(inFlightClone);
+                        if (inFlightClone.getState() == TaskInfoState.success && inFlightClone.getResult() != null) {
+                            clonedVMs.add(createVirtualMachine(serviceInstance, inFlightClone.getResult()));
+                        } else {
+                            errorPerName.put(inFlightClone.getName(),
+                                             Optional.ofNullable(inFlightClone.getError())
+                                                     .orElse("no VM returned by the clone task"));
+                        }
+                    }
+                }
+            }
+
+            if (!errorPerName.isEmpty()) {
+                throw new RuntimeException("Unable to create " + errorPerName.size() + " of " +
+                                           cloneSpecPerName.size() + " VMWare instances: " + errorPerName);
+            }
+            allCloned = true;
+            return clonedVMs;
+        } catch (RemoteException e) {
+            throw new RuntimeException("ERROR when waiting for the VMWare clone tasks", e);
+        } finally {
+            // Only reached with clones in flight when giving up: do not leave them running
+            inFlightClonePerTask.values().forEach(inFlightClone -> {
+                inFlightClones.release();
+                destroyFilter(inFlightClone);
+                cancelTask(inFlightClone);
+            });
+            destroyPropertyCollector(propertyCollector);
+            // The caller only gets the failure, so the VMs already cloned would be left behind
+            if (!allCloned) {
+                clonedVMs.forEach(this::destroyVirtualMachine);
+            }
+        }
+    }
+
+    VirtualMachine createVirtualMachine(ServiceInstance serviceInstance, ManagedObjectReference vmReference) {
+        return new VirtualMachine(serviceInstance.getServerConnection(), vmReference);
+    }
+
+    /**
+     * Run a clone done outside of cloneVirtualMachines, holding a permit of the clones in flight of its location.
+     *
+     * @param location  the destination datastore or host, which bounds the number of clones in flight
+     * @param clone     the clone, which returns once the clone task is done
+     * @return  the result of the clone
+     */
+    public <T> T cloneWithPermit(String location, Supplier<T> clone) {
+        Semaphore inFlightClones = getInFlightClones(location);
+        if (!acquire(inFlightClones, true, System.currentTimeMillis() + cloneTimeout)) {
+            throw new RuntimeException("Timeout when waiting to clone a VMWare instance on " + location + " after " +
+                                       cloneTimeout + " ms");
+        }
+        try {
+            return clone.get();
+        } finally {
+            inFlightClones.release();
+        }
+    }
+
+    private Semaphore getInFlightClones(String location) {
+        return inFlightClonesPerLocation.computeIfAbsent(location, key -> new Semaphore(maxInFlightClones));
+    }
+
+    private boolean acquire(Semaphore inFlightClones, boolean mustWait, long deadline) {
+        if (!mustWait) {
+            return inFlightClones.tryAcquire();
+        }
+        try {
+            return inFlightClones.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()),
+                                             TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to clone a VMWare instance", e);
+        }
+    }
+
+    private Optional<InFlightClone> submitClone(VirtualMachine vmToClone, Folder destinationFolder,
+            String name, VirtualMachineCloneSpec cloneSpec, PropertyCollector propertyCollector) {
+        Task task = null;
+        try {
+            // Clone the VM : call to VMWare API
+            task = vmToClone.cloneVM_Task(destinationFolder, name, cloneSpec);
+            PropertyFilter filter = propertyCollector.createFilter(createTaskFilterSpec(task), true);
+            return Optional.of(new InFlightClone(name, task, filter));
+        } catch (RemoteException | RuntimeException e) {
+            log.error("Unable to submit the clone of VMWare instance " + name, e);
+            if (task != null) {
+                try {
+                    task.cancelTask();
+                } catch (RemoteException | RuntimeException cancelException) {
+                    log.warn("Unable to cancel the clone of VMWare instance " + name, cancelException);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    private PropertyFilterSpec createTaskFilterSpec(Task task) {
+        ObjectSpec objectSpec = new ObjectSpec();
+        objectSpec.setObj(task.getMOR());
+        objectSpec.setSkip(false);
+
+        PropertySpec propertySpec = new PropertySpec();
+        propertySpec.setType("Task");
+        propertySpec.setPathSet(new String[] { TASK_STATE, TASK_ERROR, TASK_RESULT });
+
+        PropertyFilterSpec filterSpec = new PropertyFilterSpec();
+        filterSpec.setObjectSet(new ObjectSpec[] { objectSpec });
+        filterSpec.setPropSet(new PropertySpec[] { propertySpec });
+        return filterSpec;
+    }
+
+    private WaitOptions createWaitOptions(long deadline) {
+        long remainingSeconds = TimeUnit.MILLISECONDS.toSeconds(deadline - System.currentTimeMillis());
+        WaitOptions waitOptions = new WaitOptions();
+        waitOptions.setMaxWaitSeconds((int) Math.max(1, Math.min(maxWaitSeconds, remainingSeconds)));
+        return waitOptions;
+    }
+
+    private PropertyCollector createPropertyCollector(ServiceInstance serviceInstance) {
+        try {
+            return serviceInstance.getPropertyCollector().createPropertyCollector();
+        } catch (RemoteException e) {
+            throw new RuntimeException("ERROR when creating a VMWare property collector", e);
+        }
+    }
+
+    private void destroyPropertyCollector(PropertyCollector propertyCollector) {
+        try {
+            propertyCollector.destroyPropertyCollector();
+        } catch (RemoteException | RuntimeException e) {
+            log.warn("Unable to destroy the VMWare property collector", e);
+        }
+    }
+
+    private void destroyFilter(InFlightClone inFlightClone) {
+        try {
+            inFlightClone.getFilter().destroyPropertyFilter();
+        } catch (RemoteException | RuntimeException e) {
+            log.warn("Unable to destroy the property filter of the clone of VMWare instance " +
+                     inFlightClone.getName(), e);
+        }
+    }
+
+    private void cancelTask(InFlightClone inFlightClone) {
+        try {
+            inFlightClone.getTask().cancelTask();
+        } catch (RemoteException | RuntimeException e) {
+            log.warn("Unable to cancel the clone of VMWare instance " + inFlightClone.getName(), e);
+        }
+    }
+
+    private void destroyVirtualMachine(VirtualMachine vm) {
+        try {
+            // A VM which is not powered on fails to power off, which does not prevent its destruction
+            vm.powerOffVM_Task().waitForTask();
+            String result = vm.destroy_Task().waitForTask();
+            if (!Task.SUCCESS.equals(result)) {
+                log.warn("Unable to destroy the cloned VMWare instance " + vm.getMOR().getVal() +
+                         " Task result = " + result);
+            }
+        } catch (RemoteException | RuntimeException e) {
+            log.warn("Unable to destroy the cloned VMWare instance " + vm.getMOR().getVal(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while destroying the cloned VMWare instance " + vm.getMOR().getVal(), e);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class InFlightClone {
+
+        private final String name;
+
+        private final Task task;
+
+        private final PropertyFilter filter;
+
+        private TaskInfoState state;
+
+        private String error;
+
+        private ManagedObjectReference result;
+
+        /**
+         * @param changes   the task properties changes reported by the property collector
+         * @return  true if the task is done, successfully or not
+         */
+        boolean update(PropertyChange[] changes) {
+            if (changes != null) {
+                for (PropertyChange change : changes) {
+                    if (TASK_STATE.equals(change.getName()) && change.getVal() instanceof TaskInfoState) {
+                        state = (TaskInfoState) change.getVal();
+                    } else if (TASK_ERROR.equals(change.getName()) && change.getVal() instanceof LocalizedMethodFault) {
+                        error = ((LocalizedMethodFault) change.getVal()).getLocalizedMessage();
+                    } else if (TASK_RESULT.equals(change.getName()) &&
+                               change.getVal() instanceof ManagedObjectReference) {
+                        result = (ManagedObjectReference) change.getVal();
+                    }
+                }
+            }
+            if (state == TaskInfoState.error && error == null) {
+                error = "Task result = " + state;
+            }
+            return state == TaskInfoState.success || state == TaskInfoState.error;
+        }
+    }
+}
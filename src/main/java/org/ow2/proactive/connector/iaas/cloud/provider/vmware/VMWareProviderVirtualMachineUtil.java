@@ -44,6 +44,7 @@ import com.vmware.vim25.mo.HostSystem;
 import com.vmware.vim25.mo.InventoryNavigator;
 import com.vmware.vim25.mo.ManagedEntity;
 import com.vmware.vim25.mo.ResourcePool;
+import com.vmware.vim25.mo.ServiceInstance;
 import com.vmware.vim25.mo.VirtualMachine;
 
 import lombok.Getter;
@@ -86,6 +87,17 @@ public class VMWareProviderVirtualMachineUtil {
         }
     }
 
+    /**
+     * Look a virtual machine up by its BIOS UUID through the vCenter search index, without walking the inventory.
+     */
+    public Optional<VirtualMachine> findVirtualMachineByUUID(String uuid, ServiceInstance serviceInstance) {
+        try {
+            return Optional.ofNullable((VirtualMachine) serviceInstance.getSearchIndex().findByUuid(null, uuid, true));
+        } catch (RemoteException e) {
+            throw new RuntimeException("ERROR when retrieving VMWare virtual machine with UUID: " + uuid, e);
+        }
+    }
+
     public Set<VirtualMachine> getAllVirtualMachines(Folder rootFolder) {
         try {
             ManagedEntity[] managedEntities = new InventoryNavigator(rootFolder).searchManagedEntities(EntityType.VM.getValue());
@@ -25,12 +25,14 @@
  */
 package org.ow2.proactive.connector.iaas.cloud.provider.vmware;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
+import javax.annotation.PreDestroy;
 
+import org.ow2.proactive.connector.iaas.cache.ClientCache;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.vmware.vim25.mo.ServiceInstance;
@@ -39,29 +41,40 @@ import com.vmware.vim25.mo.ServiceInstance;
 @Component
 public class VMWareServiceInstanceCache {
 
-    @Autowired
-    private VMWareServiceInstanceBuilder ServiceInstanceBuilder;
+    private final VMWareServiceInstanceBuilder ServiceInstanceBuilder;
+
+    private final long closeTimeout;
 
-    private Map<Infrastructure, ServiceInstance> serviceInstanceCache;
+    private final ClientCache<ServiceInstance> serviceInstanceCache;
 
-    public VMWareServiceInstanceCache() {
-        serviceInstanceCache = new ConcurrentHashMap<Infrastructure, ServiceInstance>();
+    @Autowired
+    public VMWareServiceInstanceCache(VMWareServiceInstanceBuilder serviceInstanceBuilder,
+            @Value("${connector-iaas.client-cache.max-size:100}") long maximumSize,
+            @Value("${connector-iaas.client-cache.close-timeout:30000}") long closeTimeout) {
+        this.ServiceInstanceBuilder = serviceInstanceBuilder;
+        this.closeTimeout = closeTimeout;
+        this.serviceInstanceCache = new ClientCache<>("vmware", maximumSize, this::closeServiceInstance);
     }
 
     public ServiceInstance getServiceInstance(Infrastructure infrastructure) {
-        return buildComputeService.apply(infrastructure);
+        return serviceInstanceCache.get(infrastructure, ServiceInstanceBuilder::buildServiceInstanceFromInfrastructure);
     }
 
     public void removeServiceInstance(Infrastructure infrastructure) {
         serviceInstanceCache.remove(infrastructure);
     }
 
-    private Function<Infrastructure, ServiceInstance> buildComputeService = memoise(infrastructure -> {
-        return ServiceInstanceBuilder.buildServiceInstanceFromInfrastructure(infrastructure);
-    });
+    public ClientCacheStatistics getStatistics() {
+        return serviceInstanceCache.getStatistics();
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        serviceInstanceCache.closeAll(closeTimeout);
+    }
 
-    private Function<Infrastructure, ServiceInstance> memoise(Function<Infrastructure, ServiceInstance> fn) {
-        return (a) -> serviceInstanceCache.computeIfAbsent(a, fn);
+    private void closeServiceInstance(ClientKey key, ServiceInstance serviceInstance) {
+        serviceInstance.getServerConnection().logout();
     }
 
 }
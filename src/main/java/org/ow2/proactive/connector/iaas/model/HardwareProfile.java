@@ -0,0 +1,82 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+
+/**
+ * A hardware listed by a cloud provider, with its numeric values parsed once, so that the filters, sorts and
+ * deduplication of the node candidates do not parse the strings of the {@link Hardware} again and again.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class HardwareProfile {
+
+    private final Hardware hardware;
+
+    /**
+     * The location of the hardware, null when the hardware is available in every region of the infrastructure.
+     */
+    private final String location;
+
+    private final double cores;
+
+    private final double ram;
+
+    private final double freq;
+
+    /**
+     * Identical for the hardware with the same ram, cores and frequency, that are interchangeable as node candidates.
+     */
+    private final String dedupeKey;
+
+    public HardwareProfile(Hardware hardware, String location) {
+        this.hardware = hardware;
+        this.location = location == null || location.isEmpty() ? null : location;
+        this.cores = parse(hardware.getMinCores());
+        this.ram = parse(hardware.getMinRam());
+        this.freq = parse(hardware.getMinFreq());
+        this.dedupeKey = ram + "-" + cores + "-" + freq;
+    }
+
+    /**
+     * The hardware values are strings, unknown ones are considered as zero.
+     */
+    static double parse(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+
+/**
+ * Filtering, sorting, limit and paging of the node candidates of an infrastructure, evaluated by the cloud
+ * providers while the candidates are built.
+ *
+ * The sort key is one of price, cores or ram, prefixed by '-' for a descending order; the candidates are sorted
+ * by ascending price by default, ties being broken on the hardware type and image id, and then on the candidate id
+ * (cloud, region, hardware type, image id and price), so that no two distinct candidates have the same position. When a
+ * limit or a page size is set, only the best candidates are kept, in a heap bounded by the page size, whatever the number of
+ * candidates built. The token of the next page is a cursor holding the sort key of the last candidate of the
+ * page: the next page starts after it, so the pages are consistent as long as the candidates do not change.
+ *
+ * The providers give a negative price to the candidates whose price is unknown: these candidates never match a
+ * maximum price, and come last when sorted by price, in both orders.
+ */
+@EqualsAndHashCode
+@Getter
+@AllArgsConstructor
+@ToString
+@NoArgsConstructor
+@Builder
+public class NodeCandidateQuery {
+
+    private static final String DESCENDING_PREFIX = "-";
+
+    private static final String DEFAULT_SORT = "price";
+
+    private static final String LAST_PAGE_TOKEN = "";
+
+    /**
+     * Sort value of an unknown price, after all the known prices, negated or not.
+     */
+    private static final double UNKNOWN_PRICE_SORT_VALUE = Double.MAX_VALUE;
+
+    private static final Comparator<SortKey> SORT_KEY_ORDER = Comparator.comparingDouble(SortKey::getValue)
+                                                                        .thenComparing(SortKey::getHardwareType)
+                                                                        .thenComparing(SortKey::getImageId)
+                                                                        .thenComparing(SortKey::getCandidateId);
+
+    private Double minCores;
+
+    /**
+     * Minimum memory, in MB.
+     */
+    private Double minRam;
+
+    private Double maxPrice;
+
+    private String osFamily;
+
+    private String sort;
+
+    /**
+     * Maximum number of candidates, over all the pages.
+     */
+    private Integer limit;
+
+    /**
+     * Maximum number of candidates of a page, no paging when null or lower or equal to zero.
+     */
+    private Integer pageSize;
+
+    /**
+     * Whether the node candidates are recomputed by the provider instead of being read from their snapshot.
+     */
+    private boolean refresh;
+
+    /**
+     * @return a query keeping all the node candidates in a single page
+     */
+    public static NodeCandidateQuery all() {
+        return new NodeCandidateQuery();
+    }
+
+    public NodeCandidateQuery withPageSize(Integer pageSize) {
+        return new NodeCandidateQuery(minCores, minRam, maxPrice, osFamily, sort, limit, pageSize, refresh);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sort key or the limit are invalid
+     */
+    public void validate() {
+        sortKeyFunction();
+        if (limit != null) {
+            checkedLimit();
+        }
+    }
+
+    public boolean matchesHardware(Hardware hardware) {
+        return atLeast(HardwareProfile.parse(hardware.getMinCores()), minCores) &&
+               atLeast(HardwareProfile.parse(hardware.getMinRam()), minRam);
+    }
+
+    public boolean matchesHardware(HardwareProfile hardwareProfile) {
+        return atLeast(hardwareProfile.getCores(), minCores) && atLeast(hardwareProfile.getRam(), minRam);
+    }
+
+    public boolean matchesImage(Image image) {
+        return osFamily == null ||
+               (image.getOperatingSystem() != null && osFamily.equalsIgnoreCase(image.getOperatingSystem().getFamily()));
+    }
+
+    public boolean matches(NodeCandidate nodeCandidate) {
+        return (maxPrice == null ||
+                (isKnownPrice(nodeCandidate.getPrice()) && nodeCandidate.getPrice() <= maxPrice)) &&
+               (nodeCandidate.getHw() == null ? minCores == null && minRam == null
+                                              : matchesHardware(nodeCandidate.getHw())) &&
+               (nodeCandidate.getImg() == null ? osFamily == null : matchesImage(nodeCandidate.getImg()));
+    }
+
+    /**
+     * @param nodeCandidates    the node candidates built by a provider
+     * @return  the matching node candidates, sorted, and no more than the limit
+     */
+    public Set<NodeCandidate> select(Stream<NodeCandidate> nodeCandidates) {
+        return selectAfter(nodeCandidates, null, limit == null ? -1 : checkedLimit()).getSelected();
+    }
+
+    /**
+     * @param nodeCandidates    the node candidates built by a provider, in any order
+     * @param token             the token of the page to return, empty or null for the first page
+     * @return  the page of matching node candidates starting after the given token, and the token of the next
+     *          page, empty for the last one
+     */
+    public PagedNodeCandidates page(Stream<NodeCandidate> nodeCandidates, String token) {
+        String sortKey = sortKey();
+        NodeCandidateCursor cursor = null;
+        if (token != null && !token.isEmpty()) {
+            cursor = NodeCandidateCursor.decode(token);
+            if (!sortKey.equals(cursor.getSort())) {
+                throw new IllegalArgumentException("The node candidates token was issued for the sort " +
+                                                   cursor.getSort() + ", not for the sort " + sortKey);
+            }
+        }
+        int returned = cursor == null ? 0 : cursor.getReturned();
+        int remaining = limit == null ? -1 : Math.max(0, checkedLimit() - returned);
+        boolean paged = pageSize != null && pageSize > 0;
+        int size = !paged ? remaining : remaining < 0 ? pageSize : Math.min(pageSize, remaining);
+
+        Selection selection = selectAfter(nodeCandidates, cursor == null ? null : cursorKey(cursor), size);
+        int returnedWithPage = returned + selection.getSelected().size();
+        String nextToken = LAST_PAGE_TOKEN;
+        if (paged && selection.isTruncated() && !selection.getSelected().isEmpty() &&
+            (limit == null || returnedWithPage < limit)) {
+            SortKey last = selection.getLastKey();
+            nextToken = new NodeCandidateCursor(sortKey,
+                                                last.getValue(),
+                                                last.getHardwareType(),
+                                                last.getImageId(),
+                                                last.getCandidateId(),
+                                                returnedWithPage).encode();
+        }
+        return PagedNodeCandidates.builder().nextToken(nextToken).nodeCandidates(selection.getSelected()).build();
+    }
+
+    /**
+     * Applies the query to a page of node candidates built without it, keeping the page token of the provider.
+     */
+    public PagedNodeCandidates apply(PagedNodeCandidates page) {
+        return PagedNodeCandidates.builder()
+                                  .nextToken(page.getNextToken())
+                                  .nodeCandidates(select(page.getNodeCandidates().stream()))
+                                  .build();
+    }
+
+    /**
+     * @param size  the maximum number of candidates to select, negative for no maximum
+     */
+    private Selection selectAfter(Stream<NodeCandidate> nodeCandidates, SortKey after, int size) {
+        Function<NodeCandidate, SortKey> keyOf = sortKeyFunction();
+        Comparator<NodeCandidate> order = Comparator.comparing(keyOf, SORT_KEY_ORDER);
+        Stream<NodeCandidate> matchingNodeCandidates = nodeCandidates.filter(this::matches);
+        if (after != null) {
+            matchingNodeCandidates = matchingNodeCandidates.filter(nodeCandidate -> SORT_KEY_ORDER.compare(keyOf.apply(nodeCandidate),
+                                                                                                            after) > 0);
+        }
+        if (size < 0) {
+            Set<NodeCandidate> selected = matchingNodeCandidates.sorted(order)
+                                                                .collect(Collectors.toCollection(LinkedHashSet::new));
+            return new Selection(selected, false, null);
+        }
+
+        // The head of the heap is the worst of the best candidates found so far
+        PriorityQueue<NodeCandidate> best = new PriorityQueue<>(size + 1, order.reversed());
+        Set<NodeCandidate> bestMembers = new HashSet<>();
+        boolean[] truncated = { false };
+        matchingNodeCandidates.forEach(nodeCandidate -> {
+            if (bestMembers.add(nodeCandidate)) {
+                best.offer(nodeCandidate);
+                if (best.size() > size) {
+                    bestMembers.remove(best.poll());
+                    truncated[0] = true;
+                }
+            }
+        });
+        List<NodeCandidate> sortedBest = new ArrayList<>(best);
+        sortedBest.sort(order);
+        SortKey lastKey = sortedBest.isEmpty() ? null : keyOf.apply(sortedBest.get(sortedBest.size() - 1));
+        return new Selection(new LinkedHashSet<>(sortedBest), truncated[0], lastKey);
+    }
+
+    private int checkedLimit() {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The limit of node candidates must be positive: " + limit);
+        }
+        return limit;
+    }
+
+    private String sortKey() {
+        return sort == null || sort.trim().isEmpty() ? DEFAULT_SORT : sort.trim();
+    }
+
+    /**
+     * The value of a descending sort is negated, so that all the sort keys are compared in ascending order.
+     */
+    private Function<NodeCandidate, SortKey> sortKeyFunction() {
+        String sortKey = sortKey();
+        boolean descending = sortKey.startsWith(DESCENDING_PREFIX);
+        String field = descending ? sortKey.substring(DESCENDING_PREFIX.length()) : sortKey;
+        ToDoubleFunction<NodeCandidate> value;
+        boolean byPrice = false;
+        switch (field) {
+            case "price":
+                value = NodeCandidate::getPrice;
+                byPrice = true;
+                break;
+            case "cores":
+                value = nodeCandidate -> hardwareValue(nodeCandidate, Hardware::getMinCores);
+                break;
+            case "ram":
+                value = nodeCandidate -> hardwareValue(nodeCandidate, Hardware::getMinRam);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sort key of node candidates: " + sort +
+                                                   " (expected price, cores or ram, prefixed by '-' for a descending order)");
+        }
+        boolean unknownPricesLast = byPrice;
+        return nodeCandidate -> {
+            double sortValue;
+            if (unknownPricesLast && !isKnownPrice(nodeCandidate.getPrice())) {
+                sortValue = UNKNOWN_PRICE_SORT_VALUE;
+            } else {
+                sortValue = descending ? -value.applyAsDouble(nodeCandidate) : value.applyAsDouble(nodeCandidate);
+            }
+            String hardwareType = nodeCandidate.getHw() == null ? "" : nullToEmpty(nodeCandidate.getHw().getType());
+            String imageId = nodeCandidate.getImg() == null ? "" : nullToEmpty(nodeCandidate.getImg().getId());
+            return new SortKey(sortValue,
+                               hardwareType,
+                               imageId,
+                               String.join("/",
+                                           nullToEmpty(nodeCandidate.getCloud()),
+                                           nullToEmpty(nodeCandidate.getRegion()),
+                                           hardwareType,
+                                           imageId,
+                                           Double.toString(nodeCandidate.getPrice())));
+        };
+    }
+
+    private static SortKey cursorKey(NodeCandidateCursor cursor) {
+        return new SortKey(cursor.getValue(),
+                           nullToEmpty(cursor.getHardwareType()),
+                           nullToEmpty(cursor.getImageId()),
+                           nullToEmpty(cursor.getCandidateId()));
+    }
+
+    private static double hardwareValue(NodeCandidate nodeCandidate, Function<Hardware, String> value) {
+        return nodeCandidate.getHw() == null ? 0 : HardwareProfile.parse(value.apply(nodeCandidate.getHw()));
+    }
+
+    private static boolean isKnownPrice(double price) {
+        return price >= 0;
+    }
+
+    private static boolean atLeast(double value, Double minimum) {
+        return minimum == null || value >= minimum;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class SortKey {
+
+        private final double value;
+
+        private final String hardwareType;
+
+        private final String imageId;
+
+        private final String candidateId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Selection {
+
+        private final Set<NodeCandidate> selected;
+
+        private final boolean truncated;
+
+        private final SortKey lastKey;
+    }
+}
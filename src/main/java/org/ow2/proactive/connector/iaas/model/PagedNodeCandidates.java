@@ -27,6 +27,8 @@ package org.ow2.proactive.connector.iaas.model;
 
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.*;
 
 
@@ -41,4 +43,10 @@ public class PagedNodeCandidates {
     private String nextToken;
 
     private Set<NodeCandidate> nodeCandidates;
+
+    /**
+     * Age in milliseconds of the snapshot the node candidates are read from, if any.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long staleness;
 }
@@ -25,6 +25,8 @@
  */
 package org.ow2.proactive.connector.iaas.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -44,4 +46,14 @@ public class ScriptResult {
     private String output;
 
     private String error;
+
+    /**
+     * Duration (in milliseconds) of the execution on the instance, when measured by the provider.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long duration;
+
+    public ScriptResult(String instanceId, String output, String error) {
+        this(instanceId, output, error, null);
+    }
 }
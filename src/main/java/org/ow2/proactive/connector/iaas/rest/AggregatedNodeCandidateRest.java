@@ -0,0 +1,96 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.rest;
+
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.ow2.proactive.connector.iaas.model.AggregatedNodeCandidates;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
+import org.ow2.proactive.connector.iaas.service.NodeCandidateAggregationService;
+import org.ow2.proactive.connector.iaas.util.ErrorResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.log4j.Log4j2;
+
+
+@Path("/nodecandidates")
+@Component
+@Log4j2
+public class AggregatedNodeCandidateRest {
+
+    @Autowired
+    private NodeCandidateAggregationService nodeCandidateAggregationService;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getNodeCandidates(@QueryParam("infrastructureId") List<String> infrastructureIds,
+            @QueryParam("region") List<String> regions, @QueryParam("imageReq") String imageReq,
+            @QueryParam("minCores") Double minCores, @QueryParam("minRam") Double minRam,
+            @QueryParam("maxPrice") Double maxPrice, @QueryParam("osFamily") String osFamily,
+            @QueryParam("sort") String sort, @QueryParam("limit") Integer limit,
+            @QueryParam("refresh") boolean refresh) {
+        NodeCandidateQuery query = NodeCandidateQuery.builder()
+                                                     .minCores(minCores)
+                                                     .minRam(minRam)
+                                                     .maxPrice(maxPrice)
+                                                     .osFamily(osFamily)
+                                                     .sort(sort)
+                                                     .limit(limit)
+                                                     .refresh(refresh)
+                                                     .build();
+        try {
+            log.info("Received getNodeCandidates request for imageReq [{}] under infrastructures {} in regions {} with query [{}]",
+                     imageReq,
+                     infrastructureIds,
+                     regions,
+                     query);
+
+            AggregatedNodeCandidates result = nodeCandidateAggregationService.getNodeCandidates(infrastructureIds,
+                                                                                                regions,
+                                                                                                imageReq == null ? ""
+                                                                                                                 : imageReq,
+                                                                                                query);
+
+            return Response.ok(result).build();
+        } catch (IllegalArgumentException e) {
+            return ErrorResponse.handleIllegalArgument("For imageReq '" + imageReq + "' under infrastructures " +
+                                                       infrastructureIds + " in regions " + regions + ": " +
+                                                       e.getMessage(), e);
+        } catch (Exception e) {
+            return ErrorResponse.handleServerError("While retrieving node candidates for imageReq '" + imageReq +
+                                                   "' under infrastructures " + infrastructureIds + " in regions " +
+                                                   regions + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import javax.ws.rs.NotFoundException;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -52,10 +53,12 @@ public class ImageRest {
     @GET
     @Path("{infrastructureId}/images")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listAllImage(@PathParam("infrastructureId") String infrastructureId) {
+    public Response listAllImage(@PathParam("infrastructureId") String infrastructureId,
+            @QueryParam("region") String region) {
         try {
-            log.info("Received get all images request for infrastructureID " + infrastructureId);
-            return Response.ok(imageService.getAllImages(infrastructureId)).build();
+            log.info("Received get all images request for infrastructureID " + infrastructureId +
+                     (region == null ? "" : " in region " + region));
+            return Response.ok(imageService.getImages(infrastructureId, region)).build();
         } catch (IllegalArgumentException e) {
             return ErrorResponse.handleIllegalArgument("For infrastructureID " + infrastructureId + ": " +
                                                        e.getMessage(), e);
@@ -39,10 +39,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.ow2.proactive.connector.iaas.model.Instance;
+import org.ow2.proactive.connector.iaas.service.InstanceOperationService;
 import org.ow2.proactive.connector.iaas.service.InstanceService;
 import org.ow2.proactive.connector.iaas.util.ErrorResponse;
 import org.ow2.proactive.connector.iaas.util.JacksonUtil;
@@ -60,13 +62,24 @@ public class InstanceRest {
     @Autowired
     private InstanceService instanceService;
 
+    @Autowired
+    private InstanceOperationService instanceOperationService;
+
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     @Path("{infrastructureId}/instances")
-    public Response createInstance(@PathParam("infrastructureId") String infrastructureId, final String instanceJson) {
+    public Response createInstance(@PathParam("infrastructureId") String infrastructureId,
+            @QueryParam("async") Boolean async, final String instanceJson) {
         try {
             Instance instance = JacksonUtil.convertFromJson(instanceJson, Instance.class);
+            if (Optional.ofNullable(async).orElse(false)) {
+                log.info("Received asynchronous create request for infrastructure " + infrastructureId +
+                         " with parameters " + instance);
+                return Response.status(Response.Status.ACCEPTED)
+                               .entity(instanceOperationService.submitInstanceCreation(infrastructureId, instance))
+                               .build();
+            }
             log.info("Received create request for infrastructure " + infrastructureId + " with parameters " + instance);
             return Response.ok(instanceService.createInstance(infrastructureId, instance)).build();
         } catch (IllegalArgumentException e) {
@@ -74,6 +87,9 @@ public class InstanceRest {
                                                        e.getMessage(), e);
         } catch (NotFoundException e) {
             return ErrorResponse.handleNotFound("For infrastructureID " + infrastructureId + ": " + e.getMessage(), e);
+        } catch (ServiceUnavailableException e) {
+            return ErrorResponse.handleServiceUnavailable("For infrastructureID " + infrastructureId + ": " +
+                                                          e.getMessage(), e);
         } catch (Exception e) {
             return ErrorResponse.handleServerError("While creating instance for infrastructureID " + infrastructureId +
                                                    " with parameters " + instanceJson + ": " + e.getMessage(), e);
@@ -27,7 +27,6 @@ package org.ow2.proactive.connector.iaas.rest;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.NotFoundException;
@@ -65,32 +64,39 @@ public class InstanceScriptRest {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response executeScript(@PathParam("infrastructureId") String infrastructureId,
-            @QueryParam("instanceId") String instanceId, @QueryParam("instanceTag") String instanceTag,
+            @QueryParam("instanceId") List<String> instanceIds, @QueryParam("instanceTag") String instanceTag,
             final String instanceScriptJson) {
         try {
             log.info("Received request to execute script on infrastructure id " + infrastructureId +
-                     " and instance id " + instanceId + " and instance tag " + instanceTag);
+                     " and instance ids " + instanceIds + " and instance tag " + instanceTag);
             InstanceScript instanceScript = JacksonUtil.convertFromJson(instanceScriptJson, InstanceScript.class);
-            final List<ScriptResult> scriptResults = Optional.ofNullable(instanceId)
-                                                             .map(i -> Lists.newArrayList(instanceScriptService.executeScriptOnInstance(infrastructureId,
-                                                                                                                                        instanceId,
-                                                                                                                                        instanceScript)))
-                                                             .orElseGet(() -> Lists.newArrayList(instanceScriptService.executeScriptOnInstanceTag(infrastructureId,
-                                                                                                                                                  instanceTag,
-                                                                                                                                                  instanceScript)));
+            final List<ScriptResult> scriptResults;
+            if (instanceIds == null || instanceIds.isEmpty()) {
+                scriptResults = Lists.newArrayList(instanceScriptService.executeScriptOnInstanceTag(infrastructureId,
+                                                                                                    instanceTag,
+                                                                                                    instanceScript));
+            } else if (instanceIds.size() == 1) {
+                scriptResults = Lists.newArrayList(instanceScriptService.executeScriptOnInstance(infrastructureId,
+                                                                                                 instanceIds.get(0),
+                                                                                                 instanceScript));
+            } else {
+                scriptResults = Lists.newArrayList(instanceScriptService.executeScriptOnInstances(infrastructureId,
+                                                                                                  instanceIds,
+                                                                                                  instanceScript));
+            }
             log.info("Script results " + Arrays.toString(scriptResults.toArray()));
             return Response.ok(scriptResults).build();
         } catch (IllegalArgumentException e) {
             return ErrorResponse.handleIllegalArgument("For executing script for infrastructureID " + infrastructureId +
-                                                       " and instance id " + instanceId + " and instance tag " +
+                                                       " and instance ids " + instanceIds + " and instance tag " +
                                                        instanceTag + ": " + e.getMessage(), e);
         } catch (NotFoundException e) {
             return ErrorResponse.handleNotFound("For executing script for infrastructureID " + infrastructureId +
-                                                " and instance id " + instanceId + " and instance tag " + instanceTag +
+                                                " and instance ids " + instanceIds + " and instance tag " + instanceTag +
                                                 ": " + e.getMessage(), e);
         } catch (Exception e) {
             return ErrorResponse.handleServerError("While executing script for infrastructureID " + infrastructureId +
-                                                   " and instance id " + instanceId + " and instance tag " +
+                                                   " and instance ids " + instanceIds + " and instance tag " +
                                                    instanceTag + " :" + e.getMessage(), e);
         }
     }
@@ -29,6 +29,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
 import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
 import org.ow2.proactive.connector.iaas.service.NodeCandidateService;
 import org.ow2.proactive.connector.iaas.util.ErrorResponse;
@@ -51,18 +52,34 @@ public class NodeCandidateRest {
     @Path("{infrastructureId}/nodecandidates")
     public Response getNodeCandidate(@PathParam("infrastructureId") String infrastructureId,
             @QueryParam("region") String region, @QueryParam("imageReq") String imageReq,
-            @QueryParam("nextToken") String token) {
+            @QueryParam("nextToken") String token, @QueryParam("minCores") Double minCores,
+            @QueryParam("minRam") Double minRam, @QueryParam("maxPrice") Double maxPrice,
+            @QueryParam("osFamily") String osFamily, @QueryParam("sort") String sort,
+            @QueryParam("limit") Integer limit, @QueryParam("pageSize") Integer pageSize,
+            @QueryParam("refresh") boolean refresh) {
         try {
-            log.info("Received getNodeCandidate request for imageReq [{}] under infrastructure [{}] in region [{}] with nextToken [{}]",
+            NodeCandidateQuery query = NodeCandidateQuery.builder()
+                                                         .minCores(minCores)
+                                                         .minRam(minRam)
+                                                         .maxPrice(maxPrice)
+                                                         .osFamily(osFamily)
+                                                         .sort(sort)
+                                                         .limit(limit)
+                                                         .pageSize(pageSize)
+                                                         .refresh(refresh)
+                                                         .build();
+            log.info("Received getNodeCandidate request for imageReq [{}] under infrastructure [{}] in region [{}] with nextToken [{}] and query [{}]",
                      imageReq,
                      infrastructureId,
                      region,
-                     token);
+                     token,
+                     query);
 
             PagedNodeCandidates result = nodeCandidateService.getNodeCandidate(infrastructureId,
                                                                                region,
                                                                                imageReq,
-                                                                               token);
+                                                                               token,
+                                                                               query);
 
             return Response.ok(result).build();
         } catch (IllegalArgumentException e) {
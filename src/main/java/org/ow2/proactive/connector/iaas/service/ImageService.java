@@ -52,4 +52,19 @@ public class ImageService {
                                                                 " does not exists"));
     }
 
+    /**
+     * @param infrastructureId  the infrastructure whose images are listed
+     * @param region            the region of the images, all the regions when null
+     * @return  the images located in the region, and the images without location
+     */
+    public Set<Image> getImages(String infrastructureId, String region) {
+        if (region == null) {
+            return getAllImages(infrastructureId);
+        }
+        return Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId))
+                       .map(infrastructure -> cloudManager.getImages(infrastructure, region))
+                       .orElseThrow(() -> new NotFoundException("infrastructure id  : " + infrastructureId +
+                                                                " does not exists"));
+    }
+
 }
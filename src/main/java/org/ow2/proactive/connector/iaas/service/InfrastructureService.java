@@ -66,7 +66,32 @@ public class InfrastructureService {
         infrastructureCache.deleteInfrastructure(infrastructure);
     }
 
+    /**
+     * Delete an infrastructure which is not persisted when the connector stops, keeping its saved node candidates
+     * snapshots for the next startup.
+     */
+    public void deleteInfrastructureOnShutdown(Infrastructure infrastructure) {
+        cloudManager.deleteInfrastructure(infrastructure, false);
+        infrastructureCache.deleteInfrastructure(infrastructure);
+    }
+
+    /**
+     * Release the provider clients of an infrastructure without unregistering it nor deleting its cloud resources,
+     * so that a persisted infrastructure is still available after a restart.
+     */
+    public void releaseInfrastructure(Infrastructure infrastructure) {
+        cloudManager.releaseInfrastructure(infrastructure);
+    }
+
+    public boolean isPersistent() {
+        return infrastructureCache.isPersistent();
+    }
+
+    public void warmUp(Infrastructure infrastructure) {
+        cloudManager.warmUp(infrastructure);
+    }
+
     public Infrastructure getInfrastructure(String infrastructureId) {
-        return infrastructureCache.getSupportedInfrastructures().get(infrastructureId);
+        return infrastructureCache.getInfrastructure(infrastructureId);
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.service;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+
+import org.ow2.proactive.connector.iaas.model.Instance;
+import org.ow2.proactive.connector.iaas.model.InstanceOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Runs instance creations in the background on a bounded pool, and keeps track of their progress so that
+ * clients can poll them by operation id. The finished operations are purged once their retention time is over.
+ */
+@Service
+@Log4j2
+public class InstanceOperationService {
+
+    private final InstanceService instanceService;
+
+    private final InfrastructureService infrastructureService;
+
+    private final ThreadPoolExecutor creationExecutor;
+
+    private final ScheduledExecutorService purgeScheduler;
+
+    private final long retentionTime;
+
+    private final ConcurrentMap<String, InstanceOperation> operations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InstanceOperationService(InstanceService instanceService, InfrastructureService infrastructureService,
+            @Value("${connector-iaas.instance-operations.threads:8}") int threads,
+            @Value("${connector-iaas.instance-operations.queue-size:100}") int queueSize,
+            @Value("${connector-iaas.instance-operations.retention:3600000}") long retentionTime) {
+        this.instanceService = instanceService;
+        this.infrastructureService = infrastructureService;
+        this.retentionTime = retentionTime;
+        this.creationExecutor = new ThreadPoolExecutor(threads,
+                                                       threads,
+                                                       0L,
+                                                       TimeUnit.MILLISECONDS,
+                                                       new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                                                       new ThreadFactoryBuilder().setNameFormat("instance-creation-%d")
+                                                                                 .setDaemon(true)
+                                                                                 .build());
+        this.purgeScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("instance-operations-purge")
+                                                                                                   .setDaemon(true)
+                                                                                                   .build());
+    }
+
+    @PostConstruct
+    public void start() {
+        // Purge even when no new operation is submitted, so that idle periods do not keep the finished operations
+        long purgeInterval = Math.max(1, retentionTime);
+        purgeScheduler.scheduleWithFixedDelay(this::removeExpiredOperations,
+                                              purgeInterval,
+                                              purgeInterval,
+                                              TimeUnit.MILLISECONDS);
+    }
+
+    public InstanceOperation submitInstanceCreation(String infrastructureId, Instance instance) {
+        if (infrastructureService.getInfrastructure(infrastructureId) == null) {
+            throw new NotFoundException("infrastructure id : " + infrastructureId + " does not exists");
+        }
+        removeExpiredOperations();
+
+        InstanceOperation operation = InstanceOperation.builder()
+                                                       .id(UUID.randomUUID().toString())
+                                                       .infrastructureId(infrastructureId)
+                                                       .status(InstanceOperation.Status.PENDING)
+                                                       .requestedInstances(instance.getNumber())
+                                                       .submissionTime(System.currentTimeMillis())
+                                                       .build();
+        operations.put(operation.getId(), operation);
+
+        try {
+            creationExecutor.execute(() -> createInstance(operation.getId(), infrastructureId, instance));
+        } catch (RejectedExecutionException e) {
+            operations.remove(operation.getId());
+            throw new ServiceUnavailableException("Too many instance creations in progress, retry later");
+        }
+        return operation;
+    }
+
+    public InstanceOperation getOperation(String operationId) {
+        // An operation expired since the last purge is not returned either
+        long expirationTime = getExpirationTime();
+        operations.computeIfPresent(operationId,
+                                    (id, operation) -> isExpired(operation, expirationTime) ? null : operation);
+        return Optional.ofNullable(operations.get(operationId))
+                       .orElseThrow(() -> new NotFoundException("operation id : " + operationId +
+                                                                " does not exists"));
+    }
+
+    private void createInstance(String operationId, String infrastructureId, Instance instance) {
+        operations.computeIfPresent(operationId,
+                                    (id, operation) -> operation.withStatus(InstanceOperation.Status.RUNNING)
+                                                                .withStartTime(System.currentTimeMillis()));
+        try {
+            Set<Instance> instances = instanceService.createInstance(infrastructureId, instance);
+            operations.computeIfPresent(operationId,
+                                        (id, operation) -> operation.withStatus(InstanceOperation.Status.SUCCEEDED)
+                                                                    .withInstances(instances)
+                                                                    .withEndTime(System.currentTimeMillis()));
+        } catch (Exception e) {
+            log.error("Instance creation " + operationId + " on infrastructure " + infrastructureId + " failed", e);
+            operations.computeIfPresent(operationId,
+                                        (id, operation) -> operation.withStatus(InstanceOperation.Status.FAILED)
+                                                                    .withError(String.valueOf(e.getMessage()))
+                                                                    .withEndTime(System.currentTimeMillis()));
+        }
+    }
+
+    private void removeExpiredOperations() {
+        long expirationTime = getExpirationTime();
+        operations.values().removeIf(operation -> isExpired(operation, expirationTime));
+    }
+
+    private long getExpirationTime() {
+        return System.currentTimeMillis() - retentionTime;
+    }
+
+    private boolean isExpired(InstanceOperation operation, long expirationTime) {
+        return operation.getEndTime() != null && operation.getEndTime() < expirationTime;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeScheduler.shutdownNow();
+        creationExecutor.shutdownNow();
+    }
+}
@@ -58,6 +58,18 @@ public class InstanceScriptService {
 
     }
 
+    public List<ScriptResult> executeScriptOnInstances(String infrastructureId, List<String> instanceIds,
+            InstanceScript instanceScript) {
+
+        return Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId))
+                       .map(infrastructure -> cloudManager.executeScriptOnInstanceIds(infrastructure,
+                                                                                      instanceIds,
+                                                                                      instanceScript))
+                       .orElseThrow(() -> new NotFoundException("infrastructure id  : " + infrastructureId +
+                                                                " does not exists"));
+
+    }
+
     public List<ScriptResult> executeScriptOnInstanceTag(String infrastructureId, String instanceTag,
             InstanceScript instanceScript) {
 
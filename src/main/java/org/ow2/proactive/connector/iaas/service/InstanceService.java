@@ -57,17 +57,13 @@ public class InstanceService {
 
     public void deleteCreatedInstances(String infrastructureId) {
         Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId)).ifPresent(infrastructure -> {
-            cloudManager.getCreatedInfrastructureInstances(infrastructure).forEach(instance -> {
-                cloudManager.deleteInstance(infrastructure, instance.getId());
-            });
+            deleteInstances(infrastructure, cloudManager.getCreatedInfrastructureInstances(infrastructure));
         });
     }
 
     public void deleteAllInstances(String infrastructureId) {
         Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId)).ifPresent(infrastructure -> {
-            cloudManager.getAllInfrastructureInstances(infrastructure).forEach(instance -> {
-                cloudManager.deleteInstance(infrastructure, instance.getId());
-            });
+            deleteInstances(infrastructure, cloudManager.getAllInfrastructureInstances(infrastructure));
         });
     }
 
@@ -78,26 +74,17 @@ public class InstanceService {
     }
 
     public void deleteInstanceByTag(String infrastructureId, String instanceTag) {
-        getAllInstances(infrastructureId).stream()
-                                         .filter(instance -> instance.getTag().equals(instanceTag))
-                                         .forEach(instance -> {
-                                             Infrastructure infrastructure = infrastructureService.getInfrastructure(infrastructureId);
-                                             cloudManager.deleteInstance(infrastructure, instance.getId());
-                                         });
+        Infrastructure infrastructure = getInfrastructure(infrastructureId);
+        deleteInstances(infrastructure, cloudManager.getInfrastructureInstancesByTag(infrastructure, instanceTag));
     }
 
     public Set<Instance> getInstanceByTag(String infrastructureId, String instanceTag) {
-        return getAllInstances(infrastructureId).stream()
-                                                .filter(instance -> instance.getTag().equals(instanceTag))
-                                                .collect(Collectors.toSet());
+        return cloudManager.getInfrastructureInstancesByTag(getInfrastructure(infrastructureId), instanceTag);
     }
 
     public Instance getInstanceById(String infrastructureId, String instanceId) {
-        Set<Instance> instances = getAllInstances(infrastructureId);
-        return instances.stream()
-                        .filter(instance -> instance.getId().equals(instanceId))
-                        .findFirst()
-                        .orElseThrow(() -> new RuntimeException("Instance not found"));
+        return cloudManager.getInfrastructureInstanceById(getInfrastructure(infrastructureId), instanceId)
+                           .orElseThrow(() -> new RuntimeException("Instance not found"));
     }
 
     public Set<Instance> getAllInstances(String infrastructureId) {
@@ -144,4 +131,17 @@ public class InstanceService {
                                                                                  instance.getId(),
                                                                                  optionalDesiredIp));
     }
+
+    private void deleteInstances(Infrastructure infrastructure, Set<Instance> instances) {
+        if (!instances.isEmpty()) {
+            cloudManager.deleteInstances(infrastructure,
+                                         instances.stream().map(Instance::getId).collect(Collectors.toSet()));
+        }
+    }
+
+    private Infrastructure getInfrastructure(String infrastructureId) {
+        return Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId))
+                       .orElseThrow(() -> new NotFoundException("infrastructure id  : " + infrastructureId +
+                                                                " does not exists"));
+    }
 }
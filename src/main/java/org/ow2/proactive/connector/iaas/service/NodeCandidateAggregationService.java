@@ -0,0 +1,284 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.ow2.proactive.connector.iaas.model.AggregatedNodeCandidates;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Node candidates of several infrastructures, requested in parallel.
+ *
+ * Each infrastructure region is given the timeout of its provider type, or the default one. The node candidates
+ * of the regions answering in time are merged, sorted and limited by the query; the regions that fail or time out
+ * are only reported, so that a slow cloud does not prevent from choosing among the other ones.
+ *
+ * Each region is requested on a thread of its own, so that no request waits behind the ones of a slow cloud, and
+ * its timeout starts once its request has started. The provider calls of a timed out request are not always
+ * interruptible: its thread is then only freed when the call returns, a new thread serving the next requests.
+ */
+@Service
+@Log4j2
+public class NodeCandidateAggregationService {
+
+    private final NodeCandidateService nodeCandidateService;
+
+    private final InfrastructureService infrastructureService;
+
+    private final ExecutorService requestExecutor;
+
+    private final long defaultTimeout;
+
+    private final Map<String, Long> timeoutPerType;
+
+    @Autowired
+    public NodeCandidateAggregationService(NodeCandidateService nodeCandidateService,
+            InfrastructureService infrastructureService,
+            @Value("${connector-iaas.node-candidates.aggregation-threads:16}") int threads,
+            @Value("${connector-iaas.node-candidates.timeout:30000}") long defaultTimeout,
+            @Value("${connector-iaas.node-candidates.provider-timeouts:}") String providerTimeouts) {
+        this.nodeCandidateService = nodeCandidateService;
+        this.infrastructureService = infrastructureService;
+        this.defaultTimeout = defaultTimeout;
+        this.timeoutPerType = parseTimeouts(providerTimeouts);
+        // the threads are kept idle up to the given number, any other request being given a new thread
+        this.requestExecutor = new ThreadPoolExecutor(Math.max(0, threads),
+                                                      Integer.MAX_VALUE,
+                                                      60,
+                                                      TimeUnit.SECONDS,
+                                                      new SynchronousQueue<>(),
+                                                      new ThreadFactoryBuilder().setNameFormat("node-candidates-%d")
+                                                                                .setDaemon(true)
+                                                                                .build());
+    }
+
+    /**
+     * @param infrastructureIds the infrastructures to query, all the registered ones when empty
+     * @param regions           the regions to query in each infrastructure, the region of the infrastructure when
+     *                          empty
+     * @param imageReq          the requirements of the system image the node candidates should match
+     * @param query             the filters, sort order and limit applied to the merged node candidates
+     * @return  the merged node candidates, and the report of each infrastructure region
+     */
+    public AggregatedNodeCandidates getNodeCandidates(Collection<String> infrastructureIds,
+            Collection<String> regions, String imageReq, NodeCandidateQuery query) {
+        query.validate();
+        Collection<String> requestedIds = infrastructureIds.isEmpty() ? infrastructureService.getAllSupportedInfrastructure()
+                                                                                             .keySet()
+                                                                      : infrastructureIds;
+
+        List<NodeCandidateReport> reports = new ArrayList<>();
+        List<Request> requests = new ArrayList<>();
+        for (String infrastructureId : requestedIds) {
+            Infrastructure infrastructure = infrastructureService.getInfrastructure(infrastructureId);
+            if (infrastructure == null) {
+                reports.add(failedReport(infrastructureId, null, null, 0, "infrastructure does not exist"));
+                continue;
+            }
+            Collection<String> infrastructureRegions = regions.isEmpty() ? regionOf(infrastructure) : regions;
+            if (infrastructureRegions.isEmpty()) {
+                reports.add(failedReport(infrastructureId,
+                                         infrastructure.getType(),
+                                         null,
+                                         0,
+                                         "no region requested, and no region set on the infrastructure"));
+            }
+            for (String region : infrastructureRegions) {
+                Request request = new Request(infrastructure, region);
+                request.result = requestExecutor.submit(() -> listNodeCandidates(request, imageReq, query));
+                requests.add(request);
+            }
+        }
+
+        List<NodeCandidate> nodeCandidates = new ArrayList<>();
+        for (Request request : requests) {
+            Infrastructure infrastructure = request.infrastructure;
+            long timeout = timeoutPerType.getOrDefault(infrastructure.getType(), defaultTimeout);
+            try {
+                Result result = awaitResult(request, timeout);
+                nodeCandidates.addAll(result.nodeCandidates);
+                reports.add(NodeCandidateReport.builder()
+                                               .infrastructureId(infrastructure.getId())
+                                               .infrastructureType(infrastructure.getType())
+                                               .region(request.region)
+                                               .status(NodeCandidateReport.Status.SUCCEEDED)
+                                               .nodeCandidates(result.nodeCandidates.size())
+                                               .duration(result.duration)
+                                               .build());
+            } catch (TimeoutException e) {
+                request.result.cancel(true);
+                log.warn("Node candidates of infrastructure " + infrastructure.getId() + " in region " +
+                         request.region + " not listed within " + timeout + " ms");
+                reports.add(NodeCandidateReport.builder()
+                                               .infrastructureId(infrastructure.getId())
+                                               .infrastructureType(infrastructure.getType())
+                                               .region(request.region)
+                                               .status(NodeCandidateReport.Status.TIMED_OUT)
+                                               .duration(request.elapsedTime())
+                                               .error("no answer within " + timeout + " ms")
+                                               .build());
+            } catch (ExecutionException e) {
+                log.warn("Unable to list the node candidates of infrastructure " + infrastructure.getId() +
+                         " in region " + request.region, e.getCause());
+                reports.add(failedReport(infrastructure.getId(),
+                                         infrastructure.getType(),
+                                         request.region,
+                                         request.elapsedTime(),
+                                         String.valueOf(e.getCause().getMessage())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                requests.forEach(pendingRequest -> pendingRequest.result.cancel(true));
+                throw new IllegalStateException("Interrupted while listing the node candidates", e);
+            }
+        }
+
+        return AggregatedNodeCandidates.builder()
+                                       .nodeCandidates(query.select(nodeCandidates.stream()))
+                                       .reports(reports)
+                                       .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdownNow();
+    }
+
+    private Result listNodeCandidates(Request request, String imageReq, NodeCandidateQuery query) {
+        request.startTime = System.currentTimeMillis();
+        Set<NodeCandidate> nodeCandidates = nodeCandidateService.getAllNodeCandidates(request.infrastructure,
+                                                                                      request.region,
+                                                                                      imageReq,
+                                                                                      query);
+        return new Result(nodeCandidates, request.elapsedTime());
+    }
+
+    /**
+     * Waits for the result of a request, its timeout starting once the request has started.
+     */
+    private static Result awaitResult(Request request, long timeout)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            long startTime = request.startTime;
+            long remainingTime = startTime == 0 ? timeout : startTime + timeout - System.currentTimeMillis();
+            try {
+                return request.result.get(Math.max(0, remainingTime), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (request.startTime != 0 && request.startTime + timeout <= System.currentTimeMillis()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Collection<String> regionOf(Infrastructure infrastructure) {
+        String region = infrastructure.getRegion();
+        return region == null || region.isEmpty() ? Collections.emptyList() : Collections.singletonList(region);
+    }
+
+    private static NodeCandidateReport failedReport(String infrastructureId, String infrastructureType, String region,
+            long duration, String error) {
+        return NodeCandidateReport.builder()
+                                  .infrastructureId(infrastructureId)
+                                  .infrastructureType(infrastructureType)
+                                  .region(region)
+                                  .status(NodeCandidateReport.Status.FAILED)
+                                  .duration(duration)
+                                  .error(error)
+                                  .build();
+    }
+
+    /**
+     * Parses the timeouts per provider type, formatted as type=milliseconds,type=milliseconds
+     */
+    private static Map<String, Long> parseTimeouts(String providerTimeouts) {
+        return Splitter.on(',')
+                       .trimResults()
+                       .omitEmptyStrings()
+                       .withKeyValueSeparator(Splitter.on('=').trimResults())
+                       .split(providerTimeouts)
+                       .entrySet()
+                       .stream()
+                       .collect(Collectors.toMap(Map.Entry::getKey, entry -> Long.parseLong(entry.getValue())));
+    }
+
+    @RequiredArgsConstructor
+    private static class Request {
+
+        private final Infrastructure infrastructure;
+
+        private final String region;
+
+        private Future<Result> result;
+
+        /**
+         * Time at which the request started, 0 while it waits for a thread.
+         */
+        private volatile long startTime;
+
+        private long elapsedTime() {
+            long started = startTime;
+            return started == 0 ? 0 : System.currentTimeMillis() - started;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Result {
+
+        private final Set<NodeCandidate> nodeCandidates;
+
+        private final long duration;
+    }
+}
@@ -25,13 +25,19 @@
  */
 package org.ow2.proactive.connector.iaas.service;
 
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.ws.rs.NotFoundException;
 
 import org.ow2.proactive.connector.iaas.cloud.CloudManager;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
 import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 
@@ -44,11 +50,40 @@ public class NodeCandidateService {
     @Autowired
     private CloudManager cloudManager;
 
-    public PagedNodeCandidates getNodeCandidate(String infrastructureId, String region, String imageReq, String token) {
+    @Value("${connector-iaas.node-candidates.page-size:1000}")
+    private int defaultPageSize;
+
+    /**
+     * The node candidates are paged by the configured page size, unless the query sets its own.
+     */
+    public PagedNodeCandidates getNodeCandidate(String infrastructureId, String region, String imageReq, String token,
+            NodeCandidateQuery query) {
+        NodeCandidateQuery pagedQuery = query.getPageSize() == null ? query.withPageSize(defaultPageSize) : query;
         return Optional.ofNullable(infrastructureService.getInfrastructure(infrastructureId))
-                       .map(infra -> cloudManager.getNodeCandidate(infra, region, imageReq, token))
+                       .map(infra -> cloudManager.getNodeCandidate(infra, region, imageReq, token, pagedQuery))
                        .orElseThrow(() -> new NotFoundException("infrastructure id  : " + infrastructureId +
                                                                 " does not exists"));
     }
 
+    /**
+     * @return all the node candidates of a region matching the query, following the pages of the provider until
+     *         the last one, or until the calling thread is interrupted
+     */
+    public Set<NodeCandidate> getAllNodeCandidates(Infrastructure infrastructure, String region, String imageReq,
+            NodeCandidateQuery query) {
+        NodeCandidateQuery unpagedQuery = query.withPageSize(null);
+        Set<NodeCandidate> nodeCandidates = new HashSet<>();
+        String token = null;
+        do {
+            PagedNodeCandidates page = cloudManager.getNodeCandidate(infrastructure,
+                                                                     region,
+                                                                     imageReq,
+                                                                     token,
+                                                                     unpagedQuery);
+            nodeCandidates.addAll(page.getNodeCandidates());
+            token = page.getNextToken();
+        } while (token != null && !token.isEmpty() && !Thread.currentThread().isInterrupted());
+        return query.select(nodeCandidates.stream());
+    }
+
 }
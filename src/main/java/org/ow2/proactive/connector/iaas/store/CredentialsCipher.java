@@ -0,0 +1,139 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * Encrypts the infrastructure credentials at rest with AES-GCM. Each value gets its own random IV, stored in front
+ * of the cipher text.
+ */
+@Log4j2
+class CredentialsCipher {
+
+    private static final String ALGORITHM = "AES";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int KEY_LENGTH_BYTES = 32;
+
+    private static final int IV_LENGTH_BYTES = 12;
+
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private final SecretKeySpec key;
+
+    CredentialsCipher(byte[] key) {
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("The infrastructure store key must be 16, 24 or 32 bytes long, not " +
+                                               key.length);
+        }
+        this.key = new SecretKeySpec(key, ALGORITHM);
+    }
+
+    /**
+     * @param base64Key the configured key, encoded in base64, if any
+     * @param keyFile   the file holding the key, generated when missing and when no key is configured
+     * @return  a cipher using the configured key, or the key of the key file
+     */
+    static CredentialsCipher fromConfiguredKeyOrKeyFile(String base64Key, Path keyFile) {
+        if (base64Key != null && !base64Key.isEmpty()) {
+            return new CredentialsCipher(Base64.getDecoder().decode(base64Key.trim()));
+        }
+        try {
+            if (!Files.exists(keyFile)) {
+                byte[] key = new byte[KEY_LENGTH_BYTES];
+                new SecureRandom().nextBytes(key);
+                createOwnerOnlyFile(keyFile);
+                Files.write(keyFile, Base64.getEncoder().encode(key));
+                log.info("Generated the infrastructure store key " + keyFile);
+            }
+            return new CredentialsCipher(Base64.getDecoder()
+                                               .decode(new String(Files.readAllBytes(keyFile),
+                                                                  StandardCharsets.US_ASCII).trim()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the infrastructure store key " + keyFile, e);
+        }
+    }
+
+    String encrypt(String plainText) {
+        try {
+            byte[] iv = new byte[IV_LENGTH_BYTES];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] cipherText = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder()
+                         .encodeToString(ByteBuffer.allocate(iv.length + cipherText.length)
+                                                   .put(iv)
+                                                   .put(cipherText)
+                                                   .array());
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Unable to encrypt the infrastructure credentials", e);
+        }
+    }
+
+    String decrypt(String encrypted) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encrypted));
+            byte[] iv = new byte[IV_LENGTH_BYTES];
+            buffer.get(iv);
+            byte[] cipherText = new byte[buffer.remaining()];
+            buffer.get(cipherText);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            return new String(cipher.doFinal(cipherText), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new RuntimeException("Unable to decrypt the infrastructure credentials", e);
+        }
+    }
+
+    private static void createOwnerOnlyFile(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            log.warn("Unable to restrict the permissions of " + file + " on this file system");
+            Files.createFile(file);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.store;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.extern.log4j.Log4j2;
+
+
+/**
+ * File based infrastructure store, enabled by connector-iaas.infrastructure-store.enabled=true.
+ *
+ * Every registration and deletion is appended to a journal, one JSON entry per line, so that a mutation costs a
+ * single small write. The journal is replayed at startup, where only a partially written last entry is ignored, and
+ * rewritten with the live infrastructures only once it holds more than
+ * connector-iaas.infrastructure-store.compaction-threshold entries, most of them outdated.
+ * The credentials of the infrastructures are encrypted with the key connector-iaas.infrastructure-store.key, or
+ * with a key generated in the store directory when no key is configured.
+ */
+@Component
+@ConditionalOnProperty(name = "connector-iaas.infrastructure-store.enabled", havingValue = "true")
+@Log4j2
+public class FileInfrastructureStore implements InfrastructureStore {
+
+    static final String JOURNAL_FILE = "infrastructures.journal";
+
+    static final String KEY_FILE = "infrastructures.key";
+
+    private static final String OPERATION = "op";
+
+    private static final String ID = "id";
+
+    private static final String INFRASTRUCTURE = "infrastructure";
+
+    private static final String CREDENTIALS = "credentials";
+
+    private static final String ENCRYPTED_CREDENTIALS = "encryptedCredentials";
+
+    private static final String PUT = "PUT";
+
+    private static final String DELETE = "DELETE";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path journal;
+
+    private final CredentialsCipher credentialsCipher;
+
+    private final int compactionThreshold;
+
+    /**
+     * The stored form (credentials encrypted) of the live infrastructures, to rewrite the journal on compaction.
+     */
+    private final Map<String, ObjectNode> storedInfrastructures = new LinkedHashMap<>();
+
+    private int journalEntries = 0;
+
+    @Autowired
+    public FileInfrastructureStore(
+            @Value("${connector-iaas.infrastructure-store.directory:${proactive.home:.}/data/connector-iaas}") String directory,
+            @Value("${connector-iaas.infrastructure-store.key:}") String base64Key,
+            @Value("${connector-iaas.infrastructure-store.compaction-threshold:1000}") int compactionThreshold) {
+        Path storeDirectory = Paths.get(directory);
+        try {
+            Files.createDirectories(storeDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create the infrastructure store directory " + storeDirectory, e);
+        }
+        this.journal = storeDirectory.resolve(JOURNAL_FILE);
+        this.credentialsCipher = CredentialsCipher.fromConfiguredKeyOrKeyFile(base64Key,
+                                                                              storeDirectory.resolve(KEY_FILE));
+        this.compactionThreshold = Math.max(1, compactionThreshold);
+        replayJournal();
+    }
+
+    @Override
+    public synchronized Map<String, Infrastructure> loadAll() {
+        Map<String, Infrastructure> infrastructures = new LinkedHashMap<>();
+        storedInfrastructures.forEach((infrastructureId, storedInfrastructure) -> {
+            try {
+                infrastructures.put(infrastructureId, fromStoredForm(storedInfrastructure));
+            } catch (RuntimeException e) {
+                log.error("Unable to restore the stored infrastructure " + infrastructureId, e);
+            }
+        });
+        return infrastructures;
+    }
+
+    @Override
+    public synchronized void save(Infrastructure infrastructure) {
+        ObjectNode storedInfrastructure = toStoredForm(infrastructure);
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put(OPERATION, PUT);
+        entry.put(ID, infrastructure.getId());
+        entry.set(INFRASTRUCTURE, storedInfrastructure);
+        append(entry);
+        storedInfrastructures.put(infrastructure.getId(), storedInfrastructure);
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void delete(String infrastructureId) {
+        if (!storedInfrastructures.containsKey(infrastructureId)) {
+            return;
+        }
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put(OPERATION, DELETE);
+        entry.put(ID, infrastructureId);
+        append(entry);
+        storedInfrastructures.remove(infrastructureId);
+        compactIfNeeded();
+    }
+
+    private void replayJournal() {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the infrastructure journal " + journal, e);
+        }
+
+        int lastEntry = lines.size() - 1;
+        while (lastEntry >= 0 && lines.get(lastEntry).trim().isEmpty()) {
+            lastEntry--;
+        }
+        boolean corrupted = false;
+        for (int index = 0; index <= lastEntry; index++) {
+            String line = lines.get(index);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                JsonNode entry = mapper.readTree(line);
+                String infrastructureId = entry.get(ID).asText();
+                if (PUT.equals(entry.get(OPERATION).asText())) {
+                    storedInfrastructures.put(infrastructureId, (ObjectNode) entry.get(INFRASTRUCTURE));
+                } else {
+                    storedInfrastructures.remove(infrastructureId);
+                }
+                journalEntries++;
+            } catch (IOException | RuntimeException e) {
+                if (index < lastEntry) {
+                    // skipping it could restore a deleted infrastructure, or lose a registration
+                    throw new RuntimeException("The infrastructure journal " + journal + " is corrupted at line " +
+                                               (index + 1), e);
+                }
+                // the last entry, partially written when the connector was stopped
+                log.warn("Ignoring the unreadable last entry of the infrastructure journal " + journal, e);
+                corrupted = true;
+            }
+        }
+        log.info("Loaded " + storedInfrastructures.size() + " infrastructures from " + journal);
+
+        if (corrupted) {
+            compact();
+        } else {
+            compactIfNeeded();
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (journalEntries > compactionThreshold && journalEntries > 2 * storedInfrastructures.size()) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        Path compactedJournal = journal.resolveSibling(JOURNAL_FILE + ".tmp");
+        List<String> lines = storedInfrastructures.entrySet().stream().map(storedInfrastructure -> {
+            ObjectNode entry = mapper.createObjectNode();
+            entry.put(OPERATION, PUT);
+            entry.put(ID, storedInfrastructure.getKey());
+            entry.set(INFRASTRUCTURE, storedInfrastructure.getValue());
+            return entry.toString();
+        }).collect(Collectors.toList());
+        try {
+            Files.write(compactedJournal,
+                        lines,
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.DSYNC);
+            Files.move(compactedJournal,
+                       journal,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Compacted the infrastructure journal from " + journalEntries + " to " + lines.size() +
+                      " entries");
+            journalEntries = lines.size();
+        } catch (IOException e) {
+            // the journal is still complete, the compaction will be tried again on the next mutation
+            log.error("Unable to compact the infrastructure journal " + journal, e);
+        }
+    }
+
+    private void append(ObjectNode entry) {
+        try {
+            Files.write(journal,
+                        (entry.toString() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND,
+                        StandardOpenOption.DSYNC);
+            journalEntries++;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to persist infrastructure " + entry.get(ID).asText(), e);
+        }
+    }
+
+    private ObjectNode toStoredForm(Infrastructure infrastructure) {
+        ObjectNode storedInfrastructure = mapper.valueToTree(infrastructure);
+        JsonNode credentials = storedInfrastructure.remove(CREDENTIALS);
+        if (credentials != null && !credentials.isNull()) {
+            storedInfrastructure.put(ENCRYPTED_CREDENTIALS, credentialsCipher.encrypt(credentials.toString()));
+        }
+        return storedInfrastructure;
+    }
+
+    private Infrastructure fromStoredForm(ObjectNode storedInfrastructure) {
+        ObjectNode infrastructure = storedInfrastructure.deepCopy();
+        JsonNode encryptedCredentials = infrastructure.remove(ENCRYPTED_CREDENTIALS);
+        try {
+            if (encryptedCredentials != null) {
+                infrastructure.set(CREDENTIALS, mapper.readTree(credentialsCipher.decrypt(encryptedCredentials.asText())));
+            }
+            return mapper.treeToValue(infrastructure, Infrastructure.class);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the stored infrastructure " + infrastructure.get(ID), e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.store;
+
+import java.util.Map;
+
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+
+/**
+ * Persistence of the registered infrastructures, so that they survive a restart of the connector.
+ */
+public interface InfrastructureStore {
+
+    /**
+     * @return all the stored infrastructures, by infrastructure id
+     */
+    public Map<String, Infrastructure> loadAll();
+
+    /**
+     * Store an infrastructure, replacing the stored one with the same id if any.
+     * @param infrastructure The infrastructure to be stored
+     */
+    public void save(Infrastructure infrastructure);
+
+    /**
+     * Remove an infrastructure from the store.
+     * @param infrastructureId The id of the infrastructure to be removed
+     */
+    public void delete(String infrastructureId);
+}
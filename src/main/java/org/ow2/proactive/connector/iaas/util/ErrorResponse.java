@@ -90,4 +90,19 @@ public class ErrorResponse {
                                                  message))
                        .build();
     }
+
+    /**
+     * Handle a ServiceUnavailableException and generate a SERVICE_UNAVAILABLE response.
+     * @param message Error message
+     * @param e Exception object
+     * @return Response object with SERVICE_UNAVAILABLE status and error message
+     */
+    public static Response handleServiceUnavailable(String message, Exception e) {
+        message = "Service unavailable: " + message;
+        log.error(message, e);
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                       .entity(new ErrorResponse(String.valueOf(Response.Status.SERVICE_UNAVAILABLE.getStatusCode()),
+                                                 message))
+                       .build();
+    }
 }
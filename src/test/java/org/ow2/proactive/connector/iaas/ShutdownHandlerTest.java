@@ -76,8 +76,29 @@ public class ShutdownHandlerTest {
         verify(infrastructureService,
                times(1)).deleteInfrastructureWithCreatedInstances(InfrastructureFixture.getSimpleInfrastructure("type2"));
         verify(infrastructureService,
-               times(1)).deleteInfrastructure(InfrastructureFixture.getSimpleInfrastructure("type3"));
+               times(1)).deleteInfrastructureOnShutdown(InfrastructureFixture.getSimpleInfrastructure("type3"));
 
     }
 
+    @Test
+    public void testPersistedInfrastructuresAreOnlyReleased() {
+        Map<String, Infrastructure> supportedInfrastructureMap = Maps.newHashMap();
+        supportedInfrastructureMap.put(InfrastructureFixture.getSimpleInfrastructure("type1", true).getId(),
+                                       InfrastructureFixture.getSimpleInfrastructure("type1", true));
+        supportedInfrastructureMap.put(InfrastructureFixture.getSimpleInfrastructure("type2", false).getId(),
+                                       InfrastructureFixture.getSimpleInfrastructure("type2", false));
+
+        when(infrastructureService.getAllSupportedInfrastructure()).thenReturn(supportedInfrastructureMap);
+        when(infrastructureService.isPersistent()).thenReturn(true);
+
+        shutdownHandler.removeAllInfrastructures();
+
+        verify(infrastructureService,
+               times(1)).deleteInfrastructureWithCreatedInstances(InfrastructureFixture.getSimpleInfrastructure("type1"));
+        verify(infrastructureService,
+               times(1)).releaseInfrastructure(InfrastructureFixture.getSimpleInfrastructure("type2"));
+        verify(infrastructureService,
+               times(0)).deleteInfrastructure(InfrastructureFixture.getSimpleInfrastructure("type2"));
+    }
+
 }
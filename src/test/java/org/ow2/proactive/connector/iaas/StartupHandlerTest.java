@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.service.InfrastructureService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Maps;
+
+
+public class StartupHandlerTest {
+
+    @InjectMocks
+    private StartupHandler startupHandler;
+
+    @Mock
+    private InfrastructureService infrastructureService;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(startupHandler, "prewarmThreads", 2);
+
+        Map<String, Infrastructure> supportedInfrastructureMap = Maps.newHashMap();
+        supportedInfrastructureMap.put(InfrastructureFixture.getSimpleInfrastructure("type1").getId(),
+                                       InfrastructureFixture.getSimpleInfrastructure("type1"));
+        supportedInfrastructureMap.put(InfrastructureFixture.getSimpleInfrastructure("type2").getId(),
+                                       InfrastructureFixture.getSimpleInfrastructure("type2"));
+        when(infrastructureService.getAllSupportedInfrastructure()).thenReturn(supportedInfrastructureMap);
+    }
+
+    @Test
+    public void testWarmUpInfrastructures() {
+        ReflectionTestUtils.setField(startupHandler, "prewarm", true);
+
+        startupHandler.warmUpInfrastructures();
+
+        verify(infrastructureService, timeout(5000)).warmUp(InfrastructureFixture.getSimpleInfrastructure("type1"));
+        verify(infrastructureService, timeout(5000)).warmUp(InfrastructureFixture.getSimpleInfrastructure("type2"));
+    }
+
+    @Test
+    public void testNoWarmUpByDefault() {
+        startupHandler.warmUpInfrastructures();
+
+        verify(infrastructureService, after(200).never()).warmUp(any(Infrastructure.class));
+    }
+}
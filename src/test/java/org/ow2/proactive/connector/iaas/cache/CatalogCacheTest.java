@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.Image;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+import com.google.common.collect.Sets;
+
+
+public class CatalogCacheTest {
+
+    private final Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack-nova");
+
+    private final AtomicInteger listings = new AtomicInteger();
+
+    private final Supplier<Set<Image>> lister = () -> {
+        listings.incrementAndGet();
+        return Sets.newHashSet(Image.builder().id("RegionOne/image").name("image").location("RegionOne").build());
+    };
+
+    private ImageCatalogCache imageCatalogCache;
+
+    @Before
+    public void init() {
+        imageCatalogCache = new ImageCatalogCache(60000, 60000, 1);
+    }
+
+    @After
+    public void shutdown() {
+        imageCatalogCache.shutdown();
+    }
+
+    @Test
+    public void testCatalogIsListedOnce() {
+        ImageCatalog catalog = imageCatalogCache.getCatalog(infrastructure, lister);
+
+        assertThat(imageCatalogCache.getCatalog(infrastructure, lister), is(catalog));
+        assertThat(catalog.getImages().size(), is(1));
+        assertThat(listings.get(), is(1));
+    }
+
+    @Test
+    public void testInvalidatedCatalogIsListedAgain() {
+        imageCatalogCache.getCatalog(infrastructure, lister);
+
+        imageCatalogCache.invalidate(infrastructure);
+
+        imageCatalogCache.getCatalog(infrastructure, lister);
+        assertThat(listings.get(), is(2));
+    }
+}
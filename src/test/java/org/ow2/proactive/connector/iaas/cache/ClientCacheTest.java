@@ -0,0 +1,274 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.ClientCacheStatistics;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+
+
+public class ClientCacheTest {
+
+    private AtomicInteger builds;
+
+    private List<String> closedClients;
+
+    private ClientCache<String> clientCache;
+
+    @Before
+    public void init() {
+        builds = new AtomicInteger(0);
+        closedClients = new ArrayList<>();
+        clientCache = new ClientCache<>("test", 2, (key, client) -> closedClients.add(client));
+    }
+
+    @Test
+    public void testInfrastructuresWithSameKeyShareClient() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("id-1", "openstack");
+        Infrastructure sameInfrastructure = InfrastructureFixture.getSimpleInfrastructure("id-2", "openstack");
+
+        assertThat(clientCache.get(infrastructure, this::build), is("client-1"));
+        assertThat(clientCache.get(sameInfrastructure, this::build), is("client-1"));
+        assertThat(builds.get(), is(1));
+
+        ClientCacheStatistics statistics = clientCache.getStatistics();
+        assertThat(statistics.getClients(), is(1L));
+        assertThat(statistics.getInfrastructures(), is(2L));
+        assertThat(statistics.getHitCount(), is(1L));
+        assertThat(statistics.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void testDifferentCredentialsGetDifferentClients() {
+        clientCache.get(InfrastructureFixture.getInfrastructure("id-1",
+                                                                "openstack",
+                                                                "endPoint",
+                                                                "userName",
+                                                                "password",
+                                                                null,
+                                                                null,
+                                                                null),
+                        this::build);
+        clientCache.get(InfrastructureFixture.getInfrastructure("id-1",
+                                                                "openstack",
+                                                                "endPoint",
+                                                                "userName",
+                                                                "newPassword",
+                                                                null,
+                                                                null,
+                                                                null),
+                        this::build);
+
+        assertThat(builds.get(), is(2));
+        // the former client is not used anymore
+        assertThat(clientCache.getStatistics().getClients(), is(1L));
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+    }
+
+    @Test
+    public void testClientKeyDoesNotLogTheCredentialsFingerprint() {
+        ClientKey key = ClientKey.of(InfrastructureFixture.getSimpleInfrastructure("id-1", "openstack"));
+
+        assertThat(key, is(ClientKey.of(InfrastructureFixture.getSimpleInfrastructure("id-2", "openstack"))));
+        assertThat(key.toString().contains(key.getCredentialsFingerprint()), is(false));
+    }
+
+    @Test
+    public void testSharedClientIsKeptUntilUnused() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("id-1", "openstack");
+        Infrastructure sameInfrastructure = InfrastructureFixture.getSimpleInfrastructure("id-2", "openstack");
+        clientCache.get(infrastructure, this::build);
+        clientCache.get(sameInfrastructure, this::build);
+
+        clientCache.remove(infrastructure);
+        assertThat(clientCache.get(sameInfrastructure, this::build), is("client-1"));
+        assertThat(closedClients.isEmpty(), is(true));
+
+        clientCache.remove(sameInfrastructure);
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+        assertThat(clientCache.get(sameInfrastructure, this::build), is("client-2"));
+    }
+
+    @Test
+    public void testEvictedClientIsClosed() {
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("aws-ec2"), this::build);
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("openstack"), this::build);
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("google-compute-engine"), this::build);
+
+        assertThat(closedClients.size(), is(1));
+        assertThat(clientCache.getStatistics().getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void testEvictedClientIsClosedOnceReleased() {
+        try (ClientScope scope = ClientScope.open()) {
+            assertThat(clientCache.get(InfrastructureFixture.getSimpleInfrastructure("aws-ec2"), this::build),
+                       is("client-1"));
+            clientCache.get(InfrastructureFixture.getSimpleInfrastructure("openstack"), this::build);
+            clientCache.get(InfrastructureFixture.getSimpleInfrastructure("google-compute-engine"), this::build);
+
+            assertThat(closedClients.isEmpty(), is(true));
+            assertThat(clientCache.getStatistics().getEvictionCount(), is(1L));
+        }
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+        assertThat(clientCache.getOpenClients(), is(2L));
+    }
+
+    @Test
+    public void testRemovedClientIsClosedOnceReleased() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        try (ClientScope scope = ClientScope.open()) {
+            clientCache.get(infrastructure, this::build);
+            clientCache.get(infrastructure, this::build);
+
+            clientCache.remove(infrastructure);
+            assertThat(closedClients.isEmpty(), is(true));
+            // a removed client is not leased again
+            assertThat(clientCache.get(infrastructure, this::build), is("client-2"));
+            clientCache.remove(infrastructure);
+        }
+        assertThat(closedClients, is(Arrays.asList("client-1", "client-2")));
+        assertThat(clientCache.getOpenClients(), is(0L));
+    }
+
+    @Test
+    public void testNestedScopeReleasesOnlyItsLeases() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        try (ClientScope scope = ClientScope.open()) {
+            clientCache.get(infrastructure, this::build);
+            ClientScope.run(() -> clientCache.get(infrastructure, this::build));
+
+            clientCache.remove(infrastructure);
+            assertThat(closedClients.isEmpty(), is(true));
+        }
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+    }
+
+    @Test
+    public void testClientGotOutsideOfAScopeIsNotLeased() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        clientCache.get(infrastructure, this::build);
+
+        clientCache.remove(infrastructure);
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+    }
+
+    @Test
+    public void testCloseAll() {
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("aws-ec2"), this::build);
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("openstack"), this::build);
+        assertThat(clientCache.getOpenClients(), is(2L));
+
+        clientCache.closeAll(1000);
+        assertThat(closedClients.size(), is(2));
+        assertThat(clientCache.getOpenClients(), is(0L));
+        assertThat(clientCache.getStatistics().getInfrastructures(), is(0L));
+    }
+
+    @Test
+    public void testCloseAllWaitsForTheLeasedClients() throws InterruptedException {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        CountDownLatch leased = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        Thread user = new Thread(() -> ClientScope.run(() -> {
+            clientCache.get(infrastructure, this::build);
+            leased.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        user.start();
+        assertThat(leased.await(10, TimeUnit.SECONDS), is(true));
+
+        Thread closer = new Thread(() -> clientCache.closeAll(10000));
+        closer.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (closer.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(closer.getState(), is(Thread.State.TIMED_WAITING));
+        assertThat(closedClients.isEmpty(), is(true));
+
+        released.countDown();
+        closer.join(10000);
+        user.join(10000);
+
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+        assertThat(clientCache.getOpenClients(), is(0L));
+    }
+
+    @Test
+    public void testCloseAllClosesTheLeasedClientsAfterItsTimeout() {
+        try (ClientScope scope = ClientScope.open()) {
+            clientCache.get(InfrastructureFixture.getSimpleInfrastructure("openstack"), this::build);
+
+            clientCache.closeAll(10);
+            assertThat(closedClients, is(Collections.singletonList("client-1")));
+        }
+        // released after being closed, it is not closed twice
+        assertThat(closedClients, is(Collections.singletonList("client-1")));
+        assertThat(clientCache.getOpenClients(), is(0L));
+    }
+
+    @Test
+    public void testClientFailingToCloseIsStillOpen() {
+        ClientCache<String> failingClientCache = new ClientCache<>("test", 2, (key, client) -> {
+            throw new IllegalStateException("already closed");
+        });
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        failingClientCache.get(infrastructure, this::build);
+
+        failingClientCache.remove(infrastructure);
+        assertThat(failingClientCache.getStatistics().getClients(), is(0L));
+        assertThat(failingClientCache.getOpenClients(), is(1L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuildFailureIsRethrown() {
+        clientCache.get(InfrastructureFixture.getSimpleInfrastructure("openstack"), infrastructure -> {
+            throw new IllegalStateException("unreachable endpoint");
+        });
+    }
+
+    private String build(Infrastructure infrastructure) {
+        return "client-" + builds.incrementAndGet();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.fixtures.HardwareFixtures;
+import org.ow2.proactive.connector.iaas.model.HardwareProfile;
+
+import com.google.common.collect.Lists;
+
+
+public class HardwareCatalogTest {
+
+    private HardwareCatalog hardwareCatalog;
+
+    @Before
+    public void init() {
+        hardwareCatalog = new HardwareCatalog(Lists.newArrayList(profile("small", "512", "1", "us-east-1a"),
+                                                                 profile("small-bis", "512", "1.0", "us-east-1b"),
+                                                                 profile("large", "4096", "4", "us-east-1a"),
+                                                                 profile("medium", "2048", "2", "eu-west-1a"),
+                                                                 profile("everywhere", "1024", "1", null)));
+    }
+
+    @Test
+    public void testGetHardware() {
+        assertThat(hardwareCatalog.getHardware().size(), is(5));
+    }
+
+    @Test
+    public void testGetProfilesOfRegion() {
+        assertThat(hardwareCatalog.getProfiles("us-east-1").size(), is(4));
+        assertThat(hardwareCatalog.getProfiles("eu-west-1").size(), is(2));
+        assertThat(hardwareCatalog.getProfiles("unknown").size(), is(1));
+    }
+
+    @Test
+    public void testGetDistinctProfilesOfRegion() {
+        assertThat(hardwareCatalog.getDistinctProfiles("us-east-1").size(), is(3));
+        assertThat(hardwareCatalog.getDistinctProfiles("us-east-1").get(0).getHardware().getType(), is("small"));
+    }
+
+    @Test
+    public void testNumericValuesAreParsedOnce() {
+        HardwareProfile profile = profile("unknown-values", "512", "n/a", null);
+        assertThat(profile.getRam(), is(512.0));
+        assertThat(profile.getCores(), is(0.0));
+    }
+
+    private static HardwareProfile profile(String type, String minRam, String minCores, String location) {
+        return new HardwareProfile(HardwareFixtures.getHardware(type, minRam, minCores, "1"), location);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.model.Image;
+
+import com.google.common.collect.Sets;
+
+
+public class ImageCatalogTest {
+
+    private ImageCatalog imageCatalog;
+
+    @Before
+    public void init() {
+        imageCatalog = new ImageCatalog(Sets.newHashSet(image("id1", "eu-west-1"),
+                                                        image("id2", "eu-west-1"),
+                                                        image("id3", "us-east-1"),
+                                                        image("id4", ""),
+                                                        image("id5", null)));
+    }
+
+    @Test
+    public void testGetImages() {
+        assertThat(imageCatalog.getImages().size(), is(5));
+    }
+
+    @Test
+    public void testGetImagesOfRegion() {
+        assertThat(imageCatalog.getImages("eu-west-1").size(), is(4));
+        assertThat(imageCatalog.getImages("eu-west-1").contains(image("id3", "us-east-1")), is(false));
+        assertThat(imageCatalog.getImages("us-east-1").size(), is(3));
+    }
+
+    @Test
+    public void testGetImagesOfUnknownRegion() {
+        assertThat(imageCatalog.getImages("unknown").size(), is(2));
+        assertThat(imageCatalog.getImages("unknown").contains(image("id4", "")), is(true));
+    }
+
+    private static Image image(String id, String location) {
+        return Image.builder().id(id).name(id).location(location).build();
+    }
+}
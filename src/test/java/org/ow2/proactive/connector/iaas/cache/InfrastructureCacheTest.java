@@ -29,6 +29,11 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.Map;
 
@@ -37,6 +42,10 @@ import org.junit.Test;
 import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.ow2.proactive.connector.iaas.model.InfrastructureScope;
+import org.ow2.proactive.connector.iaas.store.InfrastructureStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
 
 
 public class InfrastructureCacheTest {
@@ -116,4 +125,54 @@ public class InfrastructureCacheTest {
         assertThat(infrastructureCache.getSupportedInfrastructures().isEmpty(), is(true));
     }
 
+    @Test
+    public void testGetInfrastructure() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        infrastructureCache.registerInfrastructure(infrastructure);
+        Map<String, Infrastructure> snapshot = infrastructureCache.getSupportedInfrastructures();
+
+        infrastructureCache.registerInfrastructure(InfrastructureFixture.getSimpleInfrastructure("aws"));
+        assertThat(infrastructureCache.getInfrastructure(infrastructure.getId()), is(infrastructure));
+        assertThat(infrastructureCache.getInfrastructure("unknown"), is(nullValue()));
+        assertThat(infrastructureCache.getSupportedInfrastructures().size(), is(2));
+        assertThat(snapshot.size(), is(1));
+    }
+
+    @Test
+    public void testStoredInfrastructures() {
+        InfrastructureStore infrastructureStore = mock(InfrastructureStore.class);
+        Infrastructure storedInfrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        when(infrastructureStore.loadAll()).thenReturn(ImmutableMap.of(storedInfrastructure.getId(),
+                                                                       storedInfrastructure));
+        ReflectionTestUtils.setField(infrastructureCache, "infrastructureStore", infrastructureStore);
+
+        infrastructureCache.loadStoredInfrastructures();
+        assertThat(infrastructureCache.isPersistent(), is(true));
+        assertThat(infrastructureCache.getSupportedInfrastructures().get(storedInfrastructure.getId()),
+                   is(storedInfrastructure));
+
+        Infrastructure newInfrastructure = InfrastructureFixture.getSimpleInfrastructure("aws");
+        infrastructureCache.registerInfrastructure(newInfrastructure);
+        infrastructureCache.deleteInfrastructure(storedInfrastructure);
+        verify(infrastructureStore).save(newInfrastructure);
+        verify(infrastructureStore).delete(storedInfrastructure.getId());
+        assertThat(infrastructureCache.getSupportedInfrastructures().size(), is(1));
+    }
+
+    @Test
+    public void testFailedStoreWriteLeavesTheInfrastructuresUnchanged() {
+        InfrastructureStore infrastructureStore = mock(InfrastructureStore.class);
+        ReflectionTestUtils.setField(infrastructureCache, "infrastructureStore", infrastructureStore);
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack");
+        doThrow(new IllegalStateException("disk full")).when(infrastructureStore).save(infrastructure);
+
+        try {
+            infrastructureCache.registerInfrastructure(infrastructure);
+            fail("The failed write is expected to be thrown");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("disk full"));
+        }
+        assertThat(infrastructureCache.getInfrastructure(infrastructure.getId()), is(nullValue()));
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.fixtures.InstanceFixture;
+
+import com.google.common.collect.Sets;
+
+
+public class InstanceInventoryTest {
+
+    private InstanceInventory instanceInventory;
+
+    @Before
+    public void init() {
+        instanceInventory = new InstanceInventory(Sets.newHashSet(InstanceFixture.simpleInstanceWithTag("id1", "tag1"),
+                                                                  InstanceFixture.simpleInstanceWithTag("id2", "tag1"),
+                                                                  InstanceFixture.simpleInstanceWithTag("id3", "tag2")));
+    }
+
+    @Test
+    public void testGetInstanceById() {
+        assertThat(instanceInventory.getInstanceById("id2").get().getTag(), is("tag1"));
+        assertThat(instanceInventory.getInstanceById("unknown").isPresent(), is(false));
+    }
+
+    @Test
+    public void testGetInstancesByTag() {
+        assertThat(instanceInventory.getInstancesByTag("tag1").size(), is(2));
+        assertThat(instanceInventory.getInstancesByTag("tag2").size(), is(1));
+        assertThat(instanceInventory.getInstancesByTag("unknown").isEmpty(), is(true));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutability() {
+        instanceInventory.getInstances().add(InstanceFixture.simpleInstance("id4"));
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.ow2.proactive.connector.iaas.store.InfrastructureStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Sets;
+
+
+public class NodeCandidateSnapshotCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("openstack-nova");
+
+    private final NodeCandidate nodeCandidate = NodeCandidate.builder()
+                                                             .cloud("openstack-nova")
+                                                             .region("RegionOne")
+                                                             .hw(Hardware.builder().type("m1.small").build())
+                                                             .price(0.1)
+                                                             .build();
+
+    private final AtomicInteger listings = new AtomicInteger();
+
+    private final Function<Infrastructure, Set<NodeCandidate>> lister = listedInfrastructure -> {
+        listings.incrementAndGet();
+        return Sets.newHashSet(nodeCandidate);
+    };
+
+    private final InfrastructureCache infrastructureCache = new InfrastructureCache();
+
+    private NodeCandidateSnapshotCache snapshotCache;
+
+    @Before
+    public void init() {
+        infrastructureCache.registerInfrastructure(infrastructure);
+    }
+
+    @After
+    public void shutdown() {
+        snapshotCache.shutdown();
+    }
+
+    @Test
+    public void testSnapshotIsComputedOnce() {
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 60000, 1, "", infrastructureCache);
+
+        NodeCandidateSnapshot snapshot = snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+
+        assertThat(snapshot.getNodeCandidates(), is(Sets.newHashSet(nodeCandidate)));
+        assertThat(snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister), is(snapshot));
+        assertThat(listings.get(), is(1));
+    }
+
+    @Test
+    public void testSnapshotIsRecomputedWhenForcedOrRefreshed() {
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 60000, 1, "", infrastructureCache);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", true, lister);
+        assertThat(listings.get(), is(2));
+    }
+
+    @Test
+    public void testSnapshotsOfADeletedInfrastructureAreForgotten() {
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 60000, 1, "", infrastructureCache);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+
+        snapshotCache.invalidate(infrastructure);
+
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+        assertThat(listings.get(), is(2));
+    }
+
+    @Test
+    public void testSnapshotsAreRestoredFromTheDirectory() throws IOException {
+        String directory = temporaryFolder.newFolder("snapshots").getAbsolutePath();
+        NodeCandidateSnapshotCache previousSnapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                                                          60000,
+                                                                                          60000,
+                                                                                          1,
+                                                                                          directory,
+                                                                                          infrastructureCache);
+        NodeCandidateSnapshot snapshot = previousSnapshotCache.getSnapshot(infrastructure,
+                                                                           "RegionOne",
+                                                                           "",
+                                                                           false,
+                                                                           lister);
+        previousSnapshotCache.shutdown();
+
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 60000, 1, directory, infrastructureCache);
+        snapshotCache.start();
+
+        assertThat(snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister), is(snapshot));
+        assertThat(listings.get(), is(1));
+    }
+
+    @Test
+    public void testSnapshotOfAnInfrastructureDeletedDuringItsComputationIsNotKept() throws IOException {
+        File directory = temporaryFolder.newFolder("snapshots");
+        snapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                       60000,
+                                                       60000,
+                                                       1,
+                                                       directory.getAbsolutePath(),
+                                                       infrastructureCache);
+
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, listedInfrastructure -> {
+            infrastructureCache.deleteInfrastructure(listedInfrastructure);
+            snapshotCache.invalidate(listedInfrastructure);
+            return lister.apply(listedInfrastructure);
+        });
+        snapshotCache.refreshActiveSnapshots();
+
+        assertThat(directory.list().length, is(0));
+        assertThat(listings.get(), is(1));
+    }
+
+    @Test
+    public void testSnapshotIsRefreshedWithTheRegisteredInfrastructure() throws InterruptedException {
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 60000, 1, "", infrastructureCache);
+        AtomicReference<Infrastructure> refreshedInfrastructure = new AtomicReference<>();
+        CountDownLatch refreshed = new CountDownLatch(1);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, listedInfrastructure -> {
+            if (listings.getAndIncrement() > 0) {
+                refreshedInfrastructure.set(listedInfrastructure);
+                refreshed.countDown();
+            }
+            return Sets.newHashSet(nodeCandidate);
+        });
+        Infrastructure updatedInfrastructure = InfrastructureFixture.getInfrastructure(infrastructure.getId(),
+                                                                                       infrastructure.getType(),
+                                                                                       "endPoint",
+                                                                                       "otherUserName",
+                                                                                       "otherPassword");
+        infrastructureCache.registerInfrastructure(updatedInfrastructure);
+
+        snapshotCache.refreshActiveSnapshots();
+
+        assertThat(refreshed.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(refreshedInfrastructure.get().getCredentials(), is(updatedInfrastructure.getCredentials()));
+    }
+
+    @Test
+    public void testSavedSnapshotsOfUnknownInfrastructuresAreDeleted() throws IOException {
+        File directory = temporaryFolder.newFolder("snapshots");
+        NodeCandidateSnapshotCache previousSnapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                                                          60000,
+                                                                                          60000,
+                                                                                          1,
+                                                                                          directory.getAbsolutePath(),
+                                                                                          infrastructureCache);
+        previousSnapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+        previousSnapshotCache.shutdown();
+        assertThat(directory.list().length, is(1));
+        InfrastructureCache persistentInfrastructureCache = new InfrastructureCache();
+        ReflectionTestUtils.setField(persistentInfrastructureCache,
+                                     "infrastructureStore",
+                                     mock(InfrastructureStore.class));
+
+        snapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                       60000,
+                                                       60000,
+                                                       1,
+                                                       directory.getAbsolutePath(),
+                                                       persistentInfrastructureCache);
+        snapshotCache.start();
+
+        assertThat(directory.list().length, is(0));
+    }
+
+    @Test
+    public void testSavedSnapshotsSurviveShutdownAndRestart() throws IOException {
+        File directory = temporaryFolder.newFolder("snapshots");
+        NodeCandidateSnapshotCache previousSnapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                                                          60000,
+                                                                                          60000,
+                                                                                          1,
+                                                                                          directory.getAbsolutePath(),
+                                                                                          infrastructureCache);
+        NodeCandidateSnapshot snapshot = previousSnapshotCache.getSnapshot(infrastructure,
+                                                                           "RegionOne",
+                                                                           "",
+                                                                           false,
+                                                                           lister);
+        // shutdown of a connector which does not persist the infrastructures
+        previousSnapshotCache.release(infrastructure);
+        infrastructureCache.deleteInfrastructure(infrastructure);
+        previousSnapshotCache.refreshActiveSnapshots();
+        previousSnapshotCache.shutdown();
+        assertThat(directory.list().length, is(1));
+
+        InfrastructureCache restartedInfrastructureCache = new InfrastructureCache();
+        snapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                       60000,
+                                                       60000,
+                                                       1,
+                                                       directory.getAbsolutePath(),
+                                                       restartedInfrastructureCache);
+        snapshotCache.start();
+        restartedInfrastructureCache.registerInfrastructure(infrastructure);
+
+        assertThat(snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister), is(snapshot));
+        assertThat(listings.get(), is(1));
+    }
+
+    @Test
+    public void testSavedSnapshotsOfADeletedInfrastructureAreDeleted() throws IOException {
+        File directory = temporaryFolder.newFolder("snapshots");
+        snapshotCache = new NodeCandidateSnapshotCache(60000,
+                                                       60000,
+                                                       60000,
+                                                       1,
+                                                       directory.getAbsolutePath(),
+                                                       infrastructureCache);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+        assertThat(directory.list().length, is(1));
+
+        snapshotCache.invalidate(infrastructure);
+
+        assertThat(directory.list().length, is(0));
+    }
+
+    @Test
+    public void testUnrequestedSnapshotsExpire() {
+        snapshotCache = new NodeCandidateSnapshotCache(60000, 60000, 0, 1, "", infrastructureCache);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+
+        snapshotCache.refreshActiveSnapshots();
+
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+        assertThat(listings.get(), is(2));
+    }
+
+    @Test
+    public void testDisabledSnapshots() {
+        snapshotCache = new NodeCandidateSnapshotCache(0, 0, 60000, 1, "", infrastructureCache);
+
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+        snapshotCache.getSnapshot(infrastructure, "RegionOne", "", false, lister);
+
+        assertThat(snapshotCache.isEnabled(), is(false));
+        assertThat(listings.get(), is(2));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cache;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class RefreshingCacheTest {
+
+    private AtomicLong now;
+
+    private List<Runnable> scheduledRefreshes;
+
+    private AtomicInteger loads;
+
+    private RefreshingCache<String, Integer> refreshingCache;
+
+    @Before
+    public void init() {
+        now = new AtomicLong(0);
+        scheduledRefreshes = new ArrayList<>();
+        loads = new AtomicInteger(0);
+        refreshingCache = new RefreshingCache<>(100, 1000, scheduledRefreshes::add, now::get);
+    }
+
+    @Test
+    public void testFreshValueIsServedFromCache() {
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(1));
+        now.set(99);
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(1));
+        assertThat(loads.get(), is(1));
+        assertThat(scheduledRefreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testStaleValueIsServedWhileRefreshedInBackground() {
+        refreshingCache.get("key", loads::incrementAndGet);
+        now.set(500);
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(1));
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(1));
+        assertThat(scheduledRefreshes.size(), is(1));
+
+        scheduledRefreshes.get(0).run();
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(2));
+    }
+
+    @Test
+    public void testRefreshReloadsFreshValue() {
+        refreshingCache.get("key", loads::incrementAndGet);
+
+        assertThat(refreshingCache.refresh("key", loads::incrementAndGet), is(2));
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(2));
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void testTooStaleValueIsReloaded() {
+        refreshingCache.get("key", loads::incrementAndGet);
+        now.set(1000);
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(2));
+        assertThat(scheduledRefreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testGetIfFreshIgnoresStaleValue() {
+        refreshingCache.get("key", loads::incrementAndGet);
+        now.set(99);
+        assertThat(refreshingCache.getIfFresh("key").get(), is(1));
+        now.set(100);
+        assertThat(refreshingCache.getIfFresh("key").isPresent(), is(false));
+        assertThat(refreshingCache.getIfPresent("key").get(), is(1));
+        assertThat(scheduledRefreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testInvalidate() {
+        refreshingCache.get("key", loads::incrementAndGet);
+        refreshingCache.invalidate("key");
+        assertThat(refreshingCache.getIfPresent("key").isPresent(), is(false));
+        assertThat(refreshingCache.get("key", loads::incrementAndGet), is(2));
+    }
+
+    @Test
+    public void testInvalidationDuringLoadDiscardsTheLoadedValue() {
+        refreshingCache.get("key", () -> {
+            refreshingCache.invalidate("key");
+            return loads.incrementAndGet();
+        });
+        assertThat(refreshingCache.getIfPresent("key").isPresent(), is(false));
+    }
+
+    @Test
+    public void testInvalidationOfAnotherKeyKeepsTheLoadedValue() {
+        refreshingCache.get("other", loads::incrementAndGet);
+        refreshingCache.get("key", () -> {
+            refreshingCache.invalidate("other");
+            return loads.incrementAndGet();
+        });
+        assertThat(refreshingCache.getIfPresent("key").get(), is(2));
+        assertThat(refreshingCache.getIfPresent("other").isPresent(), is(false));
+    }
+
+    @Test
+    public void testInvalidateAllDuringLoadDiscardsTheLoadedValue() {
+        refreshingCache.get("key", () -> {
+            refreshingCache.invalidateAll();
+            return loads.incrementAndGet();
+        });
+        assertThat(refreshingCache.size(), is(0));
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysLoads() {
+        RefreshingCache<String, Integer> disabledCache = new RefreshingCache<>(0, 0, Runnable::run, now::get);
+        disabledCache.get("key", loads::incrementAndGet);
+        disabledCache.get("key", loads::incrementAndGet);
+        assertThat(loads.get(), is(2));
+        assertThat(disabledCache.size(), is(0));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.google.common.collect.Sets;
+
+
+public class BulkInstanceDeleterTest {
+
+    private BulkInstanceDeleter bulkInstanceDeleter;
+
+    @Mock
+    private CloudProvider cloudProvider;
+
+    private Infrastructure infrastructure;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(cloudProvider.getType()).thenReturn("sometype");
+        infrastructure = InfrastructureFixture.getSimpleInfrastructure("sometype");
+        bulkInstanceDeleter = new BulkInstanceDeleter(new StandardEnvironment(), 4, 2);
+    }
+
+    @After
+    public void tearDown() {
+        bulkInstanceDeleter.shutdown();
+    }
+
+    @Test
+    public void testDeleteInstancesInBatch() {
+        when(cloudProvider.deleteInstancesInBatch(infrastructure,
+                                                  Sets.newHashSet("id1", "id2"))).thenReturn(Sets.newHashSet("id1",
+                                                                                                             "id2"));
+        bulkInstanceDeleter.deleteInstances(cloudProvider, infrastructure, Sets.newHashSet("id1", "id2"));
+        verify(cloudProvider, never()).deleteInstance(any(Infrastructure.class), anyString());
+    }
+
+    @Test
+    public void testDeleteRemainingInstancesOneByOne() {
+        when(cloudProvider.deleteInstancesInBatch(infrastructure,
+                                                  Sets.newHashSet("id1", "id2", "id3"))).thenReturn(Sets.newHashSet("id1"));
+        bulkInstanceDeleter.deleteInstances(cloudProvider, infrastructure, Sets.newHashSet("id1", "id2", "id3"));
+        verify(cloudProvider, never()).deleteInstance(infrastructure, "id1");
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id2");
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id3");
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToOneByOneDeletions() {
+        when(cloudProvider.deleteInstancesInBatch(infrastructure,
+                                                  Sets.newHashSet("id1", "id2"))).thenThrow(new RuntimeException("batch failed"));
+        bulkInstanceDeleter.deleteInstances(cloudProvider, infrastructure, Sets.newHashSet("id1", "id2"));
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id1");
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id2");
+    }
+
+    @Test
+    public void testSingleInstanceIsNotBatched() {
+        bulkInstanceDeleter.deleteInstances(cloudProvider, infrastructure, Sets.newHashSet("id1"));
+        verify(cloudProvider, never()).deleteInstancesInBatch(any(Infrastructure.class), any());
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id1");
+    }
+
+    @Test
+    public void testParallelDeletionsAreBounded() {
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inProgress.decrementAndGet();
+            return null;
+        }).when(cloudProvider).deleteInstance(any(Infrastructure.class), anyString());
+        bulkInstanceDeleter.deleteInstances(cloudProvider,
+                                            infrastructure,
+                                            Sets.newHashSet("id1", "id2", "id3", "id4", "id5", "id6"));
+        assertThat(maxInProgress.get() <= 2, is(true));
+        verify(cloudProvider, times(6)).deleteInstance(any(Infrastructure.class), anyString());
+    }
+
+    @Test
+    public void testFailuresAreAggregated() {
+        doThrow(new RuntimeException("boom")).when(cloudProvider).deleteInstance(infrastructure, "id2");
+        try {
+            bulkInstanceDeleter.deleteInstances(cloudProvider, infrastructure, Sets.newHashSet("id1", "id2", "id3"));
+            fail("the failed deletion should have been reported");
+        } catch (InstancesDeletionException e) {
+            assertThat(e.getErrorPerInstanceId().size(), is(1));
+            assertThat(e.getErrorPerInstanceId().get("id2"), is("boom"));
+        }
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id1");
+        verify(cloudProvider, times(1)).deleteInstance(infrastructure, "id3");
+    }
+}
@@ -25,23 +25,39 @@
  */
 package org.ow2.proactive.connector.iaas.cloud;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Optional;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.cache.HardwareCatalogCache;
+import org.ow2.proactive.connector.iaas.cache.ImageCatalogCache;
+import org.ow2.proactive.connector.iaas.cache.InfrastructureCache;
+import org.ow2.proactive.connector.iaas.cache.InstanceInventoryCache;
+import org.ow2.proactive.connector.iaas.cache.NodeCandidateSnapshotCache;
 import org.ow2.proactive.connector.iaas.cloud.provider.CloudProvider;
 import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
 import org.ow2.proactive.connector.iaas.fixtures.InstanceFixture;
 import org.ow2.proactive.connector.iaas.fixtures.InstanceScriptFixture;
+import org.ow2.proactive.connector.iaas.model.Hardware;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.ow2.proactive.connector.iaas.model.Instance;
 import org.ow2.proactive.connector.iaas.model.InstanceScript;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
+import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
+import org.springframework.core.env.StandardEnvironment;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 
 public class CloudManagerTest {
@@ -59,7 +75,17 @@ public class CloudManagerTest {
         MockitoAnnotations.initMocks(this);
         when(defaultCloudProvider.getType()).thenReturn("sometype");
         when(anotheroneCloudProvider.getType()).thenReturn("anothertype");
-        cloudManager = new CloudManager(Lists.newArrayList(defaultCloudProvider, anotheroneCloudProvider));
+        cloudManager = new CloudManager(Lists.newArrayList(defaultCloudProvider, anotheroneCloudProvider),
+                                        new InstanceInventoryCache(60000, 60000, 1),
+                                        new BulkInstanceDeleter(new StandardEnvironment(), 4, 2),
+                                        new NodeCandidateSnapshotCache(60000,
+                                                                       60000,
+                                                                       60000,
+                                                                       1,
+                                                                       "",
+                                                                       new InfrastructureCache()),
+                                        new ImageCatalogCache(60000, 60000, 1),
+                                        new HardwareCatalogCache(60000, 60000, 1));
 
     }
 
@@ -86,6 +112,20 @@ public class CloudManagerTest {
         verify(defaultCloudProvider, times(1)).deleteInfrastructure(infrastructure);
     }
 
+    @Test
+    public void testReleaseInfrastructureKeepsItsCachedInstances() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("sometype");
+        when(defaultCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(InstanceFixture.simpleInstance("id")));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+
+        cloudManager.releaseInfrastructure(infrastructure);
+
+        assertThat(cloudManager.getAllInfrastructureInstances(infrastructure).size(), is(1));
+        verify(defaultCloudProvider, times(1)).releaseInfrastructure(infrastructure);
+        verify(defaultCloudProvider, never()).deleteInfrastructure(infrastructure);
+        verify(defaultCloudProvider, times(1)).getAllInfrastructureInstances(infrastructure);
+    }
+
     @Test
     public void testGetAllInfrastructureInstances() {
         Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
@@ -93,6 +133,83 @@ public class CloudManagerTest {
         verify(anotheroneCloudProvider, times(1)).getAllInfrastructureInstances(infrastructure);
     }
 
+    @Test
+    public void testGetAllInfrastructureInstancesIsCached() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(instance));
+        assertThat(cloudManager.getAllInfrastructureInstances(infrastructure).size(), is(1));
+        assertThat(cloudManager.getAllInfrastructureInstances(infrastructure).size(), is(1));
+        verify(anotheroneCloudProvider, times(1)).getAllInfrastructureInstances(infrastructure);
+    }
+
+    @Test
+    public void testDeleteInstanceInvalidatesCachedInstances() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(instance));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        cloudManager.deleteInstance(infrastructure, "id");
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        verify(anotheroneCloudProvider, times(2)).getAllInfrastructureInstances(infrastructure);
+    }
+
+    @Test
+    public void testGetInfrastructureInstanceByIdUsesProviderPointQuery() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(anotheroneCloudProvider.getInstanceById(infrastructure, "id")).thenReturn(Optional.of(instance));
+        assertThat(cloudManager.getInfrastructureInstanceById(infrastructure, "id").get(), is(instance));
+        verify(anotheroneCloudProvider, times(0)).getAllInfrastructureInstances(infrastructure);
+    }
+
+    @Test
+    public void testGetInfrastructureInstanceByIdUsesCachedInstances() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(instance));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        assertThat(cloudManager.getInfrastructureInstanceById(infrastructure, "id").get(), is(instance));
+        verify(anotheroneCloudProvider, times(0)).getInstanceById(infrastructure, "id");
+    }
+
+    @Test
+    public void testGetInfrastructureInstanceByIdIgnoresStaleCachedInstances() throws InterruptedException {
+        cloudManager = new CloudManager(Lists.newArrayList(defaultCloudProvider, anotheroneCloudProvider),
+                                        new InstanceInventoryCache(1, 60000, 1),
+                                        new BulkInstanceDeleter(new StandardEnvironment(), 4, 2),
+                                        new NodeCandidateSnapshotCache(60000,
+                                                                       60000,
+                                                                       60000,
+                                                                       1,
+                                                                       "",
+                                                                       new InfrastructureCache()),
+                                        new ImageCatalogCache(60000, 60000, 1),
+                                        new HardwareCatalogCache(60000, 60000, 1));
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance cachedInstance = InstanceFixture.simpleInstanceWithTag("id", "cached");
+        Instance instance = InstanceFixture.simpleInstanceWithTag("id", "current");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(cachedInstance));
+        when(anotheroneCloudProvider.getInstanceById(infrastructure, "id")).thenReturn(Optional.of(instance));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        Thread.sleep(10);
+
+        assertThat(cloudManager.getInfrastructureInstanceById(infrastructure, "id").get().getTag(), is("current"));
+        verify(anotheroneCloudProvider).getInstanceById(infrastructure, "id");
+    }
+
+    @Test
+    public void testGetInfrastructureInstancesByTag() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        Instance instance1 = InstanceFixture.simpleInstanceWithTag("id1", "tag1");
+        Instance instance2 = InstanceFixture.simpleInstanceWithTag("id2", "tag2");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(instance1,
+                                                                                                               instance2));
+        assertThat(cloudManager.getInfrastructureInstancesByTag(infrastructure, "tag1").size(), is(1));
+        assertThat(cloudManager.getInfrastructureInstancesByTag(infrastructure, "tag2").size(), is(1));
+        verify(anotheroneCloudProvider, times(1)).getAllInfrastructureInstances(infrastructure);
+    }
+
     @Test
     public void testExecuteScript() {
         Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("sometype");
@@ -118,4 +235,66 @@ public class CloudManagerTest {
         verify(defaultCloudProvider, times(1)).getAllImages(infrastructure);
     }
 
+
+    @Test
+    public void testGetNodeCandidateFromSnapshot() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("sometype");
+        NodeCandidate cheap = NodeCandidate.builder().hw(Hardware.builder().type("small").build()).price(1).build();
+        NodeCandidate expensive = NodeCandidate.builder().hw(Hardware.builder().type("large").build()).price(2).build();
+        when(defaultCloudProvider.getNodeCandidate(infrastructure,
+                                                   "region",
+                                                   "ubuntu",
+                                                   null,
+                                                   NodeCandidateQuery.all())).thenReturn(PagedNodeCandidates.builder()
+                                                                                                            .nextToken("")
+                                                                                                            .nodeCandidates(Sets.newHashSet(cheap,
+                                                                                                                                            expensive))
+                                                                                                            .build());
+
+        PagedNodeCandidates firstPage = cloudManager.getNodeCandidate(infrastructure,
+                                                                      "region",
+                                                                      "ubuntu",
+                                                                      null,
+                                                                      NodeCandidateQuery.builder().limit(1).build());
+        PagedNodeCandidates allCandidates = cloudManager.getNodeCandidate(infrastructure,
+                                                                          "region",
+                                                                          "ubuntu",
+                                                                          null,
+                                                                          NodeCandidateQuery.all());
+
+        assertThat(firstPage.getNodeCandidates(), is(Sets.newHashSet(cheap)));
+        assertThat(allCandidates.getNodeCandidates().size(), is(2));
+        assertThat(allCandidates.getStaleness() >= 0, is(true));
+        verify(defaultCloudProvider, times(1)).getNodeCandidate(infrastructure,
+                                                                "region",
+                                                                "ubuntu",
+                                                                null,
+                                                                NodeCandidateQuery.all());
+
+        cloudManager.getNodeCandidate(infrastructure,
+                                      "region",
+                                      "ubuntu",
+                                      null,
+                                      NodeCandidateQuery.builder().refresh(true).build());
+        verify(defaultCloudProvider, times(2)).getNodeCandidate(infrastructure,
+                                                                "region",
+                                                                "ubuntu",
+                                                                null,
+                                                                NodeCandidateQuery.all());
+    }
+
+    @Test
+    public void testDeleteInstancesInvalidatesCachedInstances() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("anothertype");
+        when(anotheroneCloudProvider.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(InstanceFixture.simpleInstance("id1"),
+                                                                                                               InstanceFixture.simpleInstance("id2")));
+        when(anotheroneCloudProvider.deleteInstancesInBatch(infrastructure,
+                                                            Sets.newHashSet("id1",
+                                                                            "id2"))).thenReturn(Sets.newHashSet("id1",
+                                                                                                                "id2"));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        cloudManager.deleteInstances(infrastructure, Sets.newHashSet("id1", "id2"));
+        cloudManager.getAllInfrastructureInstances(infrastructure);
+        verify(anotheroneCloudProvider, times(2)).getAllInfrastructureInstances(infrastructure);
+    }
 }
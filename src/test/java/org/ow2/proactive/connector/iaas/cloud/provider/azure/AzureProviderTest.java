@@ -68,6 +68,8 @@ import com.microsoft.azure.management.resources.fluentcore.model.CreatedResource
 import com.microsoft.rest.RestException;
 import com.microsoft.rest.ServiceFuture;
 
+import rx.Completable;
+
 
 /**
  * @author ActiveEon Team
@@ -267,6 +269,7 @@ public class AzureProviderTest {
         ReflectionTestUtils.setField(azureProvider, "defaultUsername", "activeeon", String.class);
         ReflectionTestUtils.setField(azureProvider, "defaultPassword", "Act1v€0N", String.class);
         ReflectionTestUtils.setField(azureProvider, "defaultPrivateNetworkCidr", "10.0.0.0/24", String.class);
+        ReflectionTestUtils.setField(azureProvider, "azureScriptExecutor", new AzureScriptExecutor(2));
 
     }
 
@@ -609,14 +612,16 @@ public class AzureProviderTest {
         when(azureProviderNetworkingUtils.getVMNetworks(azureService,
                                                         virtualMachine)).thenReturn(Lists.newArrayList(virtualNetwork));
 
+        stubAsyncDeletions();
+
         // Trigger deleteInstance with full erasing
         azureProvider.deleteInstance(infrastructure, "vmId");
-        verify(virtualMachines).deleteById("vmId");
-        verify(networkInterfaces).deleteById("netIf-id");
-        verify(publicIPAddresses).deleteById("pubIP-id");
-        verify(disks).deleteById("diskId");
-        verify(networkSecurityGroups).deleteById("nsg-id");
-        verify(virtualNetworks).deleteById("vnet-id");
+        verify(virtualMachines).deleteByIdAsync("vmId");
+        verify(networkInterfaces).deleteByIdAsync("netIf-id");
+        verify(publicIPAddresses).deleteByIdAsync("pubIP-id");
+        verify(disks).deleteByIdAsync("diskId");
+        verify(networkSecurityGroups).deleteByIdAsync("nsg-id");
+        verify(virtualNetworks).deleteByIdAsync("vnet-id");
     }
 
     @Test
@@ -661,10 +666,12 @@ public class AzureProviderTest {
         when(networkInterfaces.getById("netIf-id")).thenReturn(networkInterface);
         when(virtualMachine.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-id"));
         when(secondaryNetworkInterface.getNetworkSecurityGroup()).thenReturn(networkSecurityGroup);
+        when(secondaryNetworkInterface.networkSecurityGroupId()).thenReturn("nsg-id");
         Map<String, NicIPConfiguration> mapIPConfiguration = new HashMap<>();
         mapIPConfiguration.put("ipConf", nicIPConfiguration);
         when(secondaryNetworkInterface.ipConfigurations()).thenReturn(mapIPConfiguration);
         when(nicIPConfiguration.getNetwork()).thenReturn(virtualNetwork);
+        when(nicIPConfiguration.networkId()).thenReturn("vnet-id");
 
         // PublicIPAddresses
         when(azureService.publicIPAddresses()).thenReturn(publicIPAddresses);
@@ -686,14 +693,16 @@ public class AzureProviderTest {
         when(azureProviderNetworkingUtils.getVMNetworks(azureService,
                                                         virtualMachine)).thenReturn(Lists.newArrayList(virtualNetwork));
 
+        stubAsyncDeletions();
+
         // Trigger deleteInstance with busy securityGroup and virtualNetwork
         azureProvider.deleteInstance(infrastructure, "vmId");
-        verify(virtualMachines).deleteById("vmId");
-        verify(networkInterfaces).deleteById("netIf-id");
-        verify(publicIPAddresses).deleteById("pubIP-id");
-        verify(disks).deleteById("diskId");
-        verify(networkSecurityGroups, times(0)).deleteById("nsg-id");
-        verify(virtualNetworks, times(0)).deleteById("vnet-id");
+        verify(virtualMachines).deleteByIdAsync("vmId");
+        verify(networkInterfaces).deleteByIdAsync("netIf-id");
+        verify(publicIPAddresses).deleteByIdAsync("pubIP-id");
+        verify(disks).deleteByIdAsync("diskId");
+        verify(networkSecurityGroups, times(0)).deleteByIdAsync("nsg-id");
+        verify(virtualNetworks, times(0)).deleteByIdAsync("vnet-id");
     }
 
     @Test
@@ -706,8 +715,9 @@ public class AzureProviderTest {
                                                                                      "domain",
                                                                                      "subscriptionId");
 
-        when(azureProviderUtils.searchVirtualMachineByName(azureService,
-                                                           "vmTag")).thenReturn(Optional.of(virtualMachine));
+        when(azureProviderUtils.searchVirtualMachinesByName(eq(azureService),
+                                                            eq("vmTag"),
+                                                            any())).thenReturn(Collections.singletonList(virtualMachine));
         when(virtualMachine.name()).thenReturn("vmTag");
         when(virtualMachine.listExtensions()).thenReturn(virtualMachineExtensionsMap);
         when(virtualMachineExtensionsMap.values()).thenReturn(Lists.newArrayList());
@@ -736,6 +746,121 @@ public class AzureProviderTest {
         assertThat(scriptsResult.size(), is(2));
     }
 
+    @Test
+    public void testExecuteScriptOnInstanceTagInParallel()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Infrastructure infrastructure = InfrastructureFixture.getAzureInfrastructure("id-azure",
+                                                                                     "azure",
+                                                                                     "clientId",
+                                                                                     "projectId",
+                                                                                     "secret",
+                                                                                     "domain",
+                                                                                     "subscriptionId");
+
+        when(azureProviderUtils.searchVirtualMachinesByName(eq(azureService),
+                                                            eq("vmTag"),
+                                                            any())).thenReturn(Lists.newArrayList(virtualMachine,
+                                                                                                  virtualMachine2));
+        when(virtualMachine.vmId()).thenReturn("vmId");
+        when(virtualMachine.name()).thenReturn("vmTag-abc");
+        when(virtualMachine.listExtensions()).thenReturn(virtualMachineExtensionsMap);
+        when(virtualMachineExtensionsMap.values()).thenReturn(Lists.newArrayList());
+        when(virtualMachine.osType()).thenReturn(OperatingSystemTypes.LINUX);
+
+        // Mock new extension definition
+        when(virtualMachine.update()).thenReturn(virtualMachineUpdate);
+        when(virtualMachineUpdate.defineNewExtension(anyString())).thenReturn(virtualMachineUpdateBlank);
+        when(virtualMachineUpdateBlank.withPublisher(anyString())).thenReturn(virtualMachineUpdateWithType);
+        when(virtualMachineUpdateWithType.withType(anyString())).thenReturn(virtualMachineUpdateWithVersion);
+        when(virtualMachineUpdateWithVersion.withVersion(anyString())).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.withMinorVersionAutoUpgrade()).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.withPublicSetting(anyString(),
+                                                              anyString())).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.attach()).thenReturn(virtualMachineUpdate);
+        when(virtualMachineUpdate.applyAsync(null)).thenReturn(virtualMachineUpdateFuture);
+        when(virtualMachineUpdateFuture.get(anyLong(), any(TimeUnit.class))).thenReturn(virtualMachine);
+
+        // The second instance cannot be updated
+        when(virtualMachine2.vmId()).thenReturn("vmId2");
+        when(virtualMachine2.name()).thenReturn("vmTag-def");
+        when(virtualMachine2.listExtensions()).thenThrow(new RuntimeException("unreachable"));
+        when(virtualMachine2.osType()).thenReturn(OperatingSystemTypes.LINUX);
+
+        // Trigger executeScript
+        List<ScriptResult> scriptsResult = azureProvider.executeScriptOnInstanceTag(infrastructure,
+                                                                                    "vmTag",
+                                                                                    InstanceScriptFixture.getInstanceScript(new String[] { "id",
+                                                                                                                                           "pwd" }));
+        verify(virtualMachineUpdate).defineNewExtension(anyString());
+        assertThat(scriptsResult.size(), is(3));
+        assertThat(scriptsResult.get(0).getInstanceId(), is("vmId"));
+        assertThat(scriptsResult.get(0).getError(), is(""));
+        assertThat(scriptsResult.get(1).getInstanceId(), is("vmId"));
+        assertThat(scriptsResult.get(2).getInstanceId(), is("vmId2"));
+        assertThat(scriptsResult.get(2).getError(), is("unreachable"));
+    }
+
+    @Test
+    public void testIsCreatedFromInstanceTagWithLongTagsSharingTheirPrefix() {
+        String instanceTag = "a-very-long-instance-tag-shared-by-several-instances-1";
+        String otherInstanceTag = "a-very-long-instance-tag-shared-by-several-instances-2";
+        when(virtualMachine.name()).thenReturn(AzureProvider.createUniqueInstanceTag(instanceTag));
+        when(virtualMachine.tags()).thenReturn(Collections.singletonMap(AzureProvider.INSTANCE_TAG_KEY, instanceTag));
+        when(virtualMachine2.name()).thenReturn(AzureProvider.createUniqueInstanceTag(otherInstanceTag));
+        when(virtualMachine2.tags()).thenReturn(Collections.singletonMap(AzureProvider.INSTANCE_TAG_KEY,
+                                                                         otherInstanceTag));
+
+        assertThat(AzureProvider.isCreatedFromInstanceTag(virtualMachine, instanceTag), is(true));
+        assertThat(AzureProvider.isCreatedFromInstanceTag(virtualMachine2, instanceTag), is(false));
+        assertThat(AzureProvider.isCreatedFromInstanceTag(virtualMachine2, otherInstanceTag), is(true));
+    }
+
+    @Test
+    public void testExecuteScriptOnInstanceIdsReportsMissingInstances()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Infrastructure infrastructure = InfrastructureFixture.getAzureInfrastructure("id-azure",
+                                                                                     "azure",
+                                                                                     "clientId",
+                                                                                     "projectId",
+                                                                                     "secret",
+                                                                                     "domain",
+                                                                                     "subscriptionId");
+
+        when(azureProviderUtils.searchVirtualMachinesByIDs(eq(azureService),
+                                                           any())).thenReturn(Collections.singletonMap("vmId",
+                                                                                                       virtualMachine));
+        when(virtualMachine.vmId()).thenReturn("vmId");
+        when(virtualMachine.name()).thenReturn("vmTag");
+        when(virtualMachine.osType()).thenReturn(OperatingSystemTypes.LINUX);
+        when(virtualMachine.listExtensions()).thenReturn(virtualMachineExtensionsMap);
+        when(virtualMachineExtensionsMap.values()).thenReturn(Lists.newArrayList());
+
+        // Mock new extension definition
+        when(virtualMachine.update()).thenReturn(virtualMachineUpdate);
+        when(virtualMachineUpdate.defineNewExtension(anyString())).thenReturn(virtualMachineUpdateBlank);
+        when(virtualMachineUpdateBlank.withPublisher(anyString())).thenReturn(virtualMachineUpdateWithType);
+        when(virtualMachineUpdateWithType.withType(anyString())).thenReturn(virtualMachineUpdateWithVersion);
+        when(virtualMachineUpdateWithVersion.withVersion(anyString())).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.withMinorVersionAutoUpgrade()).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.withPublicSetting(anyString(),
+                                                              anyString())).thenReturn(virtualMachineUpdateWithAttach);
+        when(virtualMachineUpdateWithAttach.attach()).thenReturn(virtualMachineUpdate);
+        when(virtualMachineUpdate.applyAsync(null)).thenReturn(virtualMachineUpdateFuture);
+        when(virtualMachineUpdateFuture.get(anyLong(), any(TimeUnit.class))).thenReturn(virtualMachine);
+
+        // Trigger executeScript
+        List<ScriptResult> scriptsResult = azureProvider.executeScriptOnInstanceIds(infrastructure,
+                                                                                    Lists.newArrayList("missingVmId",
+                                                                                                       "vmId"),
+                                                                                    InstanceScriptFixture.getInstanceScript(new String[] { "id" }));
+        verify(azureProviderUtils, times(0)).searchVirtualMachineByID(any(Azure.class), anyString());
+        assertThat(scriptsResult.size(), is(2));
+        assertThat(scriptsResult.get(0).getInstanceId(), is("missingVmId"));
+        assertThat(scriptsResult.get(0).getError(), is(AzureProvider.INSTANCE_NOT_FOUND_ERROR + "'missingVmId'"));
+        assertThat(scriptsResult.get(1).getInstanceId(), is("vmId"));
+        assertThat(scriptsResult.get(1).getError(), is(""));
+    }
+
     @Test
     public void testExecuteScriptOnInstanceId() throws InterruptedException, ExecutionException, TimeoutException {
         Infrastructure infrastructure = InfrastructureFixture.getAzureInfrastructure("id-azure",
@@ -1017,6 +1142,138 @@ public class AzureProviderTest {
         verify(azureServiceCache).removeService(infrastructure);
     }
 
+    @Test
+    public void testDeleteInstancesInBatchListsNetworkInterfacesOnce() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("azure");
+        when(azureProviderUtils.getAllVirtualMachines(azureService)).thenReturn(Sets.newHashSet(virtualMachine,
+                                                                                                virtualMachine2));
+        when(virtualMachine.id()).thenReturn("vm1-resource-id");
+        when(virtualMachine.vmId()).thenReturn("vm1");
+        when(virtualMachine.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-1"));
+        when(virtualMachine2.id()).thenReturn("vm2-resource-id");
+        when(virtualMachine2.vmId()).thenReturn("vm2");
+        when(virtualMachine2.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-2"));
+        when(networkSecurityGroup.id()).thenReturn("nsg-id");
+        when(virtualNetwork.id()).thenReturn("vnet-id");
+        when(azureProviderNetworkingUtils.getVMSecurityGroups(eq(azureService),
+                                                              any(VirtualMachine.class))).thenReturn(Lists.newArrayList(networkSecurityGroup));
+        when(azureProviderNetworkingUtils.getVMNetworks(eq(azureService),
+                                                        any(VirtualMachine.class))).thenReturn(Lists.newArrayList(virtualNetwork));
+        when(azureService.virtualMachines()).thenReturn(virtualMachines);
+        when(azureService.publicIPAddresses()).thenReturn(publicIPAddresses);
+        when(azureService.disks()).thenReturn(disks);
+        when(azureService.networkSecurityGroups()).thenReturn(networkSecurityGroups);
+        when(azureService.networks()).thenReturn(virtualNetworks);
+
+        // The remaining network interfaces: the deleted one, still listed, and another one using the security group
+        PagedList<NetworkInterface> pagedListNetworkInterface = getPagedList();
+        pagedListNetworkInterface.add(networkInterface);
+        pagedListNetworkInterface.add(secondaryNetworkInterface);
+        when(azureService.networkInterfaces()).thenReturn(networkInterfaces);
+        when(networkInterfaces.list()).thenReturn(pagedListNetworkInterface);
+        when(networkInterface.id()).thenReturn("NETIF-1");
+        when(networkInterface.networkSecurityGroupId()).thenReturn("nsg-id");
+        when(networkInterface.ipConfigurations()).thenReturn(Collections.singletonMap("ipConf", nicIPConfiguration));
+        when(nicIPConfiguration.networkId()).thenReturn("vnet-id");
+        when(secondaryNetworkInterface.id()).thenReturn("other-netIf");
+        when(secondaryNetworkInterface.networkSecurityGroupId()).thenReturn("NSG-ID");
+        when(secondaryNetworkInterface.ipConfigurations()).thenReturn(Collections.emptyMap());
+
+        stubAsyncDeletions();
+
+        assertThat(azureProvider.deleteInstancesInBatch(infrastructure, Sets.newHashSet("vm1", "vm2")),
+                   is(Sets.newHashSet("vm1", "vm2")));
+        verify(networkInterfaces, times(1)).list();
+        verify(networkSecurityGroups, times(0)).deleteByIdAsync("nsg-id");
+        verify(virtualNetworks).deleteByIdAsync("vnet-id");
+    }
+
+    @Test
+    public void testDeleteInstancesInBatchCleansOnlyTheDeletedInstances() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("azure");
+        when(azureProviderUtils.getAllVirtualMachines(azureService)).thenReturn(Sets.newHashSet(virtualMachine,
+                                                                                                virtualMachine2));
+        when(virtualMachine.id()).thenReturn("vm1-resource-id");
+        when(virtualMachine.vmId()).thenReturn("vm1");
+        when(virtualMachine.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-1"));
+        when(virtualMachine.osDiskId()).thenReturn("disk-1");
+        when(virtualMachine2.id()).thenReturn("vm2-resource-id");
+        when(virtualMachine2.vmId()).thenReturn("vm2");
+        when(virtualMachine2.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-2"));
+        when(virtualMachine2.osDiskId()).thenReturn("disk-2");
+        when(azureService.virtualMachines()).thenReturn(virtualMachines);
+        when(azureService.networkInterfaces()).thenReturn(networkInterfaces);
+        when(azureService.publicIPAddresses()).thenReturn(publicIPAddresses);
+        when(azureService.disks()).thenReturn(disks);
+        when(azureService.networkSecurityGroups()).thenReturn(networkSecurityGroups);
+        when(azureService.networks()).thenReturn(virtualNetworks);
+        when(networkInterfaces.list()).thenReturn(getPagedList());
+        stubAsyncDeletions();
+        when(virtualMachines.deleteByIdAsync("vm2-resource-id")).thenReturn(Completable.error(new IllegalStateException("busy")));
+
+        assertThat(azureProvider.deleteInstancesInBatch(infrastructure, Sets.newHashSet("vm1", "vm2")),
+                   is(Sets.newHashSet("vm1")));
+        verify(networkInterfaces).deleteByIdAsync("netIf-1");
+        verify(disks).deleteByIdAsync("disk-1");
+        verify(networkInterfaces, times(0)).deleteByIdAsync("netIf-2");
+        verify(disks, times(0)).deleteByIdAsync("disk-2");
+    }
+
+    @Test
+    public void testGetAllInfrastructureInstancesListsNetworkResourcesOnce() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("azure");
+        when(azureProviderUtils.getAllVirtualMachines(azureService)).thenReturn(Sets.newHashSet(virtualMachine,
+                                                                                                virtualMachine2));
+        when(virtualMachine.vmId()).thenReturn("vm1");
+        when(virtualMachine.resourceGroupName()).thenReturn("resourceGroup");
+        when(virtualMachine.networkInterfaceIds()).thenReturn(Collections.singletonList("netif-1"));
+        when(virtualMachine2.vmId()).thenReturn("vm2");
+        when(virtualMachine2.resourceGroupName()).thenReturn("resourceGroup");
+        when(virtualMachine2.networkInterfaceIds()).thenReturn(Collections.singletonList("netIf-2"));
+
+        // NetworkInterfaces, referenced with a different case than the listed ones
+        PagedList<NetworkInterface> pagedListNetworkInterface = getPagedList();
+        pagedListNetworkInterface.add(networkInterface);
+        pagedListNetworkInterface.add(secondaryNetworkInterface);
+        when(azureService.networkInterfaces()).thenReturn(networkInterfaces);
+        when(networkInterfaces.listByResourceGroup("resourcegroup")).thenReturn(pagedListNetworkInterface);
+        when(networkInterface.id()).thenReturn("NetIf-1");
+        when(secondaryNetworkInterface.id()).thenReturn("netIf-2");
+        Map<String, NicIPConfiguration> mapIPConfiguration = new HashMap<>();
+        mapIPConfiguration.put("ipConf", nicIPConfiguration);
+        when(networkInterface.ipConfigurations()).thenReturn(mapIPConfiguration);
+        when(secondaryNetworkInterface.ipConfigurations()).thenReturn(mapIPConfiguration);
+        when(nicIPConfiguration.privateIPAddress()).thenReturn("10.0.0.1");
+        when(networkInterface.primaryIPConfiguration()).thenReturn(nicIPConfiguration);
+        when(nicIPConfiguration.publicIPAddressId()).thenReturn("pubIP-id");
+
+        // PublicIPAddresses
+        PagedList<PublicIPAddress> pagedListPublicIPAddress = getPagedList();
+        pagedListPublicIPAddress.add(publicIPAddress);
+        when(azureService.publicIPAddresses()).thenReturn(publicIPAddresses);
+        when(publicIPAddresses.listByResourceGroup("resourcegroup")).thenReturn(pagedListPublicIPAddress);
+        when(publicIPAddress.id()).thenReturn("pubIP-id");
+        when(publicIPAddress.ipAddress()).thenReturn("1.2.3.4");
+
+        Set<Instance> instances = azureProvider.getAllInfrastructureInstances(infrastructure);
+
+        assertThat(instances.size(), is(2));
+        Instance instance = instances.stream().filter(it -> it.getId().equals("vm1")).findAny().get();
+        assertThat(instance.getNetwork().getPublicAddresses(), is(Collections.singletonList("1.2.3.4")));
+        assertThat(instance.getNetwork().getPrivateAddresses(), is(Collections.singletonList("10.0.0.1")));
+        verify(networkInterfaces, never()).getById(anyString());
+        verify(nicIPConfiguration, never()).getPublicIPAddress();
+    }
+
+    private void stubAsyncDeletions() {
+        when(virtualMachines.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networkInterfaces.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(publicIPAddresses.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(disks.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networkSecurityGroups.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(virtualNetworks.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+    }
+
     private <T> PagedList<T> getPagedList() {
         return new PagedList<T>() {
             @Override
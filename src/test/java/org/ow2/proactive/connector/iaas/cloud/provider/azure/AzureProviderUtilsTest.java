@@ -0,0 +1,145 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.microsoft.azure.Page;
+import com.microsoft.azure.PagedList;
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.compute.VirtualMachine;
+import com.microsoft.azure.management.compute.VirtualMachines;
+import com.microsoft.rest.RestException;
+
+
+public class AzureProviderUtilsTest {
+
+    private static final String VM_RESOURCE_ID = "/subscriptions/subscriptionId/resourceGroups/rg/virtualMachines/vm";
+
+    private AzureProviderUtils azureProviderUtils;
+
+    @Mock
+    private Azure azureService;
+
+    @Mock
+    private VirtualMachines virtualMachines;
+
+    @Mock
+    private VirtualMachine virtualMachine;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        azureProviderUtils = new AzureProviderUtils();
+        when(azureService.subscriptionId()).thenReturn("subscriptionId");
+        when(azureService.virtualMachines()).thenReturn(virtualMachines);
+        when(virtualMachine.id()).thenReturn(VM_RESOURCE_ID);
+        when(virtualMachine.vmId()).thenReturn("vmId");
+        when(virtualMachine.name()).thenReturn("vm");
+        PagedList<VirtualMachine> pagedListVirtualMachine = getPagedList();
+        pagedListVirtualMachine.add(virtualMachine);
+        when(virtualMachines.list()).thenReturn(pagedListVirtualMachine);
+    }
+
+    @Test
+    public void testSearchVirtualMachineByIDUsesTheIndex() {
+        assertThat(azureProviderUtils.searchVirtualMachineByID(azureService, "vmId").get(), is(virtualMachine));
+
+        when(virtualMachines.getById(VM_RESOURCE_ID)).thenReturn(virtualMachine);
+        assertThat(azureProviderUtils.searchVirtualMachineByID(azureService, "vmId").get(), is(virtualMachine));
+        assertThat(azureProviderUtils.searchVirtualMachineByName(azureService, "vm").get(), is(virtualMachine));
+        verify(virtualMachines, times(1)).list();
+    }
+
+    @Test
+    public void testSearchVirtualMachineByIDOfCreatedVirtualMachine() {
+        azureProviderUtils.indexVirtualMachines(azureService, Collections.singletonList(virtualMachine));
+        when(virtualMachines.getById(VM_RESOURCE_ID)).thenReturn(virtualMachine);
+
+        assertThat(azureProviderUtils.searchVirtualMachineByID(azureService, "vmId").get(), is(virtualMachine));
+        verify(virtualMachines, times(0)).list();
+    }
+
+    @Test
+    public void testSearchVirtualMachineByIDOfDeletedVirtualMachine() {
+        azureProviderUtils.indexVirtualMachines(azureService, Collections.singletonList(virtualMachine));
+        azureProviderUtils.forgetVirtualMachines(azureService, Collections.singletonList(virtualMachine));
+        virtualMachines.list().clear();
+
+        assertThat(azureProviderUtils.searchVirtualMachineByID(azureService, "vmId").isPresent(), is(false));
+        verify(virtualMachines, times(0)).getById(VM_RESOURCE_ID);
+    }
+
+    @Test
+    public void testSearchVirtualMachinesByIDsListsTheSubscriptionOnce() {
+        Map<String, VirtualMachine> vms = azureProviderUtils.searchVirtualMachinesByIDs(azureService,
+                                                                                        Arrays.asList("vmId",
+                                                                                                      "missingVmId"));
+        assertThat(vms.size(), is(1));
+        assertThat(vms.get("vmId"), is(virtualMachine));
+        verify(virtualMachines, times(1)).list();
+    }
+
+    @Test
+    public void testSearchVirtualMachinesByNameWithoutExactName() {
+        VirtualMachine otherVirtualMachine = mock(VirtualMachine.class);
+        when(otherVirtualMachine.name()).thenReturn("other-vm");
+        virtualMachines.list().add(otherVirtualMachine);
+
+        List<VirtualMachine> vms = azureProviderUtils.searchVirtualMachinesByName(azureService,
+                                                                                  "tag",
+                                                                                  vm -> vm == otherVirtualMachine);
+        assertThat(vms, is(Collections.singletonList(otherVirtualMachine)));
+
+        vms = azureProviderUtils.searchVirtualMachinesByName(azureService, "vm", vm -> vm == otherVirtualMachine);
+        assertThat(vms, is(Collections.singletonList(virtualMachine)));
+    }
+
+    private <T> PagedList<T> getPagedList() {
+        return new PagedList<T>() {
+            @Override
+            public Page<T> nextPage(String nextPageLink) throws RestException, IOException {
+                return null;
+            }
+        };
+    }
+}
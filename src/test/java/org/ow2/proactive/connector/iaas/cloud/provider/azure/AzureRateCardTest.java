@@ -0,0 +1,91 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalDouble;
+
+import org.junit.Test;
+
+
+public class AzureRateCardTest {
+
+    private static final String VM_METER_ID = "0b2a3f4e-1c5d-4e6f-8a9b-0c1d2e3f4a5b";
+
+    private static final String OTHER_VM_METER_ID = "ffffffff-1c5d-4e6f-8a9b-0c1d2e3f4a5b";
+
+    private static final String STORAGE_METER_ID = "1b2a3f4e-1c5d-4e6f-8a9b-0c1d2e3f4a5b";
+
+    @Test
+    public void testParseKeepsOnlyVirtualMachineMeters() throws IOException {
+        AzureRateCard rateCard = AzureRateCard.parse(stream("{\"OfferTerms\":[{\"Name\":\"term\",\"Excluded\":[1,2]}]," +
+                                                            "\"Meters\":[" + meter(VM_METER_ID, "Virtual Machines", 0.12) +
+                                                            "," + meter(STORAGE_METER_ID, "Storage", 0.05) + "," +
+                                                            meter(OTHER_VM_METER_ID, "Virtual Machines", 1.5) +
+                                                            "],\"Currency\":\"USD\",\"IsTaxIncluded\":false}"));
+
+        assertThat(rateCard.size(), is(2));
+        assertThat(rateCard.getParsedMeters(), is(3));
+        assertThat(rateCard.getPrice(VM_METER_ID), is(OptionalDouble.of(0.12)));
+        assertThat(rateCard.getPrice(OTHER_VM_METER_ID.toUpperCase()), is(OptionalDouble.of(1.5)));
+        assertThat(rateCard.getPrice(STORAGE_METER_ID), is(OptionalDouble.empty()));
+        assertThat(rateCard.getPrice(null), is(OptionalDouble.empty()));
+    }
+
+    @Test
+    public void testParseKeepsLastPriceOfDuplicatedAndNonUuidMeters() throws IOException {
+        AzureRateCard rateCard = AzureRateCard.parse(stream("{\"Meters\":[" +
+                                                            meter(VM_METER_ID, "Virtual Machines", 0.12) + "," +
+                                                            meter("legacy-meter", "Virtual Machines", 0.3) + "," +
+                                                            meter(VM_METER_ID, "Virtual Machines", 0.2) + "]}"));
+
+        assertThat(rateCard.size(), is(2));
+        assertThat(rateCard.getPrice(VM_METER_ID), is(OptionalDouble.of(0.2)));
+        assertThat(rateCard.getPrice("legacy-meter"), is(OptionalDouble.of(0.3)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParseFailsWithoutMeters() throws IOException {
+        AzureRateCard.parse(stream("{\"error\":{\"code\":\"AuthorizationFailed\"}}"));
+    }
+
+    private static String meter(String meterId, String meterCategory, double baseRate) {
+        return "{\"EffectiveDate\":\"2017-01-01T00:00:00Z\",\"IncludedQuantity\":0.0,\"MeterCategory\":\"" +
+               meterCategory + "\",\"MeterId\":\"" + meterId + "\",\"MeterName\":\"D2 v3\"," +
+               "\"MeterRates\":{\"0\":" + baseRate + ",\"100\":" + (baseRate / 2) + "}," +
+               "\"MeterRegion\":\"US East\",\"MeterSubCategory\":\"Dv3 Series\",\"MeterTags\":[],\"Unit\":\"1 Hour\"}";
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
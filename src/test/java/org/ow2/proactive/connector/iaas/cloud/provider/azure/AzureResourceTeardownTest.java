@@ -0,0 +1,250 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.microsoft.azure.Page;
+import com.microsoft.azure.PagedList;
+import com.microsoft.azure.management.Azure;
+import com.microsoft.azure.management.compute.Disks;
+import com.microsoft.azure.management.compute.VirtualMachines;
+import com.microsoft.azure.management.network.Network;
+import com.microsoft.azure.management.network.NetworkInterface;
+import com.microsoft.azure.management.network.NetworkInterfaces;
+import com.microsoft.azure.management.network.NetworkSecurityGroup;
+import com.microsoft.azure.management.network.NetworkSecurityGroups;
+import com.microsoft.azure.management.network.Networks;
+import com.microsoft.azure.management.network.PublicIPAddresses;
+
+import rx.Completable;
+
+
+public class AzureResourceTeardownTest {
+
+    @Mock
+    private Azure azureService;
+
+    @Mock
+    private VirtualMachines virtualMachines;
+
+    @Mock
+    private NetworkInterfaces networkInterfaces;
+
+    @Mock
+    private PublicIPAddresses publicIPAddresses;
+
+    @Mock
+    private Disks disks;
+
+    @Mock
+    private NetworkSecurityGroups networkSecurityGroups;
+
+    @Mock
+    private Networks networks;
+
+    @Mock
+    private NetworkSecurityGroup networkSecurityGroup;
+
+    @Mock
+    private Network network;
+
+    private AzureResourceTeardown teardown;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(azureService.virtualMachines()).thenReturn(virtualMachines);
+        when(azureService.networkInterfaces()).thenReturn(networkInterfaces);
+        when(azureService.publicIPAddresses()).thenReturn(publicIPAddresses);
+        when(azureService.disks()).thenReturn(disks);
+        when(azureService.networkSecurityGroups()).thenReturn(networkSecurityGroups);
+        when(azureService.networks()).thenReturn(networks);
+        when(virtualMachines.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networkInterfaces.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(publicIPAddresses.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(disks.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networkSecurityGroups.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networks.deleteByIdAsync(anyString())).thenReturn(Completable.complete());
+        when(networkInterfaces.list()).thenReturn(getPagedList());
+        when(networkSecurityGroup.id()).thenReturn("nsg-id");
+        when(network.id()).thenReturn("vnet-id");
+
+        teardown = AzureResourceTeardown.builder()
+                                        .azureService(azureService)
+                                        .virtualMachineId("vm-id")
+                                        .networkInterfaceId("nic-id")
+                                        .publicIPAddressId("ip-id")
+                                        .diskId("disk-id")
+                                        .networkSecurityGroup(networkSecurityGroup)
+                                        .network(network)
+                                        .build();
+    }
+
+    @Test
+    public void testExecuteDeletesAlongTheDependencies() {
+        teardown.execute();
+
+        InOrder inOrder = inOrder(virtualMachines, networkInterfaces, publicIPAddresses);
+        inOrder.verify(virtualMachines).deleteByIdAsync("vm-id");
+        inOrder.verify(networkInterfaces).deleteByIdAsync("nic-id");
+        inOrder.verify(publicIPAddresses).deleteByIdAsync("ip-id");
+        verify(disks).deleteByIdAsync("disk-id");
+        verify(networkSecurityGroups).deleteByIdAsync("nsg-id");
+        verify(networks).deleteByIdAsync("vnet-id");
+    }
+
+    @Test
+    public void testFailedVirtualMachineDeletionKeepsItsResources() {
+        when(virtualMachines.deleteByIdAsync("vm-id")).thenReturn(Completable.error(new IllegalStateException("busy")));
+
+        try {
+            teardown.execute();
+            fail("The deletion of the virtual machine should have failed");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("busy"));
+        }
+        verify(networkInterfaces, never()).deleteByIdAsync(anyString());
+        verify(disks, never()).deleteByIdAsync(anyString());
+    }
+
+    @Test
+    public void testFailedNetworkInterfaceDeletionDoesNotStopTheDiskDeletion() {
+        when(networkInterfaces.deleteByIdAsync("nic-id")).thenReturn(Completable.error(new IllegalStateException("busy")));
+
+        try {
+            teardown.deleteAttachedResources().await();
+            fail("The deletion of the network interface should have failed");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("busy"));
+        }
+        verify(disks).deleteByIdAsync("disk-id");
+        verify(publicIPAddresses, never()).deleteByIdAsync(anyString());
+        verify(networkInterfaces, never()).list();
+    }
+
+    @Test
+    public void testDeletionsAreBoundedInConcurrencyAndDuration() {
+        when(virtualMachines.deleteByIdAsync(anyString())).thenReturn(Completable.never());
+        AzureResourceTeardown boundedTeardown = AzureResourceTeardown.builder()
+                                                                     .azureService(azureService)
+                                                                     .maxConcurrency(2)
+                                                                     .timeout(100)
+                                                                     .virtualMachineIds(Arrays.asList("vm-1",
+                                                                                                      "vm-2",
+                                                                                                      "vm-3",
+                                                                                                      "vm-4"))
+                                                                     .build();
+
+        try {
+            boundedTeardown.execute();
+            fail("The deletion of the virtual machines should have timed out");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().contains("did not complete within 100 ms"), is(true));
+        }
+        verify(virtualMachines, times(2)).deleteByIdAsync(anyString());
+    }
+
+    @Test
+    public void testDeletionIsCancelledAfterItsTimeout() {
+        AtomicBoolean unsubscribed = new AtomicBoolean(false);
+        when(virtualMachines.deleteByIdAsync(anyString())).thenReturn(Completable.never()
+                                                                                 .doOnUnsubscribe(() -> unsubscribed.set(true)));
+        AzureResourceTeardown boundedTeardown = AzureResourceTeardown.builder()
+                                                                     .azureService(azureService)
+                                                                     .timeout(100)
+                                                                     .virtualMachineId("vm-id")
+                                                                     .networkInterfaceId("nic-id")
+                                                                     .build();
+
+        try {
+            boundedTeardown.execute();
+            fail("The deletion of the virtual machine should have timed out");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().contains("did not complete within 100 ms"), is(true));
+        }
+        assertThat(unsubscribed.get(), is(true));
+        verify(networkInterfaces, never()).deleteByIdAsync(anyString());
+    }
+
+    @Test
+    public void testEachVirtualMachineIsDeletedIndependently() {
+        when(virtualMachines.deleteByIdAsync("vm-1")).thenReturn(Completable.error(new IllegalStateException("busy")));
+        AzureResourceTeardown virtualMachinesTeardown = AzureResourceTeardown.builder()
+                                                                             .azureService(azureService)
+                                                                             .virtualMachineIds(Arrays.asList("vm-1",
+                                                                                                              "vm-2",
+                                                                                                              "vm-3"))
+                                                                             .build();
+
+        assertThat(virtualMachinesTeardown.deleteEachVirtualMachine(), is(new HashSet<>(Arrays.asList("vm-2", "vm-3"))));
+    }
+
+    @Test
+    public void testReferencedNetworkResourcesAreKept() {
+        PagedList<NetworkInterface> remainingNetworkInterfaces = getPagedList();
+        NetworkInterface networkInterface = mock(NetworkInterface.class);
+        when(networkInterface.id()).thenReturn("other-nic-id");
+        when(networkInterface.networkSecurityGroupId()).thenReturn("nsg-id");
+        when(networkInterface.ipConfigurations()).thenReturn(Collections.emptyMap());
+        remainingNetworkInterfaces.add(networkInterface);
+        when(networkInterfaces.list()).thenReturn(remainingNetworkInterfaces);
+
+        teardown.execute();
+
+        verify(networkSecurityGroups, never()).deleteByIdAsync(anyString());
+        verify(networks).deleteByIdAsync("vnet-id");
+    }
+
+    private <T> PagedList<T> getPagedList() {
+        return new PagedList<T>() {
+            @Override
+            public Page<T> nextPage(String nextPageLink) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.azure;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.connector.iaas.cache.RefreshingCache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+public class AzureRetailPricesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSavedPricesKeepTheAgeOfTheirFile() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("azure-retail-prices-eastus.json");
+        new ObjectMapper().writeValue(file.toFile(),
+                                      Collections.singletonMap("Standard_A1",
+                                                               new AzureRetailPrice("meter-3", 0.06, false)));
+        long savedAt = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(savedAt));
+        AzureRetailPrices retailPrices = new AzureRetailPrices(TimeUnit.DAYS.toMillis(1),
+                                                               TimeUnit.DAYS.toMillis(7),
+                                                               1,
+                                                               temporaryFolder.getRoot().getPath(),
+                                                               "");
+        try {
+            Map<String, AzureRetailPrice> prices = retailPrices.getPrices("eastus");
+
+            assertThat(prices.get("Standard_A1").getMeterId(), is("meter-3"));
+            long age = getPricesPerRegion(retailPrices).getAge("eastus").get();
+            assertThat(age, greaterThanOrEqualTo(TimeUnit.HOURS.toMillis(1)));
+            assertThat(age, lessThan(TimeUnit.HOURS.toMillis(1) + TimeUnit.MINUTES.toMillis(1)));
+        } finally {
+            retailPrices.shutdown();
+        }
+    }
+
+    @Test
+    public void testParsePageReturnsTheNextPageLink() throws IOException {
+        Map<String, AzureRetailPrice> prices = new HashMap<>();
+
+        String nextPage = AzureRetailPrices.parsePage(stream("{\"BillingCurrency\":\"USD\",\"Items\":[" +
+                                                             item("Standard_D2s_v3", "D2s v3", "Virtual Machines DSv3 Series", "meter-1", 0.096) +
+                                                             "," +
+                                                             item("Standard_D4s_v3", "D4s v3", "Virtual Machines DSv3 Series", "meter-2", 0.192) +
+                                                             "],\"NextPageLink\":\"https://prices.azure.com/next\",\"Count\":2}"),
+                                                      prices);
+
+        assertThat(nextPage, is("https://prices.azure.com/next"));
+        assertThat(prices.size(), is(2));
+        assertThat(prices.get("Standard_D2s_v3"), is(new AzureRetailPrice("meter-1", 0.096, false)));
+        assertThat(prices.get("Standard_D4s_v3").getRetailPrice(), is(0.192));
+    }
+
+    @Test
+    public void testParseLastPage() throws IOException {
+        Map<String, AzureRetailPrice> prices = new HashMap<>();
+
+        String nextPage = AzureRetailPrices.parsePage(stream("{\"Items\":[" +
+                                                             item("Standard_A1", "A1", "Virtual Machines A Series", "meter-3", 0.06) +
+                                                             "],\"NextPageLink\":null}"),
+                                                      prices);
+
+        assertThat(nextPage, is(nullValue()));
+        assertThat(prices.get("Standard_A1").getMeterId(), is("meter-3"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testParsePageWithoutItems() throws IOException {
+        AzureRetailPrices.parsePage(stream("{\"error\":{\"code\":\"BadRequest\"}}"), new HashMap<>());
+    }
+
+    @Test
+    public void testAddPriceSkipsSpotAndLowPriorityPrices() {
+        Map<String, AzureRetailPrice> prices = new HashMap<>();
+
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Consumption", "D2s v3 Spot", "Virtual Machines DSv3 Series", "spot", 0.02);
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Consumption", "D2s v3 Low Priority", "Virtual Machines DSv3 Series", "low", 0.019);
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Reservation", "D2s v3", "Virtual Machines DSv3 Series", "reserved", 0.05);
+
+        assertThat(prices.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testAddPricePrefersThePriceWithoutWindowsLicense() {
+        Map<String, AzureRetailPrice> prices = new HashMap<>();
+
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Consumption", "D2s v3", "Virtual Machines DSv3 Series Windows", "windows", 0.188);
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Consumption", "D2s v3", "Virtual Machines DSv3 Series", "linux", 0.096);
+        AzureRetailPrices.addPrice(prices, "Standard_D2s_v3", "Consumption", "D2s v3", "Virtual Machines DSv3 Series Windows", "cheaper-windows", 0.05);
+
+        assertThat(prices.get("Standard_D2s_v3").getMeterId(), is("linux"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RefreshingCache<String, Map<String, AzureRetailPrice>>
+            getPricesPerRegion(AzureRetailPrices retailPrices) {
+        return (RefreshingCache<String, Map<String, AzureRetailPrice>>) ReflectionTestUtils.getField(retailPrices,
+                                                                                                    "pricesPerRegion");
+    }
+
+    private static String item(String armSkuName, String skuName, String productName, String meterId,
+            double retailPrice) {
+        return "{\"currencyCode\":\"USD\",\"retailPrice\":" + retailPrice + ",\"armRegionName\":\"eastus\"," +
+               "\"meterId\":\"" + meterId + "\",\"productName\":\"" + productName + "\",\"skuName\":\"" + skuName +
+               "\",\"serviceName\":\"Virtual Machines\",\"armSkuName\":\"" + armSkuName +
+               "\",\"type\":\"Consumption\",\"isPrimaryMeterRegion\":true,\"savingsPlan\":[{\"term\":\"1 Year\"}]}";
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -36,7 +36,6 @@ import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
@@ -51,7 +50,6 @@ import com.microsoft.azure.management.Azure;
  */
 public class AzureServiceCacheTest {
 
-    @InjectMocks
     private AzureServiceCache azureServiceCache;
 
     @Mock
@@ -63,6 +61,7 @@ public class AzureServiceCacheTest {
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
+        azureServiceCache = new AzureServiceCache(azureServiceBuilder, 100, 1000);
         when(azureServiceBuilder.buildServiceFromInfrastructure(any(Infrastructure.class))).thenReturn(azureService);
     }
 
@@ -139,7 +138,7 @@ public class AzureServiceCacheTest {
         azureServiceCache.getService(InfrastructureFixture.getInfrastructure("id-azure2",
                                                                              "azure",
                                                                              "endPoint",
-                                                                             "userName",
+                                                                             "otherUserName",
                                                                              "password",
                                                                              null,
                                                                              null,
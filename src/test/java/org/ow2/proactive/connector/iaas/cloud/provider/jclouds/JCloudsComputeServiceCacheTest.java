@@ -35,11 +35,12 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.ComputeServiceContext;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.cache.ClientKey;
 import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.ow2.proactive.connector.iaas.model.InfrastructureScope;
@@ -47,7 +48,6 @@ import org.ow2.proactive.connector.iaas.model.InfrastructureScope;
 
 public class JCloudsComputeServiceCacheTest {
 
-    @InjectMocks
     private JCloudsComputeServiceCache computeServiceCache;
 
     @Mock
@@ -56,9 +56,13 @@ public class JCloudsComputeServiceCacheTest {
     @Mock
     private ComputeService computeService;
 
+    @Mock
+    private ComputeServiceContext computeServiceContext;
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
+        computeServiceCache = new JCloudsComputeServiceCache(computeServiceBuilder, 100, 1000);
         when(computeServiceBuilder.buildComputeServiceFromInfrastructure(any(Infrastructure.class))).thenReturn(computeService);
     }
 
@@ -201,4 +205,27 @@ public class JCloudsComputeServiceCacheTest {
                                                                                                        null));
     }
 
+    @Test
+    public void testRemoveComputeServiceClosesContext() {
+        when(computeService.getContext()).thenReturn(computeServiceContext);
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("aws-ec2");
+        computeServiceCache.getComputeService(infrastructure);
+
+        computeServiceCache.removeComputeService(infrastructure);
+
+        verify(computeServiceContext).close();
+        verify(computeServiceBuilder).removeDefinedProperties(any(ClientKey.class));
+        assertThat(computeServiceCache.getStatistics().getOpenClients(), is(0L));
+    }
+
+    @Test
+    public void testCloseAllClosesContexts() {
+        when(computeService.getContext()).thenReturn(computeServiceContext);
+        computeServiceCache.getComputeService(InfrastructureFixture.getSimpleInfrastructure("aws-ec2"));
+
+        computeServiceCache.closeAll();
+
+        verify(computeServiceContext).close();
+    }
+
 }
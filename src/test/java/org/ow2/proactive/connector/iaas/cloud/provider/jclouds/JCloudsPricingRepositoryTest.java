@@ -0,0 +1,164 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.Image;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+
+import com.google.common.collect.Sets;
+
+
+public class JCloudsPricingRepositoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JCloudsPricingRepository pricingRepository;
+
+    private File pricingFile;
+
+    private final Hardware small = Hardware.builder().type("m1.small").minRam("2048").minCores("1").build();
+
+    private final Hardware large = Hardware.builder().type("m1.large").minRam("8192").minCores("4").build();
+
+    private final Image ubuntu = Image.builder().id("image-1").name("Ubuntu 22.04 LTS").build();
+
+    private final Image debian = Image.builder().id("image-2").name("Debian 12").build();
+
+    @Before
+    public void init() throws IOException {
+        pricingRepository = new JCloudsPricingRepository();
+        pricingFile = temporaryFolder.newFile("pricing.json");
+        write("[{\"hardwareId\":\"m1.small\",\"imageId\":\"image-1\",\"cost\":0.1}," +
+              "{\"hardwareId\":\"m1.large\",\"imageId\":\"Ubuntu\",\"cost\":0.4}," +
+              "{\"hardwareId\":\"m1.small\",\"imageId\":\"Debian\",\"cost\":0.12}," +
+              "{\"hardwareId\":\"m1.xlarge\",\"imageId\":\"image-1\",\"cost\":0.8}," +
+              "{\"hardwareId\":\"m1.small\",\"imageId\":\"Windows\",\"cost\":0.3}," +
+              "{\"hardwareId\":\"m1.small\",\"cost\":0.5}]");
+    }
+
+    @Test
+    public void testGetPricingIndexesTheFile() throws IOException {
+        JCloudsPricing pricing = pricingRepository.getPricing(pricingFile.toPath()).get();
+
+        assertThat(pricing.getSize(), is(5));
+        assertThat(pricing.getHardwareIds(), containsInAnyOrder("m1.small", "m1.large", "m1.xlarge"));
+        assertThat(pricing.getImageIds(), containsInAnyOrder("image-1", "Ubuntu", "Debian", "Windows"));
+    }
+
+    @Test
+    public void testGetPricingOfMissingFile() throws IOException {
+        assertThat(pricingRepository.getPricing(new File(temporaryFolder.getRoot(), "missing.json").toPath()),
+                   is(Optional.empty()));
+    }
+
+    @Test
+    public void testGetPricingReadsTheFileOnce() throws IOException {
+        JCloudsPricing pricing = pricingRepository.getPricing(pricingFile.toPath()).get();
+
+        assertThat(pricingRepository.getPricing(pricingFile.toPath()).get(), is(sameInstance(pricing)));
+    }
+
+    @Test
+    public void testGetPricingReloadsAModifiedFile() throws IOException {
+        pricingRepository.getPricing(pricingFile.toPath());
+        long lastModified = pricingFile.lastModified();
+
+        write("[{\"hardwareId\":\"m1.small\",\"imageId\":\"image-1\",\"cost\":0.2}]");
+        pricingFile.setLastModified(lastModified + 2000);
+
+        assertThat(pricingRepository.getPricing(pricingFile.toPath()).get().getSize(), is(1));
+    }
+
+    @Test
+    public void testGetPricingForgetsADeletedFile() throws IOException {
+        pricingRepository.getPricing(pricingFile.toPath());
+
+        Files.delete(pricingFile.toPath());
+
+        assertThat(pricingRepository.getPricing(pricingFile.toPath()), is(Optional.empty()));
+    }
+
+    @Test
+    public void testGetNodeCandidatesJoinsHardwareAndImages() throws IOException {
+        JCloudsPricing pricing = pricingRepository.getPricing(pricingFile.toPath()).get();
+
+        Set<NodeCandidate> nodeCandidates = pricing.getNodeCandidates("openstack-nova",
+                                                                      "RegionOne",
+                                                                      "",
+                                                                      Sets.newHashSet(ubuntu, debian),
+                                                                      Sets.newHashSet(small, large));
+
+        assertThat(nodeCandidates,
+                   containsInAnyOrder(nodeCandidate(small, ubuntu, 0.1),
+                                      nodeCandidate(large, ubuntu, 0.4),
+                                      nodeCandidate(small, debian, 0.12)));
+    }
+
+    @Test
+    public void testGetNodeCandidatesFiltersTheImageIds() throws IOException {
+        JCloudsPricing pricing = pricingRepository.getPricing(pricingFile.toPath()).get();
+
+        Set<NodeCandidate> nodeCandidates = pricing.getNodeCandidates("openstack-nova",
+                                                                      "RegionOne",
+                                                                      "Deb",
+                                                                      Sets.newHashSet(ubuntu, debian),
+                                                                      Sets.newHashSet(small, large));
+
+        assertThat(nodeCandidates, containsInAnyOrder(nodeCandidate(small, debian, 0.12)));
+    }
+
+    private NodeCandidate nodeCandidate(Hardware hardware, Image image, double price) {
+        return NodeCandidate.builder()
+                            .cloud("openstack-nova")
+                            .region("RegionOne")
+                            .hw(hardware)
+                            .img(image)
+                            .price(price)
+                            .build();
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(pricingFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -32,7 +32,9 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -75,6 +77,7 @@ import org.ow2.proactive.connector.iaas.model.Image;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 import org.ow2.proactive.connector.iaas.model.Instance;
 import org.ow2.proactive.connector.iaas.model.Options;
+import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
 import org.ow2.proactive.connector.iaas.model.ScriptResult;
 import org.ow2.proactive.connector.iaas.model.Tag;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -121,6 +124,12 @@ public class AWSEC2JCloudsProviderTest {
     @Mock
     private TagManager tagManager;
 
+    @Mock
+    private AWSPricingCache awsPricingCache;
+
+    @Mock
+    private AWSSecurityGroupStore securityGroupStore;
+
     private Tag connectorIaasTag = Tag.builder().key("connector-iaas-tag-key").value("default-value").build();
 
     @Before
@@ -367,7 +376,32 @@ public class AWSEC2JCloudsProviderTest {
         jcloudsProvider.deleteInfrastructure(infrastructure);
 
         verify(computeServiceCache, times(1)).removeComputeService(infrastructure);
+        verify(awsPricingCache, times(1)).removePricingClient(infrastructure);
+
+    }
+
+    @Test
+    public void testReleaseInfrastructureKeepsTheAutoGeneratedSecurityGroups() {
+        Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-aws",
+                                                                                "aws",
+                                                                                "endPoint",
+                                                                                "userName",
+                                                                                "password",
+                                                                                null,
+                                                                                null,
+                                                                                null);
+        Map<String, String> securityGroups = new HashMap<>();
+        securityGroups.put("connector-iaas-sg-id-aws", "sg-1");
+        jcloudsProvider.autoGeneratedSecurityGroups = new HashMap<>();
+        jcloudsProvider.autoGeneratedSecurityGroups.put(infrastructure.getId(), securityGroups);
 
+        jcloudsProvider.releaseInfrastructure(infrastructure);
+
+        verify(computeServiceCache, times(1)).removeComputeService(infrastructure);
+        verify(awsPricingCache, times(1)).removePricingClient(infrastructure);
+        verify(computeServiceCache, never()).getComputeService(infrastructure);
+        verify(securityGroupStore, never()).save(any());
+        assertThat(jcloudsProvider.autoGeneratedSecurityGroups.get(infrastructure.getId()), is(securityGroups));
     }
 
     @Test
@@ -727,4 +761,16 @@ public class AWSEC2JCloudsProviderTest {
         assertThat(scriptResults.size(), is(0));
 
     }
+
+    @Test
+    public void testGetNodeCandidateFromPricingCache() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("aws-ec2");
+        PagedNodeCandidates page = PagedNodeCandidates.builder()
+                                                      .nextToken("nextToken")
+                                                      .nodeCandidates(Collections.emptySet())
+                                                      .build();
+        when(awsPricingCache.getPricingPage(eq("us-east-1"), eq("Linux"), eq("token"), any())).thenReturn(page);
+
+        assertThat(jcloudsProvider.getNodeCandidate(infrastructure, "us-east-1", "Linux", "token"), is(page));
+    }
 }
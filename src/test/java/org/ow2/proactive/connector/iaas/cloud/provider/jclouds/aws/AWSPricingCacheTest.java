@@ -0,0 +1,97 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.aws;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.proactive.connector.iaas.model.PagedNodeCandidates;
+
+
+public class AWSPricingCacheTest {
+
+    private AWSPricingCache awsPricingCache;
+
+    private AtomicInteger loads;
+
+    @Before
+    public void init() {
+        awsPricingCache = new AWSPricingCache(100, 60000, 10, 1000);
+        loads = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testPricingPageIsLoadedOnce() {
+        PagedNodeCandidates page = awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load);
+
+        assertThat(awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load), is(page));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    public void testPricingPagesAreKeyedByRegionOperatingSystemAndToken() {
+        awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load);
+        awsPricingCache.getPricingPage("us-east-1", "Linux", "token", this::load);
+        awsPricingCache.getPricingPage("us-east-1", "Windows", null, this::load);
+        awsPricingCache.getPricingPage("eu-west-1", "Linux", null, this::load);
+
+        assertThat(loads.get(), is(4));
+    }
+
+    @Test
+    public void testPricingPageIsNotCachedWhenDisabled() {
+        awsPricingCache = new AWSPricingCache(100, 0, 10, 1000);
+
+        awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load);
+        awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load);
+
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLoadFailureIsRethrownAndNotCached() {
+        try {
+            awsPricingCache.getPricingPage("us-east-1", "Linux", null, () -> {
+                throw new IllegalStateException("throttled");
+            });
+        } finally {
+            awsPricingCache.getPricingPage("us-east-1", "Linux", null, this::load);
+            assertThat(loads.get(), is(1));
+        }
+    }
+
+    private PagedNodeCandidates load() {
+        return PagedNodeCandidates.builder()
+                                  .nextToken("token-" + loads.incrementAndGet())
+                                  .nodeCandidates(Collections.emptySet())
+                                  .build();
+    }
+}
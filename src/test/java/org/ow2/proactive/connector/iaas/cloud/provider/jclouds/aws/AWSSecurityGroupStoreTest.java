@@ -0,0 +1,76 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.jclouds.aws;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class AWSSecurityGroupStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String directory;
+
+    private Map<String, Map<String, String>> securityGroups;
+
+    @Before
+    public void init() throws IOException {
+        directory = temporaryFolder.newFolder("store").getAbsolutePath();
+        Map<String, String> infrastructureSecurityGroups = new HashMap<>();
+        infrastructureSecurityGroups.put("connector-iaas-sg-id-aws", null);
+        infrastructureSecurityGroups.put("connector-iaas-sg-id-aws-ports", "sg-1");
+        securityGroups = new HashMap<>();
+        securityGroups.put("id-aws", infrastructureSecurityGroups);
+    }
+
+    @Test
+    public void testSecurityGroupsSurviveRestart() {
+        new AWSSecurityGroupStore(true, directory).save(securityGroups);
+
+        assertThat(new AWSSecurityGroupStore(true, directory).load(), is(securityGroups));
+    }
+
+    @Test
+    public void testNothingIsSavedWithoutInfrastructureStore() {
+        new AWSSecurityGroupStore(false, directory).save(securityGroups);
+
+        assertThat(Files.exists(Paths.get(directory, AWSSecurityGroupStore.SECURITY_GROUPS_FILE)), is(false));
+        assertThat(new AWSSecurityGroupStore(false, directory).load().isEmpty(), is(true));
+    }
+}
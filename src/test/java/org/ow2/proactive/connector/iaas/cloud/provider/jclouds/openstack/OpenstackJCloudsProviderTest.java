@@ -30,6 +30,7 @@ import static org.jclouds.compute.predicates.NodePredicates.runningInGroup;
 import static org.jclouds.scriptbuilder.domain.Statements.exec;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -39,7 +40,10 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import org.jclouds.collect.PagedIterable;
 import org.jclouds.compute.ComputeService;
 import org.jclouds.compute.ComputeServiceContext;
 import org.jclouds.compute.RunNodesException;
@@ -55,12 +59,16 @@ import org.jclouds.compute.options.TemplateOptions;
 import org.jclouds.domain.LocationBuilder;
 import org.jclouds.domain.LocationScope;
 import org.jclouds.openstack.nova.v2_0.NovaApi;
+import org.jclouds.openstack.nova.v2_0.domain.Address;
+import org.jclouds.openstack.nova.v2_0.domain.KeyPair;
 import org.jclouds.openstack.nova.v2_0.domain.Server;
 import org.jclouds.openstack.nova.v2_0.domain.ServerCreated;
+import org.jclouds.openstack.nova.v2_0.extensions.KeyPairApi;
 import org.jclouds.openstack.nova.v2_0.features.ServerApi;
 import org.jclouds.openstack.v2_0.domain.Resource;
 import org.jclouds.scriptbuilder.ScriptBuilder;
 import org.jclouds.scriptbuilder.domain.OsFamily;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -74,7 +82,10 @@ import org.ow2.proactive.connector.iaas.fixtures.InstanceFixture;
 import org.ow2.proactive.connector.iaas.fixtures.InstanceScriptFixture;
 import org.ow2.proactive.connector.iaas.model.*;
 import org.ow2.proactive.connector.iaas.model.Image;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -119,12 +130,24 @@ public class OpenstackJCloudsProviderTest {
     @Mock
     private TagManager tagManager;
 
+    @Mock
+    private KeyPairApi keyPairApi;
+
+    private OpenstackServerCreationExecutor serverCreationExecutor;
+
     private Tag connectorIaasTag = Tag.builder().key("connector-iaas-tag-key").value("default-value").build();
 
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
         jcloudsProvider.setVmUserLogin("user");
+        serverCreationExecutor = new OpenstackServerCreationExecutor(2);
+        ReflectionTestUtils.setField(jcloudsProvider, "serverCreationExecutor", serverCreationExecutor);
+    }
+
+    @After
+    public void shutdown() {
+        serverCreationExecutor.shutdown();
     }
 
     @Test
@@ -215,6 +238,212 @@ public class OpenstackJCloudsProviderTest {
 
     }
 
+    @Test
+    public void testCreateInstanceWaitsForActiveServers() {
+
+        Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-aws",
+                                                                                "aws",
+                                                                                "endPoint",
+                                                                                "userName",
+                                                                                "password",
+                                                                                new InfrastructureScope("project",
+                                                                                                        "admin"),
+                                                                                "RegionOne",
+                                                                                "3");
+
+        Instance instance = InstanceFixture.getInstanceWithKeyName("instance-id",
+                                                                   "instance-name",
+                                                                   "image",
+                                                                   "1",
+                                                                   "512",
+                                                                   "2",
+                                                                   "network_id_1",
+                                                                   "77.154.227.148",
+                                                                   "1.0.0.2",
+                                                                   "running");
+
+        ReflectionTestUtils.setField(jcloudsProvider, "createTimeout", 10000L);
+        ReflectionTestUtils.setField(jcloudsProvider, "createPollInterval", 1L);
+
+        when(computeServiceCache.getComputeService(infrastructure)).thenReturn(computeService);
+        when(computeService.getContext()).thenReturn(contextMock);
+        when(contextMock.unwrapApi(NovaApi.class)).thenReturn(novaApi);
+        when(openstackUtil.getInfrastructureRegion(infrastructure)).thenReturn("RegionOne");
+        when(novaApi.getServerApi("RegionOne")).thenReturn(serverApi);
+        when(novaApi.getSecurityGroupApi("RegionOne")).thenReturn(com.google.common.base.Optional.absent());
+        when(tagManager.retrieveAllTags(anyString(),
+                                        any(Options.class))).thenReturn(Lists.newArrayList(connectorIaasTag));
+
+        when(serverApi.create(anyString(), anyString(), anyString(), anyObject())).thenReturn(serverCreated);
+        when(serverCreated.getId()).thenReturn("1cde5a56-27a6-46ce-bdb7-8b01b8fe2592");
+
+        // The server is still being built on the first poll, and active on the second one
+        when(server.getId()).thenReturn("1cde5a56-27a6-46ce-bdb7-8b01b8fe2592");
+        when(server.getStatus()).thenReturn(Server.Status.BUILD, Server.Status.ACTIVE);
+        when(server.getImage()).thenReturn(resource);
+        when(resource.getName()).thenReturn("resource-name");
+        when(server.getFlavor()).thenReturn(Resource.builder().id("id").name("same name").build());
+        when(server.getAddresses()).thenReturn(ImmutableMultimap.of("private",
+                                                                    Address.createV4("10.0.0.5"),
+                                                                    "public",
+                                                                    Address.createV4("77.154.227.148")));
+        PagedIterable<Server> servers = mock(PagedIterable.class);
+        when(servers.concat()).thenReturn(FluentIterable.from(Lists.newArrayList(server)));
+        when(serverApi.listInDetail()).thenReturn(servers);
+
+        Set<Instance> created = jcloudsProvider.createInstance(infrastructure, instance);
+
+        assertThat(created.size(), is(1));
+        Instance createdInstance = created.iterator().next();
+        assertThat(createdInstance.getStatus(), is("ACTIVE"));
+        assertThat(createdInstance.getNetwork().getPrivateAddresses(), is(Lists.newArrayList("10.0.0.5")));
+        assertThat(createdInstance.getNetwork().getPublicAddresses(), is(Lists.newArrayList("77.154.227.148")));
+        verify(serverApi, times(2)).listInDetail();
+        verify(serverApi, times(0)).get(anyString());
+    }
+
+    @Test
+    public void testCreateSeveralInstancesInParallel() {
+        Infrastructure infrastructure = mockServerCreations();
+        Instance instance = getInstance("3");
+        List<ServerCreated> servers = Lists.newArrayList(mockServer("server-1"),
+                                                         mockServer("server-2"),
+                                                         mockServer("server-3"));
+        AtomicInteger serverNumber = new AtomicInteger();
+        when(serverApi.create(anyString(),
+                              anyString(),
+                              anyString(),
+                              anyObject())).thenAnswer(invocation -> servers.get(serverNumber.getAndIncrement()));
+
+        Set<Instance> created = jcloudsProvider.createInstance(infrastructure, instance);
+
+        assertThat(created.size(), is(3));
+        assertThat(created.stream().map(Instance::getId).collect(Collectors.toSet()),
+                   is(Sets.newHashSet("RegionOne/server-1", "RegionOne/server-2", "RegionOne/server-3")));
+        verify(serverApi, times(3)).create(anyString(), anyString(), anyString(), anyObject());
+    }
+
+    @Test
+    public void testCreateSeveralInstancesWithPartialFailure() {
+        Infrastructure infrastructure = mockServerCreations();
+        // Without key pair name, a key pair is generated for the instances
+        Instance instance = InstanceFixture.getInstance("instance-id",
+                                                        "instance-name",
+                                                        "image",
+                                                        "3",
+                                                        "512",
+                                                        "2",
+                                                        "network_id_1",
+                                                        "77.154.227.148",
+                                                        "1.0.0.2",
+                                                        "running");
+        KeyPair keyPair = mock(KeyPair.class);
+        when(keyPair.getName()).thenReturn("generated-key-pair");
+        when(novaApi.getKeyPairApi("RegionOne")).thenReturn(com.google.common.base.Optional.of(keyPairApi));
+        when(keyPairApi.create(anyString())).thenReturn(keyPair);
+        List<ServerCreated> servers = Lists.newArrayList(mockServer("server-1"), null, mockServer("server-3"));
+        AtomicInteger serverNumber = new AtomicInteger();
+        when(serverApi.create(anyString(), anyString(), anyString(), anyObject())).thenAnswer(invocation -> {
+            ServerCreated created = servers.get(serverNumber.getAndIncrement());
+            if (created == null) {
+                throw new IllegalStateException("quota exceeded");
+            }
+            return created;
+        });
+
+        try {
+            jcloudsProvider.createInstance(infrastructure, instance);
+            fail("The creation of the instances should have failed");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().startsWith("Unable to create 1 of 3 OpenStack instances"), is(true));
+            assertThat(e.getMessage().contains("server-1"), is(true));
+            assertThat(e.getMessage().contains("server-3"), is(true));
+            assertThat(e.getCause().getMessage(), is("quota exceeded"));
+        }
+        verify(serverApi, times(3)).create(anyString(), anyString(), anyString(), anyObject());
+        // Nothing is left behind: the caller gets no instance to delete
+        verify(serverApi).delete("server-1");
+        verify(serverApi).delete("server-3");
+        verify(keyPairApi).delete("generated-key-pair");
+    }
+
+    @Test
+    public void testCreateSeveralInstancesWithServerInError() {
+        Infrastructure infrastructure = mockServerCreations();
+        Instance instance = getInstance("2");
+        List<ServerCreated> servers = Lists.newArrayList(mockServer("server-1"),
+                                                         mockServer("server-2", Server.Status.ERROR));
+        AtomicInteger serverNumber = new AtomicInteger();
+        when(serverApi.create(anyString(),
+                              anyString(),
+                              anyString(),
+                              anyObject())).thenAnswer(invocation -> servers.get(serverNumber.getAndIncrement()));
+
+        try {
+            jcloudsProvider.createInstance(infrastructure, instance);
+            fail("The server in ERROR should not be returned as a created instance");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().startsWith("Unable to create 1 of 2 OpenStack instances: servers [server-2] are in ERROR"),
+                       is(true));
+        }
+        verify(serverApi).delete("server-1");
+        verify(serverApi).delete("server-2");
+    }
+
+    private Infrastructure mockServerCreations() {
+        Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-openstack",
+                                                                                "openstack-nova",
+                                                                                "endPoint",
+                                                                                "userName",
+                                                                                "password",
+                                                                                new InfrastructureScope("project",
+                                                                                                        "admin"),
+                                                                                "RegionOne",
+                                                                                "3");
+        when(computeServiceCache.getComputeService(infrastructure)).thenReturn(computeService);
+        when(computeService.getContext()).thenReturn(contextMock);
+        when(contextMock.unwrapApi(NovaApi.class)).thenReturn(novaApi);
+        when(openstackUtil.getInfrastructureRegion(infrastructure)).thenReturn("RegionOne");
+        when(novaApi.getServerApi("RegionOne")).thenReturn(serverApi);
+        when(novaApi.getSecurityGroupApi("RegionOne")).thenReturn(com.google.common.base.Optional.absent());
+        when(tagManager.retrieveAllTags(anyString(),
+                                        any(Options.class))).thenReturn(Lists.newArrayList(connectorIaasTag));
+        return infrastructure;
+    }
+
+    private Instance getInstance(String number) {
+        return InstanceFixture.getInstanceWithKeyName("instance-id",
+                                                      "instance-name",
+                                                      "image",
+                                                      number,
+                                                      "512",
+                                                      "2",
+                                                      "network_id_1",
+                                                      "77.154.227.148",
+                                                      "1.0.0.2",
+                                                      "running");
+    }
+
+    /**
+     * @return  the creation of a server, which is then retrieved as active
+     */
+    private ServerCreated mockServer(String serverId) {
+        return mockServer(serverId, Server.Status.ACTIVE);
+    }
+
+    private ServerCreated mockServer(String serverId, Server.Status status) {
+        ServerCreated created = mock(ServerCreated.class);
+        when(created.getId()).thenReturn(serverId);
+        Server createdServer = mock(Server.class);
+        when(createdServer.getId()).thenReturn(serverId);
+        when(createdServer.getName()).thenReturn("instance-name");
+        when(createdServer.getImage()).thenReturn(resource);
+        when(createdServer.getFlavor()).thenReturn(Resource.builder().id("id").name("flavor").build());
+        when(createdServer.getStatus()).thenReturn(status);
+        when(serverApi.get(serverId)).thenReturn(createdServer);
+        return created;
+    }
+
     @Test(expected = RuntimeException.class)
     public void testCreateInstanceWithFailure() throws NumberFormatException, RunNodesException {
 
@@ -0,0 +1,298 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.cloud.provider.vmware;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.vmware.vim25.LocalizedMethodFault;
+import com.vmware.vim25.ManagedObjectReference;
+import com.vmware.vim25.ObjectUpdate;
+import com.vmware.vim25.PropertyChange;
+import com.vmware.vim25.PropertyFilterSpec;
+import com.vmware.vim25.PropertyFilterUpdate;
+import com.vmware.vim25.TaskInfoState;
+import com.vmware.vim25.UpdateSet;
+import com.vmware.vim25.VirtualMachineCloneSpec;
+import com.vmware.vim25.WaitOptions;
+import com.vmware.vim25.mo.Folder;
+import com.vmware.vim25.mo.PropertyCollector;
+import com.vmware.vim25.mo.PropertyFilter;
+import com.vmware.vim25.mo.ServiceInstance;
+import com.vmware.vim25.mo.Task;
+import com.vmware.vim25.mo.VirtualMachine;
+
+
+public class VMWareProviderCloneHandlerTest {
+
+    private VMWareProviderCloneHandler cloneHandler;
+
+    @Mock
+    private ServiceInstance serviceInstance;
+
+    @Mock
+    private PropertyCollector sessionPropertyCollector;
+
+    @Mock
+    private PropertyCollector propertyCollector;
+
+    @Mock
+    private PropertyFilter propertyFilter;
+
+    @Mock
+    private VirtualMachine vmToClone;
+
+    @Mock
+    private Folder destinationFolder;
+
+    @Mock
+    private Task firstTask;
+
+    @Mock
+    private Task secondTask;
+
+    @Mock
+    private VirtualMachine clonedVM;
+
+    @Mock
+    private Task powerOffTask;
+
+    @Mock
+    private Task destroyTask;
+
+    private Map<String, VirtualMachineCloneSpec> cloneSpecPerName;
+
+    @Before
+    public void init() throws RemoteException, InterruptedException {
+        MockitoAnnotations.initMocks(this);
+        cloneHandler = new VMWareProviderCloneHandler(true, 1, 60000, 1);
+
+        when(serviceInstance.getPropertyCollector()).thenReturn(sessionPropertyCollector);
+        when(sessionPropertyCollector.createPropertyCollector()).thenReturn(propertyCollector);
+        when(propertyCollector.createFilter(any(PropertyFilterSpec.class), eq(true))).thenReturn(propertyFilter);
+
+        when(firstTask.getMOR()).thenReturn(createMOR("Task", "task-1"));
+        when(secondTask.getMOR()).thenReturn(createMOR("Task", "task-2"));
+
+        cloneSpecPerName = new LinkedHashMap<>();
+        cloneSpecPerName.put("vm-1", new VirtualMachineCloneSpec());
+        cloneSpecPerName.put("vm-2", new VirtualMachineCloneSpec());
+        when(vmToClone.cloneVM_Task(destinationFolder, "vm-1", cloneSpecPerName.get("vm-1"))).thenReturn(firstTask);
+        when(vmToClone.cloneVM_Task(destinationFolder, "vm-2", cloneSpecPerName.get("vm-2"))).thenReturn(secondTask);
+
+        when(clonedVM.getMOR()).thenReturn(createMOR("VirtualMachine", "vm-102"));
+        when(clonedVM.powerOffVM_Task()).thenReturn(powerOffTask);
+        when(clonedVM.destroy_Task()).thenReturn(destroyTask);
+        when(powerOffTask.waitForTask()).thenReturn(Task.SUCCESS);
+        when(destroyTask.waitForTask()).thenReturn(Task.SUCCESS);
+    }
+
+    @Test
+    public void testCloneVirtualMachinesWithBoundedInFlightClones() throws RemoteException {
+        when(propertyCollector.waitForUpdatesEx(anyString(),
+                                                any(WaitOptions.class))).thenReturn(createUpdateSet("1",
+                                                                                                    "task-1",
+                                                                                                    TaskInfoState.success,
+                                                                                                    createMOR("VirtualMachine",
+                                                                                                              "vm-101")))
+                                                                        .thenReturn(null)
+                                                                        .thenReturn(createUpdateSet("2",
+                                                                                                    "task-2",
+                                                                                                    TaskInfoState.success,
+                                                                                                    createMOR("VirtualMachine",
+                                                                                                              "vm-102")));
+
+        List<VirtualMachine> clonedVMs = cloneHandler.cloneVirtualMachines(serviceInstance,
+                                                                           vmToClone,
+                                                                           destinationFolder,
+                                                                           "datastore:datastore-1",
+                                                                           cloneSpecPerName);
+
+        assertThat(clonedVMs.size(), is(2));
+        assertThat(clonedVMs.get(0).getMOR().getVal(), is("vm-101"));
+        assertThat(clonedVMs.get(1).getMOR().getVal(), is("vm-102"));
+
+        // Only one clone in flight at a time on the datastore: the second clone waits for the first one
+        InOrder inOrder = inOrder(vmToClone, propertyCollector);
+        inOrder.verify(vmToClone).cloneVM_Task(destinationFolder, "vm-1", cloneSpecPerName.get("vm-1"));
+        inOrder.verify(propertyCollector).waitForUpdatesEx(eq(""), any(WaitOptions.class));
+        inOrder.verify(vmToClone).cloneVM_Task(destinationFolder, "vm-2", cloneSpecPerName.get("vm-2"));
+        inOrder.verify(propertyCollector, times(2)).waitForUpdatesEx(eq("1"), any(WaitOptions.class));
+
+        verify(propertyFilter, times(2)).destroyPropertyFilter();
+        verify(propertyCollector).destroyPropertyCollector();
+    }
+
+    @Test
+    public void testCloneVirtualMachinesReportsFailedClones() throws RemoteException, InterruptedException {
+        cloneHandler = spy(new VMWareProviderCloneHandler(true, 2, 60000, 1));
+        doReturn(clonedVM).when(cloneHandler).createVirtualMachine(eq(serviceInstance),
+                                                                   any(ManagedObjectReference.class));
+        UpdateSet updateSet = createUpdateSet("1", "task-1", TaskInfoState.error, null);
+        LocalizedMethodFault fault = new LocalizedMethodFault();
+        fault.setLocalizedMessage("Insufficient disk space on datastore");
+        PropertyChange errorChange = new PropertyChange();
+        errorChange.setName("info.error");
+        errorChange.setVal(fault);
+        ObjectUpdate secondTaskUpdate = createObjectUpdate("task-2",
+                                                           TaskInfoState.success,
+                                                           createMOR("VirtualMachine", "vm-102"));
+        updateSet.getFilterSet()[0].setObjectSet(new ObjectUpdate[] { createObjectUpdate("task-1",
+                                                                                          TaskInfoState.error,
+                                                                                          null,
+                                                                                          errorChange),
+                                                                       secondTaskUpdate });
+        when(propertyCollector.waitForUpdatesEx(anyString(), any(WaitOptions.class))).thenReturn(updateSet);
+
+        try {
+            cloneHandler.cloneVirtualMachines(serviceInstance,
+                                              vmToClone,
+                                              destinationFolder,
+                                              "datastore:datastore-2",
+                                              cloneSpecPerName);
+            fail("the failed clone should have been reported");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().contains("vm-1=Insufficient disk space on datastore"), is(true));
+        }
+        verify(propertyCollector, times(1)).waitForUpdatesEx(anyString(), any(WaitOptions.class));
+        verify(firstTask, times(0)).cancelTask();
+        verify(propertyCollector).destroyPropertyCollector();
+        // The successful clone is not returned, so it is destroyed instead of leaking
+        verify(clonedVM).powerOffVM_Task();
+        verify(clonedVM).destroy_Task();
+    }
+
+    @Test
+    public void testCloneVirtualMachinesDestroysTheClonesDoneBeforeTheTimeout()
+            throws RemoteException, InterruptedException {
+        cloneHandler = spy(new VMWareProviderCloneHandler(true, 2, 200, 1));
+        doReturn(clonedVM).when(cloneHandler).createVirtualMachine(eq(serviceInstance),
+                                                                   any(ManagedObjectReference.class));
+        when(propertyCollector.waitForUpdatesEx(anyString(),
+                                                any(WaitOptions.class))).thenReturn(createUpdateSet("1",
+                                                                                                    "task-2",
+                                                                                                    TaskInfoState.success,
+                                                                                                    createMOR("VirtualMachine",
+                                                                                                              "vm-102")))
+                                                                        .thenAnswer(invocation -> {
+                                                                            Thread.sleep(300);
+                                                                            return null;
+                                                                        });
+
+        try {
+            cloneHandler.cloneVirtualMachines(serviceInstance,
+                                              vmToClone,
+                                              destinationFolder,
+                                              "datastore:datastore-3",
+                                              cloneSpecPerName);
+            fail("the timeout should have been reported");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().startsWith("Timeout when creating VMWare instances: 1 of 2 clones"), is(true));
+        }
+        verify(firstTask).cancelTask();
+        verify(secondTask, times(0)).cancelTask();
+        verify(clonedVM).powerOffVM_Task();
+        verify(clonedVM).destroy_Task();
+        verify(propertyCollector).destroyPropertyCollector();
+    }
+
+    @Test
+    public void testCloneWithPermitSharesTheInFlightClonesLimit() {
+        cloneHandler = new VMWareProviderCloneHandler(true, 1, 200, 1);
+
+        assertThat(cloneHandler.cloneWithPermit("datastore:datastore-4",
+                                                () -> cloneHandler.cloneWithPermit("datastore:datastore-5",
+                                                                                   () -> "other location")),
+                   is("other location"));
+        try {
+            cloneHandler.cloneWithPermit("datastore:datastore-4",
+                                         () -> cloneHandler.cloneWithPermit("datastore:datastore-4",
+                                                                            () -> "same location"));
+            fail("the second clone on the datastore should have waited for the first one");
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage().startsWith("Timeout when waiting to clone a VMWare instance"), is(true));
+        }
+        // The permits are released, even after a failure
+        assertThat(cloneHandler.cloneWithPermit("datastore:datastore-4", () -> "released"), is("released"));
+    }
+
+    private ManagedObjectReference createMOR(String type, String value) {
+        ManagedObjectReference mor = new ManagedObjectReference();
+        mor.setType(type);
+        mor.setVal(value);
+        return mor;
+    }
+
+    private UpdateSet createUpdateSet(String version, String taskId, TaskInfoState state,
+            ManagedObjectReference result) {
+        PropertyFilterUpdate filterUpdate = new PropertyFilterUpdate();
+        filterUpdate.setObjectSet(new ObjectUpdate[] { createObjectUpdate(taskId, state, result) });
+        UpdateSet updateSet = new UpdateSet();
+        updateSet.setVersion(version);
+        updateSet.setFilterSet(new PropertyFilterUpdate[] { filterUpdate });
+        return updateSet;
+    }
+
+    private ObjectUpdate createObjectUpdate(String taskId, TaskInfoState state, ManagedObjectReference result,
+            PropertyChange... otherChanges) {
+        PropertyChange stateChange = new PropertyChange();
+        stateChange.setName("info.state");
+        stateChange.setVal(state);
+        PropertyChange resultChange = new PropertyChange();
+        resultChange.setName("info.result");
+        resultChange.setVal(result);
+        PropertyChange[] changes = new PropertyChange[2 + otherChanges.length];
+        changes[0] = stateChange;
+        changes[1] = resultChange;
+        System.arraycopy(otherChanges, 0, changes, 2, otherChanges.length);
+
+        ObjectUpdate objectUpdate = new ObjectUpdate();
+        objectUpdate.setObj(createMOR("Task", taskId));
+        objectUpdate.setChangeSet(changes);
+        return objectUpdate;
+    }
+}
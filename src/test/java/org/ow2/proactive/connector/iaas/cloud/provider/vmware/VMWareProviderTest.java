@@ -29,7 +29,9 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,11 +39,14 @@ import static org.mockito.Mockito.when;
 import java.rmi.RemoteException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -101,6 +106,9 @@ public class VMWareProviderTest {
     @Mock
     private VMWareProviderMacAddressHandler vMWareProviderMacAddressHandler;
 
+    @Mock
+    private VMWareProviderCloneHandler vmWareProviderCloneHandler;
+
     @Mock
     private VirtualDeviceConfigSpec virtDevConfSpec;
 
@@ -168,7 +176,8 @@ public class VMWareProviderTest {
         MockitoAnnotations.initMocks(this);
         when(vmWareServiceInstanceCache.getServiceInstance(any(Infrastructure.class))).thenReturn(serviceInstance);
         when(serviceInstance.getRootFolder()).thenReturn(rootFolder);
-
+        when(vmWareProviderCloneHandler.cloneWithPermit(anyString(),
+                                                        any(Supplier.class))).thenAnswer(invocation -> ((Supplier<?>) invocation.getArguments()[1]).get());
     }
 
     @Test
@@ -211,6 +220,60 @@ public class VMWareProviderTest {
         assertThat(createdInstances.iterator().next().getId(), is("some-generated-virtual-machine-id"));
     }
 
+    @Test
+    public void testCreateInstancesConcurrently() throws RemoteException, InterruptedException {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("vmware-type");
+        Instance instance = InstanceFixture.getInstance("",
+                                                        "marco-tag",
+                                                        "RoboconfAgent180116",
+                                                        "2",
+                                                        "512",
+                                                        "1",
+                                                        "172.168.1.248",
+                                                        "1.0.0.2",
+                                                        "RUNNING");
+
+        when(vmWareProviderVirtualMachineUtil.searchVirtualMachineByName("RoboconfAgent180116",
+                                                                         rootFolder)).thenReturn(Optional.of(virtualMachine));
+        when(virtualMachine.getResourcePool()).thenReturn(resourcePool);
+        when(resourcePool.getMOR()).thenReturn(resourcePoolMOR);
+        when(resourcePoolMOR.getVal()).thenReturn("resgroup-1");
+        when(vmWareProviderVirtualMachineUtil.searchVMFolderFromVMName("RoboconfAgent180116",
+                                                                       rootFolder)).thenReturn(Optional.of(instanceFolder));
+        when(tagManager.retrieveAllTags(anyString(),
+                                        any(Options.class))).thenReturn(Lists.newArrayList(connectorIaasTag));
+
+        VirtualMachineConfigInfo otherConfigInfo = mock(VirtualMachineConfigInfo.class);
+        VirtualMachine otherCreatedVirtualMachine = mock(VirtualMachine.class);
+        when(createdVirtualMachine.getConfig()).thenReturn(virtualMachineConfigInfo);
+        when(virtualMachineConfigInfo.getUuid()).thenReturn("some-generated-virtual-machine-id");
+        when(otherCreatedVirtualMachine.getConfig()).thenReturn(otherConfigInfo);
+        when(otherConfigInfo.getUuid()).thenReturn("other-generated-virtual-machine-id");
+
+        when(vmWareProviderCloneHandler.isConcurrentCloneEnabled()).thenReturn(true);
+        when(vmWareProviderCloneHandler.cloneVirtualMachines(any(ServiceInstance.class),
+                                                             any(VirtualMachine.class),
+                                                             any(Folder.class),
+                                                             anyString(),
+                                                             anyMap())).thenReturn(Lists.newArrayList(createdVirtualMachine,
+                                                                                                      otherCreatedVirtualMachine));
+
+        Set<Instance> createdInstances = vmWareProvider.createInstance(infrastructure, instance);
+
+        assertThat(createdInstances.size(), is(2));
+        ArgumentCaptor<Map> cloneSpecPerName = ArgumentCaptor.forClass(Map.class);
+        verify(vmWareProviderCloneHandler).cloneVirtualMachines(any(ServiceInstance.class),
+                                                                any(VirtualMachine.class),
+                                                                any(Folder.class),
+                                                                anyString(),
+                                                                cloneSpecPerName.capture());
+        assertThat(cloneSpecPerName.getValue().keySet(),
+                   is(Sets.newHashSet("marco-tag", "marco-tag_2")));
+        verify(virtualMachine, times(0)).cloneVM_Task(any(Folder.class),
+                                                      anyString(),
+                                                      any(VirtualMachineCloneSpec.class));
+    }
+
     @Test
     public void testCreateInstanceWithMacAddress() throws RemoteException, InterruptedException {
 
@@ -36,18 +36,17 @@ import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
 import org.ow2.proactive.connector.iaas.model.Infrastructure;
 
+import com.vmware.vim25.mo.ServerConnection;
 import com.vmware.vim25.mo.ServiceInstance;
 
 
 public class VMWareServiceInstanceCacheTest {
 
-    @InjectMocks
     private VMWareServiceInstanceCache serviceInstanceCache;
 
     @Mock
@@ -56,9 +55,13 @@ public class VMWareServiceInstanceCacheTest {
     @Mock
     private ServiceInstance serviceInstance;
 
+    @Mock
+    private ServerConnection serverConnection;
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
+        serviceInstanceCache = new VMWareServiceInstanceCache(serviceInstanceBuilder, 100, 1000);
         when(serviceInstanceBuilder.buildServiceInstanceFromInfrastructure(any(Infrastructure.class))).thenReturn(serviceInstance);
     }
 
@@ -200,4 +203,15 @@ public class VMWareServiceInstanceCacheTest {
                                                                                                         null));
     }
 
+    @Test
+    public void testRemoveServiceInstanceLogsOut() {
+        when(serviceInstance.getServerConnection()).thenReturn(serverConnection);
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("vmware");
+        serviceInstanceCache.getServiceInstance(infrastructure);
+
+        serviceInstanceCache.removeServiceInstance(infrastructure);
+
+        verify(serverConnection).logout();
+    }
+
 }
@@ -0,0 +1,282 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.model;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+
+public class NodeCandidateQueryTest {
+
+    private final Image ubuntu = Image.builder()
+                                      .id("ubuntu")
+                                      .name("Ubuntu 22.04")
+                                      .operatingSystem(OperatingSystem.builder().family("ubuntu").build())
+                                      .build();
+
+    private final Image windows = Image.builder()
+                                       .id("windows")
+                                       .name("Windows Server 2022")
+                                       .operatingSystem(OperatingSystem.builder().family("windows").build())
+                                       .build();
+
+    private final NodeCandidate small = nodeCandidate("small", "1", "2048", ubuntu, 0.05);
+
+    private final NodeCandidate medium = nodeCandidate("medium", "2", "4096", ubuntu, 0.1);
+
+    private final NodeCandidate large = nodeCandidate("large", "4", "16384", ubuntu, 0.4);
+
+    private final NodeCandidate largeWindows = nodeCandidate("large", "4", "16384", windows, 0.6);
+
+    @Test
+    public void testSelectAllSortsByPrice() {
+        Set<NodeCandidate> selected = NodeCandidateQuery.all().select(Stream.of(largeWindows, medium, large, small));
+
+        assertThat(new ArrayList<>(selected), contains(small, medium, large, largeWindows));
+    }
+
+    @Test
+    public void testSelectFiltersHardwarePriceAndOperatingSystem() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().minCores(2.0).minRam(4096.0).maxPrice(0.5).build();
+        assertThat(new ArrayList<>(query.select(Stream.of(small, medium, large, largeWindows))),
+                   contains(medium, large));
+
+        NodeCandidateQuery windowsQuery = NodeCandidateQuery.builder().osFamily("WINDOWS").build();
+        assertThat(new ArrayList<>(windowsQuery.select(Stream.of(small, medium, large, largeWindows))),
+                   contains(largeWindows));
+    }
+
+    @Test
+    public void testSelectSortsTheUnknownPricesLast() {
+        NodeCandidate unknownPrice = nodeCandidate("unknown", "2", "4096", ubuntu, -1);
+        NodeCandidate notANumberPrice = nodeCandidate("nan", "2", "4096", ubuntu, Double.NaN);
+
+        assertThat(new ArrayList<>(NodeCandidateQuery.all().select(Stream.of(unknownPrice, medium, small))),
+                   contains(small, medium, unknownPrice));
+        assertThat(new ArrayList<>(NodeCandidateQuery.builder()
+                                                     .sort("-price")
+                                                     .build()
+                                                     .select(Stream.of(unknownPrice, notANumberPrice, small, medium))),
+                   contains(medium, small, notANumberPrice, unknownPrice));
+    }
+
+    @Test
+    public void testSelectExcludesTheUnknownPricesFromTheMaximumPrice() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().maxPrice(0.5).build();
+        NodeCandidate unknownPrice = nodeCandidate("unknown", "2", "4096", ubuntu, -1);
+        NodeCandidate notANumberPrice = nodeCandidate("nan", "2", "4096", ubuntu, Double.NaN);
+
+        assertThat(new ArrayList<>(query.select(Stream.of(unknownPrice, notANumberPrice, small))), contains(small));
+    }
+
+    @Test
+    public void testSelectKeepsTheBestCandidatesOnly() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().sort("-ram").limit(2).build();
+
+        Set<NodeCandidate> selected = query.select(Stream.of(small, medium, large, largeWindows));
+
+        assertThat(new ArrayList<>(selected), contains(large, largeWindows));
+    }
+
+    @Test
+    public void testSelectTopKAmongManyCandidates() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().limit(3).build();
+
+        Set<NodeCandidate> selected = query.select(IntStream.range(0, 10000)
+                                                            .map(i -> (i * 7919) % 10000)
+                                                            .mapToObj(i -> nodeCandidate("type-" + i,
+                                                                                         "1",
+                                                                                         "1024",
+                                                                                         ubuntu,
+                                                                                         i)));
+
+        assertThat(new ArrayList<>(selected),
+                   contains(nodeCandidate("type-0", "1", "1024", ubuntu, 0),
+                            nodeCandidate("type-1", "1", "1024", ubuntu, 1),
+                            nodeCandidate("type-2", "1", "1024", ubuntu, 2)));
+    }
+
+    @Test
+    public void testSelectIgnoresDuplicatedCandidates() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().limit(2).build();
+
+        assertThat(new ArrayList<>(query.select(Stream.of(small, small, medium))), contains(small, medium));
+    }
+
+    @Test
+    public void testSelectWithZeroLimit() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().limit(0).build();
+
+        assertThat(query.select(Stream.of(small, medium)).isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSelectWithUnknownSortKey() {
+        NodeCandidateQuery.builder().sort("frequency").build().select(Stream.of(small));
+    }
+
+    @Test
+    public void testApplyKeepsTheNextToken() {
+        PagedNodeCandidates page = PagedNodeCandidates.builder()
+                                                      .nextToken("next")
+                                                      .nodeCandidates(Sets.newHashSet(small, large))
+                                                      .build();
+
+        PagedNodeCandidates selected = NodeCandidateQuery.builder().maxPrice(0.1).build().apply(page);
+
+        assertThat(selected.getNextToken(), is("next"));
+        assertThat(new ArrayList<>(selected.getNodeCandidates()), contains(small));
+    }
+
+    @Test
+    public void testPageWalksThroughAllCandidates() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().pageSize(3).build();
+        List<NodeCandidate> nodeCandidates = IntStream.range(0, 10)
+                                                      .mapToObj(i -> nodeCandidate("type-" + i, "1", "1024", ubuntu, i % 4))
+                                                      .collect(Collectors.toList());
+
+        List<NodeCandidate> walked = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String token = "";
+        do {
+            // The candidates are built in a different order for each page
+            Collections.shuffle(nodeCandidates);
+            PagedNodeCandidates page = query.page(nodeCandidates.stream(), token);
+            walked.addAll(page.getNodeCandidates());
+            pageSizes.add(page.getNodeCandidates().size());
+            token = page.getNextToken();
+        } while (!token.isEmpty());
+
+        assertThat(pageSizes, contains(3, 3, 3, 1));
+        assertThat(walked, is(new ArrayList<>(NodeCandidateQuery.all().select(nodeCandidates.stream()))));
+    }
+
+    @Test
+    public void testPageWalksThroughCandidatesWithTheSameSortKeyAcrossPages() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().pageSize(2).build();
+        // Same price, hardware type and image: only the region tells the candidates apart
+        List<NodeCandidate> nodeCandidates = IntStream.range(0, 5)
+                                                      .mapToObj(i -> NodeCandidate.builder()
+                                                                                  .cloud("openstack-nova")
+                                                                                  .region("Region-" + i)
+                                                                                  .hw(Hardware.builder()
+                                                                                              .type("medium")
+                                                                                              .minCores("2")
+                                                                                              .minRam("4096")
+                                                                                              .build())
+                                                                                  .img(ubuntu)
+                                                                                  .price(0.1)
+                                                                                  .build())
+                                                      .collect(Collectors.toList());
+
+        List<NodeCandidate> walked = new ArrayList<>();
+        String token = "";
+        do {
+            Collections.shuffle(nodeCandidates);
+            PagedNodeCandidates page = query.page(nodeCandidates.stream(), token);
+            walked.addAll(page.getNodeCandidates());
+            token = page.getNextToken();
+        } while (!token.isEmpty());
+
+        assertThat(walked.size(), is(5));
+        assertThat(new HashSet<>(walked), is(new HashSet<>(nodeCandidates)));
+    }
+
+    @Test
+    public void testPageWalksThroughCandidatesDifferingOnlyByPrice() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().sort("cores").pageSize(1).build();
+        NodeCandidate cheaperMedium = nodeCandidate("medium", "2", "4096", ubuntu, 0.08);
+
+        PagedNodeCandidates firstPage = query.page(Stream.of(medium, cheaperMedium), null);
+        PagedNodeCandidates lastPage = query.page(Stream.of(cheaperMedium, medium), firstPage.getNextToken());
+
+        Set<NodeCandidate> walked = new HashSet<>(firstPage.getNodeCandidates());
+        walked.addAll(lastPage.getNodeCandidates());
+        assertThat(walked, is(Sets.newHashSet(medium, cheaperMedium)));
+        assertThat(lastPage.getNextToken(), is(""));
+    }
+
+    @Test
+    public void testPageStopsAtTheLimit() {
+        NodeCandidateQuery query = NodeCandidateQuery.builder().pageSize(2).limit(3).build();
+
+        PagedNodeCandidates firstPage = query.page(Stream.of(small, medium, large, largeWindows), null);
+        PagedNodeCandidates lastPage = query.page(Stream.of(small, medium, large, largeWindows),
+                                                  firstPage.getNextToken());
+
+        assertThat(new ArrayList<>(firstPage.getNodeCandidates()), contains(small, medium));
+        assertThat(new ArrayList<>(lastPage.getNodeCandidates()), contains(large));
+        assertThat(lastPage.getNextToken(), is(""));
+    }
+
+    @Test
+    public void testPageWithoutPageSizeReturnsASinglePage() {
+        PagedNodeCandidates page = NodeCandidateQuery.all().page(Stream.of(small, medium, large), "");
+
+        assertThat(page.getNodeCandidates().size(), is(3));
+        assertThat(page.getNextToken(), is(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageWithTokenOfAnotherSort() {
+        String token = NodeCandidateQuery.builder()
+                                         .pageSize(1)
+                                         .build()
+                                         .page(Stream.of(small, medium), null)
+                                         .getNextToken();
+
+        NodeCandidateQuery.builder().pageSize(1).sort("-ram").build().page(Stream.of(small, medium), token);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPageWithInvalidToken() {
+        NodeCandidateQuery.builder().pageSize(1).build().page(Stream.of(small, medium), "not a token");
+    }
+
+    private static NodeCandidate nodeCandidate(String type, String cores, String ram, Image image, double price) {
+        return NodeCandidate.builder()
+                            .cloud("openstack-nova")
+                            .region("RegionOne")
+                            .hw(Hardware.builder().type(type).minCores(cores).minRam(ram).build())
+                            .img(image)
+                            .price(price)
+                            .build();
+    }
+}
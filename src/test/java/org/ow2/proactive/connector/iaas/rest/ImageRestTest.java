@@ -58,8 +58,17 @@ public class ImageRestTest {
 
     @Test
     public void testListAllImage() {
-        when(imageService.getAllImages("infrastructureId")).thenReturn(Sets.newHashSet());
-        assertThat(imageRest.listAllImage("infrastructureId").getStatus(), is(Response.Status.OK.getStatusCode()));
-        verify(imageService, times(1)).getAllImages("infrastructureId");
+        when(imageService.getImages("infrastructureId", null)).thenReturn(Sets.newHashSet());
+        assertThat(imageRest.listAllImage("infrastructureId", null).getStatus(),
+                   is(Response.Status.OK.getStatusCode()));
+        verify(imageService, times(1)).getImages("infrastructureId", null);
+    }
+
+    @Test
+    public void testListImagesOfRegion() {
+        when(imageService.getImages("infrastructureId", "eu-west-1")).thenReturn(Sets.newHashSet());
+        assertThat(imageRest.listAllImage("infrastructureId", "eu-west-1").getStatus(),
+                   is(Response.Status.OK.getStatusCode()));
+        verify(imageService, times(1)).getImages("infrastructureId", "eu-west-1");
     }
 }
@@ -40,6 +40,8 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.ow2.proactive.connector.iaas.fixtures.InstanceFixture;
 import org.ow2.proactive.connector.iaas.model.Instance;
+import org.ow2.proactive.connector.iaas.model.InstanceOperation;
+import org.ow2.proactive.connector.iaas.service.InstanceOperationService;
 import org.ow2.proactive.connector.iaas.service.InstanceService;
 
 import com.google.common.collect.Sets;
@@ -52,6 +54,9 @@ public class InstanceRestTest {
     @Mock
     private InstanceService instanceService;
 
+    @Mock
+    private InstanceOperationService instanceOperationService;
+
     private String instanceStringFixture;
 
     private Instance instanceFixture;
@@ -81,11 +86,23 @@ public class InstanceRestTest {
 
     @Test
     public void testCreateInstance() {
-        assertThat(instanceRest.createInstance("infrastructureId", instanceStringFixture).getStatus(),
+        assertThat(instanceRest.createInstance("infrastructureId", null, instanceStringFixture).getStatus(),
                    is(Response.Status.OK.getStatusCode()));
         verify(instanceService, times(1)).createInstance("infrastructureId", instanceFixture);
     }
 
+    @Test
+    public void testCreateInstanceAsynchronously() {
+        when(instanceOperationService.submitInstanceCreation("infrastructureId",
+                                                             instanceFixture)).thenReturn(InstanceOperation.builder()
+                                                                                                           .id("operationId")
+                                                                                                           .build());
+        assertThat(instanceRest.createInstance("infrastructureId", true, instanceStringFixture).getStatus(),
+                   is(Response.Status.ACCEPTED.getStatusCode()));
+        verify(instanceOperationService, times(1)).submitInstanceCreation("infrastructureId", instanceFixture);
+        verify(instanceService, times(0)).createInstance("infrastructureId", instanceFixture);
+    }
+
     @Test
     public void testListAllInstances() {
         when(instanceService.getAllInstances("infrastructureId")).thenReturn(Sets.newHashSet());
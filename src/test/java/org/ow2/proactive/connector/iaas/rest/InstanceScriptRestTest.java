@@ -68,7 +68,7 @@ public class InstanceScriptRestTest {
                                                            Mockito.any(InstanceScript.class))).thenReturn(Lists.newArrayList(scriptResult));
 
         assertThat(instanceScriptRest.executeScript("infrastructureId",
-                                                    "instanceId",
+                                                    Lists.newArrayList("instanceId"),
                                                     "tag",
                                                     InstanceScriptFixture.getInstanceScriptAsaString(new String[] {}))
                                      .getStatus(),
@@ -103,4 +103,27 @@ public class InstanceScriptRestTest {
                                                                         Mockito.anyString(),
                                                                         Mockito.any(InstanceScript.class));
     }
+
+    @Test
+    public void testExecuteScriptByInstanceIds() {
+        ScriptResult scriptResult = new ScriptResult("instanceId", "output", "error");
+        when(instanceScriptService.executeScriptOnInstances(Mockito.anyString(),
+                                                            Mockito.anyListOf(String.class),
+                                                            Mockito.any(InstanceScript.class))).thenReturn(Lists.newArrayList(scriptResult,
+                                                                                                                              scriptResult));
+        assertThat(instanceScriptRest.executeScript("infrastructureId",
+                                                    Lists.newArrayList("instanceId", "otherInstanceId"),
+                                                    null,
+                                                    InstanceScriptFixture.getInstanceScriptAsaString(new String[] {}))
+                                     .getStatus(),
+                   is(Response.Status.OK.getStatusCode()));
+        verify(instanceScriptService, times(1)).executeScriptOnInstances(Mockito.eq("infrastructureId"),
+                                                                         Mockito.eq(Lists.newArrayList("instanceId",
+                                                                                                       "otherInstanceId")),
+                                                                         Mockito.any(InstanceScript.class));
+
+        verify(instanceScriptService, times(0)).executeScriptOnInstance(Mockito.anyString(),
+                                                                        Mockito.anyString(),
+                                                                        Mockito.any(InstanceScript.class));
+    }
 }
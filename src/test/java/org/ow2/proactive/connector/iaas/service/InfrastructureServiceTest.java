@@ -28,6 +28,7 @@ package org.ow2.proactive.connector.iaas.service;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -116,6 +117,39 @@ public class InfrastructureServiceTest {
         inOrder.verify(infrastructureCache, times(1)).deleteInfrastructure(infrastructure);
     }
 
+    @Test
+    public void testDeleteInfrastructureOnShutdownKeepsTheSavedSnapshots() {
+        Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-aws",
+                                                                                "aws",
+                                                                                "endPoint",
+                                                                                "userName",
+                                                                                "password",
+                                                                                null,
+                                                                                null,
+                                                                                null);
+        infrastructureService.deleteInfrastructureOnShutdown(infrastructure);
+
+        verify(cloudManager, times(1)).deleteInfrastructure(infrastructure, false);
+        verify(infrastructureCache, times(1)).deleteInfrastructure(infrastructure);
+    }
+
+    @Test
+    public void testReleaseInfrastructure() {
+        Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-aws",
+                                                                                "aws",
+                                                                                "endPoint",
+                                                                                "userName",
+                                                                                "password",
+                                                                                null,
+                                                                                null,
+                                                                                null);
+        infrastructureService.releaseInfrastructure(infrastructure);
+
+        verify(cloudManager, times(1)).releaseInfrastructure(infrastructure);
+        verify(cloudManager, never()).deleteInfrastructure(infrastructure);
+        verify(infrastructureCache, never()).deleteInfrastructure(infrastructure);
+    }
+
     @Test
     public void testDeleteInfrastructureWithCreatedInstances() {
         Infrastructure infrastructure = InfrastructureFixture.getInfrastructure("id-aws",
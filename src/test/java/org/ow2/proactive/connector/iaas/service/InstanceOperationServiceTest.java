@@ -0,0 +1,167 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.service;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import javax.ws.rs.NotFoundException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.fixtures.InstanceFixture;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.Instance;
+import org.ow2.proactive.connector.iaas.model.InstanceOperation;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Sets;
+
+
+public class InstanceOperationServiceTest {
+
+    private InstanceOperationService instanceOperationService;
+
+    @Mock
+    private InstanceService instanceService;
+
+    @Mock
+    private InfrastructureService infrastructureService;
+
+    private Infrastructure infrastructure;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        instanceOperationService = new InstanceOperationService(instanceService, infrastructureService, 2, 10, 60000);
+        infrastructure = InfrastructureFixture.getSimpleInfrastructure("sometype");
+        when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
+    }
+
+    @After
+    public void shutdown() {
+        instanceOperationService.shutdown();
+    }
+
+    @Test
+    public void testSuccessfulCreation() throws InterruptedException {
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(instanceService.createInstance(infrastructure.getId(), instance)).thenReturn(Sets.newHashSet(instance));
+
+        InstanceOperation operation = instanceOperationService.submitInstanceCreation(infrastructure.getId(),
+                                                                                      instance);
+
+        InstanceOperation finishedOperation = waitForEnd(operation.getId());
+        assertThat(finishedOperation.getStatus(), is(InstanceOperation.Status.SUCCEEDED));
+        assertThat(finishedOperation.getInstances().size(), is(1));
+    }
+
+    @Test
+    public void testFailedCreation() throws InterruptedException {
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(instanceService.createInstance(infrastructure.getId(),
+                                            instance)).thenThrow(new RuntimeException("quota exceeded"));
+
+        InstanceOperation operation = instanceOperationService.submitInstanceCreation(infrastructure.getId(),
+                                                                                      instance);
+
+        InstanceOperation finishedOperation = waitForEnd(operation.getId());
+        assertThat(finishedOperation.getStatus(), is(InstanceOperation.Status.FAILED));
+        assertThat(finishedOperation.getError(), is("quota exceeded"));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testSubmitOnUnknownInfrastructure() {
+        instanceOperationService.submitInstanceCreation("unknown", InstanceFixture.simpleInstance("id"));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetUnknownOperation() {
+        instanceOperationService.getOperation("unknown");
+    }
+
+    @Test
+    public void testExpiredOperationIsNotReturned() throws InterruptedException {
+        instanceOperationService.shutdown();
+        instanceOperationService = new InstanceOperationService(instanceService, infrastructureService, 2, 10, 100);
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(instanceService.createInstance(infrastructure.getId(), instance)).thenReturn(Sets.newHashSet(instance));
+
+        InstanceOperation operation = instanceOperationService.submitInstanceCreation(infrastructure.getId(),
+                                                                                      instance);
+        waitForEnd(operation.getId());
+        Thread.sleep(200);
+
+        try {
+            instanceOperationService.getOperation(operation.getId());
+            fail("the expired operation should not be returned");
+        } catch (NotFoundException e) {
+            assertThat(getOperations().isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void testExpiredOperationsArePurgedWithoutNewSubmissions() throws InterruptedException {
+        instanceOperationService.shutdown();
+        instanceOperationService = new InstanceOperationService(instanceService, infrastructureService, 2, 10, 100);
+        instanceOperationService.start();
+        Instance instance = InstanceFixture.simpleInstance("id");
+        when(instanceService.createInstance(infrastructure.getId(), instance)).thenReturn(Sets.newHashSet(instance));
+
+        InstanceOperation operation = instanceOperationService.submitInstanceCreation(infrastructure.getId(),
+                                                                                      instance);
+        waitForEnd(operation.getId());
+
+        for (int i = 0; i < 100 && !getOperations().isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(getOperations().isEmpty(), is(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, InstanceOperation> getOperations() {
+        return (Map<String, InstanceOperation>) ReflectionTestUtils.getField(instanceOperationService, "operations");
+    }
+
+    private InstanceOperation waitForEnd(String operationId) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            InstanceOperation operation = instanceOperationService.getOperation(operationId);
+            if (operation.getEndTime() != null) {
+                return operation;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Operation " + operationId + " did not finish");
+    }
+}
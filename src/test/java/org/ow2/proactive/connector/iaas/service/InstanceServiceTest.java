@@ -31,6 +31,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Optional;
 import java.util.Set;
 
 import org.jclouds.compute.RunNodesException;
@@ -179,14 +180,13 @@ public class InstanceServiceTest {
         Instance instance2 = InstanceFixture.simpleInstanceWithTag("id2", "tag2");
 
         when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
-        when(cloudManager.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(instance1,
-                                                                                                    instance2));
+        when(cloudManager.getInfrastructureInstancesByTag(infrastructure,
+                                                          "tag1")).thenReturn(Sets.newHashSet(instance1));
 
         instanceService.deleteInstanceByTag(infrastructure.getId(), "tag1");
 
-        verify(cloudManager, times(1)).getAllInfrastructureInstances(infrastructure);
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id1");
-        verify(cloudManager, times(0)).deleteInstance(infrastructure, "id2");
+        verify(cloudManager, times(1)).getInfrastructureInstancesByTag(infrastructure, "tag1");
+        verify(cloudManager, times(1)).deleteInstances(infrastructure, Sets.newHashSet("id1"));
     }
 
     @Test
@@ -217,9 +217,7 @@ public class InstanceServiceTest {
 
         verify(cloudManager, times(0)).getAllInfrastructureInstances(infrastructure);
         verify(cloudManager, times(1)).getCreatedInfrastructureInstances(infrastructure);
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id1");
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id2");
-        verify(cloudManager, times(0)).deleteInstance(infrastructure, "id3");
+        verify(cloudManager, times(1)).deleteInstances(infrastructure, Sets.newHashSet("id1", "id2"));
     }
 
     @Test
@@ -247,9 +245,7 @@ public class InstanceServiceTest {
         instanceService.deleteAllInstances(infrastructure.getId());
 
         verify(cloudManager, times(1)).getAllInfrastructureInstances(infrastructure);
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id1");
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id2");
-        verify(cloudManager, times(1)).deleteInstance(infrastructure, "id3");
+        verify(cloudManager, times(1)).deleteInstances(infrastructure, Sets.newHashSet("id1", "id2", "id3"));
     }
 
     @Test(expected = javax.ws.rs.NotFoundException.class)
@@ -353,11 +349,13 @@ public class InstanceServiceTest {
                                                                                 null);
         when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
 
-        when(cloudManager.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(InstanceFixture.simpleInstance("id")));
+        when(cloudManager.getInfrastructureInstancesByTag(infrastructure,
+                                                          "instanceTAG")).thenReturn(Sets.newHashSet(InstanceFixture.simpleInstance("id")));
 
-        instanceService.getInstanceByTag(infrastructure.getId(), "instanceTAG");
+        assertThat(instanceService.getInstanceByTag(infrastructure.getId(), "instanceTAG").size(), is(1));
 
-        verify(cloudManager, times(1)).getAllInfrastructureInstances(infrastructure);
+        verify(cloudManager, times(1)).getInfrastructureInstancesByTag(infrastructure, "instanceTAG");
+        verify(cloudManager, times(0)).getAllInfrastructureInstances(infrastructure);
 
     }
 
@@ -374,11 +372,22 @@ public class InstanceServiceTest {
                                                                                 null);
         when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
 
-        when(cloudManager.getAllInfrastructureInstances(infrastructure)).thenReturn(Sets.newHashSet(InstanceFixture.simpleInstance("id")));
+        when(cloudManager.getInfrastructureInstanceById(infrastructure,
+                                                        "id")).thenReturn(Optional.of(InstanceFixture.simpleInstance("id")));
 
-        instanceService.getInstanceById(infrastructure.getId(), "id");
+        assertThat(instanceService.getInstanceById(infrastructure.getId(), "id").getId(), is("id"));
 
-        verify(cloudManager, times(1)).getAllInfrastructureInstances(infrastructure);
+        verify(cloudManager, times(1)).getInfrastructureInstanceById(infrastructure, "id");
+        verify(cloudManager, times(0)).getAllInfrastructureInstances(infrastructure);
+
+    }
 
+    @Test(expected = RuntimeException.class)
+    public void testGetInstanceByIdNotFound() {
+        Infrastructure infrastructure = InfrastructureFixture.getSimpleInfrastructure("aws");
+        when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
+        when(cloudManager.getInfrastructureInstanceById(infrastructure, "id")).thenReturn(Optional.empty());
+
+        instanceService.getInstanceById(infrastructure.getId(), "id");
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.service;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.AggregatedNodeCandidates;
+import org.ow2.proactive.connector.iaas.model.Hardware;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.NodeCandidate;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateQuery;
+import org.ow2.proactive.connector.iaas.model.NodeCandidateReport;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+
+public class NodeCandidateAggregationServiceTest {
+
+    private NodeCandidateAggregationService nodeCandidateAggregationService;
+
+    @Mock
+    private NodeCandidateService nodeCandidateService;
+
+    @Mock
+    private InfrastructureService infrastructureService;
+
+    private final Infrastructure openstack = InfrastructureFixture.getSimpleInfrastructure("openstack-nova");
+
+    private final Infrastructure azure = InfrastructureFixture.getSimpleInfrastructure("azure");
+
+    private final Infrastructure aws = InfrastructureFixture.getSimpleInfrastructure("aws-ec2");
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        nodeCandidateAggregationService = new NodeCandidateAggregationService(nodeCandidateService,
+                                                                              infrastructureService,
+                                                                              4,
+                                                                              5000,
+                                                                              "aws-ec2 = 200");
+        for (Infrastructure infrastructure : Lists.newArrayList(openstack, azure, aws)) {
+            when(infrastructureService.getInfrastructure(infrastructure.getId())).thenReturn(infrastructure);
+        }
+        when(infrastructureService.getAllSupportedInfrastructure()).thenReturn(ImmutableMap.of(openstack.getId(),
+                                                                                               openstack,
+                                                                                               azure.getId(),
+                                                                                               azure,
+                                                                                               aws.getId(),
+                                                                                               aws));
+    }
+
+    @After
+    public void shutdown() {
+        nodeCandidateAggregationService.shutdown();
+    }
+
+    @Test
+    public void testMergesTheNodeCandidatesOfAllInfrastructures() {
+        NodeCandidate cheap = nodeCandidate("openstack-nova", 0.1);
+        NodeCandidate medium = nodeCandidate("azure", 0.2);
+        NodeCandidate expensive = nodeCandidate("openstack-nova", 0.5);
+        when(nodeCandidateService.getAllNodeCandidates(eq(openstack),
+                                                       eq("region"),
+                                                       eq("ubuntu"),
+                                                       any())).thenReturn(Sets.newHashSet(expensive, cheap));
+        when(nodeCandidateService.getAllNodeCandidates(eq(azure),
+                                                       eq("region"),
+                                                       eq("ubuntu"),
+                                                       any())).thenReturn(Sets.newHashSet(medium));
+        when(nodeCandidateService.getAllNodeCandidates(eq(aws),
+                                                       eq("region"),
+                                                       eq("ubuntu"),
+                                                       any())).thenReturn(Collections.emptySet());
+
+        AggregatedNodeCandidates result = nodeCandidateAggregationService.getNodeCandidates(Collections.emptyList(),
+                                                                                            Lists.newArrayList("region"),
+                                                                                            "ubuntu",
+                                                                                            NodeCandidateQuery.builder()
+                                                                                                              .limit(2)
+                                                                                                              .build());
+
+        assertThat(new ArrayList<>(result.getNodeCandidates()), contains(cheap, medium));
+        assertThat(result.getReports().size(), is(3));
+        assertThat(reportsPerInfrastructure(result).get(openstack.getId()).getNodeCandidates(), is(2));
+        assertThat(result.getReports()
+                         .stream()
+                         .allMatch(report -> report.getStatus() == NodeCandidateReport.Status.SUCCEEDED),
+                   is(true));
+    }
+
+    @Test
+    public void testReportsSlowFailedAndUnknownInfrastructures() {
+        NodeCandidate openstackCandidate = nodeCandidate("openstack-nova", 0.1);
+        when(nodeCandidateService.getAllNodeCandidates(eq(openstack),
+                                                       eq("region"),
+                                                       eq(""),
+                                                       any())).thenReturn(Sets.newHashSet(openstackCandidate));
+        when(nodeCandidateService.getAllNodeCandidates(eq(azure),
+                                                       eq("region"),
+                                                       eq(""),
+                                                       any())).thenThrow(new RuntimeException("invalid credentials"));
+        when(nodeCandidateService.getAllNodeCandidates(eq(aws), eq("region"), eq(""), any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return Collections.emptySet();
+        });
+
+        AggregatedNodeCandidates result = nodeCandidateAggregationService.getNodeCandidates(Lists.newArrayList(openstack.getId(),
+                                                                                                               azure.getId(),
+                                                                                                               aws.getId(),
+                                                                                                               "unknown"),
+                                                                                            Lists.newArrayList("region"),
+                                                                                            "",
+                                                                                            NodeCandidateQuery.all());
+
+        assertThat(new ArrayList<>(result.getNodeCandidates()), contains(openstackCandidate));
+        Map<String, NodeCandidateReport> reports = reportsPerInfrastructure(result);
+        assertThat(reports.get(openstack.getId()).getStatus(), is(NodeCandidateReport.Status.SUCCEEDED));
+        assertThat(reports.get(azure.getId()).getStatus(), is(NodeCandidateReport.Status.FAILED));
+        assertThat(reports.get(azure.getId()).getError(), is("invalid credentials"));
+        assertThat(reports.get(aws.getId()).getStatus(), is(NodeCandidateReport.Status.TIMED_OUT));
+        assertThat(reports.get("unknown").getStatus(), is(NodeCandidateReport.Status.FAILED));
+    }
+
+    @Test
+    public void testRequestsDoNotWaitForTheSlowInfrastructures() {
+        NodeCandidateAggregationService singleThreadService = new NodeCandidateAggregationService(nodeCandidateService,
+                                                                                                  infrastructureService,
+                                                                                                  1,
+                                                                                                  5000,
+                                                                                                  "aws-ec2 = 200");
+        NodeCandidate awsCandidate = nodeCandidate("aws-ec2", 0.1);
+        when(nodeCandidateService.getAllNodeCandidates(eq(azure), eq("region"), eq(""), any())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return Collections.emptySet();
+        });
+        when(nodeCandidateService.getAllNodeCandidates(eq(aws),
+                                                       eq("region"),
+                                                       eq(""),
+                                                       any())).thenReturn(Sets.newHashSet(awsCandidate));
+
+        try {
+            AggregatedNodeCandidates result = singleThreadService.getNodeCandidates(Lists.newArrayList(azure.getId(),
+                                                                                                       aws.getId()),
+                                                                                    Lists.newArrayList("region"),
+                                                                                    "",
+                                                                                    NodeCandidateQuery.all());
+
+            assertThat(new ArrayList<>(result.getNodeCandidates()), contains(awsCandidate));
+            Map<String, NodeCandidateReport> reports = reportsPerInfrastructure(result);
+            assertThat(reports.get(azure.getId()).getStatus(), is(NodeCandidateReport.Status.SUCCEEDED));
+            assertThat(reports.get(aws.getId()).getStatus(), is(NodeCandidateReport.Status.SUCCEEDED));
+        } finally {
+            singleThreadService.shutdown();
+        }
+    }
+
+    @Test
+    public void testReportsInfrastructuresWithoutRegion() {
+        AggregatedNodeCandidates result = nodeCandidateAggregationService.getNodeCandidates(Lists.newArrayList(openstack.getId()),
+                                                                                            Collections.emptyList(),
+                                                                                            "",
+                                                                                            NodeCandidateQuery.all());
+
+        assertThat(result.getNodeCandidates().isEmpty(), is(true));
+        assertThat(result.getReports().get(0).getStatus(), is(NodeCandidateReport.Status.FAILED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuery() {
+        nodeCandidateAggregationService.getNodeCandidates(Collections.emptyList(),
+                                                          Lists.newArrayList("region"),
+                                                          "",
+                                                          NodeCandidateQuery.builder().sort("unknown").build());
+    }
+
+    private static Map<String, NodeCandidateReport> reportsPerInfrastructure(AggregatedNodeCandidates result) {
+        return result.getReports()
+                     .stream()
+                     .collect(Collectors.toMap(NodeCandidateReport::getInfrastructureId, Function.identity()));
+    }
+
+    private static NodeCandidate nodeCandidate(String cloud, double price) {
+        return NodeCandidate.builder()
+                            .cloud(cloud)
+                            .region("region")
+                            .hw(Hardware.builder().type("type-" + price).minCores("2").minRam("4096").build())
+                            .price(price)
+                            .build();
+    }
+}
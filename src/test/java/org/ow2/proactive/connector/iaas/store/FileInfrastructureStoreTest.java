@@ -0,0 +1,170 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package org.ow2.proactive.connector.iaas.store;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.proactive.connector.iaas.fixtures.InfrastructureFixture;
+import org.ow2.proactive.connector.iaas.model.Infrastructure;
+import org.ow2.proactive.connector.iaas.model.InfrastructureScope;
+
+
+public class FileInfrastructureStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private String directory;
+
+    private Infrastructure openstackInfrastructure;
+
+    @Before
+    public void init() throws IOException {
+        directory = temporaryFolder.newFolder("store").getAbsolutePath();
+        openstackInfrastructure = InfrastructureFixture.getInfrastructure("id-openstack",
+                                                                          "openstack-nova",
+                                                                          "endPoint",
+                                                                          "userName",
+                                                                          "secret-password",
+                                                                          new InfrastructureScope("project", "admin"),
+                                                                          "RegionOne",
+                                                                          "3");
+    }
+
+    @Test
+    public void testInfrastructuresSurviveRestart() {
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 1000);
+        store.save(openstackInfrastructure);
+        store.save(InfrastructureFixture.getInfrastructure("id-aws", "aws-ec2", "", "aws-user", "aws-password"));
+
+        Map<String, Infrastructure> infrastructures = new FileInfrastructureStore(directory, "", 1000).loadAll();
+
+        assertThat(infrastructures.size(), is(2));
+        Infrastructure restoredInfrastructure = infrastructures.get("id-openstack");
+        assertThat(restoredInfrastructure, is(openstackInfrastructure));
+        assertThat(restoredInfrastructure.getType(), is("openstack-nova"));
+        assertThat(restoredInfrastructure.getScope(), is(openstackInfrastructure.getScope()));
+        assertThat(restoredInfrastructure.getCredentials(), is(openstackInfrastructure.getCredentials()));
+    }
+
+    @Test
+    public void testDeletedInfrastructuresAreNotRestored() {
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 1000);
+        store.save(openstackInfrastructure);
+        store.delete("id-openstack");
+
+        assertThat(new FileInfrastructureStore(directory, "", 1000).loadAll().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testCredentialsAreEncryptedAtRest() throws IOException {
+        new FileInfrastructureStore(directory, "", 1000).save(openstackInfrastructure);
+
+        String journal = new String(Files.readAllBytes(journal()), StandardCharsets.UTF_8);
+        assertThat(journal.contains("id-openstack"), is(true));
+        assertThat(journal.contains("secret-password"), is(false));
+        assertThat(journal.contains("userName"), is(false));
+    }
+
+    @Test
+    public void testConfiguredKey() {
+        String key = Base64.getEncoder().encodeToString(new byte[32]);
+        new FileInfrastructureStore(directory, key, 1000).save(openstackInfrastructure);
+
+        assertThat(Files.exists(journal().resolveSibling(FileInfrastructureStore.KEY_FILE)), is(false));
+        assertThat(new FileInfrastructureStore(directory, key, 1000).loadAll()
+                                                                   .get("id-openstack")
+                                                                   .getCredentials(),
+                   is(openstackInfrastructure.getCredentials()));
+    }
+
+    @Test
+    public void testJournalIsCompacted() throws IOException {
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 10);
+        for (int i = 0; i < 20; i++) {
+            store.save(openstackInfrastructure);
+        }
+
+        assertThat(Files.readAllLines(journal()).size() <= 10, is(true));
+        assertThat(new FileInfrastructureStore(directory, "", 10).loadAll().size(), is(1));
+    }
+
+    @Test
+    public void testPartiallyWrittenEntryIsIgnored() throws IOException {
+        new FileInfrastructureStore(directory, "", 1000).save(openstackInfrastructure);
+        Files.write(journal(),
+                    "{\"op\":\"PUT\",\"id\":\"id-trunc".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 1000);
+
+        assertThat(store.loadAll().size(), is(1));
+        assertThat(Files.readAllLines(journal()).size(), is(1));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testCorruptedEntryBeforeTheLastOneIsRejected() throws IOException {
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 1000);
+        store.save(openstackInfrastructure);
+        store.delete(openstackInfrastructure.getId());
+        List<String> lines = Files.readAllLines(journal());
+        lines.set(0, lines.get(0).substring(0, 10));
+        Files.write(journal(), lines);
+
+        new FileInfrastructureStore(directory, "", 1000);
+    }
+
+    @Test
+    public void testDeletionIsReplayedAfterAPartiallyWrittenEntry() throws IOException {
+        FileInfrastructureStore store = new FileInfrastructureStore(directory, "", 1000);
+        store.save(openstackInfrastructure);
+        store.delete(openstackInfrastructure.getId());
+        Files.write(journal(),
+                    "{\"op\":\"PUT\",\"id\":\"id-trunc".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        assertThat(new FileInfrastructureStore(directory, "", 1000).loadAll().isEmpty(), is(true));
+    }
+
+    private Path journal() {
+        return Paths.get(directory, FileInfrastructureStore.JOURNAL_FILE);
+    }
+}